@@ -17,6 +17,7 @@
 package io.github.studiousxiaoyu.hunyuan;
 
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanAudioApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanClientTransport;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanConstants;
 import io.github.studiousxiaoyu.hunyuan.audio.HunYuanAudioTextToVoiceModel;
 import io.github.studiousxiaoyu.hunyuan.audio.HunYuanAudioTranscriptionModel;
@@ -39,11 +40,11 @@ import org.springframework.util.StringUtils;
  * @author Guo Junyu
  */
 @AutoConfiguration(after = { RestClientAutoConfiguration.class, WebClientAutoConfiguration.class,
-		SpringAiRetryAutoConfiguration.class })
+		SpringAiRetryAutoConfiguration.class, HunYuanClientTransportAutoConfiguration.class })
 @EnableConfigurationProperties({ HunYuanCommonProperties.class, HunYuanAudioTextToVoiceProperties.class })
 @ConditionalOnClass(HunYuanAudioApi.class)
 @ImportAutoConfiguration(classes = { SpringAiRetryAutoConfiguration.class, RestClientAutoConfiguration.class,
-		WebClientAutoConfiguration.class })
+		WebClientAutoConfiguration.class, HunYuanClientTransportAutoConfiguration.class })
 public class HunYuanAudioTextToVoiceAutoConfiguration {
 
 	@Bean
@@ -51,16 +52,17 @@ public class HunYuanAudioTextToVoiceAutoConfiguration {
 	@ConditionalOnProperty(prefix = HunYuanAudioTextToVoiceProperties.CONFIG_PREFIX, name = "enabled",
 			havingValue = "true", matchIfMissing = true)
 	public HunYuanAudioTextToVoiceModel hunYuanAudioTextToVoiceModel(HunYuanCommonProperties commonProperties,
-			HunYuanAudioTextToVoiceProperties chatProperties) {
+			HunYuanAudioTextToVoiceProperties chatProperties, HunYuanClientTransport transport) {
 
 		var hunyuanApi = hunYuanAudioApi(chatProperties.getSecretId(), commonProperties.getSecretId(),
-				chatProperties.getSecretKey(), commonProperties.getSecretKey(), chatProperties.getBaseUrl());
+				chatProperties.getSecretKey(), commonProperties.getSecretKey(), chatProperties.getBaseUrl(),
+				HunYuanClientTransportAutoConfiguration.transportFor(transport, "tts", chatProperties));
 
 		return new HunYuanAudioTextToVoiceModel(hunyuanApi, chatProperties.getOptions());
 	}
 
 	private HunYuanAudioApi hunYuanAudioApi(String secretId, String commonSecretId, String secretKey,
-			String commonSecretKey, String baseUrl) {
+			String commonSecretKey, String baseUrl, HunYuanClientTransport transport) {
 
 		var resolvedSecretId = StringUtils.hasText(secretId) ? secretId : commonSecretId;
 		var resolvedSecretKey = StringUtils.hasText(secretKey) ? secretKey : commonSecretKey;
@@ -69,7 +71,7 @@ public class HunYuanAudioTextToVoiceAutoConfiguration {
 		Assert.hasText(resolvedSecretKey, "HunYuan SecretKey must be set");
 		Assert.hasText(baseUrl, "Audio base URL must be set");
 
-		return new HunYuanAudioApi(baseUrl, resolvedSecretId, resolvedSecretKey, HunYuanConstants.DEFAULT_TTS_ACTION,
+		return transport.audioApi(baseUrl, resolvedSecretId, resolvedSecretKey, HunYuanConstants.DEFAULT_TTS_ACTION,
 				HunYuanConstants.DEFAULT_TTS_SERVICE, HunYuanConstants.DEFAULT_TTS_HOST,
 				HunYuanConstants.DEFAULT_TTS_VERSION);
 	}
@@ -17,6 +17,8 @@
 package io.github.studiousxiaoyu.hunyuan;
 
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanAudioApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanClientTransport;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanConstants;
 import io.github.studiousxiaoyu.hunyuan.audio.HunYuanAudioTranscriptionModel;
 import org.springframework.ai.retry.autoconfigure.SpringAiRetryAutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
@@ -37,11 +39,11 @@ import org.springframework.util.StringUtils;
  * @author Guo Junyu
  */
 @AutoConfiguration(after = { RestClientAutoConfiguration.class, WebClientAutoConfiguration.class,
-		SpringAiRetryAutoConfiguration.class })
+		SpringAiRetryAutoConfiguration.class, HunYuanClientTransportAutoConfiguration.class })
 @EnableConfigurationProperties({ HunYuanCommonProperties.class, HunYuanAudioTranscriptionProperties.class })
 @ConditionalOnClass(HunYuanAudioApi.class)
 @ImportAutoConfiguration(classes = { SpringAiRetryAutoConfiguration.class, RestClientAutoConfiguration.class,
-		WebClientAutoConfiguration.class })
+		WebClientAutoConfiguration.class, HunYuanClientTransportAutoConfiguration.class })
 public class HunYuanAudioTranscriptionAutoConfiguration {
 
 	@Bean
@@ -49,16 +51,17 @@ public class HunYuanAudioTranscriptionAutoConfiguration {
 	@ConditionalOnProperty(prefix = HunYuanAudioTranscriptionProperties.CONFIG_PREFIX, name = "enabled",
 			havingValue = "true", matchIfMissing = true)
 	public HunYuanAudioTranscriptionModel hunYuanAudioTranscriptionModel(HunYuanCommonProperties commonProperties,
-			HunYuanAudioTranscriptionProperties chatProperties) {
+			HunYuanAudioTranscriptionProperties chatProperties, HunYuanClientTransport transport) {
 
 		var hunyuanApi = hunYuanAudioApi(chatProperties.getSecretId(), commonProperties.getSecretId(),
-				chatProperties.getSecretKey(), commonProperties.getSecretKey(), chatProperties.getBaseUrl());
+				chatProperties.getSecretKey(), commonProperties.getSecretKey(), chatProperties.getBaseUrl(),
+				HunYuanClientTransportAutoConfiguration.transportFor(transport, "transcription", chatProperties));
 
 		return new HunYuanAudioTranscriptionModel(hunyuanApi, chatProperties.getOptions());
 	}
 
 	private HunYuanAudioApi hunYuanAudioApi(String secretId, String commonSecretId, String secretKey,
-			String commonSecretKey, String baseUrl) {
+			String commonSecretKey, String baseUrl, HunYuanClientTransport transport) {
 
 		var resolvedSecretId = StringUtils.hasText(secretId) ? secretId : commonSecretId;
 		var resolvedSecretKey = StringUtils.hasText(secretKey) ? secretKey : commonSecretKey;
@@ -67,7 +70,9 @@ public class HunYuanAudioTranscriptionAutoConfiguration {
 		Assert.hasText(resolvedSecretKey, "HunYuan SecretKey must be set");
 		Assert.hasText(baseUrl, "Audio base URL must be set");
 
-		return new HunYuanAudioApi(baseUrl, resolvedSecretId, resolvedSecretKey);
+		return transport.audioApi(baseUrl, resolvedSecretId, resolvedSecretKey,
+				HunYuanConstants.DEFAULT_TRANSCRIPTION_ACTION, HunYuanConstants.DEFAULT_TRANSCRIPTION_SERVICE,
+				HunYuanConstants.DEFAULT_TRANSCRIPTION_HOST, HunYuanConstants.DEFAULT_TRANSCRIPTION_VERSION);
 	}
 
 }
@@ -16,8 +16,16 @@
 
 package io.github.studiousxiaoyu.hunyuan;
 
+import java.time.Duration;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanClientTransport;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanEmbeddingCache;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanEmbeddingModel;
 import io.github.studiousxiaoyu.hunyuan.chat.HunYuanChatModel;
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanParallelToolCallingManager;
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanResponseStore;
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanSemanticCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.observation.ObservationRegistry;
 import org.springframework.ai.chat.observation.ChatModelObservationConvention;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
@@ -25,6 +33,7 @@ import org.springframework.ai.embedding.observation.EmbeddingModelObservationCon
 import org.springframework.ai.model.tool.ToolCallingManager;
 import org.springframework.ai.model.tool.autoconfigure.ToolCallingAutoConfiguration;
 import org.springframework.ai.retry.autoconfigure.SpringAiRetryAutoConfiguration;
+import org.springframework.ai.retry.autoconfigure.SpringAiRetryProperties;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
@@ -38,9 +47,6 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.ResponseErrorHandler;
-import org.springframework.web.client.RestClient;
-import org.springframework.web.reactive.function.client.WebClient;
 
 /**
  * {@link AutoConfiguration Auto-configuration} for HunYuan Chat Model.
@@ -48,12 +54,14 @@ import org.springframework.web.reactive.function.client.WebClient;
  * @author Guo Junyu
  */
 @AutoConfiguration(after = { RestClientAutoConfiguration.class, WebClientAutoConfiguration.class,
-		SpringAiRetryAutoConfiguration.class, ToolCallingAutoConfiguration.class })
+		SpringAiRetryAutoConfiguration.class, ToolCallingAutoConfiguration.class,
+		HunYuanClientTransportAutoConfiguration.class })
 @EnableConfigurationProperties({ HunYuanCommonProperties.class, HunYuanChatProperties.class,
 		HunYuanEmbeddingProperties.class })
 @ConditionalOnClass(HunYuanApi.class)
 @ImportAutoConfiguration(classes = { SpringAiRetryAutoConfiguration.class, RestClientAutoConfiguration.class,
-		WebClientAutoConfiguration.class, ToolCallingAutoConfiguration.class })
+		WebClientAutoConfiguration.class, ToolCallingAutoConfiguration.class,
+		HunYuanClientTransportAutoConfiguration.class })
 public class HunYuanAutoConfiguration {
 
 	@Bean
@@ -61,20 +69,59 @@ public class HunYuanAutoConfiguration {
 	@ConditionalOnProperty(prefix = HunYuanChatProperties.CONFIG_PREFIX, name = "enabled", havingValue = "true",
 			matchIfMissing = true)
 	public HunYuanChatModel hunyuanChatModel(HunYuanCommonProperties commonProperties,
-			HunYuanChatProperties chatProperties, ObjectProvider<RestClient.Builder> restClientBuilderProvider,
+			HunYuanChatProperties chatProperties, HunYuanClientTransport transport,
 			ToolCallingManager toolCallingManager, RetryTemplate retryTemplate,
-			ResponseErrorHandler responseErrorHandler, ObjectProvider<ObservationRegistry> observationRegistry,
-			ObjectProvider<ChatModelObservationConvention> observationConvention) {
+			ObjectProvider<ObservationRegistry> observationRegistry,
+			ObjectProvider<ChatModelObservationConvention> observationConvention,
+			ObjectProvider<SpringAiRetryProperties> retryProperties, ObjectProvider<MeterRegistry> meterRegistry,
+			ObjectProvider<HunYuanResponseStore> responseStore, ObjectProvider<HunYuanEmbeddingModel> embeddingModel) {
 
 		var hunyuanApi = hunyuanApi(chatProperties.getSecretId(), commonProperties.getSecretId(),
 				chatProperties.getSecretKey(), commonProperties.getSecretKey(), chatProperties.getBaseUrl(),
-				commonProperties.getBaseUrl(), restClientBuilderProvider.getIfAvailable(RestClient::builder),
-				responseErrorHandler);
+				commonProperties.getBaseUrl(),
+				HunYuanClientTransportAutoConfiguration.transportFor(transport, "chat", chatProperties));
+
+		var toolExecution = chatProperties.getToolExecution();
+		if (toolExecution.isParallel()) {
+			toolCallingManager = HunYuanParallelToolCallingManager.builder()
+				.delegate(toolCallingManager)
+				.maxConcurrency(toolExecution.getMaxConcurrency())
+				.toolTimeout(toolExecution.getTimeout())
+				.build();
+		}
 
 		var chatModel = new HunYuanChatModel(hunyuanApi, chatProperties.getOptions(), toolCallingManager, retryTemplate,
 				observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP));
 
+		chatModel.setMediaCacheSize(chatProperties.getMediaCacheSize().toBytes());
+		var responseCache = chatProperties.getResponseCache();
+		if (responseCache.isEnabled()) {
+			long maxBytes = responseCache.getMaxSize().toBytes();
+			chatModel.setResponseStore(responseStore.getIfUnique(() -> responseCache.isOffHeap()
+					? HunYuanResponseStore.offHeap(maxBytes, responseCache.getTimeToLive())
+					: HunYuanResponseStore.inHeap(maxBytes, responseCache.getTimeToLive())));
+		}
+		var semanticCache = chatProperties.getSemanticCache();
+		if (semanticCache.isEnabled()) {
+			HunYuanEmbeddingModel questionEmbeddingModel = embeddingModel.getIfUnique();
+			Assert.state(questionEmbeddingModel != null, "The semantic cache requires the HunYuan embedding model");
+			chatModel.setSemanticCache(HunYuanSemanticCache.builder()
+				.embeddingModel(questionEmbeddingModel)
+				.similarityThreshold(semanticCache.getSimilarityThreshold())
+				.maxBytes(semanticCache.getMaxSize().toBytes())
+				.lists(semanticCache.getLists())
+				.probes(semanticCache.getProbes())
+				.build());
+		}
 		observationConvention.ifAvailable(chatModel::setObservationConvention);
+		meterRegistry.ifAvailable(chatModel::setMeterRegistry);
+		retryProperties.ifAvailable(retry -> {
+			int maxAttempts = retry.getMaxAttempts();
+			Duration initialInterval = retry.getBackoff().getInitialInterval();
+			Duration maxInterval = retry.getBackoff().getMaxInterval();
+			chatModel.setAsyncRetry(HunYuanChatModel.asyncRetry(maxAttempts, initialInterval, maxInterval));
+			chatModel.setStreamRetry(HunYuanChatModel.streamRetry(maxAttempts, initialInterval, maxInterval));
+		});
 		return chatModel;
 	}
 
@@ -83,28 +130,36 @@ public class HunYuanAutoConfiguration {
 	@ConditionalOnProperty(prefix = HunYuanEmbeddingProperties.CONFIG_PREFIX, name = "enabled", havingValue = "true",
 			matchIfMissing = true)
 	public HunYuanEmbeddingModel hunYuanEmbeddingModel(HunYuanCommonProperties commonProperties,
-			HunYuanEmbeddingProperties embeddingProperties,
-			ObjectProvider<RestClient.Builder> restClientBuilderProvider,
-			ObjectProvider<WebClient.Builder> webClientBuilderProvider, RetryTemplate retryTemplate,
-			ResponseErrorHandler responseErrorHandler, ObjectProvider<ObservationRegistry> observationRegistry,
-			ObjectProvider<EmbeddingModelObservationConvention> observationConvention) {
+			HunYuanEmbeddingProperties embeddingProperties, HunYuanClientTransport transport,
+			RetryTemplate retryTemplate, ObjectProvider<ObservationRegistry> observationRegistry,
+			ObjectProvider<EmbeddingModelObservationConvention> observationConvention,
+			ObjectProvider<HunYuanEmbeddingCache> embeddingCache) {
 
 		var hunyuanApi = hunyuanApi(embeddingProperties.getSecretId(), commonProperties.getSecretId(),
 				embeddingProperties.getSecretKey(), commonProperties.getSecretKey(), embeddingProperties.getBaseUrl(),
-				commonProperties.getBaseUrl(), restClientBuilderProvider.getIfAvailable(RestClient::builder),
-				responseErrorHandler);
+				commonProperties.getBaseUrl(),
+				HunYuanClientTransportAutoConfiguration.transportFor(transport, "embedding", embeddingProperties));
 
 		var embeddingModel = new HunYuanEmbeddingModel(embeddingProperties.getOptions(), retryTemplate, hunyuanApi,
 				embeddingProperties.getMetadataMode(), observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP));
 
 		observationConvention.ifAvailable(embeddingModel::setObservationConvention);
+		embeddingCache.ifUnique(embeddingModel::setEmbeddingCache);
 
 		return embeddingModel;
 	}
 
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = HunYuanEmbeddingProperties.CONFIG_PREFIX, name = "cache.enabled",
+			havingValue = "true")
+	public HunYuanEmbeddingCache hunYuanEmbeddingCache(HunYuanEmbeddingProperties embeddingProperties) {
+		var cache = embeddingProperties.getCache();
+		return HunYuanEmbeddingCache.open(cache.getDirectory(), cache.getMaxEntries());
+	}
+
 	private HunYuanApi hunyuanApi(String secretId, String commonSecretId, String secretKey, String commonSecretKey,
-			String baseUrl, String commonBaseUrl, RestClient.Builder restClientBuilder,
-			ResponseErrorHandler responseErrorHandler) {
+			String baseUrl, String commonBaseUrl, HunYuanClientTransport transport) {
 
 		var resolvedSecretId = StringUtils.hasText(secretId) ? secretId : commonSecretId;
 		var resolvedSecretKey = StringUtils.hasText(secretKey) ? secretKey : commonSecretKey;
@@ -114,8 +169,8 @@ public class HunYuanAutoConfiguration {
 		Assert.hasText(resolvedSecretKey, "HunYuan SecretKey must be set");
 		Assert.hasText(resoledBaseUrl, "HunYuan base URL must be set");
 
-		return new HunYuanApi(resoledBaseUrl, resolvedSecretId, resolvedSecretKey, restClientBuilder,
-				responseErrorHandler);
+		// Chat and embedding share one client when endpoint and credentials match.
+		return transport.hunYuanApi(resoledBaseUrl, resolvedSecretId, resolvedSecretKey);
 	}
 
 }
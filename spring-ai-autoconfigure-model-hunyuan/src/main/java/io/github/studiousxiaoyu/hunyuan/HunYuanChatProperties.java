@@ -20,6 +20,7 @@ import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
 import io.github.studiousxiaoyu.hunyuan.chat.HunYuanChatOptions;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.util.unit.DataSize;
 
 /**
  * Configuration properties for HunYuan chat client.
@@ -46,6 +47,30 @@ public class HunYuanChatProperties extends HunYuanParentProperties {
 		.temperature(DEFAULT_TEMPERATURE)
 		.build();
 
+	/**
+	 * Tool execution settings.
+	 */
+	@NestedConfigurationProperty
+	private HunYuanToolExecutionProperties toolExecution = new HunYuanToolExecutionProperties();
+
+	/**
+	 * Response cache settings.
+	 */
+	@NestedConfigurationProperty
+	private HunYuanResponseCacheProperties responseCache = new HunYuanResponseCacheProperties();
+
+	/**
+	 * Semantic cache settings.
+	 */
+	@NestedConfigurationProperty
+	private HunYuanSemanticCacheProperties semanticCache = new HunYuanSemanticCacheProperties();
+
+	/**
+	 * Maximum size of the images cached, with their base64 encoding, so that the images
+	 * of a multi-turn conversation are encoded once. 0 to encode them for every request.
+	 */
+	private DataSize mediaCacheSize = DataSize.ofMegabytes(64);
+
 	public HunYuanChatOptions getOptions() {
 		return this.options;
 	}
@@ -54,6 +79,38 @@ public class HunYuanChatProperties extends HunYuanParentProperties {
 		this.options = options;
 	}
 
+	public HunYuanToolExecutionProperties getToolExecution() {
+		return this.toolExecution;
+	}
+
+	public void setToolExecution(HunYuanToolExecutionProperties toolExecution) {
+		this.toolExecution = toolExecution;
+	}
+
+	public HunYuanResponseCacheProperties getResponseCache() {
+		return this.responseCache;
+	}
+
+	public void setResponseCache(HunYuanResponseCacheProperties responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	public HunYuanSemanticCacheProperties getSemanticCache() {
+		return this.semanticCache;
+	}
+
+	public void setSemanticCache(HunYuanSemanticCacheProperties semanticCache) {
+		this.semanticCache = semanticCache;
+	}
+
+	public DataSize getMediaCacheSize() {
+		return this.mediaCacheSize;
+	}
+
+	public void setMediaCacheSize(DataSize mediaCacheSize) {
+		this.mediaCacheSize = mediaCacheSize;
+	}
+
 	public boolean isEnabled() {
 		return this.enabled;
 	}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanClientTransport;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.retry.autoconfigure.SpringAiRetryAutoConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.web.client.RestClientAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * {@link AutoConfiguration Auto-configuration} for the HTTP transport shared by the
+ * HunYuan models.
+ *
+ * @author Guo Junyu
+ */
+@AutoConfiguration(after = { RestClientAutoConfiguration.class, WebClientAutoConfiguration.class,
+		SpringAiRetryAutoConfiguration.class })
+@EnableConfigurationProperties(HunYuanCommonProperties.class)
+@ConditionalOnClass(HunYuanClientTransport.class)
+@ImportAutoConfiguration(classes = { SpringAiRetryAutoConfiguration.class, RestClientAutoConfiguration.class,
+		WebClientAutoConfiguration.class })
+public class HunYuanClientTransportAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public HunYuanClientTransport hunYuanClientTransport(HunYuanCommonProperties commonProperties,
+			ObjectProvider<RestClient.Builder> restClientBuilderProvider,
+			ObjectProvider<WebClient.Builder> webClientBuilderProvider, ResponseErrorHandler responseErrorHandler,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		HunYuanClientTransport transport = new HunYuanClientTransport("hunyuan", commonProperties.getConnection(),
+				restClientBuilderProvider.getIfAvailable(RestClient::builder),
+				webClientBuilderProvider.getIfAvailable(WebClient::builder), responseErrorHandler);
+		meterRegistry.ifAvailable(transport::setMeterRegistry);
+		return transport;
+	}
+
+	/**
+	 * Return the transport of a model: the shared one, or its own pool when the model's
+	 * connection properties are isolated.
+	 */
+	static HunYuanClientTransport transportFor(HunYuanClientTransport transport, String model,
+			HunYuanParentProperties properties) {
+		return properties.getConnection().isIsolated() ? transport.isolated(model, properties.getConnection())
+				: transport;
+	}
+
+}
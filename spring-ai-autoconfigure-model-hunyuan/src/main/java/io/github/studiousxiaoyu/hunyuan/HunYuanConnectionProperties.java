@@ -0,0 +1,43 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanConnectionOptions;
+
+/**
+ * Connection properties for HunYuan. Under {@code spring.ai.hunyuan.connection} they
+ * configure the pool shared by all models; under a model prefix they only apply when that
+ * model is {@link #isIsolated() isolated}.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanConnectionProperties extends HunYuanConnectionOptions {
+
+	/**
+	 * Whether the model uses its own connection pool instead of the shared one.
+	 */
+	private boolean isolated = false;
+
+	public boolean isIsolated() {
+		return this.isolated;
+	}
+
+	public void setIsolated(boolean isolated) {
+		this.isolated = isolated;
+	}
+
+}
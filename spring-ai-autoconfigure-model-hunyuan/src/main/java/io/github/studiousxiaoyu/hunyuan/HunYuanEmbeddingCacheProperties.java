@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan;
+
+import java.nio.file.Path;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanEmbeddingCache;
+
+/**
+ * Embedding cache properties of the HunYuan embedding model, under
+ * {@code spring.ai.hunyuan.embedding.cache}.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanEmbeddingCacheProperties {
+
+	/**
+	 * Whether the embeddings are cached on the disk, so that the texts already embedded
+	 * are not sent again, across restarts. A HunYuanEmbeddingCache bean is used as the
+	 * cache when there is one.
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * Directory of the files of the cache, used by one process at a time.
+	 */
+	private Path directory = Path.of("hunyuan-embedding-cache");
+
+	/**
+	 * Maximum number of embeddings cached of each number of dimensions.
+	 */
+	private long maxEntries = HunYuanEmbeddingCache.DEFAULT_MAX_ENTRIES;
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+	public void setDirectory(Path directory) {
+		this.directory = directory;
+	}
+
+	public long getMaxEntries() {
+		return this.maxEntries;
+	}
+
+	public void setMaxEntries(long maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+}
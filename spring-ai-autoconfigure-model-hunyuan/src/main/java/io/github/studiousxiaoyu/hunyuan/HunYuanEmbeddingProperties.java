@@ -38,6 +38,12 @@ public class HunYuanEmbeddingProperties extends HunYuanParentProperties {
 	@NestedConfigurationProperty
 	private HunYuanEmbeddingOptions options = HunYuanEmbeddingOptions.builder().model(DEFAULT_EMBEDDING_MODEL).build();
 
+	/**
+	 * Embedding cache settings.
+	 */
+	@NestedConfigurationProperty
+	private HunYuanEmbeddingCacheProperties cache = new HunYuanEmbeddingCacheProperties();
+
 	public HunYuanEmbeddingOptions getOptions() {
 		return this.options;
 	}
@@ -46,6 +52,14 @@ public class HunYuanEmbeddingProperties extends HunYuanParentProperties {
 		this.options = options;
 	}
 
+	public HunYuanEmbeddingCacheProperties getCache() {
+		return this.cache;
+	}
+
+	public void setCache(HunYuanEmbeddingCacheProperties cache) {
+		this.cache = cache;
+	}
+
 	public MetadataMode getMetadataMode() {
 		return this.metadataMode;
 	}
@@ -16,6 +16,8 @@
 
 package io.github.studiousxiaoyu.hunyuan;
 
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
 /**
  * Parent properties for HunYuan.
  *
@@ -29,6 +31,12 @@ public class HunYuanParentProperties {
 
 	private String baseUrl;
 
+	/**
+	 * Connection pool and protocol settings.
+	 */
+	@NestedConfigurationProperty
+	private HunYuanConnectionProperties connection = new HunYuanConnectionProperties();
+
 	public String getSecretKey() {
 		return secretKey;
 	}
@@ -53,4 +61,12 @@ public class HunYuanParentProperties {
 		this.baseUrl = baseUrl;
 	}
 
+	public HunYuanConnectionProperties getConnection() {
+		return this.connection;
+	}
+
+	public void setConnection(HunYuanConnectionProperties connection) {
+		this.connection = connection;
+	}
+
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan;
+
+import java.time.Duration;
+
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Response cache properties of the HunYuan chat model, under
+ * {@code spring.ai.hunyuan.chat.response-cache}.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanResponseCacheProperties {
+
+	/**
+	 * Whether the completions of the requests with a temperature of 0 or a seed are
+	 * cached. A HunYuanResponseStore bean is used as the store when there is one.
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * Whether the responses are kept in direct memory rather than in the heap.
+	 */
+	private boolean offHeap = false;
+
+	/**
+	 * Maximum size of the cached responses.
+	 */
+	private DataSize maxSize = DataSize.ofMegabytes(64);
+
+	/**
+	 * Time a response is kept after it is cached.
+	 */
+	private Duration timeToLive = Duration.ofHours(1);
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isOffHeap() {
+		return this.offHeap;
+	}
+
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+
+	public DataSize getMaxSize() {
+		return this.maxSize;
+	}
+
+	public void setMaxSize(DataSize maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public Duration getTimeToLive() {
+		return this.timeToLive;
+	}
+
+	public void setTimeToLive(Duration timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+}
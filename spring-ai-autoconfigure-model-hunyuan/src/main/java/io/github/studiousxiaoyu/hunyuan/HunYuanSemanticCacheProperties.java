@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan;
+
+import org.springframework.util.unit.DataSize;
+
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanSemanticCache;
+
+/**
+ * Semantic cache properties of the HunYuan chat model, under
+ * {@code spring.ai.hunyuan.chat.semantic-cache}.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanSemanticCacheProperties {
+
+	/**
+	 * Whether the questions similar to ones answered before are answered from the cache.
+	 * The questions are embedded by the HunYuan embedding model.
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * Cosine similarity from which a question is answered from the cache.
+	 */
+	private double similarityThreshold = HunYuanSemanticCache.DEFAULT_SIMILARITY_THRESHOLD;
+
+	/**
+	 * Maximum size of the index of the questions and of their answers.
+	 */
+	private DataSize maxSize = DataSize.ofBytes(HunYuanSemanticCache.DEFAULT_MAX_BYTES);
+
+	/**
+	 * Number of lists of the index, about the square root of the number of questions.
+	 */
+	private int lists = HunYuanSemanticCache.DEFAULT_LISTS;
+
+	/**
+	 * Number of lists searched for each question.
+	 */
+	private int probes = HunYuanSemanticCache.DEFAULT_PROBES;
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public double getSimilarityThreshold() {
+		return this.similarityThreshold;
+	}
+
+	public void setSimilarityThreshold(double similarityThreshold) {
+		this.similarityThreshold = similarityThreshold;
+	}
+
+	public DataSize getMaxSize() {
+		return this.maxSize;
+	}
+
+	public void setMaxSize(DataSize maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int getLists() {
+		return this.lists;
+	}
+
+	public void setLists(int lists) {
+		this.lists = lists;
+	}
+
+	public int getProbes() {
+		return this.probes;
+	}
+
+	public void setProbes(int probes) {
+		this.probes = probes;
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan;
+
+import java.time.Duration;
+
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanParallelToolCallingManager;
+
+/**
+ * Tool execution properties of the HunYuan chat model, under
+ * {@code spring.ai.hunyuan.chat.tool-execution}.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanToolExecutionProperties {
+
+	/**
+	 * Whether the tool calls of one assistant turn run concurrently.
+	 */
+	private boolean parallel = false;
+
+	/**
+	 * Maximum number of tool calls running at once when they run concurrently.
+	 */
+	private int maxConcurrency = HunYuanParallelToolCallingManager.DEFAULT_MAX_CONCURRENCY;
+
+	/**
+	 * Time a tool call may take before it is interrupted when they run concurrently.
+	 */
+	private Duration timeout;
+
+	public boolean isParallel() {
+		return this.parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public int getMaxConcurrency() {
+		return this.maxConcurrency;
+	}
+
+	public void setMaxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	public Duration getTimeout() {
+		return this.timeout;
+	}
+
+	public void setTimeout(Duration timeout) {
+		this.timeout = timeout;
+	}
+
+}
@@ -16,10 +16,22 @@
 
 package io.github.studiousxiaoyu.hunyuan;
 
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanClientTransport;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanEmbeddingCache;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanEmbeddingModel;
 import io.github.studiousxiaoyu.hunyuan.chat.HunYuanChatModel;
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanParallelToolCallingManager;
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanResponseStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.autoconfigure.AutoConfigurations;
 import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -104,7 +116,8 @@ public class HunYuanPropertiesTests {
 				"spring.ai.hunyuan.chat.options.seed=66",
 				"spring.ai.hunyuan.chat.options.stop=boza,koza",
 				"spring.ai.hunyuan.chat.options.temperature=0.55",
-				"spring.ai.hunyuan.chat.options.topP=0.56"
+				"spring.ai.hunyuan.chat.options.topP=0.56",
+				"spring.ai.hunyuan.chat.options.image-preprocessing.max-edge=1568"
 				)
 			// @formatter:on
 			.withConfiguration(AutoConfigurations.of(HunYuanAutoConfiguration.class))
@@ -120,6 +133,204 @@ public class HunYuanPropertiesTests {
 				assertThat(chatProperties.getOptions().getStop()).contains("boza", "koza");
 				assertThat(chatProperties.getOptions().getTemperature()).isEqualTo(0.55);
 				assertThat(chatProperties.getOptions().getTopP()).isEqualTo(0.56);
+				assertThat(chatProperties.getOptions().getImagePreprocessing().getMaxEdge()).isEqualTo(1568);
+			});
+	}
+
+	@Test
+	public void connectionProperties() {
+
+		new ApplicationContextRunner().withPropertyValues(
+		// @formatter:off
+				"spring.ai.hunyuan.secret-id=API_ID",
+				"spring.ai.hunyuan.secret-key=API_KEY",
+				"spring.ai.hunyuan.base-url=https://hunyuan.tencentcloudapi.com",
+				"spring.ai.hunyuan.connection.max-connections=64",
+				"spring.ai.hunyuan.connection.pending-acquire-max-count=128",
+				"spring.ai.hunyuan.connection.max-idle-time=10s",
+				"spring.ai.hunyuan.connection.max-life-time=2m",
+				"spring.ai.hunyuan.connection.response-timeout=90s",
+				"spring.ai.hunyuan.connection.http2=true",
+				"spring.ai.hunyuan.connection.concurrency-limit.enabled=true",
+				"spring.ai.hunyuan.connection.concurrency-limit.initial-limit=8",
+				"spring.ai.hunyuan.connection.concurrency-limit.max-queue-wait=5s")
+				// @formatter:on
+			.withBean(SimpleMeterRegistry.class)
+			.withConfiguration(AutoConfigurations.of(HunYuanAutoConfiguration.class))
+			.run(context -> {
+				var connection = context.getBean(HunYuanCommonProperties.class).getConnection();
+
+				assertThat(connection.getMaxConnections()).isEqualTo(64);
+				assertThat(connection.getPendingAcquireMaxCount()).isEqualTo(128);
+				assertThat(connection.getMaxIdleTime()).isEqualTo(Duration.ofSeconds(10));
+				assertThat(connection.getMaxLifeTime()).isEqualTo(Duration.ofMinutes(2));
+				assertThat(connection.getResponseTimeout()).isEqualTo(Duration.ofSeconds(90));
+				assertThat(connection.isHttp2()).isTrue();
+				assertThat(connection.getConcurrencyLimit().isEnabled()).isTrue();
+				assertThat(connection.getConcurrencyLimit().getInitialLimit()).isEqualTo(8);
+				assertThat(connection.getConcurrencyLimit().getMaxQueueWait()).isEqualTo(Duration.ofSeconds(5));
+				HunYuanClientTransport transport = context.getBean(HunYuanClientTransport.class);
+				assertThat(transport.getConnectionOptions()).isSameAs(connection);
+				assertThat(transport.concurrencyLimiter("ChatCompletions").getLimit()).isEqualTo(8);
+				assertThat(context.getBean(SimpleMeterRegistry.class)
+					.get("hunyuan.client.concurrency.limit")
+					.tag("action", "ChatCompletions")
+					.gauge()
+					.value()).isEqualTo(8);
+
+				// Chat and embedding talk to the same endpoint and share one client.
+				assertThat(ReflectionTestUtils.getField(context.getBean(HunYuanChatModel.class), "hunYuanApi"))
+					.isNotNull()
+					.isSameAs(ReflectionTestUtils.getField(context.getBean(HunYuanEmbeddingModel.class), "hunYuanApi"));
+			});
+	}
+
+	@Test
+	public void isolatedChatConnectionProperties() {
+
+		new ApplicationContextRunner().withPropertyValues(
+		// @formatter:off
+				"spring.ai.hunyuan.secret-id=API_ID",
+				"spring.ai.hunyuan.secret-key=API_KEY",
+				"spring.ai.hunyuan.connection.max-connections=64",
+				"spring.ai.hunyuan.chat.connection.isolated=true",
+				"spring.ai.hunyuan.chat.connection.max-connections=8")
+				// @formatter:on
+			.withConfiguration(AutoConfigurations.of(HunYuanAutoConfiguration.class))
+			.run(context -> {
+				var transport = context.getBean(HunYuanClientTransport.class);
+				var chatConnection = context.getBean(HunYuanChatProperties.class).getConnection();
+
+				assertThat(chatConnection.isIsolated()).isTrue();
+				assertThat(transport.getConnectionOptions().getMaxConnections()).isEqualTo(64);
+				assertThat(transport.isolated("chat", chatConnection).getConnectionOptions().getMaxConnections())
+					.isEqualTo(8);
+				assertThat(context.getBeansOfType(HunYuanChatModel.class)).isNotEmpty();
+			});
+	}
+
+	@Test
+	void parallelToolExecution() {
+		new ApplicationContextRunner()
+			.withPropertyValues("spring.ai.hunyuan.secret-id=API_ID", "spring.ai.hunyuan.secret-key=API_KEY",
+					"spring.ai.hunyuan.base-url=TEST_BASE_URL", "spring.ai.hunyuan.chat.tool-execution.parallel=true",
+					"spring.ai.hunyuan.chat.tool-execution.max-concurrency=4",
+					"spring.ai.hunyuan.chat.tool-execution.timeout=2s")
+			.withConfiguration(AutoConfigurations.of(HunYuanAutoConfiguration.class))
+			.run(context -> {
+				var toolExecution = context.getBean(HunYuanChatProperties.class).getToolExecution();
+				assertThat(toolExecution.getMaxConcurrency()).isEqualTo(4);
+				assertThat(toolExecution.getTimeout()).isEqualTo(Duration.ofSeconds(2));
+				assertThat(ReflectionTestUtils.getField(context.getBean(HunYuanChatModel.class), "toolCallingManager"))
+					.isInstanceOf(HunYuanParallelToolCallingManager.class);
+			});
+
+		new ApplicationContextRunner()
+			.withPropertyValues("spring.ai.hunyuan.secret-id=API_ID", "spring.ai.hunyuan.secret-key=API_KEY",
+					"spring.ai.hunyuan.base-url=TEST_BASE_URL")
+			.withConfiguration(AutoConfigurations.of(HunYuanAutoConfiguration.class))
+			.run(context -> assertThat(
+					ReflectionTestUtils.getField(context.getBean(HunYuanChatModel.class), "toolCallingManager"))
+				.isNotInstanceOf(HunYuanParallelToolCallingManager.class));
+	}
+
+	@Test
+	void mediaCacheSize() {
+		new ApplicationContextRunner()
+			.withPropertyValues("spring.ai.hunyuan.secret-id=API_ID", "spring.ai.hunyuan.secret-key=API_KEY",
+					"spring.ai.hunyuan.base-url=TEST_BASE_URL", "spring.ai.hunyuan.chat.media-cache-size=16MB")
+			.withConfiguration(AutoConfigurations.of(HunYuanAutoConfiguration.class))
+			.run(context -> {
+				assertThat(context.getBean(HunYuanChatProperties.class).getMediaCacheSize())
+					.isEqualTo(DataSize.ofMegabytes(16));
+				assertThat(ReflectionTestUtils.getField(context.getBean(HunYuanChatModel.class), "mediaCache"))
+					.extracting("maxBytes")
+					.isEqualTo(DataSize.ofMegabytes(16).toBytes());
+			});
+	}
+
+	@Test
+	void responseCache() {
+		ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withPropertyValues("spring.ai.hunyuan.secret-id=API_ID", "spring.ai.hunyuan.secret-key=API_KEY",
+					"spring.ai.hunyuan.base-url=TEST_BASE_URL")
+			.withConfiguration(AutoConfigurations.of(HunYuanAutoConfiguration.class));
+
+		contextRunner.run(context -> assertThat(
+				ReflectionTestUtils.getField(context.getBean(HunYuanChatModel.class), "responseCache"))
+			.isNull());
+		contextRunner
+			.withPropertyValues("spring.ai.hunyuan.chat.response-cache.enabled=true",
+					"spring.ai.hunyuan.chat.response-cache.off-heap=true",
+					"spring.ai.hunyuan.chat.response-cache.max-size=8MB",
+					"spring.ai.hunyuan.chat.response-cache.time-to-live=10m")
+			.run(context -> {
+				HunYuanResponseCacheProperties responseCache = context.getBean(HunYuanChatProperties.class)
+					.getResponseCache();
+				assertThat(responseCache.isOffHeap()).isTrue();
+				assertThat(responseCache.getMaxSize()).isEqualTo(DataSize.ofMegabytes(8));
+				assertThat(responseCache.getTimeToLive()).isEqualTo(Duration.ofMinutes(10));
+				assertThat(ReflectionTestUtils.getField(context.getBean(HunYuanChatModel.class), "responseCache"))
+					.extracting("store")
+					.hasFieldOrPropertyWithValue("maxBytes", DataSize.ofMegabytes(8).toBytes())
+					.hasFieldOrPropertyWithValue("offHeap", true);
+			});
+		HunYuanResponseStore store = HunYuanResponseStore.inHeap(1024, Duration.ofMinutes(1));
+		contextRunner.withPropertyValues("spring.ai.hunyuan.chat.response-cache.enabled=true")
+			.withBean(HunYuanResponseStore.class, () -> store)
+			.run(context -> assertThat(
+					ReflectionTestUtils.getField(context.getBean(HunYuanChatModel.class), "responseCache"))
+				.extracting("store")
+				.isSameAs(store));
+	}
+
+	@Test
+	void semanticCache() {
+		ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withPropertyValues("spring.ai.hunyuan.secret-id=API_ID", "spring.ai.hunyuan.secret-key=API_KEY",
+					"spring.ai.hunyuan.base-url=TEST_BASE_URL")
+			.withConfiguration(AutoConfigurations.of(HunYuanAutoConfiguration.class));
+
+		contextRunner.run(context -> assertThat(
+				ReflectionTestUtils.getField(context.getBean(HunYuanChatModel.class), "semanticCache"))
+			.isNull());
+		contextRunner
+			.withPropertyValues("spring.ai.hunyuan.chat.semantic-cache.enabled=true",
+					"spring.ai.hunyuan.chat.semantic-cache.similarity-threshold=0.95",
+					"spring.ai.hunyuan.chat.semantic-cache.max-size=32MB",
+					"spring.ai.hunyuan.chat.semantic-cache.lists=256", "spring.ai.hunyuan.chat.semantic-cache.probes=8")
+			.run(context -> assertThat(
+					ReflectionTestUtils.getField(context.getBean(HunYuanChatModel.class), "semanticCache"))
+				.hasFieldOrPropertyWithValue("embeddingModel", context.getBean(HunYuanEmbeddingModel.class))
+				.hasFieldOrPropertyWithValue("similarityThreshold", 0.95)
+				.hasFieldOrPropertyWithValue("maxBytes", DataSize.ofMegabytes(32).toBytes())
+				.hasFieldOrPropertyWithValue("lists", 256)
+				.hasFieldOrPropertyWithValue("probes", 8));
+	}
+
+	@Test
+	void embeddingCache(@TempDir Path directory) {
+		ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withPropertyValues("spring.ai.hunyuan.secret-id=API_ID", "spring.ai.hunyuan.secret-key=API_KEY",
+					"spring.ai.hunyuan.base-url=TEST_BASE_URL")
+			.withConfiguration(AutoConfigurations.of(HunYuanAutoConfiguration.class));
+
+		contextRunner.run(context -> {
+			assertThat(context).doesNotHaveBean(HunYuanEmbeddingCache.class);
+			assertThat(ReflectionTestUtils.getField(context.getBean(HunYuanEmbeddingModel.class), "embeddingCache"))
+				.isNull();
+		});
+		contextRunner
+			.withPropertyValues("spring.ai.hunyuan.embedding.cache.enabled=true",
+					"spring.ai.hunyuan.embedding.cache.directory=" + directory,
+					"spring.ai.hunyuan.embedding.cache.max-entries=1000")
+			.run(context -> {
+				HunYuanEmbeddingCacheProperties cache = context.getBean(HunYuanEmbeddingProperties.class).getCache();
+				assertThat(cache.getDirectory()).isEqualTo(directory);
+				assertThat(cache.getMaxEntries()).isEqualTo(1000);
+				assertThat(ReflectionTestUtils.getField(context.getBean(HunYuanEmbeddingModel.class), "embeddingCache"))
+					.isSameAs(context.getBean(HunYuanEmbeddingCache.class))
+					.hasFieldOrPropertyWithValue("maxEntries", 1000L);
 			});
 	}
 
@@ -17,6 +17,8 @@
 package io.github.studiousxiaoyu.hunyuan.aot;
 
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanSerializedMessages;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanSerializedTools;
 import org.springframework.aot.hint.MemberCategory;
 import org.springframework.aot.hint.RuntimeHints;
 import org.springframework.aot.hint.RuntimeHintsRegistrar;
@@ -39,6 +41,10 @@ public class HunYuanRuntimeHints implements RuntimeHintsRegistrar {
 		for (var tr : findJsonAnnotatedClassesInPackage(HunYuanApi.class)) {
 			hints.reflection().registerType(tr, mcs);
 		}
+		// Instantiated by Jackson from the @JsonSerialize annotations.
+		hints.reflection().registerType(HunYuanSerializedTools.Serializer.class, mcs);
+		hints.reflection().registerType(HunYuanSerializedMessages.Serializer.class, mcs);
+		hints.reflection().registerType(HunYuanApi.ChatCompletionMessage.ImageUrl.Serializer.class, mcs);
 	}
 
 }
@@ -16,35 +16,49 @@
 
 package io.github.studiousxiaoyu.hunyuan.api;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.MultiValueMap;
 import io.github.studiousxiaoyu.hunyuan.api.auth.ApiAuthHttpRequestInterceptor;
 import org.springframework.ai.model.ChatModelDescription;
-import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.retry.NonTransientAiException;
 import org.springframework.ai.retry.RetryUtils;
+import org.springframework.ai.retry.TransientAiException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.Assert;
 import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import io.github.studiousxiaoyu.hunyuan.api.auth.HunYuanAuthApi;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
+import java.util.function.Function;
 
 /**
  * Single-class, Java Client library for HunYuan platform. Provides implementation for the
@@ -63,7 +77,12 @@ public class HunYuanApi {
 
 	public static final String DEFAULT_EMBEDDING_MODEL = EmbeddingModel.HUNYUAN_EMBEDDING.getValue();
 
-	private static final Predicate<String> SSE_DONE_PREDICATE = "[DONE]"::equals;
+	/**
+	 * Number of dimensions of the embeddings of the HunYuan embedding model.
+	 */
+	public static final int DEFAULT_EMBEDDING_DIMENSIONS = 1024;
+
+	private static final HunYuanStreamTimeoutOptions NO_TIMEOUTS = new HunYuanStreamTimeoutOptions();
 
 	private final RestClient restClient;
 
@@ -73,7 +92,19 @@ public class HunYuanApi {
 
 	private final HunYuanAuthApi hunYuanAuthApi;
 
-	private final HunYuanStreamFunctionCallingHelper chunkMerger = new HunYuanStreamFunctionCallingHelper();
+	private final HunYuanJsonCodec jsonCodec = new HunYuanJsonCodec();
+
+	private final HunYuanSseDecoder sseDecoder = new HunYuanSseDecoder();
+
+	private final RestClient.RequestHeadersSpec.ExchangeFunction<ChatCompletionResponse> chatCompletionReader;
+
+	private final ResponseErrorHandler responseErrorHandler;
+
+	private HunYuanConcurrencyLimiter chatLimiter = HunYuanConcurrencyLimiter
+		.unlimited(HunYuanConstants.DEFAULT_CHAT_ACTION);
+
+	private HunYuanConcurrencyLimiter embeddingLimiter = HunYuanConcurrencyLimiter
+		.unlimited(HunYuanConstants.DEFAULT_EMBED_ACTION);
 
 	/**
 	 * Create a new client api with DEFAULT_BASE_URL
@@ -108,49 +139,86 @@ public class HunYuanApi {
 	 */
 	public HunYuanApi(String baseUrl, String secretId, String secretKey, RestClient.Builder restClientBuilder,
 			ResponseErrorHandler responseErrorHandler) {
+		this(baseUrl, secretId, secretKey, HunYuanConstants.DEFAULT_CHAT_ACTION, restClientBuilder,
+				responseErrorHandler);
+	}
 
-		Consumer<HttpHeaders> jsonContentHeaders = headers -> {
-			headers.setContentType(MediaType.APPLICATION_JSON);
-			headers.add("X-TC-Action", HunYuanConstants.DEFAULT_CHAT_ACTION);
-			headers.add("X-TC-Version", HunYuanConstants.DEFAULT_VERSION);
-		};
-		apiAuthHttpRequestInterceptor = new ApiAuthHttpRequestInterceptor(secretId, secretKey);
-		hunYuanAuthApi = new HunYuanAuthApi(secretId, secretKey, HunYuanConstants.DEFAULT_CHAT_HOST,
-				HunYuanConstants.DEFAULT_SERVICE);
-		this.restClient = restClientBuilder.baseUrl(baseUrl)
-			.defaultHeaders(jsonContentHeaders)
-			.defaultStatusHandler(responseErrorHandler)
-			.requestInterceptor(apiAuthHttpRequestInterceptor)
-			.build();
+	/**
+	 * Create a new client api.
+	 * @param baseUrl api base URL.
+	 * @param secretKey Hunyuan api Key.
+	 * @param restClientBuilder RestClient builder.
+	 * @param responseErrorHandler Response error handler.
+	 */
+	public HunYuanApi(String baseUrl, String secretId, String secretKey, String action,
+			RestClient.Builder restClientBuilder, ResponseErrorHandler responseErrorHandler) {
+		this(baseUrl, secretId, secretKey, action, restClientBuilder, WebClient.builder(), responseErrorHandler);
+	}
 
-		this.webClient = WebClient.builder().baseUrl(baseUrl).defaultHeaders(jsonContentHeaders).build();
+	/**
+	 * Create a new client api.
+	 * @param baseUrl api base URL.
+	 * @param secretKey Hunyuan api Key.
+	 * @param restClientBuilder RestClient builder.
+	 * @param webClientBuilder WebClient builder used for streaming, configure its
+	 * connector to control connection pooling and HTTP/2.
+	 * @param responseErrorHandler Response error handler.
+	 */
+	public HunYuanApi(String baseUrl, String secretId, String secretKey, RestClient.Builder restClientBuilder,
+			WebClient.Builder webClientBuilder, ResponseErrorHandler responseErrorHandler) {
+		this(baseUrl, secretId, secretKey, HunYuanConstants.DEFAULT_CHAT_ACTION, restClientBuilder, webClientBuilder,
+				responseErrorHandler);
 	}
 
 	/**
 	 * Create a new client api.
 	 * @param baseUrl api base URL.
 	 * @param secretKey Hunyuan api Key.
+	 * @param action the default X-TC-Action.
 	 * @param restClientBuilder RestClient builder.
+	 * @param webClientBuilder WebClient builder used for streaming, configure its
+	 * connector to control connection pooling and HTTP/2.
 	 * @param responseErrorHandler Response error handler.
 	 */
 	public HunYuanApi(String baseUrl, String secretId, String secretKey, String action,
-			RestClient.Builder restClientBuilder, ResponseErrorHandler responseErrorHandler) {
+			RestClient.Builder restClientBuilder, WebClient.Builder webClientBuilder,
+			ResponseErrorHandler responseErrorHandler) {
+		this(baseUrl,
+				new HunYuanAuthApi(secretId, secretKey, HunYuanConstants.DEFAULT_CHAT_HOST,
+						HunYuanConstants.DEFAULT_SERVICE),
+				action, restClientBuilder, webClientBuilder, responseErrorHandler);
+	}
+
+	/**
+	 * Create a new client api that signs its requests with the given, possibly shared,
+	 * {@link HunYuanAuthApi}.
+	 * @param baseUrl api base URL.
+	 * @param hunYuanAuthApi the request signer.
+	 * @param action the default X-TC-Action.
+	 * @param restClientBuilder RestClient builder.
+	 * @param webClientBuilder WebClient builder used for streaming.
+	 * @param responseErrorHandler Response error handler.
+	 */
+	public HunYuanApi(String baseUrl, HunYuanAuthApi hunYuanAuthApi, String action,
+			RestClient.Builder restClientBuilder, WebClient.Builder webClientBuilder,
+			ResponseErrorHandler responseErrorHandler) {
 
 		Consumer<HttpHeaders> jsonContentHeaders = headers -> {
 			headers.setContentType(MediaType.APPLICATION_JSON);
 			headers.add("X-TC-Action", action);
 			headers.add("X-TC-Version", HunYuanConstants.DEFAULT_VERSION);
 		};
-		apiAuthHttpRequestInterceptor = new ApiAuthHttpRequestInterceptor(secretId, secretKey);
-		hunYuanAuthApi = new HunYuanAuthApi(secretId, secretKey, HunYuanConstants.DEFAULT_CHAT_HOST,
-				HunYuanConstants.DEFAULT_SERVICE);
+		this.hunYuanAuthApi = hunYuanAuthApi;
+		this.apiAuthHttpRequestInterceptor = new ApiAuthHttpRequestInterceptor(hunYuanAuthApi);
 		this.restClient = restClientBuilder.baseUrl(baseUrl)
 			.defaultHeaders(jsonContentHeaders)
 			.defaultStatusHandler(responseErrorHandler)
 			.requestInterceptor(apiAuthHttpRequestInterceptor)
 			.build();
+		this.chatCompletionReader = this.jsonCodec.exchangeFunction(ChatCompletionResponse.class, responseErrorHandler);
+		this.responseErrorHandler = responseErrorHandler;
 
-		this.webClient = WebClient.builder().baseUrl(baseUrl).defaultHeaders(jsonContentHeaders).build();
+		this.webClient = webClientBuilder.baseUrl(baseUrl).defaultHeaders(jsonContentHeaders).build();
 	}
 
 	/**
@@ -162,16 +230,110 @@ public class HunYuanApi {
 	public ResponseEntity<ChatCompletionResponse> chatCompletionEntity(ChatCompletionRequest chatRequest) {
 
 		Assert.notNull(chatRequest, "The request body can not be null.");
-		ResponseEntity<String> response = this.restClient.post()
-			.uri("/")
-			.body(chatRequest)
-			.retrieve()
-			.toEntity(String.class);
-		ChatCompletionResponse chatCompletionResponse = ModelOptionsUtils.jsonToObject(response.getBody(),
-				ChatCompletionResponse.class);
+		return chatCompletionEntity(chatRequest, this.jsonCodec.encode(chatRequest));
+	}
+
+	/**
+	 * Creates a model response for the given chat conversation, already encoded by the
+	 * caller.
+	 * @param chatRequest The chat completion request.
+	 * @param body The request encoded by a {@link HunYuanJsonCodec}, sent as it is.
+	 * @return Entity response with {@link ChatCompletion} as a body and HTTP status code
+	 * and headers.
+	 */
+	public ResponseEntity<ChatCompletionResponse> chatCompletionEntity(ChatCompletionRequest chatRequest, byte[] body) {
+		Assert.notNull(chatRequest, "The request body can not be null.");
+		Assert.notNull(body, "The encoded request body can not be null.");
+		ChatCompletionResponse chatCompletionResponse = this.chatLimiter.call(
+				() -> this.restClient.post().uri("/").body(body).exchange(this.chatCompletionReader),
+				HunYuanApi::errorOf);
 		return ResponseEntity.ok(chatCompletionResponse);
 	}
 
+	/**
+	 * Use the given limiters, by action, for the requests of this client.
+	 * @param concurrencyLimiters the limiter of each action.
+	 * @see HunYuanClientTransport#concurrencyLimiter(String)
+	 */
+	public void setConcurrencyLimiters(Function<String, HunYuanConcurrencyLimiter> concurrencyLimiters) {
+		Assert.notNull(concurrencyLimiters, "concurrencyLimiters must not be null");
+		this.chatLimiter = concurrencyLimiters.apply(HunYuanConstants.DEFAULT_CHAT_ACTION);
+		this.embeddingLimiter = concurrencyLimiters.apply(HunYuanConstants.DEFAULT_EMBED_ACTION);
+	}
+
+	private static ChatCompletion.ErrorMsg errorOf(ChatCompletionResponse response) {
+		return (response != null && response.response() != null) ? response.response().errorMsg() : null;
+	}
+
+	/**
+	 * Creates a model response for the given chat conversation without blocking. The
+	 * request goes through the WebClient, no thread is held while waiting for the model.
+	 * It is signed on subscription, so that every retry carries a fresh signature, and
+	 * error responses are handed to the same {@link ResponseErrorHandler} as the blocking
+	 * calls.
+	 * @param chatRequest The chat completion request.
+	 * @return the {@link Mono} of the chat completion response.
+	 */
+	public Mono<ChatCompletionResponse> chatCompletionAsync(ChatCompletionRequest chatRequest) {
+		Assert.notNull(chatRequest, "The request body can not be null.");
+		return chatCompletionAsync(chatRequest, this.jsonCodec.encode(chatRequest));
+	}
+
+	/**
+	 * Non-blocking variant of
+	 * {@link #chatCompletionEntity(ChatCompletionRequest, byte[])}.
+	 * @param chatRequest The chat completion request.
+	 * @param body The request encoded by a {@link HunYuanJsonCodec}, sent as it is.
+	 * @return the {@link Mono} of the chat completion response.
+	 */
+	public Mono<ChatCompletionResponse> chatCompletionAsync(ChatCompletionRequest chatRequest, byte[] body) {
+		Assert.notNull(chatRequest, "The request body can not be null.");
+		Assert.notNull(body, "The encoded request body can not be null.");
+		Assert.isTrue(!chatRequest.stream(), "Request must not set the stream property.");
+
+		return this.chatLimiter.mono(Mono.defer(() -> {
+			MultiValueMap<String, String> signedHeaders = this.hunYuanAuthApi
+				.getHttpHeadersConsumer(HunYuanConstants.DEFAULT_CHAT_ACTION, HunYuanConstants.DEFAULT_VERSION, body);
+			return this.webClient.post()
+				.uri("/")
+				.headers(headers -> headers.addAll(signedHeaders))
+				.bodyValue(body)
+				.retrieve()
+				.onStatus(HttpStatusCode::isError, this::handleError)
+				.bodyToFlux(DataBuffer.class)
+				.as(DataBufferUtils::join)
+				.map(buffer -> {
+					try (InputStream in = buffer.asInputStream(true)) {
+						return this.jsonCodec.decode(in, ChatCompletionResponse.class);
+					}
+					catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+		}), HunYuanApi::errorOf);
+	}
+
+	/**
+	 * Hand an error response of the WebClient to the {@link ResponseErrorHandler}, so
+	 * that it fails with the same exception as the blocking calls.
+	 */
+	private Mono<Throwable> handleError(ClientResponse response) {
+		return response.bodyToMono(byte[].class).defaultIfEmpty(new byte[0]).flatMap(body -> {
+			ClientHttpResponse bufferedResponse = new BufferedClientHttpResponse(response.statusCode(),
+					response.headers().asHttpHeaders(), body);
+			try {
+				this.responseErrorHandler.handleError(response.request().getURI(), response.request().getMethod(),
+						bufferedResponse);
+			}
+			catch (Exception e) {
+				return Mono.error(e);
+			}
+			// The handler did not raise an error for this status.
+			return Mono.error(new NonTransientAiException(
+					response.statusCode().value() + " - " + new String(body, StandardCharsets.UTF_8)));
+		});
+	}
+
 	/**
 	 * Creates a streaming chat response for the given chat conversation.
 	 * @param chatRequest The chat completion request. Must have the stream property set
@@ -179,54 +341,79 @@ public class HunYuanApi {
 	 * @return Returns a {@link Flux} stream from chat completion chunks.
 	 */
 	public Flux<ChatCompletionChunk> chatCompletionStream(ChatCompletionRequest chatRequest) {
+		return chatCompletionStream(chatRequest, null);
+	}
+
+	/**
+	 * Creates a streaming chat response for the given chat conversation, aborted with a
+	 * {@link HunYuanStreamTimeoutException} when it misses one of its deadlines.
+	 * @param chatRequest The chat completion request. Must have the stream property set
+	 * to true.
+	 * @param timeouts The deadlines of the stream, null for none.
+	 * @return Returns a {@link Flux} stream from chat completion chunks.
+	 */
+	public Flux<ChatCompletionChunk> chatCompletionStream(ChatCompletionRequest chatRequest,
+			HunYuanStreamTimeoutOptions timeouts) {
+		Assert.notNull(chatRequest, "The request body can not be null.");
+		// Serialize once, the signature is computed over the exact bytes that are sent.
+		return chatCompletionStream(chatRequest, this.jsonCodec.encode(chatRequest), timeouts);
+	}
+
+	/**
+	 * Creates a streaming chat response for the given chat conversation, already encoded
+	 * by the caller.
+	 * @param chatRequest The chat completion request. Must have the stream property set
+	 * to true.
+	 * @param body The request encoded by a {@link HunYuanJsonCodec}, sent as it is.
+	 * @param timeouts The deadlines of the stream, null for none.
+	 * @return Returns a {@link Flux} stream from chat completion chunks.
+	 */
+	public Flux<ChatCompletionChunk> chatCompletionStream(ChatCompletionRequest chatRequest, byte[] body,
+			HunYuanStreamTimeoutOptions timeouts) {
 		Assert.notNull(chatRequest, "The request body can not be null.");
+		Assert.notNull(body, "The encoded request body can not be null.");
 		Assert.isTrue(chatRequest.stream(), "Request must set the steam property to true.");
-		AtomicBoolean isInsideTool = new AtomicBoolean(false);
-		MultiValueMap<String, String> jsonContentHeaders = hunYuanAuthApi
-			.getHttpHeadersConsumerByRequest(HunYuanConstants.DEFAULT_CHAT_ACTION, chatRequest);
-
-		return this.webClient.post().uri("/").headers(headers -> {
-			headers.addAll(jsonContentHeaders);
-		})
-			.bodyValue(ModelOptionsUtils.toJsonString(chatRequest))
-			.retrieve()
-			.bodyToFlux(String.class)
-			// cancels the flux stream after the "[DONE]" is received.
-			.takeUntil(SSE_DONE_PREDICATE)
-			// filters out the "[DONE]" message.
-			.filter(SSE_DONE_PREDICATE.negate())
-			.map(content -> {
-				// logger.info(content);
-				return ModelOptionsUtils.jsonToObject(content, ChatCompletionChunk.class);
-			})
-			// Detect is the chunk is part of a streaming function call.
-			.map(chunk -> {
-				if (this.chunkMerger.isStreamingToolFunctionCall(chunk)) {
-					isInsideTool.set(true);
-				}
-				return chunk;
-			})
-			// Group all chunks belonging to the same function call.
-			// Flux<ChatCompletionChunk> -> Flux<Flux<ChatCompletionChunk>>
-			.windowUntil(chunk -> {
-				if (isInsideTool.get() && this.chunkMerger.isStreamingToolFunctionCallFinish(chunk)) {
-					isInsideTool.set(false);
-					return true;
+
+		// The stream holds its permit until it ends. It is signed and its deadlines start
+		// on subscription, so that a resubscribing retry gets a fresh signature and fresh
+		// deadlines.
+		return this.chatLimiter.flux(Flux.defer(() -> {
+			HunYuanStreamDeadlines deadlines = new HunYuanStreamDeadlines((timeouts != null) ? timeouts : NO_TIMEOUTS);
+			MultiValueMap<String, String> jsonContentHeaders = this.hunYuanAuthApi
+				.getHttpHeadersConsumer(HunYuanConstants.DEFAULT_CHAT_ACTION, HunYuanConstants.DEFAULT_VERSION, body);
+			Flux<DataBuffer> responseBody = this.webClient.post()
+				.uri("/")
+				.headers(headers -> headers.addAll(jsonContentHeaders))
+				.httpRequest(request -> deadlines.connected())
+				.bodyValue(body)
+				.retrieve()
+				.onStatus(HttpStatusCode::isError, this::handleError)
+				.bodyToFlux(DataBuffer.class);
+
+			// The decoder drops the "[DONE]" message. The stream is not cancelled on it:
+			// the server completes the response right after, and reading it to the end
+			// lets the connection go back to the pool instead of being closed.
+			Flux<ChatCompletionChunk> chunks = this.sseDecoder.decode(deadlines.responseBody(responseBody))
+				// Fail on an error chunk, the merging below would drop its error.
+				.handle((chunk, sink) -> {
+					if (chunk.errorMsg() != null) {
+						sink.error(chunk.errorMsg().toException(chunk.requestId()));
+					}
+					else {
+						sink.next(chunk);
+					}
+				});
+
+			// The tool call deltas are merged into one chunk per choice, emitted when the
+			// choice finishes.
+			HunYuanToolCallAccumulator toolCalls = new HunYuanToolCallAccumulator();
+			return deadlines.chunks(chunks).<ChatCompletionChunk>handle((chunk, sink) -> {
+				ChatCompletionChunk merged = toolCalls.accept(chunk);
+				if (merged != null) {
+					sink.next(merged);
 				}
-				return !isInsideTool.get();
-			})
-			// Merging the window chunks into a single chunk.
-			// Reduce the inner Flux<ChatCompletionChunk> window into a single
-			// Mono<ChatCompletionChunk>,
-			// Flux<Flux<ChatCompletionChunk>> -> Flux<Mono<ChatCompletionChunk>>
-			.concatMapIterable(window -> {
-				Mono<ChatCompletionChunk> monoChunk = window.reduce(
-						new ChatCompletionChunk(null, null, null, null, null, null, null, null, null, null, null, null),
-						(previous, current) -> this.chunkMerger.merge(previous, current));
-				return List.of(monoChunk);
-			})
-			// Flux<Mono<ChatCompletionChunk>> -> Flux<ChatCompletionChunk>
-			.flatMap(mono -> mono);
+			}).concatWith(Mono.fromSupplier(toolCalls::complete));
+		}));
 	}
 
 	public <T> EmbeddingList embeddings(EmbeddingRequest<T> embeddingRequest) {
@@ -246,12 +433,14 @@ public class HunYuanApi {
 					list.get(0) instanceof String || list.get(0) instanceof Integer || list.get(0) instanceof List,
 					"The input must be either a String, or a List of Strings or list of list of integers.");
 		}
-		ResponseEntity<EmbeddingResponse> embeddingResponseResponseEntity = this.restClient.post()
-			.uri("/")
-			.header("X-TC-Action", HunYuanConstants.DEFAULT_EMBED_ACTION)
-			.body(embeddingRequest)
-			.retrieve()
-			.toEntity(EmbeddingResponse.class);
+		byte[] body = this.jsonCodec.encode(embeddingRequest);
+		ResponseEntity<EmbeddingResponse> embeddingResponseResponseEntity = this.embeddingLimiter
+			.call(() -> this.restClient.post()
+				.uri("/")
+				.header("X-TC-Action", HunYuanConstants.DEFAULT_EMBED_ACTION)
+				.body(body)
+				.retrieve()
+				.toEntity(EmbeddingResponse.class), response -> null);
 
 		return embeddingResponseResponseEntity.getBody().response();
 	}
@@ -713,8 +902,58 @@ public class HunYuanApi {
 
 		}
 
-		@JsonInclude(Include.NON_NULL)
-		public record ImageUrl(@JsonProperty("Url") String url) {
+		/**
+		 * The URL of an image, or the image itself sent as a {@code data:} URL.
+		 *
+		 * @param url the URL.
+		 * @param data the image, written to the request body in place of the URL.
+		 */
+		@JsonSerialize(using = ImageUrl.Serializer.class)
+		public record ImageUrl(String url, HunYuanMediaData data) {
+
+			@JsonCreator
+			public ImageUrl(@JsonProperty("Url") String url) {
+				this(url, null);
+			}
+
+			public ImageUrl(HunYuanMediaData data) {
+				this(null, data);
+			}
+
+			/**
+			 * Return the URL, built from the image when it is sent inline.
+			 * @return the URL.
+			 */
+			@Override
+			public String url() {
+				return (this.url == null && this.data != null) ? this.data.toDataUrl() : this.url;
+			}
+
+			/**
+			 * Writes the image of an inline {@code data:} URL straight to the request
+			 * body.
+			 */
+			public static final class Serializer extends StdSerializer<ImageUrl> {
+
+				public Serializer() {
+					super(ImageUrl.class);
+				}
+
+				@Override
+				public void serialize(ImageUrl value, JsonGenerator generator, SerializerProvider provider)
+						throws IOException {
+					generator.writeStartObject(value);
+					if (value.data != null) {
+						generator.writeFieldName("Url");
+						value.data.write(generator);
+					}
+					else if (value.url != null) {
+						generator.writeStringField("Url", value.url);
+					}
+					generator.writeEndObject();
+				}
+
+			}
 
 		}
 
@@ -908,6 +1147,35 @@ public class HunYuanApi {
 				@JsonProperty("Code") String index,
 				@JsonProperty("Message") String message) {
 			// @formatter:on
+
+			/**
+			 * Prefixes of the error codes worth retrying: throttling, internal errors and
+			 * an overloaded or timed out inference engine. Any other code, such as an
+			 * invalid parameter, failed authentication or an exhausted balance, fails the
+			 * same way on every attempt.
+			 */
+			private static final List<String> TRANSIENT_CODE_PREFIXES = List.of("RequestLimitExceeded", "InternalError",
+					"FailedOperation.EngineRequestTimeout", "FailedOperation.EngineServerError",
+					"FailedOperation.EngineServerLimitExceeded", "ServiceUnavailable");
+
+			/**
+			 * Whether the request that failed with this error may succeed when retried.
+			 */
+			public boolean isTransient() {
+				return this.index != null && TRANSIENT_CODE_PREFIXES.stream().anyMatch(this.index::startsWith);
+			}
+
+			/**
+			 * Return the exception reporting this error, a {@link TransientAiException}
+			 * if it {@link #isTransient() is transient} and a
+			 * {@link NonTransientAiException} otherwise.
+			 * @param requestId the id of the failed request, may be null.
+			 */
+			public RuntimeException toException(String requestId) {
+				String text = "API Error [" + this.index + "]: " + this.message
+						+ (requestId != null ? " (RequestId: " + requestId + ")" : "");
+				return isTransient() ? new TransientAiException(text) : new NonTransientAiException(text);
+			}
 		}
 
 	}
@@ -1015,4 +1283,33 @@ public class HunYuanApi {
 								   @JsonProperty("Usage") Usage usage) { // @formatter:on
 	}
 
+	private record BufferedClientHttpResponse(HttpStatusCode status, HttpHeaders headers,
+			byte[] body) implements ClientHttpResponse {
+
+		@Override
+		public HttpStatusCode getStatusCode() {
+			return this.status;
+		}
+
+		@Override
+		public String getStatusText() {
+			return "";
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(this.body);
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
 }
@@ -24,7 +24,6 @@ import io.github.studiousxiaoyu.hunyuan.api.auth.HunYuanAuthApi;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.model.ChatModelDescription;
-import org.springframework.ai.model.ModelOptionsUtils;
 import org.springframework.ai.retry.RetryUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -42,6 +41,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
@@ -55,6 +55,14 @@ public class HunYuanAudioApi {
 
 	private final ApiAuthHttpRequestInterceptor apiAuthHttpRequestInterceptor;
 
+	private final HunYuanJsonCodec jsonCodec = new HunYuanJsonCodec();
+
+	private final ResponseErrorHandler responseErrorHandler;
+
+	private final String action;
+
+	private HunYuanConcurrencyLimiter limiter;
+
 	/**
 	 * Create a new client api with DEFAULT_TRANSCRIPTION_URL
 	 * @param secretId Hunyuan SecretId.
@@ -94,12 +102,32 @@ public class HunYuanAudioApi {
 	public HunYuanAudioApi(String baseUrl, String secretId, String secretKey, String action, String service,
 			String host, String version, RestClient.Builder restClientBuilder,
 			ResponseErrorHandler responseErrorHandler) {
+		this(baseUrl, new HunYuanAuthApi(secretId, secretKey, host, service), action, version, restClientBuilder,
+				responseErrorHandler);
+	}
+
+	/**
+	 * Create a new client api that signs its requests with the given, possibly shared,
+	 * {@link HunYuanAuthApi}.
+	 * @param baseUrl api base URL.
+	 * @param hunYuanAuthApi the request signer, bound to the host and service of the
+	 * endpoint.
+	 * @param action the X-TC-Action.
+	 * @param version the X-TC-Version.
+	 * @param restClientBuilder RestClient builder.
+	 * @param responseErrorHandler Response error handler.
+	 */
+	public HunYuanAudioApi(String baseUrl, HunYuanAuthApi hunYuanAuthApi, String action, String version,
+			RestClient.Builder restClientBuilder, ResponseErrorHandler responseErrorHandler) {
 		Consumer<HttpHeaders> jsonContentHeaders = headers -> {
 			headers.setContentType(MediaType.APPLICATION_JSON);
 			headers.add("X-TC-Action", action);
 			headers.add("X-TC-Version", version);
 		};
-		apiAuthHttpRequestInterceptor = new ApiAuthHttpRequestInterceptor(secretId, secretKey, host, service);
+		apiAuthHttpRequestInterceptor = new ApiAuthHttpRequestInterceptor(hunYuanAuthApi);
+		this.responseErrorHandler = responseErrorHandler;
+		this.action = action;
+		this.limiter = HunYuanConcurrencyLimiter.unlimited(action);
 		this.restClient = restClientBuilder.baseUrl(baseUrl)
 			.defaultHeaders(jsonContentHeaders)
 			.defaultStatusHandler(responseErrorHandler)
@@ -111,28 +139,39 @@ public class HunYuanAudioApi {
 	public ResponseEntity<TranscriptionResponse> createTranscription(TranscriptionRequest request,
 			Class<TranscriptionResponse> transcriptionResponseClass) {
 
-		ResponseEntity<String> response = this.restClient.post()
-			.uri("/")
-			.body(request)
-			.retrieve()
-			.toEntity(String.class);
-		TranscriptionResponse transcriptionResponse = ModelOptionsUtils.jsonToObject(response.getBody(),
-				transcriptionResponseClass);
+		byte[] body = this.jsonCodec.encode(request);
+		TranscriptionResponse transcriptionResponse = this.limiter.call(
+				() -> this.restClient.post()
+					.uri("/")
+					.body(body)
+					.exchange(this.jsonCodec.exchangeFunction(transcriptionResponseClass, this.responseErrorHandler)),
+				response -> (response != null && response.response() != null) ? response.response().errorMsg() : null);
 		return ResponseEntity.ok(transcriptionResponse);
 	}
 
 	public ResponseEntity<TextToVoiceResponse> createTextToVoice(TextToVoiceRequest textToVoiceRequest,
 			Class<TextToVoiceResponse> audioTextToVoiceResponseClass) {
-		ResponseEntity<String> response = this.restClient.post()
+		// TTS responses carry the audio as a large base64 string, decode it straight from
+		// the response stream.
+		byte[] body = this.jsonCodec.encode(textToVoiceRequest);
+		TextToVoiceResponse textToVoiceResponse = this.limiter.call(() -> this.restClient.post()
 			.uri("/")
-			.body(textToVoiceRequest)
-			.retrieve()
-			.toEntity(String.class);
-		TextToVoiceResponse textToVoiceResponse = ModelOptionsUtils.jsonToObject(response.getBody(),
-				audioTextToVoiceResponseClass);
+			.body(body)
+			.exchange(this.jsonCodec.exchangeFunction(audioTextToVoiceResponseClass, this.responseErrorHandler)),
+				response -> (response != null && response.response() != null) ? response.response().errorMsg() : null);
 		return ResponseEntity.ok(textToVoiceResponse);
 	}
 
+	/**
+	 * Use the given limiters, by action, for the requests of this client.
+	 * @param concurrencyLimiters the limiter of each action.
+	 * @see HunYuanClientTransport#concurrencyLimiter(String)
+	 */
+	public void setConcurrencyLimiters(Function<String, HunYuanConcurrencyLimiter> concurrencyLimiters) {
+		Assert.notNull(concurrencyLimiters, "concurrencyLimiters must not be null");
+		this.limiter = concurrencyLimiters.apply(this.action);
+	}
+
 	@JsonInclude(Include.NON_NULL)
 	public record TranscriptionRequest(@JsonProperty("EngSerViceType") String engSerViceType,
 			@JsonProperty("SourceType") Integer sourceType, @JsonProperty("VoiceFormat") String voiceFormat,
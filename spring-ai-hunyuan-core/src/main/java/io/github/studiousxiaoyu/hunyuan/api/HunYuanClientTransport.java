@@ -0,0 +1,245 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.github.studiousxiaoyu.hunyuan.api.auth.HunYuanAuthApi;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.retry.RetryUtils;
+import org.springframework.http.client.ReactorNettyClientRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.Assert;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * HTTP transport shared by the HunYuan API clients. A single Reactor Netty connection
+ * pool backs both the RestClient and the WebClient of every client created through it,
+ * and clients and request signers are cached by endpoint and credentials. Chat, embedding
+ * and audio models that talk to the same endpoint therefore reuse warm connections, TLS
+ * sessions and signing keys.
+ * <p>
+ * Requests are also limited per action by a {@link HunYuanConcurrencyLimiter}, so that
+ * all the clients of a transport adapt together to the limits of the account.
+ * <p>
+ * Closing the transport releases its pooled connections, including those of the
+ * transports created with {@link #isolated(String, HunYuanConnectionOptions)}.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanClientTransport implements AutoCloseable {
+
+	private final String name;
+
+	private final HunYuanConnectionOptions connectionOptions;
+
+	private final ConnectionProvider connectionProvider;
+
+	private final RestClient.Builder restClientBuilder;
+
+	private final WebClient.Builder webClientBuilder;
+
+	private final ResponseErrorHandler responseErrorHandler;
+
+	private final Map<String, HttpClient> httpClients = new ConcurrentHashMap<>();
+
+	private final Map<SignerKey, HunYuanAuthApi> signers = new ConcurrentHashMap<>();
+
+	private final Map<ApiKey, HunYuanApi> apis = new ConcurrentHashMap<>();
+
+	private final Map<AudioApiKey, HunYuanAudioApi> audioApis = new ConcurrentHashMap<>();
+
+	private final Map<String, HunYuanClientTransport> isolatedTransports = new ConcurrentHashMap<>();
+
+	private final Map<String, HunYuanConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+
+	private volatile MeterRegistry meterRegistry;
+
+	/**
+	 * Create a transport with the default client builders and error handler.
+	 * @param connectionOptions the connection pool and protocol settings.
+	 */
+	public HunYuanClientTransport(HunYuanConnectionOptions connectionOptions) {
+		this("hunyuan", connectionOptions, RestClient.builder(), WebClient.builder(),
+				RetryUtils.DEFAULT_RESPONSE_ERROR_HANDLER);
+	}
+
+	/**
+	 * Create a transport.
+	 * @param name the connection pool name.
+	 * @param connectionOptions the connection pool and protocol settings.
+	 * @param restClientBuilder template of the RestClient builders, cloned for every
+	 * client.
+	 * @param webClientBuilder template of the WebClient builders, cloned for every
+	 * client.
+	 * @param responseErrorHandler Response error handler.
+	 */
+	public HunYuanClientTransport(String name, HunYuanConnectionOptions connectionOptions,
+			RestClient.Builder restClientBuilder, WebClient.Builder webClientBuilder,
+			ResponseErrorHandler responseErrorHandler) {
+		Assert.hasText(name, "name must not be empty");
+		Assert.notNull(connectionOptions, "connectionOptions must not be null");
+		Assert.notNull(restClientBuilder, "restClientBuilder must not be null");
+		Assert.notNull(webClientBuilder, "webClientBuilder must not be null");
+		Assert.notNull(responseErrorHandler, "responseErrorHandler must not be null");
+		this.name = name;
+		this.connectionOptions = connectionOptions;
+		this.connectionProvider = HunYuanHttpClientFactory.connectionProvider(name, connectionOptions);
+		this.restClientBuilder = restClientBuilder;
+		this.webClientBuilder = webClientBuilder;
+		this.responseErrorHandler = responseErrorHandler;
+	}
+
+	/**
+	 * Return the chat and embedding client for the given endpoint and credentials,
+	 * creating it on first use.
+	 */
+	public HunYuanApi hunYuanApi(String baseUrl, String secretId, String secretKey) {
+		return this.apis.computeIfAbsent(new ApiKey(baseUrl, secretId, secretKey), key -> {
+			HunYuanApi api = new HunYuanApi(baseUrl,
+					authApi(secretId, secretKey, HunYuanConstants.DEFAULT_CHAT_HOST, HunYuanConstants.DEFAULT_SERVICE),
+					HunYuanConstants.DEFAULT_CHAT_ACTION, restClientBuilder(baseUrl), webClientBuilder(baseUrl),
+					this.responseErrorHandler);
+			api.setConcurrencyLimiters(this::concurrencyLimiter);
+			return api;
+		});
+	}
+
+	/**
+	 * Return the audio client for the given endpoint, action and credentials, creating it
+	 * on first use.
+	 */
+	public HunYuanAudioApi audioApi(String baseUrl, String secretId, String secretKey, String action, String service,
+			String host, String version) {
+		return this.audioApis
+			.computeIfAbsent(new AudioApiKey(baseUrl, secretId, secretKey, action, service, host, version), key -> {
+				HunYuanAudioApi api = new HunYuanAudioApi(baseUrl, authApi(secretId, secretKey, host, service), action,
+						version, restClientBuilder(baseUrl), this.responseErrorHandler);
+				api.setConcurrencyLimiters(this::concurrencyLimiter);
+				return api;
+			});
+	}
+
+	/**
+	 * Return the concurrency limiter of the given action, creating it on first use.
+	 * @param action the X-TC-Action, for example {@code ChatCompletions}.
+	 */
+	public HunYuanConcurrencyLimiter concurrencyLimiter(String action) {
+		return this.concurrencyLimiters.computeIfAbsent(action, key -> {
+			HunYuanConcurrencyLimiter limiter = new HunYuanConcurrencyLimiter(action,
+					this.connectionOptions.getConcurrencyLimit());
+			MeterRegistry registry = this.meterRegistry;
+			if (registry != null) {
+				limiter.bindTo(registry, this.name);
+			}
+			return limiter;
+		});
+	}
+
+	/**
+	 * Publish the metrics of the concurrency limiters of this transport and of its
+	 * isolated transports, including those created later, to the given registry.
+	 * @param meterRegistry the meter registry.
+	 */
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		Assert.notNull(meterRegistry, "meterRegistry must not be null");
+		this.meterRegistry = meterRegistry;
+		this.concurrencyLimiters.values().forEach(limiter -> limiter.bindTo(meterRegistry, this.name));
+		this.isolatedTransports.values().forEach(transport -> transport.setMeterRegistry(meterRegistry));
+	}
+
+	/**
+	 * Return the request signer for the given credentials and service endpoint. Signers
+	 * cache their daily signing key, so sharing them avoids re-deriving it per client.
+	 */
+	public HunYuanAuthApi authApi(String secretId, String secretKey, String host, String service) {
+		return this.signers.computeIfAbsent(new SignerKey(secretId, secretKey, host, service),
+				key -> new HunYuanAuthApi(secretId, secretKey, host, service));
+	}
+
+	/**
+	 * Return a transport with its own connection pool, for a capability that must not
+	 * compete with the others for connections. It is created on first use and closed
+	 * together with this transport.
+	 * @param name the capability name, for example {@code chat}.
+	 * @param connectionOptions the connection settings of the isolated pool.
+	 * @return the isolated transport.
+	 */
+	public HunYuanClientTransport isolated(String name, HunYuanConnectionOptions connectionOptions) {
+		return this.isolatedTransports.computeIfAbsent(name, key -> {
+			HunYuanClientTransport transport = new HunYuanClientTransport(this.name + "-" + name, connectionOptions,
+					this.restClientBuilder, this.webClientBuilder, this.responseErrorHandler);
+			MeterRegistry registry = this.meterRegistry;
+			if (registry != null) {
+				transport.setMeterRegistry(registry);
+			}
+			return transport;
+		});
+	}
+
+	/**
+	 * Return a RestClient builder that sends its requests through the shared pool.
+	 */
+	public RestClient.Builder restClientBuilder(String baseUrl) {
+		ReactorNettyClientRequestFactory requestFactory = new ReactorNettyClientRequestFactory(httpClient(baseUrl));
+		requestFactory.setExchangeTimeout(this.connectionOptions.getResponseTimeout());
+		requestFactory.setReadTimeout(this.connectionOptions.getResponseTimeout());
+		return this.restClientBuilder.clone().requestFactory(requestFactory);
+	}
+
+	/**
+	 * Return a WebClient builder that sends its requests through the shared pool.
+	 */
+	public WebClient.Builder webClientBuilder(String baseUrl) {
+		return this.webClientBuilder.clone().clientConnector(new ReactorClientHttpConnector(httpClient(baseUrl)));
+	}
+
+	public ConnectionProvider getConnectionProvider() {
+		return this.connectionProvider;
+	}
+
+	public HunYuanConnectionOptions getConnectionOptions() {
+		return this.connectionOptions;
+	}
+
+	@Override
+	public void close() {
+		this.isolatedTransports.values().forEach(HunYuanClientTransport::close);
+		this.connectionProvider.dispose();
+	}
+
+	private HttpClient httpClient(String baseUrl) {
+		return this.httpClients.computeIfAbsent(baseUrl,
+				key -> HunYuanHttpClientFactory.httpClient(this.connectionProvider, baseUrl, this.connectionOptions));
+	}
+
+	private record SignerKey(String secretId, String secretKey, String host, String service) {
+	}
+
+	private record ApiKey(String baseUrl, String secretId, String secretKey) {
+	}
+
+	private record AudioApiKey(String baseUrl, String secretId, String secretKey, String action, String service,
+			String host, String version) {
+	}
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.time.Duration;
+
+/**
+ * Settings of the adaptive concurrency limit applied to every HunYuan action.
+ *
+ * @author Guo Junyu
+ * @see HunYuanConcurrencyLimiter
+ */
+public class HunYuanConcurrencyLimitOptions {
+
+	/**
+	 * Whether to limit the number of concurrent requests per action.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Number of concurrent requests allowed before any response was seen.
+	 */
+	private int initialLimit = 20;
+
+	/**
+	 * Lower bound of the limit.
+	 */
+	private int minLimit = 1;
+
+	/**
+	 * Upper bound of the limit.
+	 */
+	private int maxLimit = 200;
+
+	/**
+	 * Factor applied to the limit when a request is throttled or overloaded.
+	 */
+	private double backoffRatio = 0.9;
+
+	/**
+	 * Multiple of the smoothed time to the first chunk of streamed responses above which
+	 * a response counts as a latency spike and shrinks the limit, zero to ignore latency.
+	 */
+	private double latencyTolerance = 3.0;
+
+	/**
+	 * Maximum number of requests waiting for a permit. Requests beyond it are rejected.
+	 */
+	private int maxQueueSize = 1000;
+
+	/**
+	 * Maximum time a request waits for a permit before it is rejected.
+	 */
+	private Duration maxQueueWait = Duration.ofSeconds(30);
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getInitialLimit() {
+		return this.initialLimit;
+	}
+
+	public void setInitialLimit(int initialLimit) {
+		this.initialLimit = initialLimit;
+	}
+
+	public int getMinLimit() {
+		return this.minLimit;
+	}
+
+	public void setMinLimit(int minLimit) {
+		this.minLimit = minLimit;
+	}
+
+	public int getMaxLimit() {
+		return this.maxLimit;
+	}
+
+	public void setMaxLimit(int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+
+	public double getBackoffRatio() {
+		return this.backoffRatio;
+	}
+
+	public void setBackoffRatio(double backoffRatio) {
+		this.backoffRatio = backoffRatio;
+	}
+
+	public double getLatencyTolerance() {
+		return this.latencyTolerance;
+	}
+
+	public void setLatencyTolerance(double latencyTolerance) {
+		this.latencyTolerance = latencyTolerance;
+	}
+
+	public int getMaxQueueSize() {
+		return this.maxQueueSize;
+	}
+
+	public void setMaxQueueSize(int maxQueueSize) {
+		this.maxQueueSize = maxQueueSize;
+	}
+
+	public Duration getMaxQueueWait() {
+		return this.maxQueueWait;
+	}
+
+	public void setMaxQueueWait(Duration maxQueueWait) {
+		this.maxQueueWait = maxQueueWait;
+	}
+
+	public static class Builder {
+
+		private final HunYuanConcurrencyLimitOptions options = new HunYuanConcurrencyLimitOptions();
+
+		public Builder enabled(boolean enabled) {
+			this.options.enabled = enabled;
+			return this;
+		}
+
+		public Builder initialLimit(int initialLimit) {
+			this.options.initialLimit = initialLimit;
+			return this;
+		}
+
+		public Builder minLimit(int minLimit) {
+			this.options.minLimit = minLimit;
+			return this;
+		}
+
+		public Builder maxLimit(int maxLimit) {
+			this.options.maxLimit = maxLimit;
+			return this;
+		}
+
+		public Builder backoffRatio(double backoffRatio) {
+			this.options.backoffRatio = backoffRatio;
+			return this;
+		}
+
+		public Builder latencyTolerance(double latencyTolerance) {
+			this.options.latencyTolerance = latencyTolerance;
+			return this;
+		}
+
+		public Builder maxQueueSize(int maxQueueSize) {
+			this.options.maxQueueSize = maxQueueSize;
+			return this;
+		}
+
+		public Builder maxQueueWait(Duration maxQueueWait) {
+			this.options.maxQueueWait = maxQueueWait;
+			return this;
+		}
+
+		public HunYuanConcurrencyLimitOptions build() {
+			return this.options;
+		}
+
+	}
+
+}
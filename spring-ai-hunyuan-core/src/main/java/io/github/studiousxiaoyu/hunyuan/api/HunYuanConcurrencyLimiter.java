@@ -0,0 +1,396 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion.ErrorMsg;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Adaptive limit of the concurrent requests of one HunYuan action, such as
+ * {@code ChatCompletions} or {@code TextToVoice}, that keeps bursts below the per-account
+ * limits of Tencent Cloud instead of running into them and retrying.
+ * <p>
+ * The limit follows an additive-increase, multiplicative-decrease rule: it grows by one
+ * per limit's worth of successful responses while it is in use, and shrinks by the
+ * {@link HunYuanConcurrencyLimitOptions#getBackoffRatio() backoff ratio} when a request
+ * is throttled, overloads the service, which HunYuan reports with a transient error, or
+ * takes much longer than usual to respond. Only streamed responses count for the latency,
+ * as the time to their first chunk, and a stream holds its permit until it ends. A single
+ * response is received once it is fully generated, so its latency grows with the length
+ * of the answer rather than with the load of the service.
+ * <p>
+ * Requests beyond the limit wait in a bounded queue, without holding a thread when made
+ * through {@link #mono(Mono, Function)} or {@link #flux(Flux)}, and are rejected with a
+ * {@link TransientAiException} when the queue is full or the wait exceeds
+ * {@link HunYuanConcurrencyLimitOptions#getMaxQueueWait()}.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanConcurrencyLimiter {
+
+	/**
+	 * Weight of the latest response in the smoothed latency.
+	 */
+	private static final double LATENCY_SMOOTHING = 0.1;
+
+	private final String action;
+
+	private final HunYuanConcurrencyLimitOptions options;
+
+	private final Deque<CompletableFuture<Permit>> queue = new ArrayDeque<>();
+
+	private final AtomicLong rejections = new AtomicLong();
+
+	private double limit;
+
+	private int inFlight;
+
+	private double smoothedLatencyNanos;
+
+	public HunYuanConcurrencyLimiter(String action, HunYuanConcurrencyLimitOptions options) {
+		Assert.hasText(action, "action must not be empty");
+		Assert.notNull(options, "options must not be null");
+		Assert.isTrue(options.getMinLimit() >= 1, "minLimit must be at least 1");
+		Assert.isTrue(options.getMaxLimit() >= options.getMinLimit(), "maxLimit must not be lower than minLimit");
+		this.action = action;
+		this.options = options;
+		this.limit = Math.max(options.getMinLimit(), Math.min(options.getMaxLimit(), options.getInitialLimit()));
+	}
+
+	/**
+	 * Return a limiter that lets every request through, used by the clients that are not
+	 * created through a {@link HunYuanClientTransport}.
+	 * @param action the X-TC-Action.
+	 */
+	public static HunYuanConcurrencyLimiter unlimited(String action) {
+		return new HunYuanConcurrencyLimiter(action, HunYuanConcurrencyLimitOptions.builder().enabled(false).build());
+	}
+
+	/**
+	 * Run a blocking call once a permit is available.
+	 * @param call the call.
+	 * @param errorOf extracts the error HunYuan reported in the response body, if any.
+	 * @return the result of the call.
+	 */
+	public <T> T call(Supplier<T> call, Function<? super T, ErrorMsg> errorOf) {
+		if (!this.options.isEnabled()) {
+			return call.get();
+		}
+		Permit permit = acquireBlocking();
+		Outcome outcome = Outcome.IGNORED;
+		try {
+			T result = call.get();
+			outcome = outcomeOf(errorOf.apply(result));
+			return result;
+		}
+		catch (RuntimeException ex) {
+			outcome = outcomeOf(ex);
+			throw ex;
+		}
+		finally {
+			permit.release(outcome);
+		}
+	}
+
+	/**
+	 * Subscribe to a single response call once a permit is available.
+	 * @param call the call.
+	 * @param errorOf extracts the error HunYuan reported in the response body, if any.
+	 * @return the result of the call.
+	 */
+	public <T> Mono<T> mono(Mono<T> call, Function<? super T, ErrorMsg> errorOf) {
+		if (!this.options.isEnabled()) {
+			return call;
+		}
+		return Mono.usingWhen(acquire(),
+				permit -> call.doOnNext(result -> permit.outcome = outcomeOf(errorOf.apply(result))),
+				permit -> Mono.fromRunnable(() -> permit.release(permit.outcome)),
+				(permit, ex) -> Mono.fromRunnable(() -> permit.release(outcomeOf(ex))),
+				permit -> Mono.fromRunnable(() -> permit.release(Outcome.IGNORED)));
+	}
+
+	/**
+	 * Subscribe to a streaming call once a permit is available, holding it until the
+	 * stream ends.
+	 * @param call the call.
+	 * @return the elements of the call.
+	 */
+	public <T> Flux<T> flux(Flux<T> call) {
+		if (!this.options.isEnabled()) {
+			return call;
+		}
+		return Flux.usingWhen(acquire(), permit -> call.doOnNext(element -> permit.responseStarted()),
+				permit -> Mono.fromRunnable(() -> permit.release(Outcome.SUCCESS)),
+				(permit, ex) -> Mono.fromRunnable(() -> permit.release(outcomeOf(ex))),
+				permit -> Mono.fromRunnable(() -> permit.release(Outcome.IGNORED)));
+	}
+
+	/**
+	 * Register the limit, the requests in flight and waiting, and the rejections of this
+	 * limiter as {@code hunyuan.client.concurrency.*} meters tagged with the action.
+	 * @param registry the meter registry.
+	 * @param transport the name of the transport the limiter belongs to.
+	 */
+	public void bindTo(MeterRegistry registry, String transport) {
+		Tags tags = Tags.of("action", this.action, "transport", transport);
+		Gauge.builder("hunyuan.client.concurrency.limit", this, HunYuanConcurrencyLimiter::getLimit)
+			.description("Current number of concurrent requests allowed")
+			.tags(tags)
+			.register(registry);
+		Gauge.builder("hunyuan.client.concurrency.in.flight", this, HunYuanConcurrencyLimiter::getInFlight)
+			.description("Number of requests holding a permit")
+			.tags(tags)
+			.register(registry);
+		Gauge.builder("hunyuan.client.concurrency.queue.size", this, HunYuanConcurrencyLimiter::getQueueSize)
+			.description("Number of requests waiting for a permit")
+			.tags(tags)
+			.register(registry);
+		FunctionCounter.builder("hunyuan.client.concurrency.rejections", this.rejections, AtomicLong::get)
+			.description("Number of requests rejected because the queue was full or the wait too long")
+			.tags(tags)
+			.register(registry);
+	}
+
+	public String getAction() {
+		return this.action;
+	}
+
+	public synchronized double getLimit() {
+		return this.limit;
+	}
+
+	public synchronized int getInFlight() {
+		return this.inFlight;
+	}
+
+	public synchronized int getQueueSize() {
+		return this.queue.size();
+	}
+
+	public long getRejections() {
+		return this.rejections.get();
+	}
+
+	private Mono<Permit> acquire() {
+		return Mono.defer(() -> {
+			CompletableFuture<Permit> permit = enqueue();
+			return Mono.fromFuture(permit)
+				.timeout(this.options.getMaxQueueWait(), Mono.error(() -> rejected(
+						"waited for more than " + this.options.getMaxQueueWait().toMillis() + "ms for a permit")));
+		})
+			// A permit granted while the subscriber cancels is handed back.
+			.doOnDiscard(Permit.class, permit -> permit.release(Outcome.IGNORED));
+	}
+
+	private Permit acquireBlocking() {
+		CompletableFuture<Permit> permit = enqueue();
+		try {
+			return permit.get(this.options.getMaxQueueWait().toMillis(), TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException ex) {
+			if (permit.cancel(false)) {
+				throw rejected("waited for more than " + this.options.getMaxQueueWait().toMillis() + "ms for a permit");
+			}
+			// Granted in the meantime.
+			return permit.join();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			if (!permit.cancel(false)) {
+				permit.join().release(Outcome.IGNORED);
+			}
+			throw new IllegalStateException("Interrupted while waiting for a " + this.action + " permit", ex);
+		}
+		catch (ExecutionException ex) {
+			// Only completed exceptionally when the queue is full.
+			throw (RuntimeException) ex.getCause();
+		}
+	}
+
+	/**
+	 * Return a future that completes with a permit, right away if the limit allows it.
+	 */
+	private CompletableFuture<Permit> enqueue() {
+		CompletableFuture<Permit> future = new CompletableFuture<>();
+		synchronized (this) {
+			if (this.inFlight < (int) this.limit) {
+				this.inFlight++;
+				future.complete(new Permit());
+				return future;
+			}
+			if (this.queue.size() >= this.options.getMaxQueueSize()) {
+				future.completeExceptionally(
+						rejected("more than " + this.options.getMaxQueueSize() + " requests are waiting for a permit"));
+				return future;
+			}
+			this.queue.add(future);
+		}
+		future.whenComplete((permit, ex) -> {
+			if (future.isCancelled()) {
+				synchronized (this) {
+					this.queue.remove(future);
+				}
+			}
+		});
+		return future;
+	}
+
+	private TransientAiException rejected(String reason) {
+		this.rejections.incrementAndGet();
+		return new TransientAiException("Too many concurrent " + this.action + " requests: " + reason);
+	}
+
+	private void release(Permit permit, Outcome outcome) {
+		List<CompletableFuture<Permit>> granted = null;
+		synchronized (this) {
+			this.inFlight--;
+			adjustLimit(permit, outcome);
+			while (!this.queue.isEmpty() && this.inFlight < (int) this.limit) {
+				CompletableFuture<Permit> next = this.queue.poll();
+				if (!next.isDone()) {
+					this.inFlight++;
+					if (granted == null) {
+						granted = new ArrayList<>(1);
+					}
+					granted.add(next);
+				}
+			}
+		}
+		if (granted != null) {
+			// Completed outside of the lock, the waiters resume on this thread.
+			for (CompletableFuture<Permit> next : granted) {
+				Permit nextPermit = new Permit();
+				if (!next.complete(nextPermit)) {
+					// Cancelled meanwhile.
+					nextPermit.release(Outcome.IGNORED);
+				}
+			}
+		}
+	}
+
+	private void adjustLimit(Permit permit, Outcome outcome) {
+		if (outcome == Outcome.OVERLOADED) {
+			decreaseLimit();
+			return;
+		}
+		if (outcome != Outcome.SUCCESS) {
+			return;
+		}
+		if (isLatencySpike(permit.latencyNanos)) {
+			decreaseLimit();
+		}
+		else if ((this.inFlight + 1) * 2 >= this.limit) {
+			// Only grow a limit that is in use, so that it does not drift up while idle.
+			this.limit = Math.min(this.options.getMaxLimit(), this.limit + 1 / this.limit);
+		}
+	}
+
+	/**
+	 * Record the latency of a streamed response, negative for a single response, and
+	 * return whether it is a spike.
+	 */
+	private boolean isLatencySpike(long latencyNanos) {
+		if (latencyNanos < 0) {
+			return false;
+		}
+		double tolerance = this.options.getLatencyTolerance();
+		boolean spike = tolerance > 0 && this.smoothedLatencyNanos > 0
+				&& latencyNanos > this.smoothedLatencyNanos * tolerance;
+		this.smoothedLatencyNanos = (this.smoothedLatencyNanos == 0) ? latencyNanos
+				: this.smoothedLatencyNanos + LATENCY_SMOOTHING * (latencyNanos - this.smoothedLatencyNanos);
+		return spike;
+	}
+
+	private void decreaseLimit() {
+		this.limit = Math.max(this.options.getMinLimit(), this.limit * this.options.getBackoffRatio());
+	}
+
+	private static Outcome outcomeOf(ErrorMsg error) {
+		if (error == null) {
+			return Outcome.SUCCESS;
+		}
+		return error.isTransient() ? Outcome.OVERLOADED : Outcome.IGNORED;
+	}
+
+	private static Outcome outcomeOf(Throwable ex) {
+		return (ex instanceof TransientAiException) ? Outcome.OVERLOADED : Outcome.IGNORED;
+	}
+
+	private enum Outcome {
+
+		/**
+		 * A response was received.
+		 */
+		SUCCESS,
+
+		/**
+		 * The request was throttled or the service was overloaded.
+		 */
+		OVERLOADED,
+
+		/**
+		 * The request failed for its own reasons, or was cancelled.
+		 */
+		IGNORED
+
+	}
+
+	private final class Permit {
+
+		private final long startNanos = System.nanoTime();
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private volatile long latencyNanos = -1;
+
+		private volatile Outcome outcome = Outcome.SUCCESS;
+
+		void responseStarted() {
+			if (this.latencyNanos < 0) {
+				this.latencyNanos = System.nanoTime() - this.startNanos;
+			}
+		}
+
+		void release(Outcome outcome) {
+			if (this.released.compareAndSet(false, true)) {
+				HunYuanConcurrencyLimiter.this.release(this, outcome);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.time.Duration;
+
+/**
+ * Connection pool and protocol settings for the Reactor Netty transport used by
+ * {@link HunYuanApi}.
+ *
+ * @author Guo Junyu
+ * @see HunYuanHttpClientFactory
+ */
+public class HunYuanConnectionOptions {
+
+	/**
+	 * Maximum number of pooled connections per endpoint. With HTTP/2 enabled this is the
+	 * maximum number of multiplexed connections.
+	 */
+	private int maxConnections = 500;
+
+	/**
+	 * Maximum number of requests waiting for a connection once the pool is exhausted, -1
+	 * for no limit. Requests beyond this limit fail fast.
+	 */
+	private int pendingAcquireMaxCount = 1000;
+
+	/**
+	 * Maximum time a request waits for a pooled connection.
+	 */
+	private Duration pendingAcquireTimeout = Duration.ofSeconds(45);
+
+	/**
+	 * Time after which an idle connection is closed. Keep it below the idle timeout of
+	 * the HunYuan gateway so that a closed connection is never handed out.
+	 */
+	private Duration maxIdleTime = Duration.ofSeconds(30);
+
+	/**
+	 * Maximum lifetime of a connection, regardless of its activity.
+	 */
+	private Duration maxLifeTime = Duration.ofMinutes(5);
+
+	/**
+	 * Interval of the background eviction of idle and expired connections, zero to only
+	 * evict on acquire.
+	 */
+	private Duration evictInBackground = Duration.ofSeconds(30);
+
+	/**
+	 * TCP connect timeout.
+	 */
+	private Duration connectTimeout = Duration.ofSeconds(10);
+
+	/**
+	 * Maximum time to wait for the response of a blocking call, and the maximum
+	 * inactivity while reading it.
+	 */
+	private Duration responseTimeout = Duration.ofMinutes(5);
+
+	/**
+	 * Whether to enable TCP keep-alive probes on pooled connections.
+	 */
+	private boolean keepAlive = true;
+
+	/**
+	 * Whether to multiplex streams over HTTP/2. Negotiated through ALPN for https
+	 * endpoints, with HTTP/1.1 as fallback, and used with prior knowledge (h2c) for plain
+	 * http endpoints.
+	 */
+	private boolean http2 = false;
+
+	/**
+	 * Maximum number of concurrent streams per HTTP/2 connection, -1 to use the limit
+	 * advertised by the server.
+	 */
+	private int http2MaxConcurrentStreams = -1;
+
+	/**
+	 * Adaptive limit of the concurrent requests per action.
+	 */
+	private HunYuanConcurrencyLimitOptions concurrencyLimit = new HunYuanConcurrencyLimitOptions();
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public int getMaxConnections() {
+		return this.maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public int getPendingAcquireMaxCount() {
+		return this.pendingAcquireMaxCount;
+	}
+
+	public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+		this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+	}
+
+	public Duration getPendingAcquireTimeout() {
+		return this.pendingAcquireTimeout;
+	}
+
+	public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+		this.pendingAcquireTimeout = pendingAcquireTimeout;
+	}
+
+	public Duration getMaxIdleTime() {
+		return this.maxIdleTime;
+	}
+
+	public void setMaxIdleTime(Duration maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	public Duration getMaxLifeTime() {
+		return this.maxLifeTime;
+	}
+
+	public void setMaxLifeTime(Duration maxLifeTime) {
+		this.maxLifeTime = maxLifeTime;
+	}
+
+	public Duration getEvictInBackground() {
+		return this.evictInBackground;
+	}
+
+	public void setEvictInBackground(Duration evictInBackground) {
+		this.evictInBackground = evictInBackground;
+	}
+
+	public Duration getConnectTimeout() {
+		return this.connectTimeout;
+	}
+
+	public void setConnectTimeout(Duration connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public Duration getResponseTimeout() {
+		return this.responseTimeout;
+	}
+
+	public void setResponseTimeout(Duration responseTimeout) {
+		this.responseTimeout = responseTimeout;
+	}
+
+	public boolean isKeepAlive() {
+		return this.keepAlive;
+	}
+
+	public void setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	public boolean isHttp2() {
+		return this.http2;
+	}
+
+	public void setHttp2(boolean http2) {
+		this.http2 = http2;
+	}
+
+	public int getHttp2MaxConcurrentStreams() {
+		return this.http2MaxConcurrentStreams;
+	}
+
+	public void setHttp2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+		this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+	}
+
+	public HunYuanConcurrencyLimitOptions getConcurrencyLimit() {
+		return this.concurrencyLimit;
+	}
+
+	public void setConcurrencyLimit(HunYuanConcurrencyLimitOptions concurrencyLimit) {
+		this.concurrencyLimit = concurrencyLimit;
+	}
+
+	public static class Builder {
+
+		private final HunYuanConnectionOptions options = new HunYuanConnectionOptions();
+
+		public Builder maxConnections(int maxConnections) {
+			this.options.maxConnections = maxConnections;
+			return this;
+		}
+
+		public Builder pendingAcquireMaxCount(int pendingAcquireMaxCount) {
+			this.options.pendingAcquireMaxCount = pendingAcquireMaxCount;
+			return this;
+		}
+
+		public Builder pendingAcquireTimeout(Duration pendingAcquireTimeout) {
+			this.options.pendingAcquireTimeout = pendingAcquireTimeout;
+			return this;
+		}
+
+		public Builder maxIdleTime(Duration maxIdleTime) {
+			this.options.maxIdleTime = maxIdleTime;
+			return this;
+		}
+
+		public Builder maxLifeTime(Duration maxLifeTime) {
+			this.options.maxLifeTime = maxLifeTime;
+			return this;
+		}
+
+		public Builder evictInBackground(Duration evictInBackground) {
+			this.options.evictInBackground = evictInBackground;
+			return this;
+		}
+
+		public Builder connectTimeout(Duration connectTimeout) {
+			this.options.connectTimeout = connectTimeout;
+			return this;
+		}
+
+		public Builder responseTimeout(Duration responseTimeout) {
+			this.options.responseTimeout = responseTimeout;
+			return this;
+		}
+
+		public Builder keepAlive(boolean keepAlive) {
+			this.options.keepAlive = keepAlive;
+			return this;
+		}
+
+		public Builder http2(boolean http2) {
+			this.options.http2 = http2;
+			return this;
+		}
+
+		public Builder http2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+			this.options.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+			return this;
+		}
+
+		public Builder concurrencyLimit(HunYuanConcurrencyLimitOptions concurrencyLimit) {
+			this.options.concurrencyLimit = concurrencyLimit;
+			return this;
+		}
+
+		public HunYuanConnectionOptions build() {
+			return this.options;
+		}
+
+	}
+
+}
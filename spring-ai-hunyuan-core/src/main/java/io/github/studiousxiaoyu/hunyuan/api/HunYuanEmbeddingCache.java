@@ -0,0 +1,156 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Persistent cache of embeddings, in memory-mapped files, so that the texts that did not
+ * change are not embedded again, across restarts.
+ * <p>
+ * Embeddings are keyed by the SHA-256 digest of the model, the number of dimensions and
+ * the text. Those of each number of dimensions are stored in their own records and index
+ * files in the directory of the cache, opened on the first lookup. Lookups are concurrent
+ * and do not lock; the files are locked against their use by other processes. Once a
+ * store holds the maximum number of embeddings, the others are not cached. The cache
+ * should be closed to flush the embeddings to the disk.
+ *
+ * @author Guo Junyu
+ * @see HunYuanEmbeddingModel#setEmbeddingCache(HunYuanEmbeddingCache)
+ */
+public final class HunYuanEmbeddingCache implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(HunYuanEmbeddingCache.class);
+
+	public static final long DEFAULT_MAX_ENTRIES = 1_000_000;
+
+	private final Path directory;
+
+	private final long maxEntries;
+
+	private final Map<Integer, HunYuanMappedEmbeddingStore> stores = new ConcurrentHashMap<>();
+
+	private final Map<Integer, Boolean> fullStores = new ConcurrentHashMap<>();
+
+	private volatile boolean closed;
+
+	private HunYuanEmbeddingCache(Path directory, long maxEntries) {
+		this.directory = directory;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Open the cache of the given directory, creating it if it does not exist, with room
+	 * for {@value #DEFAULT_MAX_ENTRIES} embeddings of each number of dimensions.
+	 * @param directory the directory of the cache.
+	 * @return the cache.
+	 */
+	public static HunYuanEmbeddingCache open(Path directory) {
+		return open(directory, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * Open the cache of the given directory, creating it if it does not exist.
+	 * @param directory the directory of the cache.
+	 * @param maxEntries the maximum number of embeddings of each number of dimensions, up
+	 * to 2^26. The index file takes 16 to 32 bytes for each, the records file 16 bytes
+	 * plus 4 bytes per dimension.
+	 * @return the cache.
+	 */
+	public static HunYuanEmbeddingCache open(Path directory, long maxEntries) {
+		Assert.notNull(directory, "directory must not be null");
+		Assert.isTrue(maxEntries > 0 && maxEntries <= 1 << 26, "maxEntries must be between 1 and 2^26");
+		try {
+			Files.createDirectories(directory);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return new HunYuanEmbeddingCache(directory, maxEntries);
+	}
+
+	/**
+	 * Return the cached embedding of the given text.
+	 * @param model the embedding model.
+	 * @param dimensions the number of dimensions of the embedding.
+	 * @param text the text.
+	 * @return the embedding, or null if it is not cached.
+	 */
+	public float[] get(String model, int dimensions, String text) {
+		long[] key = key(model, dimensions, text);
+		return store(dimensions).get(key[0], key[1]);
+	}
+
+	/**
+	 * Cache the embedding of the given text.
+	 * @param model the embedding model.
+	 * @param text the text.
+	 * @param embedding the embedding, its length being its number of dimensions.
+	 */
+	public void put(String model, String text, float[] embedding) {
+		long[] key = key(model, embedding.length, text);
+		if (!store(embedding.length).put(key[0], key[1], embedding)
+				&& this.fullStores.putIfAbsent(embedding.length, Boolean.TRUE) == null) {
+			logger.warn("The embedding cache of {} dimensions holds {} embeddings, the others are not cached",
+					embedding.length, this.maxEntries);
+		}
+	}
+
+	private HunYuanMappedEmbeddingStore store(int dimensions) {
+		Assert.state(!this.closed, "The embedding cache is closed");
+		return this.stores.computeIfAbsent(dimensions,
+				d -> new HunYuanMappedEmbeddingStore(this.directory.resolve("embeddings-" + d + ".records"),
+						this.directory.resolve("embeddings-" + d + ".index"), d, this.maxEntries));
+	}
+
+	private static long[] key(String model, int dimensions, String text) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(((model != null) ? model : "").getBytes(StandardCharsets.UTF_8));
+			digest.update(ByteBuffer.allocate(5).put((byte) 0).putInt(dimensions).array());
+			ByteBuffer hash = ByteBuffer.wrap(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+			return new long[] { hash.getLong(), hash.getLong() };
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Flush the cached embeddings to the disk and release the files.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.stores.values().forEach(HunYuanMappedEmbeddingStore::close);
+	}
+
+}
@@ -17,7 +17,10 @@ import org.springframework.lang.Nullable;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @version 1.0
@@ -46,6 +49,18 @@ public class HunYuanEmbeddingModel extends AbstractEmbeddingModel {
 	 */
 	private EmbeddingModelObservationConvention observationConvention = DEFAULT_OBSERVATION_CONVENTION;
 
+	/**
+	 * Persistent cache of the embeddings, null when none is set.
+	 */
+	private HunYuanEmbeddingCache embeddingCache;
+
+	/**
+	 * Number of dimensions of the embeddings last returned by the API, by which the
+	 * cached embeddings are looked up, as they are stored. The dimensions option is not
+	 * sent, and does not change them.
+	 */
+	private volatile int returnedDimensions = HunYuanApi.DEFAULT_EMBEDDING_DIMENSIONS;
+
 	public HunYuanEmbeddingModel(HunYuanApi hunYuanApi) {
 		this(hunYuanApi, MetadataMode.EMBED);
 	}
@@ -82,6 +97,58 @@ public class HunYuanEmbeddingModel extends AbstractEmbeddingModel {
 	@Override
 	public EmbeddingResponse call(EmbeddingRequest request) {
 		HunYuanEmbeddingOptions requestOptions = mergeOptions(request.getOptions(), this.defaultOptions);
+		if (this.embeddingCache != null) {
+			return callCached(request, requestOptions);
+		}
+		return callApi(request, requestOptions);
+	}
+
+	/**
+	 * Look up the embeddings of the texts in the cache, and request those of the texts
+	 * missed only, once each.
+	 */
+	private EmbeddingResponse callCached(EmbeddingRequest request, HunYuanEmbeddingOptions requestOptions) {
+		String model = requestOptions.getModel();
+		int dimensions = this.returnedDimensions;
+		List<String> texts = request.getInstructions();
+		float[][] embeddings = new float[texts.size()][];
+		Map<String, float[]> missed = new LinkedHashMap<>();
+		for (int i = 0; i < texts.size(); i++) {
+			embeddings[i] = this.embeddingCache.get(model, dimensions, texts.get(i));
+			if (embeddings[i] == null) {
+				missed.put(texts.get(i), null);
+			}
+		}
+
+		EmbeddingResponseMetadata metadata;
+		if (missed.isEmpty()) {
+			metadata = new EmbeddingResponseMetadata(model, new DefaultUsage(0, 0, 0));
+		}
+		else {
+			List<String> missedTexts = new ArrayList<>(missed.keySet());
+			EmbeddingResponse response = callApi(new EmbeddingRequest(missedTexts, request.getOptions()),
+					requestOptions);
+			for (int i = 0; i < response.getResults().size(); i++) {
+				Embedding embedding = response.getResults().get(i);
+				String text = missedTexts.get((embedding.getIndex() != null) ? embedding.getIndex() : i);
+				missed.put(text, embedding.getOutput());
+				this.returnedDimensions = embedding.getOutput().length;
+				this.embeddingCache.put(model, text, embedding.getOutput());
+			}
+			metadata = response.getMetadata();
+		}
+
+		List<Embedding> results = new ArrayList<>(texts.size());
+		for (int i = 0; i < texts.size(); i++) {
+			float[] embedding = (embeddings[i] != null) ? embeddings[i] : missed.get(texts.get(i));
+			if (embedding != null) {
+				results.add(new Embedding(embedding, i));
+			}
+		}
+		return new EmbeddingResponse(results, metadata);
+	}
+
+	private EmbeddingResponse callApi(EmbeddingRequest request, HunYuanEmbeddingOptions requestOptions) {
 		HunYuanApi.EmbeddingRequest<List<String>> apiRequest = createRequest(request, requestOptions);
 
 		var observationContext = EmbeddingModelObservationContext.builder()
@@ -158,4 +225,15 @@ public class HunYuanEmbeddingModel extends AbstractEmbeddingModel {
 		this.observationConvention = observationConvention;
 	}
 
+	/**
+	 * Look up the embeddings of the texts in the given cache before requesting them, and
+	 * cache those requested. A request only sends the texts missed, and is not sent when
+	 * all of them are cached, its usage then being zero. The embeddings are cached by the
+	 * number of dimensions the API returns, whatever the dimensions option.
+	 * @param embeddingCache the cache of the embeddings, null to cache none.
+	 */
+	public void setEmbeddingCache(HunYuanEmbeddingCache embeddingCache) {
+		this.embeddingCache = embeddingCache;
+	}
+
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.Assert;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Creates the Reactor Netty connection pool and {@link HttpClient} used for HunYuan API
+ * calls from {@link HunYuanConnectionOptions}.
+ * <p>
+ * The returned {@link ConnectionProvider} is owned by the caller and must be disposed
+ * when it is no longer used.
+ *
+ * @author Guo Junyu
+ */
+public final class HunYuanHttpClientFactory {
+
+	private HunYuanHttpClientFactory() {
+	}
+
+	/**
+	 * Create a connection pool sized and evicted according to the given options.
+	 * @param name the pool name, used in Reactor Netty metrics and logs.
+	 * @param options the connection options.
+	 * @return a new connection provider.
+	 */
+	public static ConnectionProvider connectionProvider(String name, HunYuanConnectionOptions options) {
+		Assert.hasText(name, "name must not be empty");
+		Assert.notNull(options, "options must not be null");
+		ConnectionProvider.Builder builder = ConnectionProvider.builder(name)
+			.maxConnections(options.getMaxConnections())
+			.pendingAcquireMaxCount(options.getPendingAcquireMaxCount())
+			.pendingAcquireTimeout(options.getPendingAcquireTimeout())
+			.maxIdleTime(options.getMaxIdleTime())
+			.maxLifeTime(options.getMaxLifeTime());
+		if (!options.getEvictInBackground().isZero()) {
+			builder.evictInBackground(options.getEvictInBackground());
+		}
+		if (options.isHttp2()) {
+			// With HTTP/2 a pooled connection carries many concurrent streams.
+			Http2AllocationStrategy.Builder allocationStrategy = Http2AllocationStrategy.builder()
+				.minConnections(1)
+				.maxConnections(options.getMaxConnections());
+			if (options.getHttp2MaxConcurrentStreams() > 0) {
+				allocationStrategy.maxConcurrentStreams(options.getHttp2MaxConcurrentStreams());
+			}
+			builder.allocationStrategy(allocationStrategy.build());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Create an {@link HttpClient} on top of the given connection pool.
+	 * @param connectionProvider the connection pool.
+	 * @param baseUrl the endpoint the client talks to, its scheme decides between h2 and
+	 * h2c when HTTP/2 is enabled.
+	 * @param options the connection options.
+	 * @return a new http client.
+	 */
+	public static HttpClient httpClient(ConnectionProvider connectionProvider, String baseUrl,
+			HunYuanConnectionOptions options) {
+		Assert.notNull(connectionProvider, "connectionProvider must not be null");
+		Assert.notNull(options, "options must not be null");
+		HttpClient httpClient = HttpClient.create(connectionProvider)
+			.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.toIntExact(options.getConnectTimeout().toMillis()))
+			.option(ChannelOption.SO_KEEPALIVE, options.isKeepAlive());
+		if (options.isHttp2()) {
+			if (isSecure(baseUrl)) {
+				httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+			}
+			else {
+				httpClient = httpClient.protocol(HttpProtocol.H2C);
+			}
+		}
+		return httpClient;
+	}
+
+	/**
+	 * Create a WebClient connector on top of the given connection pool.
+	 * @param connectionProvider the connection pool.
+	 * @param baseUrl the endpoint the client talks to.
+	 * @param options the connection options.
+	 * @return a new client connector.
+	 */
+	public static ClientHttpConnector clientHttpConnector(ConnectionProvider connectionProvider, String baseUrl,
+			HunYuanConnectionOptions options) {
+		return new ReactorClientHttpConnector(httpClient(connectionProvider, baseUrl, options));
+	}
+
+	private static boolean isSecure(String baseUrl) {
+		return baseUrl == null || !baseUrl.regionMatches(true, 0, "http://", 0, 7);
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestClient.RequestHeadersSpec.ExchangeFunction;
+
+/**
+ * Encodes HunYuan API request payloads and decodes their responses. Every request is
+ * serialized exactly once: the resulting bytes are signed by
+ * {@link io.github.studiousxiaoyu.hunyuan.api.auth.HunYuanAuthApi} and then written to
+ * the wire unchanged, by both the RestClient and the WebClient.
+ * <p>
+ * Encoding goes through a pre-built {@link ObjectWriter} that shares the configuration of
+ * {@link ModelOptionsUtils#OBJECT_MAPPER}. Jackson writes into recycled buffer segments,
+ * so the only allocation per request is the final, exactly sized byte array.
+ * <p>
+ * Responses are decoded straight from the response stream by an {@link ObjectReader}
+ * bound to the response type, without first copying the body into a {@code String}.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanJsonCodec {
+
+	private final ObjectWriter writer = ModelOptionsUtils.OBJECT_MAPPER.writer();
+
+	private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+	/**
+	 * Serialize the given request payload to UTF-8 encoded JSON.
+	 * @param value the request payload.
+	 * @return the JSON bytes.
+	 */
+	public byte[] encode(Object value) {
+		try {
+			return this.writer.writeValueAsBytes(value);
+		}
+		catch (JsonProcessingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Deserialize a response payload from the given stream. The stream is not closed.
+	 * @param body the UTF-8 encoded JSON.
+	 * @param type the response type.
+	 * @return the response.
+	 * @throws IOException if the stream cannot be read.
+	 */
+	public <T> T decode(InputStream body, Class<T> type) throws IOException {
+		try {
+			return reader(type).readValue(body);
+		}
+		catch (JsonProcessingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Return a {@link ExchangeFunction} that decodes successful responses with
+	 * {@link #decode(InputStream, Class)}, and hands error responses to the given handler
+	 * as {@code retrieve()} would.
+	 * @param type the response type.
+	 * @param errorHandler the handler of error responses.
+	 * @return the exchange function.
+	 */
+	public <T> ExchangeFunction<T> exchangeFunction(Class<T> type, ResponseErrorHandler errorHandler) {
+		ObjectReader reader = reader(type);
+		return (request, response) -> {
+			if (errorHandler.hasError(response)) {
+				errorHandler.handleError(request.getURI(), request.getMethod(), response);
+			}
+			try {
+				return reader.readValue(response.getBody());
+			}
+			catch (JsonProcessingException e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+
+	private ObjectReader reader(Class<?> type) {
+		return this.readers.computeIfAbsent(type, ModelOptionsUtils.OBJECT_MAPPER::readerFor);
+	}
+
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+import org.springframework.util.Assert;
+
+/**
+ * Embeddings of a number of dimensions, stored in two memory-mapped files.
+ * <p>
+ * The records file holds the embeddings in the order they were stored, each a record of
+ * its 128-bit key followed by its floats. The index file is a hash table of the keys,
+ * open addressing with linear probing, each slot holding 32 bits of the key and the
+ * number of the record. Both are little-endian, after a header of 64 bytes holding their
+ * number of records. A record is written before its slot, and the numbers of records
+ * last, so that a process stopped in the middle of a write leaves at worst a slot to a
+ * record that is not stored, and a lookup checks the key of the record it finds. The
+ * index is derived from the records: it is rebuilt when it is missing, of another
+ * capacity or behind the records.
+ * <p>
+ * Lookups run concurrently, optimistically, without locking unless an embedding is stored
+ * meanwhile. The files are locked, so that one process at a time opens them; the pages
+ * written are flushed to the disk by the operating system, or when the store is closed.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanMappedEmbeddingStore implements Closeable {
+
+	private static final int MAGIC = 0x48594543;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 64;
+
+	private static final int COUNT_OFFSET = 16;
+
+	private static final int CAPACITY_OFFSET = 24;
+
+	private static final int KEY_BYTES = 16;
+
+	/**
+	 * Size of the regions of the records file mapped at once.
+	 */
+	private static final long CHUNK_BYTES = 64L * 1024 * 1024;
+
+	private final int dimensions;
+
+	private final long maxEntries;
+
+	private final int recordBytes;
+
+	private final int chunkRecords;
+
+	private final FileChannel records;
+
+	private final FileChannel index;
+
+	private final FileLock fileLock;
+
+	private final MappedByteBuffer recordsHeader;
+
+	private final MappedByteBuffer indexBuffer;
+
+	private final LongBuffer slots;
+
+	private final int mask;
+
+	private final StampedLock lock = new StampedLock();
+
+	private MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+	private FloatBuffer[] chunkFloats = new FloatBuffer[0];
+
+	private long count;
+
+	private boolean closed;
+
+	/**
+	 * Open the store of the given files, creating them if they do not exist.
+	 * @param recordsFile the records file.
+	 * @param indexFile the index file.
+	 * @param dimensions the number of dimensions of the embeddings.
+	 * @param maxEntries the maximum number of embeddings stored.
+	 */
+	HunYuanMappedEmbeddingStore(Path recordsFile, Path indexFile, int dimensions, long maxEntries) {
+		Assert.isTrue(dimensions > 0, "dimensions must be positive");
+		Assert.isTrue(maxEntries > 0 && maxEntries <= 1 << 26, "maxEntries must be between 1 and 2^26");
+		this.dimensions = dimensions;
+		this.maxEntries = maxEntries;
+		this.recordBytes = KEY_BYTES + dimensions * Float.BYTES;
+		this.chunkRecords = (int) Math.max(1, CHUNK_BYTES / this.recordBytes);
+		try {
+			this.records = FileChannel.open(recordsFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			this.fileLock = tryLock(this.records);
+			if (this.fileLock == null) {
+				this.records.close();
+				throw new IllegalStateException(recordsFile + " is used by another process");
+			}
+			this.index = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			this.recordsHeader = header(this.records);
+			this.count = this.recordsHeader.getLong(COUNT_OFFSET);
+			mapChunks(this.count);
+
+			int capacity = Integer.highestOneBit((int) Math.max(maxEntries, this.count) * 2 - 1) << 1;
+			boolean rebuild = this.index.size() != HEADER_BYTES + (long) capacity * Long.BYTES;
+			if (!rebuild) {
+				MappedByteBuffer indexHeader = header(this.index);
+				rebuild = !isValid(indexHeader) || indexHeader.getInt(CAPACITY_OFFSET) != capacity;
+			}
+			if (rebuild) {
+				this.index.truncate(0);
+			}
+			this.indexBuffer = this.index.map(FileChannel.MapMode.READ_WRITE, 0,
+					HEADER_BYTES + (long) capacity * Long.BYTES);
+			this.indexBuffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (rebuild) {
+				writeHeader(this.indexBuffer);
+				this.indexBuffer.putInt(CAPACITY_OFFSET, capacity);
+			}
+			this.slots = this.indexBuffer.slice(HEADER_BYTES, capacity * Long.BYTES)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.asLongBuffer();
+			this.mask = capacity - 1;
+			for (long record = this.indexBuffer.getLong(COUNT_OFFSET); record < this.count; record++) {
+				int offset = recordOffset(record);
+				MappedByteBuffer chunk = this.chunks[chunkOf(record)];
+				insert(chunk.getLong(offset), chunk.getLong(offset + Long.BYTES), record);
+			}
+			this.indexBuffer.putLong(COUNT_OFFSET, this.count);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static FileLock tryLock(FileChannel channel) throws IOException {
+		try {
+			return channel.tryLock();
+		}
+		catch (OverlappingFileLockException ex) {
+			// Locked by this process.
+			return null;
+		}
+	}
+
+	private MappedByteBuffer header(FileChannel channel) throws IOException {
+		boolean created = channel.size() < HEADER_BYTES;
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		if (created) {
+			writeHeader(header);
+		}
+		else if (channel == this.records && !isValid(header)) {
+			throw new IllegalStateException("Not a records file of embeddings of " + this.dimensions + " dimensions");
+		}
+		return header;
+	}
+
+	private void writeHeader(MappedByteBuffer header) {
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putInt(8, this.dimensions);
+		header.putLong(COUNT_OFFSET, 0);
+	}
+
+	private boolean isValid(MappedByteBuffer header) {
+		return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == this.dimensions;
+	}
+
+	/**
+	 * Map the chunks of the records file needed to hold the given number of records.
+	 */
+	private void mapChunks(long records) throws IOException {
+		int needed = (int) ((records + this.chunkRecords - 1) / this.chunkRecords);
+		if (needed <= this.chunks.length) {
+			return;
+		}
+		MappedByteBuffer[] chunks = Arrays.copyOf(this.chunks, needed);
+		FloatBuffer[] chunkFloats = Arrays.copyOf(this.chunkFloats, needed);
+		long chunkBytes = (long) this.chunkRecords * this.recordBytes;
+		for (int i = this.chunks.length; i < needed; i++) {
+			chunks[i] = this.records.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + i * chunkBytes, chunkBytes);
+			chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+			chunkFloats[i] = chunks[i].asFloatBuffer();
+		}
+		this.chunkFloats = chunkFloats;
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Return the embedding of the given key.
+	 * @param key0 the first 64 bits of the key.
+	 * @param key1 the last 64 bits of the key.
+	 * @return the embedding, or null if it is not stored.
+	 */
+	float[] get(long key0, long key1) {
+		long stamp = this.lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				float[] embedding = find(key0, key1);
+				if (this.lock.validate(stamp)) {
+					return embedding;
+				}
+			}
+			catch (RuntimeException ex) {
+				// Read while an embedding was stored, read again under the lock.
+			}
+		}
+		stamp = this.lock.readLock();
+		try {
+			return find(key0, key1);
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Store the embedding of the given key, unless the store is full.
+	 * @param key0 the first 64 bits of the key.
+	 * @param key1 the last 64 bits of the key.
+	 * @param embedding the embedding, of the dimensions of the store.
+	 * @return whether the embedding was stored.
+	 */
+	boolean put(long key0, long key1, float[] embedding) {
+		Assert.isTrue(embedding.length == this.dimensions,
+				() -> "Expected " + this.dimensions + " dimensions, got " + embedding.length);
+		long stamp = this.lock.writeLock();
+		try {
+			Assert.state(!this.closed, "The embedding store is closed");
+			if (find(key0, key1) != null) {
+				return true;
+			}
+			if (this.count >= this.maxEntries) {
+				return false;
+			}
+			long record = this.count;
+			mapChunks(record + 1);
+			int offset = recordOffset(record);
+			MappedByteBuffer chunk = this.chunks[chunkOf(record)];
+			chunk.putLong(offset, key0);
+			chunk.putLong(offset + Long.BYTES, key1);
+			this.chunkFloats[chunkOf(record)].put((offset + KEY_BYTES) / Float.BYTES, embedding);
+			insert(key0, key1, record);
+			this.count = record + 1;
+			this.recordsHeader.putLong(COUNT_OFFSET, this.count);
+			this.indexBuffer.putLong(COUNT_OFFSET, this.count);
+			return true;
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	private float[] find(long key0, long key1) {
+		int fragment = (int) (key1 >>> 32);
+		for (int slot = (int) key0 & this.mask;; slot = (slot + 1) & this.mask) {
+			long entry = this.slots.get(slot);
+			if (entry == 0) {
+				return null;
+			}
+			long record = (entry & 0xFFFFFFFFL) - 1;
+			if ((int) (entry >>> 32) == fragment && record < this.count) {
+				int offset = recordOffset(record);
+				MappedByteBuffer chunk = this.chunks[chunkOf(record)];
+				if (chunk.getLong(offset) == key0 && chunk.getLong(offset + Long.BYTES) == key1) {
+					float[] embedding = new float[this.dimensions];
+					this.chunkFloats[chunkOf(record)].get((offset + KEY_BYTES) / Float.BYTES, embedding);
+					return embedding;
+				}
+			}
+		}
+	}
+
+	private void insert(long key0, long key1, long record) {
+		int slot = (int) key0 & this.mask;
+		while (this.slots.get(slot) != 0) {
+			slot = (slot + 1) & this.mask;
+		}
+		this.slots.put(slot, ((key1 >>> 32) << 32) | (record + 1));
+	}
+
+	private int chunkOf(long record) {
+		return (int) (record / this.chunkRecords);
+	}
+
+	private int recordOffset(long record) {
+		return (int) (record % this.chunkRecords) * this.recordBytes;
+	}
+
+	int dimensions() {
+		return this.dimensions;
+	}
+
+	long size() {
+		long stamp = this.lock.readLock();
+		try {
+			return this.count;
+		}
+		finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Flush the embeddings stored to the disk and release the files.
+	 */
+	@Override
+	public void close() {
+		long stamp = this.lock.writeLock();
+		try {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			for (MappedByteBuffer chunk : this.chunks) {
+				chunk.force();
+			}
+			this.recordsHeader.force();
+			this.indexBuffer.force();
+			this.fileLock.release();
+			this.records.close();
+			this.index.close();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.springframework.util.Assert;
+
+/**
+ * Media sent inline as a {@code data:} URL, written to the request body as a JSON string
+ * without the URL ever being built as a {@code String}.
+ * <p>
+ * {@link #of(String, byte[]) Streamed} media is encoded to base64 straight into the body
+ * each time it is written. {@link #encode(String, byte[]) Encoded} media is encoded once,
+ * to the UTF-8 bytes of the JSON string, which are copied into the body each time it is
+ * written: it is meant to be cached, when the same media is sent with several requests.
+ *
+ * @author Guo Junyu
+ */
+public final class HunYuanMediaData {
+
+	private static final int CHUNK_SIZE = 8 * 1024;
+
+	private final String mimeType;
+
+	private final byte[] data;
+
+	private final HunYuanRawJson encoded;
+
+	private HunYuanMediaData(String mimeType, byte[] data, HunYuanRawJson encoded) {
+		this.mimeType = mimeType;
+		this.data = data;
+		this.encoded = encoded;
+	}
+
+	/**
+	 * Create media encoded each time it is written.
+	 * @param mimeType the MIME type of the media.
+	 * @param data the media.
+	 * @return the media.
+	 */
+	public static HunYuanMediaData of(String mimeType, byte[] data) {
+		Assert.hasText(mimeType, "mimeType must not be empty");
+		Assert.notNull(data, "data must not be null");
+		return new HunYuanMediaData(mimeType, data, null);
+	}
+
+	/**
+	 * Create media encoded once, now.
+	 * @param mimeType the MIME type of the media.
+	 * @param data the media, which must not change afterwards.
+	 * @return the media.
+	 */
+	public static HunYuanMediaData encode(String mimeType, byte[] data) {
+		Assert.hasText(mimeType, "mimeType must not be empty");
+		Assert.notNull(data, "data must not be null");
+		byte[] prefix = prefix(mimeType);
+		byte[] encoded = new byte[prefix.length + base64Length(data.length) + 1];
+		System.arraycopy(prefix, 0, encoded, 0, prefix.length);
+		try (OutputStream base64 = Base64.getEncoder().wrap(new ArrayOutput(encoded, prefix.length))) {
+			base64.write(data);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		encoded[encoded.length - 1] = '"';
+		return new HunYuanMediaData(mimeType, data, new HunYuanRawJson(encoded));
+	}
+
+	public String mimeType() {
+		return this.mimeType;
+	}
+
+	/**
+	 * Return whether the media is encoded once rather than each time it is written.
+	 * @return true when the media is encoded.
+	 */
+	public boolean isEncoded() {
+		return this.encoded != null;
+	}
+
+	/**
+	 * Return the number of bytes the media is written to, quotes included.
+	 * @return the number of bytes.
+	 */
+	public int encodedLength() {
+		if (this.encoded != null) {
+			return this.encoded.byteLength();
+		}
+		return prefix(this.mimeType).length + base64Length(this.data.length) + 1;
+	}
+
+	/**
+	 * Return the number of bytes of the media itself.
+	 * @return the number of bytes.
+	 */
+	public int dataLength() {
+		return this.data.length;
+	}
+
+	/**
+	 * Build the {@code data:} URL of the media. The request body does not need it.
+	 * @return the URL.
+	 */
+	public String toDataUrl() {
+		return "data:" + this.mimeType + ";base64," + Base64.getEncoder().encodeToString(this.data);
+	}
+
+	/**
+	 * Write the {@code data:} URL of the media as a JSON string value.
+	 * @param generator the generator.
+	 * @throws IOException if the media cannot be written.
+	 */
+	public void write(JsonGenerator generator) throws IOException {
+		if (this.encoded != null) {
+			generator.writeRawValue(this.encoded);
+			return;
+		}
+		generator.writeRawValue(new String(prefix(this.mimeType), StandardCharsets.UTF_8));
+		// Base64 needs no escaping: the encoder writes it in chunks to the generator.
+		try (OutputStream base64 = Base64.getEncoder().wrap(new GeneratorOutput(generator))) {
+			for (int offset = 0; offset < this.data.length; offset += CHUNK_SIZE) {
+				base64.write(this.data, offset, Math.min(CHUNK_SIZE, this.data.length - offset));
+			}
+		}
+		generator.writeRaw('"');
+	}
+
+	@Override
+	public String toString() {
+		return "HunYuanMediaData{mimeType=" + this.mimeType + ", size=" + this.data.length + "}";
+	}
+
+	private static byte[] prefix(String mimeType) {
+		return ("\"data:" + new String(JsonStringEncoder.getInstance().quoteAsString(mimeType)) + ";base64,")
+			.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int base64Length(int length) {
+		return 4 * ((length + 2) / 3);
+	}
+
+	/**
+	 * Writes into an array from an offset.
+	 */
+	private static final class ArrayOutput extends OutputStream {
+
+		private final byte[] array;
+
+		private int position;
+
+		ArrayOutput(byte[] array, int position) {
+			this.array = array;
+			this.position = position;
+		}
+
+		@Override
+		public void write(int b) {
+			this.array[this.position++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			System.arraycopy(b, off, this.array, this.position, len);
+			this.position += len;
+		}
+
+	}
+
+	/**
+	 * Writes ASCII bytes to a generator as raw characters. It is not closed with the
+	 * base64 stream wrapping it.
+	 */
+	private static final class GeneratorOutput extends OutputStream {
+
+		private final JsonGenerator generator;
+
+		private final char[] chars = new char[CHUNK_SIZE * 4 / 3 + 4];
+
+		GeneratorOutput(JsonGenerator generator) {
+			this.generator = generator;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.generator.writeRaw((char) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				int count = Math.min(len, this.chars.length);
+				for (int i = 0; i < count; i++) {
+					this.chars[i] = (char) b[off + i];
+				}
+				this.generator.writeRaw(this.chars, 0, count);
+				off += count;
+				len -= count;
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
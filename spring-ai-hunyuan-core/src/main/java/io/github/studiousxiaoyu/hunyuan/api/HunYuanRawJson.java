@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.SerializableString;
+
+/**
+ * JSON already serialized to UTF-8, written by
+ * {@link com.fasterxml.jackson.core.JsonGenerator#writeRaw(SerializableString)} as the
+ * bytes it holds, without being decoded to a {@code String}. Only the unquoted forms are
+ * supported: the bytes are JSON, not the content of a JSON string.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanRawJson implements SerializableString {
+
+	private final byte[] utf8;
+
+	HunYuanRawJson(byte[] utf8) {
+		this.utf8 = utf8;
+	}
+
+	int byteLength() {
+		return this.utf8.length;
+	}
+
+	@Override
+	public String getValue() {
+		return new String(this.utf8, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int charLength() {
+		return getValue().length();
+	}
+
+	@Override
+	public byte[] asUnquotedUTF8() {
+		return this.utf8;
+	}
+
+	@Override
+	public int appendUnquotedUTF8(byte[] buffer, int offset) {
+		if (offset + this.utf8.length > buffer.length) {
+			return -1;
+		}
+		System.arraycopy(this.utf8, 0, buffer, offset, this.utf8.length);
+		return this.utf8.length;
+	}
+
+	@Override
+	public int appendUnquoted(char[] buffer, int offset) {
+		String value = getValue();
+		if (offset + value.length() > buffer.length) {
+			return -1;
+		}
+		value.getChars(0, value.length(), buffer, offset);
+		return value.length();
+	}
+
+	@Override
+	public int writeUnquotedUTF8(OutputStream out) throws IOException {
+		out.write(this.utf8);
+		return this.utf8.length;
+	}
+
+	@Override
+	public int putUnquotedUTF8(ByteBuffer buffer) {
+		if (this.utf8.length > buffer.remaining()) {
+			return -1;
+		}
+		buffer.put(this.utf8);
+		return this.utf8.length;
+	}
+
+	@Override
+	public char[] asQuotedChars() {
+		throw new UnsupportedOperationException("Raw JSON cannot be quoted");
+	}
+
+	@Override
+	public byte[] asQuotedUTF8() {
+		throw new UnsupportedOperationException("Raw JSON cannot be quoted");
+	}
+
+	@Override
+	public int appendQuotedUTF8(byte[] buffer, int offset) {
+		throw new UnsupportedOperationException("Raw JSON cannot be quoted");
+	}
+
+	@Override
+	public int appendQuoted(char[] buffer, int offset) {
+		throw new UnsupportedOperationException("Raw JSON cannot be quoted");
+	}
+
+	@Override
+	public int writeQuotedUTF8(OutputStream out) {
+		throw new UnsupportedOperationException("Raw JSON cannot be quoted");
+	}
+
+	@Override
+	public int putQuotedUTF8(ByteBuffer buffer) {
+		throw new UnsupportedOperationException("Raw JSON cannot be quoted");
+	}
+
+	@Override
+	public String toString() {
+		return getValue();
+	}
+
+}
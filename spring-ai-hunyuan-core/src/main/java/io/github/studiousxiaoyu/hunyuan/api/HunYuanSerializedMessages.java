@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.util.Assert;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+
+/**
+ * Immutable list of {@link ChatCompletionMessage}s each serialized beforehand, by
+ * {@link #serialize(ChatCompletionMessage)} to UTF-8 bytes. It is written to a request
+ * body as the JSON array of the serialized messages, their bytes copied as they are, so
+ * that the messages of a conversation sent again with each of its rounds are serialized
+ * once.
+ *
+ * @author Guo Junyu
+ */
+@JsonSerialize(using = HunYuanSerializedMessages.Serializer.class)
+public final class HunYuanSerializedMessages extends AbstractList<ChatCompletionMessage> implements RandomAccess {
+
+	private final List<SerializedMessage> messages;
+
+	private HunYuanSerializedMessages(List<SerializedMessage> messages) {
+		this.messages = messages;
+	}
+
+	/**
+	 * Serialize the given message.
+	 * @param message the message.
+	 * @return the serialized message.
+	 */
+	public static SerializedMessage serialize(ChatCompletionMessage message) {
+		Assert.notNull(message, "message must not be null");
+		try {
+			return new SerializedMessage(message,
+					new HunYuanRawJson(ModelOptionsUtils.OBJECT_MAPPER.writeValueAsBytes(message)));
+		}
+		catch (JsonProcessingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Return the list of the given serialized messages.
+	 * @param messages the serialized messages.
+	 * @return the list of the messages.
+	 */
+	public static HunYuanSerializedMessages of(List<SerializedMessage> messages) {
+		Assert.notNull(messages, "messages must not be null");
+		return new HunYuanSerializedMessages(List.copyOf(messages));
+	}
+
+	@Override
+	public ChatCompletionMessage get(int index) {
+		return this.messages.get(index).message();
+	}
+
+	@Override
+	public int size() {
+		return this.messages.size();
+	}
+
+	/**
+	 * A message and the JSON it was serialized to.
+	 */
+	public static final class SerializedMessage {
+
+		private final ChatCompletionMessage message;
+
+		private final HunYuanRawJson json;
+
+		private SerializedMessage(ChatCompletionMessage message, HunYuanRawJson json) {
+			this.message = message;
+			this.json = json;
+		}
+
+		public ChatCompletionMessage message() {
+			return this.message;
+		}
+
+		public String json() {
+			return this.json.getValue();
+		}
+
+	}
+
+	/**
+	 * Writes the JSON array of the serialized messages.
+	 */
+	public static final class Serializer extends StdSerializer<HunYuanSerializedMessages> {
+
+		public Serializer() {
+			super(HunYuanSerializedMessages.class);
+		}
+
+		@Override
+		public void serialize(HunYuanSerializedMessages value, JsonGenerator generator, SerializerProvider provider)
+				throws IOException {
+			// The array is written raw, as a value first so that the generator writes
+			// the separator it expects before it.
+			generator.writeRawValue("[");
+			for (int i = 0; i < value.messages.size(); i++) {
+				if (i > 0) {
+					generator.writeRaw(',');
+				}
+				generator.writeRaw(value.messages.get(i).json);
+			}
+			generator.writeRaw(']');
+		}
+
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.util.Assert;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.FunctionTool;
+
+/**
+ * Immutable list of {@link FunctionTool}s serialized once, when it is created. It is
+ * written to a request body as the JSON array it was serialized to, the UTF-8 bytes
+ * copied as they are, so that a set of tools sent with every request, JSON schemas
+ * included, is not serialized again each time.
+ *
+ * @author Guo Junyu
+ */
+@JsonSerialize(using = HunYuanSerializedTools.Serializer.class)
+public final class HunYuanSerializedTools extends AbstractList<FunctionTool> implements RandomAccess {
+
+	private final List<FunctionTool> tools;
+
+	private final SerializedString json;
+
+	private HunYuanSerializedTools(List<FunctionTool> tools, String json) {
+		this.tools = tools;
+		this.json = new SerializedString(json);
+	}
+
+	/**
+	 * Serialize the given tools.
+	 * @param tools the tools.
+	 * @return the serialized tools.
+	 */
+	public static HunYuanSerializedTools of(List<FunctionTool> tools) {
+		Assert.notNull(tools, "tools must not be null");
+		List<FunctionTool> copy = List.copyOf(tools);
+		try {
+			return new HunYuanSerializedTools(copy, ModelOptionsUtils.OBJECT_MAPPER.writeValueAsString(copy));
+		}
+		catch (JsonProcessingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public FunctionTool get(int index) {
+		return this.tools.get(index);
+	}
+
+	@Override
+	public int size() {
+		return this.tools.size();
+	}
+
+	/**
+	 * Return the JSON array the tools were serialized to.
+	 * @return the JSON.
+	 */
+	public String json() {
+		return this.json.getValue();
+	}
+
+	/**
+	 * Writes the JSON the tools were serialized to.
+	 */
+	public static final class Serializer extends StdSerializer<HunYuanSerializedTools> {
+
+		public Serializer() {
+			super(HunYuanSerializedTools.class);
+		}
+
+		@Override
+		public void serialize(HunYuanSerializedTools value, JsonGenerator generator, SerializerProvider provider)
+				throws IOException {
+			// The string caches its UTF-8 bytes, which are copied to the output buffer.
+			generator.writeRawValue(value.json);
+		}
+
+	}
+
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionResponse;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+/**
+ * Decodes the server-sent events of a streaming chat completion directly from the
+ * response {@link DataBuffer}s into {@link ChatCompletionChunk}s.
+ * <p>
+ * The bytes of every stream are gathered in one reusable buffer, split into lines and
+ * {@code data:} frames at the byte level, and each frame is parsed in place by an
+ * {@link ObjectReader} bound to {@link ChatCompletionChunk}. No {@code String} is created
+ * per event, and the {@code [DONE]} sentinel is recognised on its bytes and dropped.
+ * <p>
+ * A response that is not an event stream but a plain JSON body, which is how HunYuan
+ * reports errors of streaming requests, is decoded as a {@link ChatCompletionResponse}
+ * and emitted as a single chunk carrying its error.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanSseDecoder {
+
+	private static final byte[] DATA_FIELD = "data:".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] DONE = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] LINE_FEED = { '\n' };
+
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+
+	private final ObjectReader chunkReader = ModelOptionsUtils.OBJECT_MAPPER.readerFor(ChatCompletionChunk.class);
+
+	private final ObjectReader responseReader = ModelOptionsUtils.OBJECT_MAPPER.readerFor(ChatCompletionResponse.class);
+
+	/**
+	 * Decode the given response body. The data buffers are released once read.
+	 * @param body the response body.
+	 * @return the chat completion chunks, without the {@code [DONE]} sentinel.
+	 */
+	public Flux<ChatCompletionChunk> decode(Flux<DataBuffer> body) {
+		return Flux.defer(() -> {
+			EventReader reader = new EventReader();
+			return body.concatMapIterable(reader::read)
+				.concatWith(Flux.defer(() -> Flux.fromIterable(reader.complete())))
+				.doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+		});
+	}
+
+	/**
+	 * Decoding state of a single response.
+	 */
+	private final class EventReader {
+
+		private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+		/**
+		 * Number of buffered bytes.
+		 */
+		private int length;
+
+		/**
+		 * Start of the first line that has not been read yet.
+		 */
+		private int lineStart;
+
+		/**
+		 * Position from which to look for the end of that line.
+		 */
+		private int scanStart;
+
+		/**
+		 * Location in the buffer of the data of the pending event, while it has a single
+		 * data line, or -1.
+		 */
+		private int dataStart = -1;
+
+		private int dataEnd;
+
+		/**
+		 * Data of the pending event once it spans several data lines, otherwise null.
+		 */
+		private byte[] multiLineData;
+
+		private int multiLineLength;
+
+		/**
+		 * Whether the body turned out to be a plain JSON document instead of events.
+		 */
+		private boolean json;
+
+		private boolean firstByteSeen;
+
+		List<ChatCompletionChunk> read(DataBuffer dataBuffer) {
+			try {
+				append(dataBuffer);
+			}
+			finally {
+				DataBufferUtils.release(dataBuffer);
+			}
+			if (this.json) {
+				return List.of();
+			}
+			List<ChatCompletionChunk> chunks = null;
+			int end;
+			while ((end = indexOf((byte) '\n', this.scanStart)) >= 0) {
+				int lineEnd = (end > this.lineStart && this.buffer[end - 1] == '\r') ? end - 1 : end;
+				ChatCompletionChunk chunk = readLine(this.lineStart, lineEnd);
+				this.lineStart = end + 1;
+				this.scanStart = this.lineStart;
+				if (chunk != null) {
+					if (chunks == null) {
+						chunks = new ArrayList<>(2);
+					}
+					chunks.add(chunk);
+				}
+			}
+			this.scanStart = this.length;
+			compact();
+			return (chunks != null) ? chunks : List.of();
+		}
+
+		List<ChatCompletionChunk> complete() {
+			if (this.json) {
+				ChatCompletionResponse response = parse(HunYuanSseDecoder.this.responseReader, this.buffer, 0,
+						this.length);
+				return (response != null && response.response() != null) ? List.of(toChunk(response.response()))
+						: List.of();
+			}
+			List<ChatCompletionChunk> chunks = new ArrayList<>(1);
+			if (this.lineStart < this.length) {
+				addIfNotNull(chunks, readLine(this.lineStart, this.length));
+			}
+			addIfNotNull(chunks, dispatch());
+			return chunks;
+		}
+
+		private void append(DataBuffer dataBuffer) {
+			int readable = dataBuffer.readableByteCount();
+			if (this.length + readable > this.buffer.length) {
+				this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.length + readable));
+			}
+			dataBuffer.read(this.buffer, this.length, readable);
+			if (!this.firstByteSeen) {
+				for (int i = this.length; i < this.length + readable; i++) {
+					if (!isWhitespace(this.buffer[i])) {
+						this.firstByteSeen = true;
+						this.json = this.buffer[i] == '{';
+						break;
+					}
+				}
+			}
+			this.length += readable;
+		}
+
+		/**
+		 * Read one line of the event stream, returning the chunk of the event it
+		 * completes, if any.
+		 */
+		private ChatCompletionChunk readLine(int start, int end) {
+			if (start == end) {
+				return dispatch();
+			}
+			if (startsWith(start, end, DATA_FIELD)) {
+				int valueStart = start + DATA_FIELD.length;
+				if (valueStart < end && this.buffer[valueStart] == ' ') {
+					valueStart++;
+				}
+				addData(valueStart, end);
+			}
+			// Comments and the id, event and retry fields are not used by HunYuan.
+			return null;
+		}
+
+		private void addData(int start, int end) {
+			if (this.dataStart < 0 && this.multiLineData == null) {
+				this.dataStart = start;
+				this.dataEnd = end;
+				return;
+			}
+			if (this.multiLineData == null) {
+				this.multiLineData = new byte[Math.max(INITIAL_BUFFER_SIZE, (this.dataEnd - this.dataStart) * 2)];
+				this.multiLineLength = 0;
+				appendMultiLine(this.buffer, this.dataStart, this.dataEnd - this.dataStart);
+				this.dataStart = -1;
+			}
+			appendMultiLine(LINE_FEED, 0, 1);
+			appendMultiLine(this.buffer, start, end - start);
+		}
+
+		private void appendMultiLine(byte[] source, int offset, int count) {
+			if (this.multiLineLength + count > this.multiLineData.length) {
+				this.multiLineData = Arrays.copyOf(this.multiLineData,
+						Math.max(this.multiLineData.length * 2, this.multiLineLength + count));
+			}
+			System.arraycopy(source, offset, this.multiLineData, this.multiLineLength, count);
+			this.multiLineLength += count;
+		}
+
+		private ChatCompletionChunk dispatch() {
+			byte[] data;
+			int offset;
+			int count;
+			if (this.multiLineData != null) {
+				data = this.multiLineData;
+				offset = 0;
+				count = this.multiLineLength;
+				this.multiLineData = null;
+			}
+			else if (this.dataStart >= 0) {
+				data = this.buffer;
+				offset = this.dataStart;
+				count = this.dataEnd - this.dataStart;
+				this.dataStart = -1;
+			}
+			else {
+				return null;
+			}
+			if (count == 0 || Arrays.equals(data, offset, offset + count, DONE, 0, DONE.length)) {
+				return null;
+			}
+			return parse(HunYuanSseDecoder.this.chunkReader, data, offset, count);
+		}
+
+		/**
+		 * Drop the bytes that have been read, keeping the data of a pending event.
+		 */
+		private void compact() {
+			int keepFrom = (this.dataStart >= 0) ? Math.min(this.dataStart, this.lineStart) : this.lineStart;
+			if (keepFrom == 0) {
+				return;
+			}
+			System.arraycopy(this.buffer, keepFrom, this.buffer, 0, this.length - keepFrom);
+			this.length -= keepFrom;
+			this.lineStart -= keepFrom;
+			this.scanStart -= keepFrom;
+			if (this.dataStart >= 0) {
+				this.dataStart -= keepFrom;
+				this.dataEnd -= keepFrom;
+			}
+		}
+
+		private int indexOf(byte target, int from) {
+			for (int i = from; i < this.length; i++) {
+				if (this.buffer[i] == target) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private boolean startsWith(int start, int end, byte[] prefix) {
+			return end - start >= prefix.length
+					&& Arrays.equals(this.buffer, start, start + prefix.length, prefix, 0, prefix.length);
+		}
+
+		private void addIfNotNull(List<ChatCompletionChunk> chunks, ChatCompletionChunk chunk) {
+			if (chunk != null) {
+				chunks.add(chunk);
+			}
+		}
+
+	}
+
+	private static <T> T parse(ObjectReader reader, byte[] data, int offset, int count) {
+		try {
+			return reader.readValue(data, offset, count);
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	private static ChatCompletionChunk toChunk(ChatCompletion completion) {
+		return new ChatCompletionChunk(completion.id(), completion.errorMsg(), completion.created(), completion.note(),
+				completion.choices(), completion.usage(), completion.moderationLevel(), completion.searchInfo(),
+				completion.replaces(), completion.recommendedQuestions(), completion.processes(),
+				completion.requestId());
+	}
+
+}
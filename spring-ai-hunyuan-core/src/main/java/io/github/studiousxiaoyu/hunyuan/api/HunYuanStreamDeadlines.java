@@ -0,0 +1,103 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.time.Duration;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanStreamTimeoutException.Deadline;
+
+/**
+ * Applies the {@link HunYuanStreamTimeoutOptions} to one exchange of a streamed chat
+ * completion. The deadlines run from the creation, on subscription, and are enforced with
+ * {@link Flux#timeout(Publisher, java.util.function.Function)}: a missed deadline cancels
+ * the response body, which aborts the exchange, and fails the stream with a
+ * {@link HunYuanStreamTimeoutException}.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanStreamDeadlines {
+
+	private final HunYuanStreamTimeoutOptions options;
+
+	private final long startNanos = System.nanoTime();
+
+	private volatile boolean connected;
+
+	HunYuanStreamDeadlines(HunYuanStreamTimeoutOptions options) {
+		this.options = options;
+	}
+
+	/**
+	 * Record that the connection was established and the request is being sent.
+	 */
+	void connected() {
+		this.connected = true;
+	}
+
+	/**
+	 * Apply the connect and first byte deadlines to the response body.
+	 * @param body the response body.
+	 * @param <T> the type of the body elements.
+	 * @return the body with the deadlines.
+	 */
+	<T> Flux<T> responseBody(Flux<T> body) {
+		Duration connect = this.options.getConnect();
+		Duration firstByte = this.options.getFirstByte();
+		if (connect == null && firstByte == null) {
+			return body;
+		}
+		Mono<Long> connectDeadline = (connect != null) ? Mono.delay(connect)
+			.flatMap(tick -> this.connected ? Mono.never() : expired(Deadline.CONNECT, connect)) : Mono.never();
+		Mono<Long> firstByteDeadline = (firstByte != null)
+				? Mono.delay(firstByte).then(expired(Deadline.FIRST_BYTE, firstByte)) : Mono.never();
+		return body.timeout(Mono.firstWithSignal(connectDeadline, firstByteDeadline), element -> Mono.never());
+	}
+
+	/**
+	 * Apply the first token, token gap and total deadlines to the chunks.
+	 * @param chunks the chunks.
+	 * @param <T> the type of the chunks.
+	 * @return the chunks with the deadlines.
+	 */
+	<T> Flux<T> chunks(Flux<T> chunks) {
+		if (this.options.getFirstToken() == null && this.options.getTokenGap() == null
+				&& this.options.getTotal() == null) {
+			return chunks;
+		}
+		return chunks.timeout(Mono.defer(() -> next(Deadline.FIRST_TOKEN, this.options.getFirstToken())),
+				chunk -> next(Deadline.TOKEN_GAP, this.options.getTokenGap()));
+	}
+
+	private Mono<Long> next(Deadline deadline, Duration timeout) {
+		Duration total = this.options.getTotal();
+		if (total != null) {
+			long remainingNanos = Math.max(0, total.toNanos() - (System.nanoTime() - this.startNanos));
+			if (timeout == null || remainingNanos < timeout.toNanos()) {
+				return Mono.delay(Duration.ofNanos(remainingNanos)).then(expired(Deadline.TOTAL, total));
+			}
+		}
+		return (timeout != null) ? Mono.delay(timeout).then(expired(deadline, timeout)) : Mono.never();
+	}
+
+	private static Mono<Long> expired(Deadline deadline, Duration timeout) {
+		return Mono.error(() -> new HunYuanStreamTimeoutException(deadline, timeout));
+	}
+
+}
@@ -32,6 +32,13 @@ import java.util.List;
  */
 public class HunYuanStreamFunctionCallingHelper {
 
+	/**
+	 * Merge two chunks of a tool call.
+	 * @deprecated copies the accumulated content and arguments on every chunk and only
+	 * supports one tool call per delta, use a {@link HunYuanToolCallAccumulator} per
+	 * stream instead.
+	 */
+	@Deprecated
 	public ChatCompletionChunk merge(ChatCompletionChunk previous, ChatCompletionChunk current) {
 
 		if (previous == null) {
@@ -165,7 +172,7 @@ public class HunYuanStreamFunctionCallingHelper {
 		if (choice == null || choice.delta() == null) {
 			return false;
 		}
-		return choice.finishReason() == ChatCompletionFinishReason.TOOL_CALLS.getJsonValue();
+		return ChatCompletionFinishReason.TOOL_CALLS.getJsonValue().equals(choice.finishReason());
 	}
 
 }
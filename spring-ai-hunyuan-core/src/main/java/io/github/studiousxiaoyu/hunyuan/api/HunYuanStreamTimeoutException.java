@@ -0,0 +1,63 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.time.Duration;
+
+import org.springframework.ai.retry.TransientAiException;
+
+/**
+ * Thrown when a streamed chat completion misses one of its
+ * {@link HunYuanStreamTimeoutOptions deadlines}. The exchange has been aborted. The
+ * exception is transient, so that the streaming retry can try again when nothing was
+ * received yet.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanStreamTimeoutException extends TransientAiException {
+
+	private final Deadline deadline;
+
+	private final Duration timeout;
+
+	public HunYuanStreamTimeoutException(Deadline deadline, Duration timeout) {
+		super("HunYuan stream missed its " + deadline.description + " deadline of " + timeout.toMillis() + " ms");
+		this.deadline = deadline;
+		this.timeout = timeout;
+	}
+
+	public Deadline getDeadline() {
+		return this.deadline;
+	}
+
+	public Duration getTimeout() {
+		return this.timeout;
+	}
+
+	public enum Deadline {
+
+		CONNECT("connect"), FIRST_BYTE("first byte"), FIRST_TOKEN("first token"), TOKEN_GAP("token gap"),
+		TOTAL("total duration");
+
+		private final String description;
+
+		Deadline(String description) {
+			this.description = description;
+		}
+
+	}
+
+}
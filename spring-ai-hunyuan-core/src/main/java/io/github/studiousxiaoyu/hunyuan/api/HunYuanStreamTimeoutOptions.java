@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Deadlines of a streamed chat completion. Each deadline is optional, a stream that
+ * misses one is aborted with a {@link HunYuanStreamTimeoutException}.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanStreamTimeoutOptions {
+
+	/**
+	 * Maximum time from the subscription to the connection being established.
+	 */
+	private Duration connect;
+
+	/**
+	 * Maximum time from the subscription to the first byte of the response body.
+	 */
+	private Duration firstByte;
+
+	/**
+	 * Maximum time from the subscription to the first chunk.
+	 */
+	private Duration firstToken;
+
+	/**
+	 * Maximum time between two chunks.
+	 */
+	private Duration tokenGap;
+
+	/**
+	 * Maximum time from the subscription to the end of the stream.
+	 */
+	private Duration total;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public Duration getConnect() {
+		return this.connect;
+	}
+
+	public void setConnect(Duration connect) {
+		this.connect = connect;
+	}
+
+	public Duration getFirstByte() {
+		return this.firstByte;
+	}
+
+	public void setFirstByte(Duration firstByte) {
+		this.firstByte = firstByte;
+	}
+
+	public Duration getFirstToken() {
+		return this.firstToken;
+	}
+
+	public void setFirstToken(Duration firstToken) {
+		this.firstToken = firstToken;
+	}
+
+	public Duration getTokenGap() {
+		return this.tokenGap;
+	}
+
+	public void setTokenGap(Duration tokenGap) {
+		this.tokenGap = tokenGap;
+	}
+
+	public Duration getTotal() {
+		return this.total;
+	}
+
+	public void setTotal(Duration total) {
+		this.total = total;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof HunYuanStreamTimeoutOptions that)) {
+			return false;
+		}
+		return Objects.equals(this.connect, that.connect) && Objects.equals(this.firstByte, that.firstByte)
+				&& Objects.equals(this.firstToken, that.firstToken) && Objects.equals(this.tokenGap, that.tokenGap)
+				&& Objects.equals(this.total, that.total);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.connect, this.firstByte, this.firstToken, this.tokenGap, this.total);
+	}
+
+	public static class Builder {
+
+		private final HunYuanStreamTimeoutOptions options = new HunYuanStreamTimeoutOptions();
+
+		public Builder connect(Duration connect) {
+			this.options.connect = connect;
+			return this;
+		}
+
+		public Builder firstByte(Duration firstByte) {
+			this.options.firstByte = firstByte;
+			return this;
+		}
+
+		public Builder firstToken(Duration firstToken) {
+			this.options.firstToken = firstToken;
+			return this;
+		}
+
+		public Builder tokenGap(Duration tokenGap) {
+			this.options.tokenGap = tokenGap;
+			return this;
+		}
+
+		public Builder total(Duration total) {
+			this.options.total = total;
+			return this;
+		}
+
+		public HunYuanStreamTimeoutOptions build() {
+			return this.options;
+		}
+
+	}
+
+}
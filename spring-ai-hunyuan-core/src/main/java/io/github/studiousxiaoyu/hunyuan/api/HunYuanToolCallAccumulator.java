@@ -0,0 +1,231 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatCompletionFunction;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ToolCall;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.Usage;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Accumulates the tool call deltas of one streamed chat completion. The chunks of a
+ * stream are passed through untouched until a delta carries tool calls. From then on the
+ * chunks are buffered, their argument fragments appended to one builder per tool call,
+ * and a single chunk carrying the completed tool calls is emitted when the choice
+ * finishes, or when the stream ends.
+ * <p>
+ * Tool calls are told apart by their index, or their id when the delta has no index, so
+ * that several tool calls can be streamed at once, even within the same delta. Every
+ * fragment is appended once, making the accumulation linear in the size of the stream.
+ * <p>
+ * An accumulator keeps the state of a single stream and is not thread-safe, which the
+ * serial delivery of a {@code Flux} guarantees.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanToolCallAccumulator {
+
+	private final List<ToolCallBuilder> toolCalls = new ArrayList<>(2);
+
+	private final Map<Integer, ToolCallBuilder> toolCallsByIndex = new HashMap<>();
+
+	private final Map<String, ToolCallBuilder> toolCallsById = new HashMap<>();
+
+	private final StringBuilder content = new StringBuilder();
+
+	private final StringBuilder reasoningContent = new StringBuilder();
+
+	private ToolCallBuilder lastToolCall;
+
+	private String id;
+
+	private Long created;
+
+	private String note;
+
+	private Usage usage;
+
+	private Role role;
+
+	private Integer choiceIndex;
+
+	private String moderationLevel;
+
+	/**
+	 * Accept the next chunk of the stream.
+	 * @param chunk the chunk.
+	 * @return the chunk to emit, or null while tool calls are being accumulated.
+	 */
+	public ChatCompletionChunk accept(ChatCompletionChunk chunk) {
+		ChatCompletion.Choice choice = CollectionUtils.isEmpty(chunk.choices()) ? null : chunk.choices().get(0);
+		ChatCompletion.ChatCompletionDelta delta = (choice != null) ? choice.delta() : null;
+		boolean hasToolCalls = delta != null && !CollectionUtils.isEmpty(delta.toolCalls());
+		if (!hasToolCalls && this.toolCalls.isEmpty()) {
+			return chunk;
+		}
+		if (chunk.id() != null) {
+			this.id = chunk.id();
+		}
+		if (chunk.created() != null) {
+			this.created = chunk.created();
+		}
+		if (chunk.note() != null) {
+			this.note = chunk.note();
+		}
+		if (chunk.usage() != null) {
+			this.usage = chunk.usage();
+		}
+		if (choice == null) {
+			return null;
+		}
+		if (choice.index() != null) {
+			this.choiceIndex = choice.index();
+		}
+		if (choice.moderationLevel() != null) {
+			this.moderationLevel = choice.moderationLevel();
+		}
+		if (delta != null) {
+			if (delta.role() != null) {
+				this.role = delta.role();
+			}
+			if (delta.content() != null) {
+				this.content.append(delta.content());
+			}
+			if (delta.reasoningContent() != null) {
+				this.reasoningContent.append(delta.reasoningContent());
+			}
+			if (hasToolCalls) {
+				for (ToolCall toolCall : delta.toolCalls()) {
+					toolCallBuilder(toolCall).append(toolCall);
+				}
+			}
+		}
+		return (choice.finishReason() != null) ? drain(choice.finishReason()) : null;
+	}
+
+	/**
+	 * Complete the stream.
+	 * @return the chunk of the tool calls that did not see their finish reason, or null.
+	 */
+	public ChatCompletionChunk complete() {
+		return this.toolCalls.isEmpty() ? null : drain(null);
+	}
+
+	private ToolCallBuilder toolCallBuilder(ToolCall toolCall) {
+		ToolCallBuilder builder = null;
+		if (toolCall.index() != null) {
+			builder = this.toolCallsByIndex.get(toolCall.index());
+		}
+		if (builder == null && toolCall.id() != null) {
+			builder = this.toolCallsById.get(toolCall.id());
+		}
+		if (builder == null && toolCall.index() == null && toolCall.id() == null) {
+			// A continuation that identifies nothing belongs to the latest call.
+			builder = this.lastToolCall;
+		}
+		if (builder == null) {
+			builder = new ToolCallBuilder();
+			this.toolCalls.add(builder);
+		}
+		if (toolCall.index() != null) {
+			this.toolCallsByIndex.putIfAbsent(toolCall.index(), builder);
+		}
+		if (toolCall.id() != null) {
+			this.toolCallsById.putIfAbsent(toolCall.id(), builder);
+		}
+		this.lastToolCall = builder;
+		return builder;
+	}
+
+	private ChatCompletionChunk drain(String finishReason) {
+		List<ToolCall> completed = new ArrayList<>(this.toolCalls.size());
+		for (ToolCallBuilder toolCall : this.toolCalls) {
+			completed.add(toolCall.build());
+		}
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(
+				(this.role != null) ? this.role : Role.assistant, this.content.toString(), completed,
+				this.reasoningContent.toString());
+		ChatCompletionChunk chunk = new ChatCompletionChunk(this.id, null, this.created, this.note,
+				List.of(new ChatCompletion.Choice(this.choiceIndex, null, finishReason, delta, this.moderationLevel)),
+				this.usage, null, null, null, null, null, null);
+		reset();
+		return chunk;
+	}
+
+	private void reset() {
+		this.toolCalls.clear();
+		this.toolCallsByIndex.clear();
+		this.toolCallsById.clear();
+		this.content.setLength(0);
+		this.reasoningContent.setLength(0);
+		this.lastToolCall = null;
+		this.usage = null;
+		this.role = null;
+		this.choiceIndex = null;
+		this.moderationLevel = null;
+	}
+
+	private static final class ToolCallBuilder {
+
+		private final StringBuilder arguments = new StringBuilder();
+
+		private String id;
+
+		private String type;
+
+		private Integer index;
+
+		private String name;
+
+		void append(ToolCall toolCall) {
+			if (toolCall.id() != null) {
+				this.id = toolCall.id();
+			}
+			if (toolCall.type() != null) {
+				this.type = toolCall.type();
+			}
+			if (toolCall.index() != null) {
+				this.index = toolCall.index();
+			}
+			ChatCompletionFunction function = toolCall.function();
+			if (function != null) {
+				if (StringUtils.hasText(function.name())) {
+					this.name = function.name();
+				}
+				if (function.arguments() != null) {
+					this.arguments.append(function.arguments());
+				}
+			}
+		}
+
+		ToolCall build() {
+			return new ToolCall(this.id, this.type, this.index,
+					new ChatCompletionFunction(this.name, this.arguments.toString()));
+		}
+
+	}
+
+}
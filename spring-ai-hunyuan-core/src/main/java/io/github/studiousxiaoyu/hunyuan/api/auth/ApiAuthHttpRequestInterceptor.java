@@ -31,6 +31,10 @@ public class ApiAuthHttpRequestInterceptor implements ClientHttpRequestIntercept
 		this.hunYuanAuthApi = new HunYuanAuthApi(secretId, secretKey, host, service);
 	}
 
+	public ApiAuthHttpRequestInterceptor(HunYuanAuthApi hunYuanAuthApi) {
+		this.hunYuanAuthApi = hunYuanAuthApi;
+	}
+
 	@Override
 	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
 			throws IOException {
@@ -2,23 +2,21 @@ package io.github.studiousxiaoyu.hunyuan.api.auth;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.model.ModelOptionsUtils;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanConstants;
-import org.springframework.http.HttpRequest;
-import org.springframework.util.CollectionUtils;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanJsonCodec;
+import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import javax.xml.bind.DatatypeConverter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.text.SimpleDateFormat;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.time.LocalDate;
+import java.util.Locale;
 
 import static io.github.studiousxiaoyu.hunyuan.api.HunYuanConstants.CT_JSON;
 
@@ -26,6 +24,11 @@ import static io.github.studiousxiaoyu.hunyuan.api.HunYuanConstants.CT_JSON;
  * The HunYuanAuthApi class is responsible for handling authentication-related operations
  * for the HunYuan API. It provides methods to generate necessary headers and signatures
  * required for authenticated requests.
+ * <p>
+ * The derived TC3 signing key only depends on the UTC date, the secret key and the
+ * service, so it is computed once per day and reused. {@link Mac} and
+ * {@link MessageDigest} instances are kept per thread, and digests are hex-encoded
+ * straight into the string being built.
  *
  * @author Guo Junyu
  */
@@ -39,6 +42,18 @@ public class HunYuanAuthApi {
 
 	private final static String ALGORITHM = HunYuanConstants.DEFAULT_ALGORITHM;
 
+	private final static String HMAC_SHA256 = "HmacSHA256";
+
+	private final static String SIGNED_HEADERS = "content-type;host;x-tc-action";
+
+	private final static long SECONDS_PER_DAY = 86_400L;
+
+	private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final static HunYuanJsonCodec JSON_CODEC = new HunYuanJsonCodec();
+
+	private final static ThreadLocal<SigningContext> SIGNING_CONTEXT = ThreadLocal.withInitial(SigningContext::new);
+
 	private final String secretId;
 
 	private final String secretKey;
@@ -47,6 +62,12 @@ public class HunYuanAuthApi {
 
 	private final String service;
 
+	private final byte[] tc3SecretKey;
+
+	private final String canonicalHeadersPrefix;
+
+	private volatile SigningKey signingKey;
+
 	/**
 	 * Constructs a HunYuanAuthApi instance with the specified secret ID and secret key.
 	 * @param secretId The secret ID used for authentication.
@@ -57,6 +78,9 @@ public class HunYuanAuthApi {
 		this.secretKey = secretKey;
 		this.host = host;
 		this.service = service;
+		this.tc3SecretKey = ("TC3" + secretKey).getBytes(UTF8);
+		this.canonicalHeadersPrefix = "POST\n/\n\ncontent-type:application/json; charset=utf-8\n" + "host:" + host
+				+ "\n" + "x-tc-action:";
 	}
 
 	/**
@@ -66,11 +90,9 @@ public class HunYuanAuthApi {
 	 * @return The byte array of the generated HMAC-SHA256 signature.
 	 */
 	public byte[] hmac256(byte[] key, String msg) {
-		Mac mac = null;
+		Mac mac = SIGNING_CONTEXT.get().mac;
 		try {
-			mac = Mac.getInstance("HmacSHA256");
-			SecretKeySpec secretKeySpec = new SecretKeySpec(key, mac.getAlgorithm());
-			mac.init(secretKeySpec);
+			mac.init(new SecretKeySpec(key, HMAC_SHA256));
 		}
 		catch (Exception e) {
 			throw new RuntimeException(e);
@@ -85,15 +107,24 @@ public class HunYuanAuthApi {
 	 * @return The SHA-256 hash of the input string in hexadecimal format.
 	 */
 	public String sha256Hex(String s) {
-		MessageDigest md = null;
-		try {
-			md = MessageDigest.getInstance("SHA-256");
-		}
-		catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
-		}
-		byte[] d = md.digest(s.getBytes(UTF8));
-		return DatatypeConverter.printHexBinary(d).toLowerCase();
+		byte[] bytes = s.getBytes(UTF8);
+		return sha256Hex(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Computes the SHA-256 hash of a region of the provided byte array and returns it as
+	 * a hexadecimal string.
+	 * @param bytes The bytes to be hashed.
+	 * @param offset The offset of the first byte to hash.
+	 * @param length The number of bytes to hash.
+	 * @return The SHA-256 hash in hexadecimal format.
+	 */
+	public String sha256Hex(byte[] bytes, int offset, int length) {
+		SigningContext context = SIGNING_CONTEXT.get();
+		context.builder.setLength(0);
+		context.sha256(bytes, offset, length);
+		appendHex(context.builder, context.digest);
+		return context.builder.toString();
 	}
 
 	/**
@@ -107,54 +138,168 @@ public class HunYuanAuthApi {
 	}
 
 	public MultiValueMap<String, String> getHttpHeadersConsumer(String action, String version, byte[] body) {
-		// String timestamp = "1551113065";
-		String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
-		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-		// Pay attention to the time zone, otherwise it will be easy to make mistakes
-		sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-		String date = sdf.format(new Date(Long.valueOf(timestamp + "000")));
+		return getHttpHeadersConsumer(action, version, body, 0, body.length);
+	}
+
+	/**
+	 * Generates the HTTP headers for a request whose payload is the given region of a
+	 * byte array. The payload is hashed as-is, so the signature always matches the bytes
+	 * that are written to the wire.
+	 */
+	public MultiValueMap<String, String> getHttpHeadersConsumer(String action, String version, byte[] body, int offset,
+			int length) {
+		return sign(action, version, body, offset, length, System.currentTimeMillis() / 1000);
+	}
+
+	/**
+	 * Generates the HTTP headers for the given chat request.
+	 * @deprecated the request is serialized here only to be hashed, so callers end up
+	 * encoding it twice. Encode it once with {@link HunYuanJsonCodec} and sign the bytes
+	 * that are sent with {@link #getHttpHeadersConsumer(String, String, byte[])} instead.
+	 */
+	@Deprecated
+	public MultiValueMap<String, String> getHttpHeadersConsumerByRequest(String action,
+			HunYuanApi.ChatCompletionRequest chatRequest) {
+		return getHttpHeadersConsumer(action, JSON_CODEC.encode(chatRequest));
+	}
+
+	MultiValueMap<String, String> sign(String action, String version, byte[] body, int offset, int length,
+			long timestamp) {
+		SigningContext context = SIGNING_CONTEXT.get();
+		SigningKey key = signingKey(timestamp / SECONDS_PER_DAY);
+		StringBuilder sb = context.builder;
 
 		// ************* Step 1: Splice specification request strings *************
-		String httpRequestMethod = "POST";
-		String canonicalUri = "/";
-		String canonicalQueryString = "";
-		String canonicalHeaders = "content-type:application/json; charset=utf-8\n" + "host:" + host + "\n"
-				+ "x-tc-action:" + action.toLowerCase() + "\n";
-		String signedHeaders = "content-type;host;x-tc-action";
-
-		// String payload = "{\"Limit\": 1, \"Filters\": [{\"Values\":
-		// [\"\\u672a\\u547d\\u540d\"], \"Name\": \"instance-name\"}]}";
-		String hashedRequestPayload = sha256Hex(new String(body, UTF8));
-		String canonicalRequest = httpRequestMethod + "\n" + canonicalUri + "\n" + canonicalQueryString + "\n"
-				+ canonicalHeaders + "\n" + signedHeaders + "\n" + hashedRequestPayload;
+		context.sha256(body, offset, length);
+		sb.setLength(0);
+		sb.append(this.canonicalHeadersPrefix).append(action.toLowerCase(Locale.ROOT)).append("\n\n");
+		sb.append(SIGNED_HEADERS).append('\n');
+		appendHex(sb, context.digest);
+
 		// ************* Step 2: Splice the string to be signed *************
-		String credentialScope = date + "/" + service + "/" + "tc3_request";
-		String hashedCanonicalRequest = sha256Hex(canonicalRequest);
-		String stringToSign = ALGORITHM + "\n" + timestamp + "\n" + credentialScope + "\n" + hashedCanonicalRequest;
+		context.sha256(sb);
+		sb.setLength(0);
+		sb.append(ALGORITHM).append('\n').append(timestamp).append('\n').append(key.credentialScope()).append('\n');
+		appendHex(sb, context.digest);
+
 		// ************* Step 3: Calculate the signature *************
-		byte[] secretDate = hmac256(("TC3" + secretKey).getBytes(UTF8), date);
-		byte[] secretService = hmac256(secretDate, service);
-		byte[] secretSigning = hmac256(secretService, "tc3_request");
-		String signature = DatatypeConverter.printHexBinary(hmac256(secretSigning, stringToSign)).toLowerCase();
+		context.hmac256(key.secretSigning(), sb);
+
 		// ************* Step 4: Splice Authorization *************
-		String authorization = ALGORITHM + " " + "Credential=" + secretId + "/" + credentialScope + ", "
-				+ "SignedHeaders=" + signedHeaders + ", " + "Signature=" + signature;
-
-		TreeMap<String, String> headers = new TreeMap<String, String>();
-		headers.put("Authorization", authorization);
-		headers.put("Content-Type", CT_JSON);
-		// headers.put("Host", host);
-		headers.put("X-TC-Action", action);
-		headers.put("X-TC-Timestamp", timestamp);
-		headers.put("X-TC-Version", version);
-
-		return CollectionUtils.toMultiValueMap(
-				headers.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> List.of(e.getValue()))));
+		sb.setLength(0);
+		sb.append(ALGORITHM)
+			.append(" Credential=")
+			.append(this.secretId)
+			.append('/')
+			.append(key.credentialScope())
+			.append(", SignedHeaders=")
+			.append(SIGNED_HEADERS)
+			.append(", Signature=");
+		appendHex(sb, context.digest);
+
+		MultiValueMap<String, String> headers = new LinkedMultiValueMap<>(5);
+		headers.add("Authorization", sb.toString());
+		headers.add("Content-Type", CT_JSON);
+		headers.add("X-TC-Action", action);
+		headers.add("X-TC-Timestamp", String.valueOf(timestamp));
+		headers.add("X-TC-Version", version);
+		return headers;
 	}
 
-	public MultiValueMap<String, String> getHttpHeadersConsumerByRequest(String action,
-			HunYuanApi.ChatCompletionRequest chatRequest) {
-		return getHttpHeadersConsumer(action, ModelOptionsUtils.toJsonString(chatRequest).getBytes(UTF8));
+	/**
+	 * Returns the signing key for the given UTC epoch day, deriving it only when the day
+	 * changes. Concurrent derivations for the same day are harmless, they produce the
+	 * same key.
+	 */
+	private SigningKey signingKey(long epochDay) {
+		SigningKey key = this.signingKey;
+		if (key != null && key.epochDay() == epochDay) {
+			return key;
+		}
+		// Pay attention to the time zone, otherwise it will be easy to make mistakes
+		String date = LocalDate.ofEpochDay(epochDay).toString();
+		byte[] secretDate = hmac256(this.tc3SecretKey, date);
+		byte[] secretService = hmac256(secretDate, this.service);
+		byte[] secretSigning = hmac256(secretService, "tc3_request");
+		key = new SigningKey(epochDay, date + "/" + this.service + "/tc3_request",
+				new SecretKeySpec(secretSigning, HMAC_SHA256));
+		this.signingKey = key;
+		return key;
+	}
+
+	private static void appendHex(StringBuilder sb, byte[] bytes) {
+		for (byte b : bytes) {
+			sb.append(HEX_DIGITS[(b >> 4) & 0x0F]).append(HEX_DIGITS[b & 0x0F]);
+		}
+	}
+
+	private record SigningKey(long epochDay, String credentialScope, SecretKeySpec secretSigning) {
+	}
+
+	/**
+	 * Per-thread crypto primitives and scratch buffers. The strings hashed while signing
+	 * are pure ASCII, so they are copied into {@link #ascii} instead of being encoded
+	 * into a new byte array.
+	 */
+	private static final class SigningContext {
+
+		private final MessageDigest sha256;
+
+		private final Mac mac;
+
+		private final byte[] digest = new byte[32];
+
+		private final StringBuilder builder = new StringBuilder(512);
+
+		private byte[] ascii = new byte[512];
+
+		private SigningContext() {
+			try {
+				this.sha256 = MessageDigest.getInstance("SHA-256");
+				this.mac = Mac.getInstance(HMAC_SHA256);
+			}
+			catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		void sha256(byte[] bytes, int offset, int length) {
+			this.sha256.update(bytes, offset, length);
+			try {
+				this.sha256.digest(this.digest, 0, this.digest.length);
+			}
+			catch (GeneralSecurityException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		void sha256(CharSequence chars) {
+			sha256(this.ascii, 0, toAscii(chars));
+		}
+
+		void hmac256(SecretKeySpec key, CharSequence chars) {
+			int length = toAscii(chars);
+			try {
+				this.mac.init(key);
+				this.mac.update(this.ascii, 0, length);
+				this.mac.doFinal(this.digest, 0);
+			}
+			catch (GeneralSecurityException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		private int toAscii(CharSequence chars) {
+			int length = chars.length();
+			if (this.ascii.length < length) {
+				this.ascii = new byte[Math.max(length, this.ascii.length * 2)];
+			}
+			for (int i = 0; i < length; i++) {
+				this.ascii[i] = (byte) chars.charAt(i);
+			}
+			return length;
+		}
+
 	}
 
 }
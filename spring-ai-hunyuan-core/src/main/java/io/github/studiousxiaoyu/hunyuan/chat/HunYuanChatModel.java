@@ -17,15 +17,19 @@
 package io.github.studiousxiaoyu.hunyuan.chat;
 
 import io.github.studiousxiaoyu.hunyuan.chat.message.HunYuanAssistantMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.observation.Observation;
 import io.micrometer.observation.ObservationRegistry;
 import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.MessageType;
 import org.springframework.ai.chat.messages.ToolResponseMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.content.Media;
 import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
 import org.springframework.ai.chat.metadata.ChatResponseMetadata;
 import org.springframework.ai.chat.metadata.EmptyUsage;
@@ -42,23 +46,31 @@ import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.*;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion.*;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.*;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanConstants;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanMediaData;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanStreamTimeoutOptions;
 import io.github.studiousxiaoyu.hunyuan.metadata.HunYuanUsage;
-import org.springframework.ai.model.ModelOptionsUtils;
 import org.springframework.ai.model.tool.*;
 import org.springframework.ai.retry.RetryUtils;
-import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.retry.TransientAiException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.MimeType;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * HunYuanChatModel is a {@link ChatModel} implementation that uses the HunYuan
@@ -73,6 +85,19 @@ public class HunYuanChatModel implements ChatModel {
 
 	private static final ChatModelObservationConvention DEFAULT_OBSERVATION_CONVENTION = new DefaultChatModelObservationConvention();
 
+	/**
+	 * Reactive counterpart of {@link RetryUtils#DEFAULT_RETRY_TEMPLATE}: up to 10
+	 * attempts with exponential backoff from 2 seconds to 3 minutes, on transient errors.
+	 */
+	public static final Retry DEFAULT_ASYNC_RETRY = asyncRetry(10, Duration.ofSeconds(2), Duration.ofMinutes(3));
+
+	/**
+	 * Retry spec of the streaming calls, with the same attempts and backoff as
+	 * {@link #DEFAULT_ASYNC_RETRY} and a jittered delay.
+	 */
+	public static final RetryBackoffSpec DEFAULT_STREAM_RETRY = streamRetry(10, Duration.ofSeconds(2),
+			Duration.ofMinutes(3));
+
 	/**
 	 * The default options used for the chat completion requests.
 	 */
@@ -94,11 +119,63 @@ public class HunYuanChatModel implements ChatModel {
 
 	private final ToolExecutionEligibilityPredicate toolExecutionEligibilityPredicate;
 
+	/**
+	 * Tools resolved and serialized once per set of tool callbacks and names.
+	 */
+	private final HunYuanToolDefinitionCache toolDefinitionCache;
+
 	/**
 	 * Conventions to use for generating observations.
 	 */
 	private ChatModelObservationConvention observationConvention = DEFAULT_OBSERVATION_CONVENTION;
 
+	/**
+	 * Retry spec of the non-blocking calls.
+	 */
+	private Retry asyncRetry = DEFAULT_ASYNC_RETRY;
+
+	/**
+	 * Retry spec of the streaming calls, applied until the first chunk is received.
+	 */
+	private RetryBackoffSpec streamRetry = DEFAULT_STREAM_RETRY;
+
+	/**
+	 * Latency meters of the streaming calls, null when no meter registry is set.
+	 */
+	private HunYuanStreamMetrics streamMetrics;
+
+	/**
+	 * Media of the user messages, encoded once per content.
+	 */
+	private HunYuanMediaCache mediaCache = new HunYuanMediaCache(HunYuanMediaCache.DEFAULT_MAX_BYTES);
+
+	/**
+	 * Executor of the image preprocessing, which bounds the images decoded at once.
+	 */
+	private Executor imageExecutor = HunYuanImagePreprocessor
+		.executor(HunYuanImagePreprocessor.DEFAULT_MAX_CONCURRENCY);
+
+	/**
+	 * Bytes of the images not sent thanks to their preprocessing, null when no meter
+	 * registry is set.
+	 */
+	private Counter imageBytesSaved;
+
+	/**
+	 * Cache of the reproducible chat completions, null when none is set.
+	 */
+	private HunYuanResponseCache responseCache;
+
+	/**
+	 * Cache of the answers to similar questions, null when none is set.
+	 */
+	private HunYuanSemanticCache semanticCache;
+
+	/**
+	 * Registry of the meters, null when none is set.
+	 */
+	private MeterRegistry meterRegistry;
+
 	/**
 	 * Initializes a new instance of the HunYuanChatModel.
 	 * @param hunYuanApi The HunYuan instance to be used for interacting with the HunYuan
@@ -130,9 +207,13 @@ public class HunYuanChatModel implements ChatModel {
 		Assert.notNull(retryTemplate, "RetryTemplate must not be null");
 		Assert.notNull(observationRegistry, "ObservationRegistry must not be null");
 		Assert.notNull(toolExecutionEligibilityPredicate, "toolExecutionEligibilityPredicate cannot be null");
+		// Validated once here, the prompts without options use them as they are.
+		ToolCallingChatOptions.validateToolCallbacks(options.getToolCallbacks());
 		this.hunYuanApi = hunYuanApi;
 		this.defaultOptions = options;
 		this.toolCallingManager = toolCallingManager;
+		this.toolDefinitionCache = new HunYuanToolDefinitionCache(toolCallingManager,
+				HunYuanToolDefinitionCache.DEFAULT_MAX_SIZE);
 		this.retryTemplate = retryTemplate;
 		this.observationRegistry = observationRegistry;
 		this.toolExecutionEligibilityPredicate = toolExecutionEligibilityPredicate;
@@ -155,145 +236,263 @@ public class HunYuanChatModel implements ChatModel {
 		return new Generation(assistantMessage, generationMetadata);
 	}
 
+	/**
+	 * Build the prompt of a request from the given prompt, its options merged with the
+	 * default options of this model. A prompt without options is given the default
+	 * options themselves rather than a copy: they are shared by all the requests and must
+	 * not be mutated.
+	 * @param prompt the prompt.
+	 * @return the prompt of the request.
+	 */
 	public Prompt buildRequestPrompt(Prompt prompt) {
-		// Process runtime options
-		HunYuanChatOptions runtimeOptions = null;
-		if (prompt.getOptions() != null) {
-			if (prompt.getOptions() instanceof ToolCallingChatOptions toolCallingChatOptions) {
-				runtimeOptions = ModelOptionsUtils.copyToTarget(toolCallingChatOptions, ToolCallingChatOptions.class,
-						HunYuanChatOptions.class);
-			}
-			else {
-				runtimeOptions = ModelOptionsUtils.copyToTarget(prompt.getOptions(), ChatOptions.class,
-						HunYuanChatOptions.class);
-			}
+		// Without runtime options the default options apply as they are.
+		if (prompt.getOptions() == null) {
+			return new Prompt(prompt.getInstructions(), this.defaultOptions);
 		}
 
 		// Define request options by merging runtime options and default options
-		HunYuanChatOptions requestOptions = ModelOptionsUtils.merge(runtimeOptions, this.defaultOptions,
-				HunYuanChatOptions.class);
-
-		// Merge @JsonIgnore-annotated options explicitly since they are ignored by
-		// Jackson, used by ModelOptionsUtils.
-		if (runtimeOptions != null) {
-			if (runtimeOptions.getTopK() != null) {
-				logger.warn("The topK option is not supported by OpenAI chat models. Ignoring.");
-			}
-
-			requestOptions.setHttpHeaders(
-					mergeHttpHeaders(runtimeOptions.getHttpHeaders(), this.defaultOptions.getHttpHeaders()));
-			requestOptions.setInternalToolExecutionEnabled(
-					ModelOptionsUtils.mergeOption(runtimeOptions.getInternalToolExecutionEnabled(),
-							this.defaultOptions.getInternalToolExecutionEnabled()));
-			requestOptions.setToolNames(ToolCallingChatOptions.mergeToolNames(runtimeOptions.getToolNames(),
-					this.defaultOptions.getToolNames()));
-			requestOptions.setToolCallbacks(ToolCallingChatOptions.mergeToolCallbacks(runtimeOptions.getToolCallbacks(),
-					this.defaultOptions.getToolCallbacks()));
-			requestOptions.setToolContext(ToolCallingChatOptions.mergeToolContext(runtimeOptions.getToolContext(),
-					this.defaultOptions.getToolContext()));
-		}
-		else {
-			requestOptions.setHttpHeaders(this.defaultOptions.getHttpHeaders());
-			requestOptions.setInternalToolExecutionEnabled(this.defaultOptions.getInternalToolExecutionEnabled());
-			requestOptions.setToolNames(this.defaultOptions.getToolNames());
-			requestOptions.setToolCallbacks(this.defaultOptions.getToolCallbacks());
-			requestOptions.setToolContext(this.defaultOptions.getToolContext());
-		}
+		HunYuanChatOptions requestOptions = HunYuanChatOptionsMerger
+			.merge(HunYuanChatOptionsMerger.runtimeOptions(prompt.getOptions()), this.defaultOptions);
 
 		ToolCallingChatOptions.validateToolCallbacks(requestOptions.getToolCallbacks());
 
 		return new Prompt(prompt.getInstructions(), requestOptions);
 	}
 
-	private Map<String, String> mergeHttpHeaders(Map<String, String> runtimeHttpHeaders,
-			Map<String, String> defaultHttpHeaders) {
-		var mergedHttpHeaders = new HashMap<>(defaultHttpHeaders);
-		mergedHttpHeaders.putAll(runtimeHttpHeaders);
-		return mergedHttpHeaders;
-	}
-
 	@Override
 	public ChatResponse call(Prompt prompt) {
 		Prompt requestPrompt = buildRequestPrompt(prompt);
-		return this.internalCall(requestPrompt, null);
+		HunYuanSemanticCache.Lookup lookup = (this.semanticCache != null) ? this.semanticCache.lookup(requestPrompt)
+				: null;
+		if (lookup != null && lookup.response() != null) {
+			return lookup.response();
+		}
+		ChatResponse response = this.internalCall(requestPrompt, null);
+		if (lookup != null) {
+			this.semanticCache.put(lookup, response);
+		}
+		return response;
 	}
 
 	public ChatResponse internalCall(Prompt prompt, ChatResponse previousChatResponse) {
-		ChatCompletionRequest request = createRequest(prompt, false);
+		// Loop over the rounds rather than recursing, so that long tool chains keep a
+		// flat stack and are held to the tool loop budgets.
+		HunYuanToolLoop loop = HunYuanToolLoop.start(prompt.getOptions());
+		Prompt roundPrompt = prompt;
+		while (true) {
+			ChatResponse response = callRound(roundPrompt, loop);
+			if (!this.toolExecutionEligibilityPredicate.isToolExecutionRequired(prompt.getOptions(), response)) {
+				return loop.aggregate(response);
+			}
+			loop.roundCompleted(response);
+			String stopReason = loop.exhausted();
+			if (stopReason != null) {
+				logger.warn("Tool calling loop stopped by its {} budget", stopReason);
+				return loop.stop(response, stopReason);
+			}
+			var toolExecutionResult = this.toolCallingManager.executeToolCalls(roundPrompt, response);
+			if (toolExecutionResult.returnDirect()) {
+				// Return tool execution result directly to the client.
+				return loop.aggregateCompleted(ChatResponse.builder()
+					.from(response)
+					.generations(ToolExecutionResult.buildGenerations(toolExecutionResult))
+					.build());
+			}
+			// Send the tool execution result back to the model.
+			roundPrompt = new Prompt(toolExecutionResult.conversationHistory(), prompt.getOptions());
+			loop.nextRound();
+		}
+	}
+
+	private ChatResponse callRound(Prompt prompt, HunYuanToolLoop loop) {
+		ChatCompletionRequest request = createRequest(prompt, false, loop.conversation());
 
 		ChatModelObservationContext observationContext = ChatModelObservationContext.builder()
 			.prompt(prompt)
 			.provider(HunYuanConstants.PROVIDER_NAME)
 			.build();
 
-		ChatResponse response = ChatModelObservationDocumentation.CHAT_MODEL_OPERATION
+		return ChatModelObservationDocumentation.CHAT_MODEL_OPERATION
 			.observation(this.observationConvention, DEFAULT_OBSERVATION_CONVENTION, () -> observationContext,
 					this.observationRegistry)
 			.observe(() -> {
-				ResponseEntity<ChatCompletionResponse> completionEntity = this.retryTemplate
-					.execute(ctx -> this.hunYuanApi.chatCompletionEntity(request));
+				HunYuanResponseCache.Key cacheKey = (this.responseCache != null) ? this.responseCache.key(request)
+						: null;
+				ChatCompletion completion = (cacheKey != null) ? this.responseCache.completion(cacheKey) : null;
+				if (completion == null) {
+					// A cached request is sent as it was encoded for its key.
+					ResponseEntity<ChatCompletionResponse> completionEntity = this.retryTemplate.execute(
+							ctx -> (cacheKey != null) ? this.hunYuanApi.chatCompletionEntity(request, cacheKey.body())
+									: this.hunYuanApi.chatCompletionEntity(request));
+					completion = completionEntity.getBody().response();
+					if (cacheKey != null) {
+						this.responseCache.put(cacheKey, completion);
+					}
+				}
 
-				var chatCompletion = completionEntity.getBody().response();
+				return toChatResponse(prompt, request, completion, observationContext);
+			});
+	}
 
-				if (chatCompletion == null) {
-					logger.warn("No chat completion returned for prompt: {}", prompt);
-					return new ChatResponse(List.of());
+	/**
+	 * Non-blocking variant of {@link #call(Prompt)}. The request is sent through the
+	 * WebClient and no thread is held while the model generates; retries are scheduled
+	 * with the async retry spec and tool calls run on the bounded elastic scheduler.
+	 * @param prompt the prompt.
+	 * @return the {@link Mono} of the chat response.
+	 */
+	public Mono<ChatResponse> callAsync(Prompt prompt) {
+		return Mono.defer(() -> {
+			Prompt requestPrompt = buildRequestPrompt(prompt);
+			return semanticLookup(requestPrompt).flatMap(lookup -> {
+				if (lookup.isEmpty()) {
+					return internalCallAsync(requestPrompt, null);
+				}
+				if (lookup.get().response() != null) {
+					return Mono.just(lookup.get().response());
 				}
-				if (chatCompletion.errorMsg() != null) {
-					logger.warn("Error in chat completion: {}",
-							chatCompletion != null ? chatCompletion.errorMsg() : "Unknown error");
+				return internalCallAsync(requestPrompt, null)
+					.doOnNext(response -> this.semanticCache.put(lookup.get(), response));
+			});
+		});
+	}
 
-					ErrorMsg errorMsg = chatCompletion != null ? chatCompletion.errorMsg()
-							: new ErrorMsg("UNKNOWN_ERROR", "An unknown error occurred.");
+	/**
+	 * Look up the question of the given prompt in the semantic cache, on the bounded
+	 * elastic scheduler as the question is embedded by a blocking call.
+	 */
+	private Mono<Optional<HunYuanSemanticCache.Lookup>> semanticLookup(Prompt prompt) {
+		if (this.semanticCache == null) {
+			return Mono.just(Optional.empty());
+		}
+		return Mono.fromCallable(() -> Optional.ofNullable(this.semanticCache.lookup(prompt)))
+			.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	/**
+	 * {@link CompletableFuture} variant of {@link #callAsync(Prompt)}.
+	 * @param prompt the prompt.
+	 * @return the future chat response.
+	 */
+	public CompletableFuture<ChatResponse> callFuture(Prompt prompt) {
+		return callAsync(prompt).toFuture();
+	}
+
+	public Mono<ChatResponse> internalCallAsync(Prompt prompt, ChatResponse previousChatResponse) {
+		return Mono.defer(() -> callAsyncRound(prompt, HunYuanToolLoop.start(prompt.getOptions())));
+	}
+
+	private Mono<ChatResponse> callAsyncRound(Prompt prompt, HunYuanToolLoop loop) {
+		return createRequestAsync(prompt, false, loop.conversation())
+			.flatMap(request -> Mono.deferContextual(contextView -> {
+				ChatModelObservationContext observationContext = ChatModelObservationContext.builder()
+					.prompt(prompt)
+					.provider(HunYuanConstants.PROVIDER_NAME)
+					.build();
 
-					String errorMessage = String.format("API Error [%s]: %s", errorMsg.index(), errorMsg.message());
+				Observation observation = ChatModelObservationDocumentation.CHAT_MODEL_OPERATION.observation(
+						this.observationConvention, DEFAULT_OBSERVATION_CONVENTION, () -> observationContext,
+						this.observationRegistry);
 
-					// 构建一个包含错误信息的 Generation
-					var errorGeneration = new Generation(new AssistantMessage(errorMessage));
+				observation.parentObservation(contextView.getOrDefault(ObservationThreadLocalAccessor.KEY, null))
+					.start();
 
-					return new ChatResponse(List.of(errorGeneration));
+				HunYuanResponseCache.Key cacheKey = (this.responseCache != null) ? this.responseCache.key(request)
+						: null;
+				ChatCompletion cached = (cacheKey != null) ? this.responseCache.completion(cacheKey) : null;
+				Mono<ChatCompletionResponse> completionResponse;
+				if (cached != null) {
+					completionResponse = Mono.just(new ChatCompletionResponse(cached));
 				}
-				List<Choice> choices = chatCompletion.choices();
-				if (choices == null) {
-					logger.warn("No choices returned for prompt: {}", prompt);
-					return new ChatResponse(List.of());
+				else if (cacheKey != null) {
+					// A cached request is sent as it was encoded for its key.
+					completionResponse = this.hunYuanApi.chatCompletionAsync(request, cacheKey.body())
+						.retryWhen(this.asyncRetry)
+						.doOnNext(completion -> this.responseCache.put(cacheKey, completion.response()));
+				}
+				else {
+					completionResponse = this.hunYuanApi.chatCompletionAsync(request).retryWhen(this.asyncRetry);
 				}
 
-				List<Generation> generations = choices.stream().map(choice -> {
-			// @formatter:off
-						Map<String, Object> metadata = Map.of(
-								"id", chatCompletion.id(),
-								"role", choice.message().role() != null ? choice.message().role().name() : "",
-								"finishReason", choice.finishReason() != null ? choice.finishReason() : ""
-						);
-						// @formatter:on
-					return buildGeneration(choice, metadata);
-				}).toList();
+				return completionResponse
+					.map(completion -> toChatResponse(prompt, request, completion.response(), observationContext))
+					.doOnError(observation::error)
+					.doFinally(signalType -> observation.stop())
+					.contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, observation));
+			}))
+			.flatMap(response -> {
+				if (!this.toolExecutionEligibilityPredicate.isToolExecutionRequired(prompt.getOptions(), response)) {
+					return Mono.just(loop.aggregate(response));
+				}
+				loop.roundCompleted(response);
+				String stopReason = loop.exhausted();
+				if (stopReason != null) {
+					logger.warn("Tool calling loop stopped by its {} budget", stopReason);
+					return Mono.just(loop.stop(response, stopReason));
+				}
+				// Tools are user code that may block, keep them off the event loop.
+				return Mono.fromCallable(() -> this.toolCallingManager.executeToolCalls(prompt, response))
+					.subscribeOn(Schedulers.boundedElastic())
+					.flatMap(toolExecutionResult -> {
+						if (toolExecutionResult.returnDirect()) {
+							// Return tool execution result directly to the client.
+							return Mono.just(loop.aggregateCompleted(ChatResponse.builder()
+								.from(response)
+								.generations(ToolExecutionResult.buildGenerations(toolExecutionResult))
+								.build()));
+						}
+						// Send the tool execution result back to the model. The next
+						// round resumes from the response of the model, not on the
+						// caller's stack.
+						loop.nextRound();
+						return callAsyncRound(
+								new Prompt(toolExecutionResult.conversationHistory(), prompt.getOptions()), loop);
+					});
+			});
+	}
 
-				ChatResponse chatResponse = new ChatResponse(generations,
-						from(request, completionEntity.getBody().response()));
+	private ChatResponse toChatResponse(Prompt prompt, ChatCompletionRequest request, ChatCompletion chatCompletion,
+			ChatModelObservationContext observationContext) {
+		if (chatCompletion == null) {
+			logger.warn("No chat completion returned for prompt: {}", prompt);
+			return new ChatResponse(List.of());
+		}
+		if (chatCompletion.errorMsg() != null) {
+			logger.warn("Error in chat completion: {}",
+					chatCompletion != null ? chatCompletion.errorMsg() : "Unknown error");
 
-				observationContext.setResponse(chatResponse);
+			ErrorMsg errorMsg = chatCompletion != null ? chatCompletion.errorMsg()
+					: new ErrorMsg("UNKNOWN_ERROR", "An unknown error occurred.");
 
-				return chatResponse;
-			});
+			String errorMessage = String.format("API Error [%s]: %s", errorMsg.index(), errorMsg.message());
 
-		if (this.toolExecutionEligibilityPredicate.isToolExecutionRequired(prompt.getOptions(), response)) {
-			var toolExecutionResult = this.toolCallingManager.executeToolCalls(prompt, response);
-			if (toolExecutionResult.returnDirect()) {
-				// Return tool execution result directly to the client.
-				return ChatResponse.builder()
-					.from(response)
-					.generations(ToolExecutionResult.buildGenerations(toolExecutionResult))
-					.build();
-			}
-			else {
-				// Send the tool execution result back to the model.
-				return this.internalCall(new Prompt(toolExecutionResult.conversationHistory(), prompt.getOptions()),
-						response);
-			}
+			// 构建一个包含错误信息的 Generation
+			var errorGeneration = new Generation(new AssistantMessage(errorMessage));
+
+			return new ChatResponse(List.of(errorGeneration));
 		}
-		return response;
+		List<Choice> choices = chatCompletion.choices();
+		if (choices == null) {
+			logger.warn("No choices returned for prompt: {}", prompt);
+			return new ChatResponse(List.of());
+		}
+
+		List<Generation> generations = choices.stream().map(choice -> {
+	// @formatter:off
+				Map<String, Object> metadata = Map.of(
+						"id", chatCompletion.id(),
+						"role", choice.message().role() != null ? choice.message().role().name() : "",
+						"finishReason", choice.finishReason() != null ? choice.finishReason() : ""
+				);
+				// @formatter:on
+			return buildGeneration(choice, metadata);
+		}).toList();
+
+		ChatResponse chatResponse = new ChatResponse(generations, from(request, chatCompletion));
+
+		observationContext.setResponse(chatResponse);
+
+		return chatResponse;
 	}
 
 	@Override
@@ -304,91 +503,150 @@ public class HunYuanChatModel implements ChatModel {
 	@Override
 	public Flux<ChatResponse> stream(Prompt prompt) {
 		Prompt requestPrompt = buildRequestPrompt(prompt);
-		return internalStream(requestPrompt, null);
+		if (this.semanticCache == null) {
+			return internalStream(requestPrompt, null);
+		}
+		return semanticLookup(requestPrompt).flatMapMany(lookup -> {
+			if (lookup.isEmpty()) {
+				return internalStream(requestPrompt, null);
+			}
+			if (lookup.get().response() != null) {
+				return Flux.just(lookup.get().response());
+			}
+			return new MessageAggregator().aggregate(internalStream(requestPrompt, null),
+					response -> this.semanticCache.put(lookup.get(), response));
+		});
 	}
 
 	public Flux<ChatResponse> internalStream(Prompt prompt, ChatResponse previousChatResponse) {
-		return Flux.deferContextual(contextView -> {
-			ChatCompletionRequest request = createRequest(prompt, true);
-
-			Flux<ChatCompletionChunk> completionChunks = this.retryTemplate
-				.execute(ctx -> this.hunYuanApi.chatCompletionStream(request));
+		return Flux.defer(() -> streamRound(prompt, HunYuanToolLoop.start(prompt.getOptions())));
+	}
 
-			// For chunked responses, only the first chunk contains the choice role.
-			// The rest of the chunks with same ID share the same role.
-			ConcurrentHashMap<String, String> roleMap = new ConcurrentHashMap<>();
+	private Flux<ChatResponse> streamRound(Prompt prompt, HunYuanToolLoop loop) {
+		return createRequestAsync(prompt, true, loop.conversation())
+			.flatMapMany(request -> Flux.deferContextual(contextView -> {
+				// Retry the whole exchange, but only until the first chunk: the chunks
+				// that reached the caller cannot be taken back. A missed deadline is
+				// transient, it is retried as well.
+				HunYuanStreamTimeoutOptions timeouts = (prompt.getOptions() instanceof HunYuanChatOptions options)
+						? options.getStreamTimeouts() : null;
+				AtomicBoolean chunkEmitted = new AtomicBoolean();
+				HunYuanResponseCache.Key cacheKey = (this.responseCache != null) ? this.responseCache.key(request)
+						: null;
+				List<ChatCompletionChunk> cachedChunks = (cacheKey != null) ? this.responseCache.chunks(cacheKey)
+						: null;
+				Flux<ChatCompletionChunk> completionChunks;
+				HunYuanStreamStats stats;
+				if (cachedChunks != null) {
+					// Replayed as they were streamed, at the pace of the subscriber. A
+					// replay says nothing of the latency of the model and is left out of
+					// the stats.
+					completionChunks = Flux.fromIterable(cachedChunks);
+					stats = new HunYuanStreamStats(null);
+				}
+				else {
+					completionChunks = Flux.defer(() -> {
+						if (cacheKey != null) {
+							// A cached request is sent as it was encoded for its key.
+							return this.hunYuanApi.chatCompletionStream(request, cacheKey.body(), timeouts);
+						}
+						return (timeouts != null) ? this.hunYuanApi.chatCompletionStream(request, timeouts)
+								: this.hunYuanApi.chatCompletionStream(request);
+					})
+						.doOnNext(chunk -> chunkEmitted.set(true))
+						.retryWhen(this.streamRetry.modifyErrorFilter(filter -> filter.and(e -> !chunkEmitted.get())));
+					if (cacheKey != null) {
+						completionChunks = this.responseCache.record(cacheKey, completionChunks);
+					}
+					HunYuanStreamStats liveStats = (this.streamMetrics != null) ? this.streamMetrics.start(request)
+							: new HunYuanStreamStats(null);
+					completionChunks = completionChunks.doOnSubscribe(subscription -> liveStats.start())
+						.doOnNext(liveStats::accept);
+					stats = liveStats;
+				}
+				completionChunks = coalesce(completionChunks, prompt.getOptions());
 
-			final ChatModelObservationContext observationContext = ChatModelObservationContext.builder()
-				.prompt(prompt)
-				.provider(HunYuanConstants.PROVIDER_NAME)
-				.build();
+				final ChatModelObservationContext observationContext = ChatModelObservationContext.builder()
+					.prompt(prompt)
+					.provider(HunYuanConstants.PROVIDER_NAME)
+					.build();
+				observationContext.put(HunYuanStreamStats.class, stats);
 
-			Observation observation = ChatModelObservationDocumentation.CHAT_MODEL_OPERATION.observation(
-					this.observationConvention, DEFAULT_OBSERVATION_CONVENTION, () -> observationContext,
-					this.observationRegistry);
+				Observation observation = ChatModelObservationDocumentation.CHAT_MODEL_OPERATION.observation(
+						this.observationConvention, DEFAULT_OBSERVATION_CONVENTION, () -> observationContext,
+						this.observationRegistry);
 
-			observation.parentObservation(contextView.getOrDefault(ObservationThreadLocalAccessor.KEY, null)).start();
+				observation.parentObservation(contextView.getOrDefault(ObservationThreadLocalAccessor.KEY, null))
+					.start();
 
-			// Convert the ChatCompletionChunk into a ChatCompletion to be able to reuse
-			// the function call handling logic.
-			Flux<ChatResponse> chatResponse = completionChunks.map(this::chunkToChatCompletion)
-				.switchMap(chatCompletion -> Mono.just(chatCompletion).map(chatCompletion2 -> {
+				// Map the chunks straight to responses, sharing what does not change from
+				// one chunk to the next.
+				HunYuanStreamResponseMapper mapper = new HunYuanStreamResponseMapper(request.model());
+				Flux<ChatResponse> chatResponse = completionChunks.map(chunk -> {
 					try {
-						String id = chatCompletion2.id();
-
-						List<Generation> generations = chatCompletion2.choices().stream().map(choice -> {
-							if (choice.message().role() != null) {
-								roleMap.putIfAbsent(id, choice.message().role().name());
-							}
-
-				// @formatter:off
-								Map<String, Object> metadata = Map.of(
-										"id", chatCompletion2.id(),
-										"role", roleMap.getOrDefault(id, ""),
-										"finishReason", choice.finishReason() != null ? choice.finishReason() : ""
-								);
-								// @formatter:on
-							return buildGeneration(choice, metadata);
-						}).toList();
-
-						return new ChatResponse(generations, from(request, chatCompletion2));
+						return mapper.map(chunk);
 					}
 					catch (Exception e) {
 						logger.error("Error processing chat completion", e);
 						return new ChatResponse(List.of());
 					}
-
-				}));
-
-			Flux<ChatResponse> flux = chatResponse.flatMap(response -> {
-				if (this.toolExecutionEligibilityPredicate.isToolExecutionRequired(prompt.getOptions(), response)) {
-					return Flux.defer(() -> {
-						var toolExecutionResult = this.toolCallingManager.executeToolCalls(prompt, response);
-						if (toolExecutionResult.returnDirect()) {
-							// Return tool execution result directly to the client.
-							return Flux.just(ChatResponse.builder()
-								.from(response)
-								.generations(ToolExecutionResult.buildGenerations(toolExecutionResult))
-								.build());
+				});
+
+				Flux<ChatResponse> flux = chatResponse.flatMap(response -> {
+					if (this.toolExecutionEligibilityPredicate.isToolExecutionRequired(prompt.getOptions(), response)) {
+						loop.roundCompleted(response);
+						String stopReason = loop.exhausted();
+						if (stopReason != null) {
+							logger.warn("Tool calling loop stopped by its {} budget", stopReason);
+							return Flux.just(loop.stop(response, stopReason));
 						}
-						else {
-							// Send the tool execution result back to the model.
-							return this.internalStream(
-									new Prompt(toolExecutionResult.conversationHistory(), prompt.getOptions()),
-									response);
-						}
-					}).subscribeOn(Schedulers.boundedElastic());
-				}
-				else {
-					return Flux.just(response);
-				}
-			})
-				.doOnError(observation::error)
-				.doFinally(signalType -> observation.stop())
-				.contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, observation));
+						// Tools are user code that may block, keep them off the event
+						// loop. A cancelled stream interrupts the tools still running,
+						// and only the tool execution is moved, the next round is
+						// subscribed from its result.
+						return Mono.fromCallable(() -> this.toolCallingManager.executeToolCalls(prompt, response))
+							.subscribeOn(Schedulers.boundedElastic())
+							.flatMapMany(toolExecutionResult -> {
+								if (toolExecutionResult.returnDirect()) {
+									// Return the tool results directly to the client.
+									return Flux.just(loop.aggregateCompleted(ChatResponse.builder()
+										.from(response)
+										.generations(ToolExecutionResult.buildGenerations(toolExecutionResult))
+										.build()));
+								}
+								// Send the tool execution result back to the model.
+								loop.nextRound();
+								return streamRound(
+										new Prompt(toolExecutionResult.conversationHistory(), prompt.getOptions()),
+										loop);
+							});
+					}
+					else {
+						return Flux.just(loop.aggregate(response));
+					}
+				}).doOnError(observation::error).doFinally(signalType -> {
+					// A cancellation is not ordered with the chunks, whose stats are then
+					// left out.
+					if (signalType != SignalType.CANCEL) {
+						stats.complete();
+						observation.highCardinalityKeyValues(stats.highCardinalityKeyValues());
+					}
+					observation.stop();
+				}).contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, observation));
 
-			return new MessageAggregator().aggregate(flux, observationContext::setResponse);
-		});
+				return new MessageAggregator().aggregate(flux, observationContext::setResponse);
+			}));
+	}
+
+	private static Flux<ChatCompletionChunk> coalesce(Flux<ChatCompletionChunk> chunks, ChatOptions options) {
+		if (options instanceof HunYuanChatOptions hunYuanChatOptions
+				&& hunYuanChatOptions.getStreamCoalesceWindow() != null
+				&& hunYuanChatOptions.getStreamCoalesceWindow().compareTo(Duration.ZERO) > 0) {
+			Integer maxChars = hunYuanChatOptions.getStreamCoalesceMaxChars();
+			return HunYuanStreamCoalescer.coalesce(chunks, hunYuanChatOptions.getStreamCoalesceWindow(),
+					(maxChars != null) ? maxChars : Integer.MAX_VALUE, Schedulers.parallel());
+		}
+		return chunks;
 	}
 
 	private ChatResponseMetadata from(ChatCompletionRequest request, ChatCompletion result) {
@@ -402,115 +660,157 @@ public class HunYuanChatModel implements ChatModel {
 	}
 
 	/**
-	 * Convert the ChatCompletionChunk into a ChatCompletion. The Usage is set to null.
-	 * @param chunk the ChatCompletionChunk to convert
-	 * @return the ChatCompletion
+	 * Create the request of a round of the reactive variants. Preprocessing images blocks
+	 * until they are decoded, which must not happen on the event loop the round may be
+	 * subscribed on, so such a request is created on the bounded elastic scheduler.
 	 */
-	private ChatCompletion chunkToChatCompletion(ChatCompletionChunk chunk) {
-		List<ChatCompletion.Choice> choices = chunk.choices().stream().map(chunkChoice -> {
-			ChatCompletionMessage chatCompletionMessage = null;
-			ChatCompletionDelta delta = chunkChoice.delta();
-			if (delta == null) {
-				chatCompletionMessage = new ChatCompletionMessage("", Role.assistant);
-			}
-			else {
-				chatCompletionMessage = new ChatCompletionMessage(delta.content(), delta.role(), delta.toolCalls(),
-						delta.reasoningContent());
-			}
-			return new ChatCompletion.Choice(chunkChoice.index(), chatCompletionMessage, chunkChoice.finishReason(),
-					delta, chunkChoice.moderationLevel());
-		}).toList();
+	private Mono<ChatCompletionRequest> createRequestAsync(Prompt prompt, boolean stream,
+			HunYuanConversationEncoder encoder) {
+		Mono<ChatCompletionRequest> request = Mono.fromCallable(() -> createRequest(prompt, stream, encoder));
+		return hasImagesToPreprocess(prompt) ? request.subscribeOn(Schedulers.boundedElastic()) : request;
+	}
 
-		return new ChatCompletion(chunk.id(), chunk.errorMsg(), chunk.created(), chunk.note(), choices, chunk.usage(),
-				chunk.moderationLevel(), chunk.searchInfo(), chunk.replaces(), chunk.recommendedQuestions(),
-				chunk.processes(), chunk.requestId());
+	private static boolean hasImagesToPreprocess(Prompt prompt) {
+		return prompt.getOptions() instanceof HunYuanChatOptions options && options.getImagePreprocessing() != null
+				&& prompt.getInstructions()
+					.stream()
+					.anyMatch(message -> message instanceof UserMessage userMessage
+							&& !CollectionUtils.isEmpty(userMessage.getMedia()));
 	}
 
 	/**
 	 * Accessible for testing.
 	 */
 	public HunYuanApi.ChatCompletionRequest createRequest(Prompt prompt, boolean stream) {
+		return createRequest(prompt, stream, null);
+	}
+
+	/**
+	 * Create the request of a round of a tool calling loop. The messages of a request
+	 * with tools are serialized by the encoder of the loop, which serializes each of them
+	 * once for all the rounds.
+	 */
+	ChatCompletionRequest createRequest(Prompt prompt, boolean stream, HunYuanConversationEncoder encoder) {
+		HunYuanChatOptions requestOptions = (HunYuanChatOptions) prompt.getOptions();
+
+		// Add the tool definitions to the request's tools parameter, written to the
+		// request body as they were serialized when first resolved.
+		List<FunctionTool> tools = (requestOptions != null) ? this.toolDefinitionCache.tools(requestOptions) : null;
+
+		HunYuanImagePreprocessor preprocessor = (requestOptions != null)
+				? HunYuanImagePreprocessor.of(requestOptions.getImagePreprocessing()) : null;
+
+		List<ChatCompletionMessage> messages = (encoder != null && tools != null)
+				? encoder.encode(prompt.getInstructions(), message -> toChatCompletionMessages(message, preprocessor))
+				: toChatCompletionMessages(prompt.getInstructions(), preprocessor);
+
+		return HunYuanChatOptionsMerger.request(requestOptions, messages, stream, tools);
+	}
+
+	private List<ChatCompletionMessage> toChatCompletionMessages(List<Message> instructions,
+			HunYuanImagePreprocessor preprocessor) {
+		// System messages go first, in their order.
 		List<ChatCompletionMessage> systemMessages = new ArrayList<>();
-		List<ChatCompletionMessage> chatCompletionMessages = prompt.getInstructions().stream().filter(message -> {
+		List<ChatCompletionMessage> messages = new ArrayList<>(instructions.size() + 1);
+		for (Message message : instructions) {
 			if (message.getMessageType() == MessageType.SYSTEM) {
-				Object content = message.getText();
-				systemMessages.add(new ChatCompletionMessage(content, Role.system));
-				return false;
-			}
-			return true;
-		}).map(message -> {
-			if (message.getMessageType() == MessageType.USER) {
-				Object content = message.getText();
-				if (message instanceof UserMessage userMessage) {
-					if (!CollectionUtils.isEmpty(userMessage.getMedia())) {
-						List<ChatContent> contentList = new ArrayList<>(List.of(new ChatContent(message.getText())));
-
-						contentList.addAll(userMessage.getMedia()
-							.stream()
-							.map(media -> new ChatContent(
-									new ImageUrl(this.fromMediaData(media.getMimeType(), media.getData()))))
-							.toList());
-						return List.of(new ChatCompletionMessage(Role.user, contentList));
-					}
-				}
-				return List.of(new ChatCompletionMessage(content, Role.user));
+				systemMessages.addAll(toChatCompletionMessages(message, preprocessor));
 			}
-			else if (message.getMessageType() == MessageType.ASSISTANT) {
-				var assistantMessage = (AssistantMessage) message;
-				List<ToolCall> toolCalls = null;
-				if (!CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
-					toolCalls = assistantMessage.getToolCalls().stream().map(toolCall -> {
-						var function = new ChatCompletionFunction(toolCall.name(), toolCall.arguments());
-						return new ToolCall(toolCall.id(), toolCall.type(), null, function);
-					}).toList();
-				}
-				return List.of(new ChatCompletionMessage(assistantMessage.getText(),
-						ChatCompletionMessage.Role.assistant, null, null, toolCalls, null, null));
+			else {
+				messages.addAll(toChatCompletionMessages(message, preprocessor));
 			}
-			else if (message.getMessageType() == MessageType.TOOL) {
-				ToolResponseMessage toolMessage = (ToolResponseMessage) message;
-
-				toolMessage.getResponses()
-					.forEach(response -> Assert.isTrue(response.id() != null, "ToolResponseMessage must have an id"));
+		}
+		if (systemMessages.isEmpty()) {
+			return messages;
+		}
+		systemMessages.addAll(messages);
+		return systemMessages;
+	}
 
-				return toolMessage.getResponses()
-					.stream()
-					.map(tr -> new ChatCompletionMessage(tr.responseData(), ChatCompletionMessage.Role.tool, null,
-							tr.id(), null, null, null))
-					.toList();
+	private List<ChatCompletionMessage> toChatCompletionMessages(Message message,
+			HunYuanImagePreprocessor preprocessor) {
+		if (message.getMessageType() == MessageType.SYSTEM) {
+			return List.of(new ChatCompletionMessage(message.getText(), Role.system));
+		}
+		else if (message.getMessageType() == MessageType.USER) {
+			Object content = message.getText();
+			if (message instanceof UserMessage userMessage) {
+				if (!CollectionUtils.isEmpty(userMessage.getMedia())) {
+					List<ChatContent> contentList = new ArrayList<>(List.of(new ChatContent(message.getText())));
+
+					contentList.addAll(imageContents(userMessage.getMedia(), preprocessor));
+					return List.of(new ChatCompletionMessage(Role.user, contentList));
+				}
 			}
-			else {
-				throw new IllegalArgumentException("Unsupported message type: " + message.getMessageType());
+			return List.of(new ChatCompletionMessage(content, Role.user));
+		}
+		else if (message.getMessageType() == MessageType.ASSISTANT) {
+			var assistantMessage = (AssistantMessage) message;
+			List<ToolCall> toolCalls = null;
+			if (!CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
+				toolCalls = assistantMessage.getToolCalls().stream().map(toolCall -> {
+					var function = new ChatCompletionFunction(toolCall.name(), toolCall.arguments());
+					return new ToolCall(toolCall.id(), toolCall.type(), null, function);
+				}).toList();
 			}
-		}).flatMap(List::stream).collect(Collectors.toList());
-		systemMessages.stream().forEach(systemMessage -> {
-			chatCompletionMessages.add(0, systemMessage);
-		});
-		ChatCompletionRequest request = new ChatCompletionRequest(chatCompletionMessages, stream);
+			return List.of(new ChatCompletionMessage(assistantMessage.getText(), ChatCompletionMessage.Role.assistant,
+					null, null, toolCalls, null, null));
+		}
+		else if (message.getMessageType() == MessageType.TOOL) {
+			ToolResponseMessage toolMessage = (ToolResponseMessage) message;
 
-		HunYuanChatOptions requestOptions = (HunYuanChatOptions) prompt.getOptions();
-		request = ModelOptionsUtils.merge(requestOptions, request, ChatCompletionRequest.class);
+			toolMessage.getResponses()
+				.forEach(response -> Assert.isTrue(response.id() != null, "ToolResponseMessage must have an id"));
 
-		// Add the tool definitions to the request's tools parameter.
-		List<ToolDefinition> toolDefinitions = this.toolCallingManager.resolveToolDefinitions(requestOptions);
-		if (!CollectionUtils.isEmpty(toolDefinitions)) {
-			request = ModelOptionsUtils.merge(
-					HunYuanChatOptions.builder().tools(this.getFunctionTools(toolDefinitions)).build(), request,
-					ChatCompletionRequest.class);
+			return toolMessage.getResponses()
+				.stream()
+				.map(tr -> new ChatCompletionMessage(tr.responseData(), ChatCompletionMessage.Role.tool, null, tr.id(),
+						null, null, null))
+				.toList();
+		}
+		else {
+			throw new IllegalArgumentException("Unsupported message type: " + message.getMessageType());
 		}
+	}
 
-		return request;
+	private List<ChatContent> imageContents(List<Media> media, HunYuanImagePreprocessor preprocessor) {
+		if (preprocessor == null) {
+			return media.stream()
+				.map(image -> new ChatContent(fromMediaData(image.getMimeType(), image.getData(), null)))
+				.toList();
+		}
+		// Preprocessed concurrently, on the executor bounding the images decoded at once,
+		// while this thread waits, see createRequestAsync.
+		List<CompletableFuture<ChatContent>> contents = media.stream()
+			.map(image -> CompletableFuture.supplyAsync(
+					() -> new ChatContent(fromMediaData(image.getMimeType(), image.getData(), preprocessor)),
+					this.imageExecutor))
+			.toList();
+		try {
+			return contents.stream().map(CompletableFuture::join).toList();
+		}
+		catch (CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw ex;
+		}
 	}
 
-	private String fromMediaData(MimeType mimeType, Object mediaContentData) {
+	private ImageUrl fromMediaData(MimeType mimeType, Object mediaContentData, HunYuanImagePreprocessor preprocessor) {
 		if (mediaContentData instanceof byte[] bytes) {
-			// Assume the bytes are an image. So, convert the bytes to a base64 encoded
-			// following the prefix pattern.
-			return String.format("data:%s;base64,%s", mimeType.toString(), Base64.getEncoder().encodeToString(bytes));
+			// Assume the bytes are an image. So, send them as a base64 data URL, which
+			// is preprocessed and encoded once per content and written straight into the
+			// request body.
+			HunYuanMediaData media = this.mediaCache.get(mimeType.toString(), bytes, preprocessor);
+			if (this.imageBytesSaved != null && media.dataLength() < bytes.length) {
+				this.imageBytesSaved.increment(bytes.length - media.dataLength());
+			}
+			return new ImageUrl(media);
 		}
 		else if (mediaContentData instanceof String text) {
 			// Assume the text is a URLs or a base64 encoded image prefixed by the user.
-			return text;
+			return new ImageUrl(text);
 		}
 		else {
 			throw new IllegalArgumentException(
@@ -530,18 +830,138 @@ public class HunYuanChatModel implements ChatModel {
 			.build();
 	}
 
-	private List<HunYuanApi.FunctionTool> getFunctionTools(List<ToolDefinition> toolDefinitions) {
-		return toolDefinitions.stream().map(toolDefinition -> {
-			var function = new HunYuanApi.FunctionTool.Function(toolDefinition.description(), toolDefinition.name(),
-					toolDefinition.inputSchema());
-			return new HunYuanApi.FunctionTool(function);
-		}).toList();
-	}
-
 	public void setObservationConvention(ChatModelObservationConvention observationConvention) {
 		this.observationConvention = observationConvention;
 	}
 
+	/**
+	 * Record the latency of the streaming calls, see {@link HunYuanStreamMetrics}.
+	 * @param meterRegistry the registry of the meters.
+	 */
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		Assert.notNull(meterRegistry, "meterRegistry must not be null");
+		this.meterRegistry = meterRegistry;
+		this.streamMetrics = new HunYuanStreamMetrics(meterRegistry);
+		this.imageBytesSaved = imageBytesSaved(meterRegistry);
+		if (this.responseCache != null) {
+			this.responseCache.setMeterRegistry(meterRegistry);
+		}
+		if (this.semanticCache != null) {
+			this.semanticCache.setMeterRegistry(meterRegistry);
+		}
+	}
+
+	private static Counter imageBytesSaved(MeterRegistry meterRegistry) {
+		return Counter.builder(HunYuanImagePreprocessingOptions.BYTES_SAVED_METRIC)
+			.description("Bytes of the images not sent thanks to their preprocessing, before base64 encoding")
+			.baseUnit("bytes")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Set the executor of the image preprocessing. The default one runs up to 4 images at
+	 * once, fewer on machines with fewer processors.
+	 * @param imageExecutor the executor.
+	 * @see HunYuanChatOptions#getImagePreprocessing()
+	 */
+	public void setImageExecutor(Executor imageExecutor) {
+		Assert.notNull(imageExecutor, "imageExecutor must not be null");
+		this.imageExecutor = imageExecutor;
+	}
+
+	public void setAsyncRetry(Retry asyncRetry) {
+		Assert.notNull(asyncRetry, "asyncRetry must not be null");
+		this.asyncRetry = asyncRetry;
+	}
+
+	/**
+	 * Create the retry spec of the non-blocking calls: exponential backoff on
+	 * {@link TransientAiException}s and connection failures, rethrowing the last error
+	 * once the attempts are exhausted, as the {@link RetryTemplate} does.
+	 * @param maxAttempts the maximum number of attempts, including the first one.
+	 * @param initialInterval the first backoff.
+	 * @param maxInterval the maximum backoff.
+	 * @return the retry spec.
+	 */
+	public static Retry asyncRetry(int maxAttempts, Duration initialInterval, Duration maxInterval) {
+		return Retry.backoff(Math.max(0, maxAttempts - 1), initialInterval)
+			.maxBackoff(maxInterval)
+			.filter(HunYuanChatModel::isTransient)
+			.onRetryExhaustedThrow((spec, signal) -> signal.failure());
+	}
+
+	public void setStreamRetry(RetryBackoffSpec streamRetry) {
+		Assert.notNull(streamRetry, "streamRetry must not be null");
+		this.streamRetry = streamRetry;
+	}
+
+	/**
+	 * Set the maximum number of bytes of the media cached by the chat model, encoded to
+	 * base64 once for all the requests that send it, such as the images of a multi-turn
+	 * conversation. The media and its encoding both count. Media that does not fit is
+	 * encoded straight into each request body.
+	 * @param maxBytes the maximum number of bytes, 0 to cache no media.
+	 */
+	public void setMediaCacheSize(long maxBytes) {
+		Assert.isTrue(maxBytes >= 0, "mediaCacheSize must not be negative");
+		this.mediaCache = new HunYuanMediaCache(maxBytes);
+	}
+
+	/**
+	 * Cache the completions of the requests with a temperature of 0 or a seed in the
+	 * given store, keyed by the request exactly as it is sent. A request sent again is
+	 * answered from the store, and a streamed one replayed chunk by chunk, until the
+	 * response expires or is evicted. Lookups are counted by the
+	 * {@value HunYuanResponseStore#METRIC} counter when a meter registry is set.
+	 * @param responseStore the store of the responses, null to cache none.
+	 * @see HunYuanResponseStore#inHeap(long, Duration)
+	 * @see HunYuanResponseStore#offHeap(long, Duration)
+	 */
+	public void setResponseStore(HunYuanResponseStore responseStore) {
+		this.responseCache = (responseStore != null) ? new HunYuanResponseCache(responseStore) : null;
+		if (this.responseCache != null && this.meterRegistry != null) {
+			this.responseCache.setMeterRegistry(this.meterRegistry);
+		}
+	}
+
+	/**
+	 * Answer the questions similar to ones answered before from the given cache, without
+	 * calling the model. Only the prompts of system and user messages without tools or
+	 * media are looked up, their last user message embedded by the embedding model of the
+	 * cache. Lookups are counted by the {@value HunYuanSemanticCache#METRIC} counter when
+	 * a meter registry is set.
+	 * @param semanticCache the cache of the answers, null to cache none.
+	 */
+	public void setSemanticCache(HunYuanSemanticCache semanticCache) {
+		this.semanticCache = semanticCache;
+		if (semanticCache != null && this.meterRegistry != null) {
+			semanticCache.setMeterRegistry(this.meterRegistry);
+		}
+	}
+
+	/**
+	 * Create the retry spec of the streaming calls: exponential backoff with a random
+	 * jitter of up to half the delay, so that the clients throttled together do not retry
+	 * together. It retries the {@link TransientAiException}s, which include the error
+	 * chunks of transient {@link ErrorMsg} codes, and connection failures. The chat model
+	 * only applies it until the first chunk of a response is received.
+	 * @param maxAttempts the maximum number of attempts, including the first one.
+	 * @param initialInterval the first backoff.
+	 * @param maxInterval the maximum backoff.
+	 * @return the retry spec.
+	 */
+	public static RetryBackoffSpec streamRetry(int maxAttempts, Duration initialInterval, Duration maxInterval) {
+		return Retry.backoff(Math.max(0, maxAttempts - 1), initialInterval)
+			.maxBackoff(maxInterval)
+			.jitter(0.5)
+			.filter(HunYuanChatModel::isTransient)
+			.onRetryExhaustedThrow((spec, signal) -> signal.failure());
+	}
+
+	private static boolean isTransient(Throwable e) {
+		return e instanceof TransientAiException || e instanceof WebClientRequestException;
+	}
+
 	public static Builder builder() {
 		return new Builder();
 	}
@@ -568,6 +988,15 @@ public class HunYuanChatModel implements ChatModel {
 			this.toolExecutionEligibilityPredicate = model.toolExecutionEligibilityPredicate;
 			this.retryTemplate = model.retryTemplate;
 			this.observationRegistry = model.observationRegistry;
+			this.asyncRetry = model.asyncRetry;
+			this.streamRetry = model.streamRetry;
+			this.streamMetrics = model.streamMetrics;
+			this.mediaCacheSize = model.mediaCache.maxBytes();
+			this.imageExecutor = model.imageExecutor;
+			this.imageBytesSaved = model.imageBytesSaved;
+			this.meterRegistry = model.meterRegistry;
+			this.responseStore = (model.responseCache != null) ? model.responseCache.store() : null;
+			this.semanticCache = model.semanticCache;
 		}
 
 		private HunYuanApi hunYuanApi;
@@ -585,6 +1014,24 @@ public class HunYuanChatModel implements ChatModel {
 
 		private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
 
+		private Retry asyncRetry = DEFAULT_ASYNC_RETRY;
+
+		private RetryBackoffSpec streamRetry = DEFAULT_STREAM_RETRY;
+
+		private HunYuanStreamMetrics streamMetrics;
+
+		private long mediaCacheSize = HunYuanMediaCache.DEFAULT_MAX_BYTES;
+
+		private Executor imageExecutor;
+
+		private Counter imageBytesSaved;
+
+		private MeterRegistry meterRegistry;
+
+		private HunYuanResponseStore responseStore;
+
+		private HunYuanSemanticCache semanticCache;
+
 		private Builder() {
 		}
 
@@ -619,13 +1066,59 @@ public class HunYuanChatModel implements ChatModel {
 			return this;
 		}
 
+		public Builder asyncRetry(Retry asyncRetry) {
+			this.asyncRetry = asyncRetry;
+			return this;
+		}
+
+		public Builder streamRetry(RetryBackoffSpec streamRetry) {
+			this.streamRetry = streamRetry;
+			return this;
+		}
+
+		public Builder meterRegistry(MeterRegistry meterRegistry) {
+			this.streamMetrics = (meterRegistry != null) ? new HunYuanStreamMetrics(meterRegistry) : null;
+			this.imageBytesSaved = (meterRegistry != null) ? imageBytesSaved(meterRegistry) : null;
+			this.meterRegistry = meterRegistry;
+			return this;
+		}
+
+		public Builder mediaCacheSize(long mediaCacheSize) {
+			this.mediaCacheSize = mediaCacheSize;
+			return this;
+		}
+
+		public Builder imageExecutor(Executor imageExecutor) {
+			this.imageExecutor = imageExecutor;
+			return this;
+		}
+
+		public Builder responseStore(HunYuanResponseStore responseStore) {
+			this.responseStore = responseStore;
+			return this;
+		}
+
+		public Builder semanticCache(HunYuanSemanticCache semanticCache) {
+			this.semanticCache = semanticCache;
+			return this;
+		}
+
 		public HunYuanChatModel build() {
-			if (this.toolCallingManager != null) {
-				return new HunYuanChatModel(this.hunYuanApi, this.defaultOptions, this.toolCallingManager,
-						this.retryTemplate, this.observationRegistry, this.toolExecutionEligibilityPredicate);
-			}
-			return new HunYuanChatModel(this.hunYuanApi, this.defaultOptions, DEFAULT_TOOL_CALLING_MANAGER,
+			HunYuanChatModel chatModel = new HunYuanChatModel(this.hunYuanApi, this.defaultOptions,
+					(this.toolCallingManager != null) ? this.toolCallingManager : DEFAULT_TOOL_CALLING_MANAGER,
 					this.retryTemplate, this.observationRegistry, this.toolExecutionEligibilityPredicate);
+			chatModel.setAsyncRetry(this.asyncRetry);
+			chatModel.setStreamRetry(this.streamRetry);
+			chatModel.streamMetrics = this.streamMetrics;
+			chatModel.setMediaCacheSize(this.mediaCacheSize);
+			if (this.imageExecutor != null) {
+				chatModel.setImageExecutor(this.imageExecutor);
+			}
+			chatModel.imageBytesSaved = this.imageBytesSaved;
+			chatModel.meterRegistry = this.meterRegistry;
+			chatModel.setResponseStore(this.responseStore);
+			chatModel.setSemanticCache(this.semanticCache);
+			return chatModel;
 		}
 
 	}
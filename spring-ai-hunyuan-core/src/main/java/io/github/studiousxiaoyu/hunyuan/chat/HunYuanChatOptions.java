@@ -21,12 +21,14 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanStreamTimeoutOptions;
 import org.springframework.ai.model.ModelOptionsUtils;
 import org.springframework.ai.model.tool.ToolCallingChatOptions;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 
+import java.time.Duration;
 import java.util.*;
 
 /**
@@ -67,7 +69,7 @@ public class HunYuanChatOptions implements ToolCallingChatOptions {
 
 	private @JsonProperty("EnableDeepSearch") Boolean enableDeepSearch;
 
-	private @JsonProperty("forceSearchEnhancement") Boolean forceSearchEnhancement;
+	private @JsonProperty("ForceSearchEnhancement") Boolean forceSearchEnhancement;
 
 	private @JsonProperty("EnableRecommendedQuestions") Boolean enableRecommendedQuestions;
 
@@ -107,10 +109,85 @@ public class HunYuanChatOptions implements ToolCallingChatOptions {
 	@JsonIgnore
 	private Map<String, Object> toolContext = new HashMap<>();
 
+	/**
+	 * Longest time the text deltas of a stream are buffered before they are emitted
+	 * together. Coalescing is disabled when not set.
+	 */
+	@JsonIgnore
+	private Duration streamCoalesceWindow;
+
+	/**
+	 * Number of buffered characters that makes a coalescing stream emit before its window
+	 * elapses. Unlimited when not set.
+	 */
+	@JsonIgnore
+	private Integer streamCoalesceMaxChars;
+
+	/**
+	 * Deadlines of a stream, a stream that misses one is aborted.
+	 */
+	@JsonIgnore
+	private HunYuanStreamTimeoutOptions streamTimeouts;
+
+	/**
+	 * Budgets of the tool calling loop, unlimited when not set.
+	 */
+	@JsonIgnore
+	private HunYuanToolLoopOptions toolLoop;
+
+	/**
+	 * Preprocessing of the images sent as bytes, which are sent as they are when not set.
+	 */
+	@JsonIgnore
+	private HunYuanImagePreprocessingOptions imagePreprocessing;
+
 	public static Builder builder() {
 		return new Builder();
 	}
 
+	/**
+	 * Create a copy of the given options. The collections are copied, the tools, tool
+	 * callbacks and nested options are shared.
+	 * @param fromOptions the options to copy.
+	 * @return the copy.
+	 */
+	public static HunYuanChatOptions fromOptions(HunYuanChatOptions fromOptions) {
+		HunYuanChatOptions options = new HunYuanChatOptions();
+		options.model = fromOptions.model;
+		options.temperature = fromOptions.temperature;
+		options.topP = fromOptions.topP;
+		options.seed = fromOptions.seed;
+		options.enableEnhancement = fromOptions.enableEnhancement;
+		options.streamModeration = fromOptions.streamModeration;
+		options.stop = (fromOptions.stop != null) ? new ArrayList<>(fromOptions.stop) : null;
+		options.tools = (fromOptions.tools != null) ? new ArrayList<>(fromOptions.tools) : null;
+		options.toolChoice = fromOptions.toolChoice;
+		options.customTool = fromOptions.customTool;
+		options.searchInfo = fromOptions.searchInfo;
+		options.citation = fromOptions.citation;
+		options.enableSpeedSearch = fromOptions.enableSpeedSearch;
+		options.enableMultimedia = fromOptions.enableMultimedia;
+		options.enableDeepSearch = fromOptions.enableDeepSearch;
+		options.forceSearchEnhancement = fromOptions.forceSearchEnhancement;
+		options.enableRecommendedQuestions = fromOptions.enableRecommendedQuestions;
+		options.enableDeepRead = fromOptions.enableDeepRead;
+		options.enableThinking = fromOptions.enableThinking;
+		options.toolCallbacks = (fromOptions.toolCallbacks != null) ? new ArrayList<>(fromOptions.toolCallbacks)
+				: new ArrayList<>();
+		options.toolNames = (fromOptions.toolNames != null) ? new HashSet<>(fromOptions.toolNames) : new HashSet<>();
+		options.internalToolExecutionEnabled = fromOptions.internalToolExecutionEnabled;
+		options.httpHeaders = (fromOptions.httpHeaders != null) ? new HashMap<>(fromOptions.httpHeaders)
+				: new HashMap<>();
+		options.toolContext = (fromOptions.toolContext != null) ? new HashMap<>(fromOptions.toolContext)
+				: new HashMap<>();
+		options.streamCoalesceWindow = fromOptions.streamCoalesceWindow;
+		options.streamCoalesceMaxChars = fromOptions.streamCoalesceMaxChars;
+		options.streamTimeouts = fromOptions.streamTimeouts;
+		options.toolLoop = fromOptions.toolLoop;
+		options.imagePreprocessing = fromOptions.imagePreprocessing;
+		return options;
+	}
+
 	@Override
 	public String getModel() {
 		return this.model;
@@ -177,8 +254,9 @@ public class HunYuanChatOptions implements ToolCallingChatOptions {
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public <T extends ChatOptions> T copy() {
-		return null;
+		return (T) fromOptions(this);
 	}
 
 	public void setTopP(Double topP) {
@@ -362,6 +440,56 @@ public class HunYuanChatOptions implements ToolCallingChatOptions {
 		this.httpHeaders = httpHeaders;
 	}
 
+	@JsonIgnore
+	public Duration getStreamCoalesceWindow() {
+		return this.streamCoalesceWindow;
+	}
+
+	@JsonIgnore
+	public void setStreamCoalesceWindow(Duration streamCoalesceWindow) {
+		this.streamCoalesceWindow = streamCoalesceWindow;
+	}
+
+	@JsonIgnore
+	public Integer getStreamCoalesceMaxChars() {
+		return this.streamCoalesceMaxChars;
+	}
+
+	@JsonIgnore
+	public void setStreamCoalesceMaxChars(Integer streamCoalesceMaxChars) {
+		this.streamCoalesceMaxChars = streamCoalesceMaxChars;
+	}
+
+	@JsonIgnore
+	public HunYuanStreamTimeoutOptions getStreamTimeouts() {
+		return this.streamTimeouts;
+	}
+
+	@JsonIgnore
+	public void setStreamTimeouts(HunYuanStreamTimeoutOptions streamTimeouts) {
+		this.streamTimeouts = streamTimeouts;
+	}
+
+	@JsonIgnore
+	public HunYuanToolLoopOptions getToolLoop() {
+		return this.toolLoop;
+	}
+
+	@JsonIgnore
+	public void setToolLoop(HunYuanToolLoopOptions toolLoop) {
+		this.toolLoop = toolLoop;
+	}
+
+	@JsonIgnore
+	public HunYuanImagePreprocessingOptions getImagePreprocessing() {
+		return this.imagePreprocessing;
+	}
+
+	@JsonIgnore
+	public void setImagePreprocessing(HunYuanImagePreprocessingOptions imagePreprocessing) {
+		this.imagePreprocessing = imagePreprocessing;
+	}
+
 	@Override
 	public final boolean equals(Object o) {
 		if (!(o instanceof HunYuanChatOptions that))
@@ -382,7 +510,11 @@ public class HunYuanChatOptions implements ToolCallingChatOptions {
 				&& Objects.equals(internalToolExecutionEnabled, that.internalToolExecutionEnabled)
 				&& Objects.equals(enableThinking, that.enableThinking)
 				&& Objects.equals(enableDeepRead, that.enableDeepRead) && Objects.equals(httpHeaders, that.httpHeaders)
-				&& Objects.equals(toolContext, that.toolContext);
+				&& Objects.equals(toolContext, that.toolContext)
+				&& Objects.equals(streamCoalesceWindow, that.streamCoalesceWindow)
+				&& Objects.equals(streamCoalesceMaxChars, that.streamCoalesceMaxChars)
+				&& Objects.equals(streamTimeouts, that.streamTimeouts) && Objects.equals(toolLoop, that.toolLoop)
+				&& Objects.equals(imagePreprocessing, that.imagePreprocessing);
 	}
 
 	@Override
@@ -411,6 +543,11 @@ public class HunYuanChatOptions implements ToolCallingChatOptions {
 		result = 31 * result + Objects.hashCode(toolContext);
 		result = 31 * result + Objects.hashCode(enableThinking);
 		result = 31 * result + Objects.hashCode(enableDeepRead);
+		result = 31 * result + Objects.hashCode(streamCoalesceWindow);
+		result = 31 * result + Objects.hashCode(streamCoalesceMaxChars);
+		result = 31 * result + Objects.hashCode(streamTimeouts);
+		result = 31 * result + Objects.hashCode(toolLoop);
+		result = 31 * result + Objects.hashCode(imagePreprocessing);
 		return result;
 	}
 
@@ -575,6 +712,31 @@ public class HunYuanChatOptions implements ToolCallingChatOptions {
 			return this;
 		}
 
+		public Builder streamCoalesceWindow(Duration streamCoalesceWindow) {
+			this.options.streamCoalesceWindow = streamCoalesceWindow;
+			return this;
+		}
+
+		public Builder streamCoalesceMaxChars(Integer streamCoalesceMaxChars) {
+			this.options.streamCoalesceMaxChars = streamCoalesceMaxChars;
+			return this;
+		}
+
+		public Builder streamTimeouts(HunYuanStreamTimeoutOptions streamTimeouts) {
+			this.options.streamTimeouts = streamTimeouts;
+			return this;
+		}
+
+		public Builder toolLoop(HunYuanToolLoopOptions toolLoop) {
+			this.options.toolLoop = toolLoop;
+			return this;
+		}
+
+		public Builder imagePreprocessing(HunYuanImagePreprocessingOptions imagePreprocessing) {
+			this.options.imagePreprocessing = imagePreprocessing;
+			return this;
+		}
+
 		public HunYuanChatOptions build() {
 			return this.options;
 		}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.FunctionTool;
+
+/**
+ * Field by field merging of the {@link HunYuanChatOptions} of a prompt with the default
+ * options, and of the merged options into a {@link ChatCompletionRequest}. It replaces
+ * the conversion of the options to maps and back that {@code ModelOptionsUtils} does on
+ * every request; a field added to the options has to be added here as well.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanChatOptionsMerger {
+
+	private static final Logger logger = LoggerFactory.getLogger(HunYuanChatOptionsMerger.class);
+
+	private HunYuanChatOptionsMerger() {
+	}
+
+	/**
+	 * Return the options of a prompt as {@link HunYuanChatOptions}. Options of another
+	 * type contribute the {@link ChatOptions} and {@link ToolCallingChatOptions} they
+	 * share with HunYuan.
+	 * @param options the options of the prompt.
+	 * @return the HunYuan options.
+	 */
+	static HunYuanChatOptions runtimeOptions(ChatOptions options) {
+		if (options.getTopK() != null) {
+			logger.warn("The topK option is not supported by HunYuan chat models. Ignoring.");
+		}
+		if (options instanceof HunYuanChatOptions hunYuanChatOptions) {
+			return hunYuanChatOptions;
+		}
+		HunYuanChatOptions runtimeOptions = new HunYuanChatOptions();
+		runtimeOptions.setModel(options.getModel());
+		runtimeOptions.setTemperature(options.getTemperature());
+		runtimeOptions.setTopP(options.getTopP());
+		runtimeOptions.setStop(options.getStopSequences());
+		if (options instanceof ToolCallingChatOptions toolCallingChatOptions) {
+			if (toolCallingChatOptions.getToolCallbacks() != null) {
+				runtimeOptions.setToolCallbacks(toolCallingChatOptions.getToolCallbacks());
+			}
+			if (toolCallingChatOptions.getToolNames() != null) {
+				runtimeOptions.setToolNames(toolCallingChatOptions.getToolNames());
+			}
+			runtimeOptions.setInternalToolExecutionEnabled(toolCallingChatOptions.getInternalToolExecutionEnabled());
+			if (toolCallingChatOptions.getToolContext() != null) {
+				runtimeOptions.setToolContext(toolCallingChatOptions.getToolContext());
+			}
+		}
+		return runtimeOptions;
+	}
+
+	/**
+	 * Merge the options of a prompt with the default options. Each option of the prompt
+	 * overrides the default one when it is set, the tools, tool names, tool context and
+	 * HTTP headers of both are combined.
+	 * @param runtime the options of the prompt.
+	 * @param defaults the default options.
+	 * @return the merged options.
+	 */
+	static HunYuanChatOptions merge(HunYuanChatOptions runtime, HunYuanChatOptions defaults) {
+		HunYuanChatOptions merged = new HunYuanChatOptions();
+		merged.setModel(ModelOptionsUtils.mergeOption(runtime.getModel(), defaults.getModel()));
+		merged.setTemperature(ModelOptionsUtils.mergeOption(runtime.getTemperature(), defaults.getTemperature()));
+		merged.setTopP(ModelOptionsUtils.mergeOption(runtime.getTopP(), defaults.getTopP()));
+		merged.setSeed(ModelOptionsUtils.mergeOption(runtime.getSeed(), defaults.getSeed()));
+		merged.setEnableEnhancement(
+				ModelOptionsUtils.mergeOption(runtime.getEnableEnhancement(), defaults.getEnableEnhancement()));
+		merged.setStreamModeration(
+				ModelOptionsUtils.mergeOption(runtime.getStreamModeration(), defaults.getStreamModeration()));
+		merged.setStop(ModelOptionsUtils.mergeOption(runtime.getStop(), defaults.getStop()));
+		merged.setTools(ModelOptionsUtils.mergeOption(runtime.getTools(), defaults.getTools()));
+		merged.setToolChoice(ModelOptionsUtils.mergeOption(runtime.getToolChoice(), defaults.getToolChoice()));
+		merged.setCustomTool(ModelOptionsUtils.mergeOption(runtime.getCustomTool(), defaults.getCustomTool()));
+		merged.setSearchInfo(ModelOptionsUtils.mergeOption(runtime.getSearchInfo(), defaults.getSearchInfo()));
+		merged.setCitation(ModelOptionsUtils.mergeOption(runtime.getCitation(), defaults.getCitation()));
+		merged.setEnableSpeedSearch(
+				ModelOptionsUtils.mergeOption(runtime.getEnableSpeedSearch(), defaults.getEnableSpeedSearch()));
+		merged.setEnableMultimedia(
+				ModelOptionsUtils.mergeOption(runtime.getEnableMultimedia(), defaults.getEnableMultimedia()));
+		merged.setEnableDeepSearch(
+				ModelOptionsUtils.mergeOption(runtime.getEnableDeepSearch(), defaults.getEnableDeepSearch()));
+		merged.setForceSearchEnhancement(ModelOptionsUtils.mergeOption(runtime.getForceSearchEnhancement(),
+				defaults.getForceSearchEnhancement()));
+		merged.setEnableRecommendedQuestions(ModelOptionsUtils.mergeOption(runtime.getEnableRecommendedQuestions(),
+				defaults.getEnableRecommendedQuestions()));
+		merged.setEnableDeepRead(
+				ModelOptionsUtils.mergeOption(runtime.getEnableDeepRead(), defaults.getEnableDeepRead()));
+		merged.setEnableThinking(
+				ModelOptionsUtils.mergeOption(runtime.getEnableThinking(), defaults.getEnableThinking()));
+
+		merged.setHttpHeaders(mergeHttpHeaders(runtime.getHttpHeaders(), defaults.getHttpHeaders()));
+		merged.setInternalToolExecutionEnabled(ModelOptionsUtils.mergeOption(runtime.getInternalToolExecutionEnabled(),
+				defaults.getInternalToolExecutionEnabled()));
+		merged.setToolNames(ToolCallingChatOptions.mergeToolNames(runtime.getToolNames(), defaults.getToolNames()));
+		merged.setToolCallbacks(
+				ToolCallingChatOptions.mergeToolCallbacks(runtime.getToolCallbacks(), defaults.getToolCallbacks()));
+		merged.setToolContext(
+				ToolCallingChatOptions.mergeToolContext(runtime.getToolContext(), defaults.getToolContext()));
+		merged.setStreamCoalesceWindow(
+				ModelOptionsUtils.mergeOption(runtime.getStreamCoalesceWindow(), defaults.getStreamCoalesceWindow()));
+		merged.setStreamCoalesceMaxChars(ModelOptionsUtils.mergeOption(runtime.getStreamCoalesceMaxChars(),
+				defaults.getStreamCoalesceMaxChars()));
+		merged.setStreamTimeouts(
+				ModelOptionsUtils.mergeOption(runtime.getStreamTimeouts(), defaults.getStreamTimeouts()));
+		merged.setToolLoop(ModelOptionsUtils.mergeOption(runtime.getToolLoop(), defaults.getToolLoop()));
+		merged.setImagePreprocessing(
+				ModelOptionsUtils.mergeOption(runtime.getImagePreprocessing(), defaults.getImagePreprocessing()));
+		return merged;
+	}
+
+	/**
+	 * Create the request of a chat completion.
+	 * @param options the merged options, or null.
+	 * @param messages the messages of the conversation.
+	 * @param stream whether the completion is streamed.
+	 * @param tools the tools resolved from the tool callbacks and names, which replace
+	 * the tools of the options when not null.
+	 * @return the request.
+	 */
+	static ChatCompletionRequest request(HunYuanChatOptions options, List<ChatCompletionMessage> messages,
+			boolean stream, List<FunctionTool> tools) {
+		if (options == null) {
+			return new ChatCompletionRequest(null, messages, null, null, null, null, stream, null, tools, null, null,
+					null, null, null, null, null, null, null, null, null, null);
+		}
+		return new ChatCompletionRequest(options.getModel(), messages, options.getTemperature(),
+				options.getEnableEnhancement(), options.getTopP(), options.getStop(), stream,
+				options.getStreamModeration(), (tools != null) ? tools : options.getTools(), options.getToolChoice(),
+				options.getCustomTool(), options.getSearchInfo(), options.getCitation(), options.getEnableSpeedSearch(),
+				options.getEnableMultimedia(), options.getEnableDeepSearch(), options.getSeed(),
+				options.getForceSearchEnhancement(), options.getEnableRecommendedQuestions(),
+				options.getEnableDeepRead(), options.getEnableThinking());
+	}
+
+	private static Map<String, String> mergeHttpHeaders(Map<String, String> runtimeHttpHeaders,
+			Map<String, String> defaultHttpHeaders) {
+		if (runtimeHttpHeaders == null || runtimeHttpHeaders.isEmpty()) {
+			return defaultHttpHeaders;
+		}
+		var mergedHttpHeaders = (defaultHttpHeaders != null) ? new HashMap<>(defaultHttpHeaders)
+				: new HashMap<String, String>();
+		mergedHttpHeaders.putAll(runtimeHttpHeaders);
+		return mergedHttpHeaders;
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanSerializedMessages;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanSerializedMessages.SerializedMessage;
+
+/**
+ * Messages of the rounds of one tool calling loop. Each round sends the conversation of
+ * the previous one, the same message instances, followed by the tool calls and their
+ * results: the messages are converted and serialized the first time they are sent and
+ * only the new ones in the following rounds.
+ * <p>
+ * Messages are assumed not to change once sent. An encoder belongs to one loop, whose
+ * rounds are sequential.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanConversationEncoder {
+
+	private final Map<Message, List<SerializedMessage>> encoded = new IdentityHashMap<>();
+
+	/**
+	 * Return the messages of the request of a round, the system messages first.
+	 * @param instructions the messages of the prompt of the round.
+	 * @param converter the conversion of a message to the messages of the request.
+	 * @return the serialized messages.
+	 */
+	HunYuanSerializedMessages encode(List<Message> instructions,
+			Function<Message, List<ChatCompletionMessage>> converter) {
+		List<SerializedMessage> systemMessages = new ArrayList<>();
+		List<SerializedMessage> messages = new ArrayList<>(instructions.size() + 1);
+		for (Message message : instructions) {
+			List<SerializedMessage> serialized = this.encoded.computeIfAbsent(message,
+					m -> converter.apply(m).stream().map(HunYuanSerializedMessages::serialize).toList());
+			if (message.getMessageType() == MessageType.SYSTEM) {
+				systemMessages.addAll(serialized);
+			}
+			else {
+				messages.addAll(serialized);
+			}
+		}
+		if (!systemMessages.isEmpty()) {
+			systemMessages.addAll(messages);
+			messages = systemMessages;
+		}
+		return HunYuanSerializedMessages.of(messages);
+	}
+
+}
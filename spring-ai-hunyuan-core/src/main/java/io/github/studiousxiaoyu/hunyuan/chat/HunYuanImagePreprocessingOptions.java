@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.Objects;
+
+/**
+ * Preprocessing of the images of the user messages before they are sent, for the vision
+ * models which downsample large images anyway. Images sent as bytes are scaled down to
+ * the maximum edge and opaque images are re-encoded as JPEG at the given quality, images
+ * with transparency as PNG. An image is sent as it is when its format cannot be read, or
+ * when preprocessing does not make it smaller.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanImagePreprocessingOptions {
+
+	/**
+	 * Name of the counter of the bytes of the images not sent thanks to their
+	 * preprocessing, before base64 encoding.
+	 */
+	public static final String BYTES_SAVED_METRIC = "hunyuan.chat.image.bytes.saved";
+
+	/**
+	 * JPEG quality used when none is set.
+	 */
+	public static final float DEFAULT_QUALITY = 0.85f;
+
+	/**
+	 * Maximum width and height of the images, in pixels. Images are not scaled when not
+	 * set.
+	 */
+	private Integer maxEdge;
+
+	/**
+	 * JPEG quality of the re-encoded images, from 0 to 1, {@value #DEFAULT_QUALITY} when
+	 * not set.
+	 */
+	private Float quality;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public Integer getMaxEdge() {
+		return this.maxEdge;
+	}
+
+	public void setMaxEdge(Integer maxEdge) {
+		this.maxEdge = maxEdge;
+	}
+
+	public Float getQuality() {
+		return this.quality;
+	}
+
+	public void setQuality(Float quality) {
+		this.quality = quality;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof HunYuanImagePreprocessingOptions that)) {
+			return false;
+		}
+		return Objects.equals(this.maxEdge, that.maxEdge) && Objects.equals(this.quality, that.quality);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.maxEdge, this.quality);
+	}
+
+	public static class Builder {
+
+		private final HunYuanImagePreprocessingOptions options = new HunYuanImagePreprocessingOptions();
+
+		public Builder maxEdge(Integer maxEdge) {
+			this.options.maxEdge = maxEdge;
+			return this;
+		}
+
+		public Builder quality(Float quality) {
+			this.options.quality = quality;
+			return this;
+		}
+
+		public HunYuanImagePreprocessingOptions build() {
+			return this.options;
+		}
+
+	}
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Scales down and re-encodes images with ImageIO, as configured by
+ * {@link HunYuanImagePreprocessingOptions}. JPEG, PNG and BMP images are preprocessed,
+ * others are returned as they are. The EXIF orientation of a JPEG image is applied to its
+ * pixels, as it is not written to the re-encoded image.
+ * <p>
+ * Decoding a photo takes tens of milliseconds and tens of megabytes, the chat model runs
+ * the preprocessing on a {@link #executor(int) bounded executor}.
+ *
+ * @param maxEdge the maximum width and height, {@link Integer#MAX_VALUE} for no scaling.
+ * @param quality the JPEG quality.
+ * @author Guo Junyu
+ */
+record HunYuanImagePreprocessor(int maxEdge, float quality) {
+
+	static final int DEFAULT_MAX_CONCURRENCY = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+	private static final Logger logger = LoggerFactory.getLogger(HunYuanImagePreprocessor.class);
+
+	private static final Set<String> FORMATS = Set.of("image/jpeg", "image/png", "image/bmp");
+
+	/**
+	 * Create the preprocessor of the given options.
+	 * @param options the options, may be null.
+	 * @return the preprocessor, or null when the options are null.
+	 */
+	static HunYuanImagePreprocessor of(HunYuanImagePreprocessingOptions options) {
+		if (options == null) {
+			return null;
+		}
+		Assert.isTrue(options.getMaxEdge() == null || options.getMaxEdge() > 0, "maxEdge must be positive");
+		Assert.isTrue(options.getQuality() == null || (options.getQuality() >= 0 && options.getQuality() <= 1),
+				"quality must be between 0 and 1");
+		return new HunYuanImagePreprocessor((options.getMaxEdge() != null) ? options.getMaxEdge() : Integer.MAX_VALUE,
+				(options.getQuality() != null) ? options.getQuality()
+						: HunYuanImagePreprocessingOptions.DEFAULT_QUALITY);
+	}
+
+	/**
+	 * Create the default executor of the preprocessing: up to the given number of daemon
+	 * threads, which are released when idle, and a queue for the images beyond them.
+	 * @param maxConcurrency the maximum number of images preprocessed at once.
+	 * @return the executor.
+	 */
+	static ExecutorService executor(int maxConcurrency) {
+		Assert.isTrue(maxConcurrency > 0, "maxConcurrency must be positive");
+		AtomicInteger threads = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "hunyuan-image-" + threads.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Preprocess the given image.
+	 * @param mimeType the MIME type of the image.
+	 * @param data the image.
+	 * @return the preprocessed image, or the given one when it could not be made smaller.
+	 */
+	Image process(String mimeType, byte[] data) {
+		Image original = new Image(mimeType, data);
+		if (!FORMATS.contains(mimeType)) {
+			return original;
+		}
+		try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(data))) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if (!readers.hasNext()) {
+				return original;
+			}
+			ImageReader reader = readers.next();
+			BufferedImage image;
+			boolean reduced;
+			try {
+				reader.setInput(input, true, true);
+				int edge = Math.max(reader.getWidth(0), reader.getHeight(0));
+				reduced = edge > this.maxEdge;
+				// Pixels skipped while decoding, down to the maximum edge at the least: a
+				// fraction of the time and memory of decoding them all, for some
+				// aliasing.
+				int subsampling = Math.max(1, edge / this.maxEdge);
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				image = reader.read(0, param);
+			}
+			finally {
+				reader.dispose();
+			}
+			boolean alpha = image.getColorModel().hasAlpha();
+			if (alpha && !reduced) {
+				// Only lossless PNG keeps the transparency, re-encoding does not pay off.
+				return original;
+			}
+			int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+			if (Math.max(image.getWidth(), image.getHeight()) > this.maxEdge) {
+				image = scale(image, type);
+			}
+			else if (image.getType() != BufferedImage.TYPE_INT_RGB && image.getType() != BufferedImage.TYPE_3BYTE_BGR
+					&& image.getType() != BufferedImage.TYPE_BYTE_GRAY && image.getType() != type) {
+				image = draw(image, new AffineTransform(), image.getWidth(), image.getHeight(), type);
+			}
+			int orientation = "image/jpeg".equals(mimeType) ? orientation(data) : 1;
+			if (orientation > 1) {
+				image = orient(image, orientation, type);
+			}
+			Image processed = alpha ? new Image("image/png", png(image)) : new Image("image/jpeg", jpeg(image));
+			return (processed.data().length < data.length) ? processed : original;
+		}
+		catch (IOException | RuntimeException ex) {
+			logger.debug("Image sent as it is, it could not be preprocessed", ex);
+			return original;
+		}
+	}
+
+	private BufferedImage scale(BufferedImage image, int type) {
+		// Less than twice the maximum edge once subsampled, bilinear interpolation
+		// samples all the pixels.
+		double ratio = (double) this.maxEdge / Math.max(image.getWidth(), image.getHeight());
+		int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+		int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+		return draw(image, AffineTransform.getScaleInstance((double) width / image.getWidth(),
+				(double) height / image.getHeight()), width, height, type);
+	}
+
+	private static BufferedImage orient(BufferedImage image, int orientation, int type) {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		AffineTransform transform = switch (orientation) {
+			case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+			case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+			case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+			case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+			case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+			case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+			default -> new AffineTransform(0, -1, 1, 0, 0, w);
+		};
+		return (orientation >= 5) ? draw(image, transform, h, w, type) : draw(image, transform, w, h, type);
+	}
+
+	private static BufferedImage draw(BufferedImage image, AffineTransform transform, int width, int height, int type) {
+		BufferedImage drawn = new BufferedImage(width, height, type);
+		Graphics2D graphics = drawn.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.drawImage(image, transform, null);
+		}
+		finally {
+			graphics.dispose();
+		}
+		return drawn;
+	}
+
+	private byte[] jpeg(BufferedImage image) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(this.quality);
+			writer.setOutput(stream);
+			writer.write(null, new IIOImage(image, null, null), param);
+		}
+		finally {
+			writer.dispose();
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] png(BufferedImage image) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+			ImageIO.write(image, "png", stream);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Read the EXIF orientation of a JPEG image, from its APP1 segment.
+	 * @param jpeg the image.
+	 * @return the orientation, from 1 to 8, 1 when the image has none.
+	 */
+	static int orientation(byte[] jpeg) {
+		int offset = 2;
+		while (offset + 4 <= jpeg.length && (jpeg[offset] & 0xFF) == 0xFF) {
+			int marker = jpeg[offset + 1] & 0xFF;
+			int length = uint16(jpeg, offset + 2, false);
+			if (marker == 0xDA) {
+				// Start of scan, no metadata after it.
+				break;
+			}
+			int end = offset + 2 + length;
+			if (marker == 0xE1 && length >= 16 && end <= jpeg.length && jpeg[offset + 4] == 'E'
+					&& jpeg[offset + 5] == 'x' && jpeg[offset + 6] == 'i' && jpeg[offset + 7] == 'f') {
+				return tiffOrientation(jpeg, offset + 10, end);
+			}
+			offset = end;
+		}
+		return 1;
+	}
+
+	private static int tiffOrientation(byte[] exif, int tiff, int end) {
+		boolean littleEndian = exif[tiff] == 'I' && exif[tiff + 1] == 'I';
+		if (!littleEndian && !(exif[tiff] == 'M' && exif[tiff + 1] == 'M')) {
+			return 1;
+		}
+		long low = uint16(exif, tiff + (littleEndian ? 4 : 6), littleEndian);
+		long high = uint16(exif, tiff + (littleEndian ? 6 : 4), littleEndian);
+		long ifd = tiff + (high << 16 | low);
+		if (ifd + 2 > end) {
+			return 1;
+		}
+		int entries = uint16(exif, (int) ifd, littleEndian);
+		for (int i = 0; i < entries; i++) {
+			int entry = (int) ifd + 2 + 12 * i;
+			if (entry + 12 > end) {
+				break;
+			}
+			if (uint16(exif, entry, littleEndian) == 0x0112) {
+				int orientation = uint16(exif, entry + 8, littleEndian);
+				return (orientation >= 1 && orientation <= 8) ? orientation : 1;
+			}
+		}
+		return 1;
+	}
+
+	private static int uint16(byte[] bytes, int offset, boolean littleEndian) {
+		int first = bytes[offset] & 0xFF;
+		int second = bytes[offset + 1] & 0xFF;
+		return littleEndian ? (second << 8 | first) : (first << 8 | second);
+	}
+
+	/**
+	 * An image and its MIME type.
+	 */
+	record Image(String mimeType, byte[] data) {
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanMediaData;
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanImagePreprocessor.Image;
+
+/**
+ * Media of the chat completion requests, preprocessed and encoded to base64 once per
+ * content rather than for every request, as the images of a multi-turn conversation are
+ * sent again with each of its turns.
+ * <p>
+ * Media is looked up by MIME type, length, CRC32C checksum and preprocessing, then
+ * compared byte for byte, which costs little when the same array is sent again. The least
+ * recently used media is evicted once the cached media, with its preprocessed and encoded
+ * forms, exceeds the maximum number of bytes. Media larger than the maximum, or all media
+ * when it is 0, is not cached but encoded straight into each request body.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanMediaCache {
+
+	static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+	private final long maxBytes;
+
+	private final Map<MediaKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long bytes;
+
+	HunYuanMediaCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Return the given media, preprocessed and encoded.
+	 * @param mimeType the MIME type of the media.
+	 * @param data the media.
+	 * @param preprocessor the preprocessor of the media, null to send it as it is.
+	 * @return the media, from the cache when the same content was encoded before.
+	 */
+	HunYuanMediaData get(String mimeType, byte[] data, HunYuanImagePreprocessor preprocessor) {
+		if (data.length > this.maxBytes) {
+			Image image = preprocess(mimeType, data, preprocessor);
+			return HunYuanMediaData.of(image.mimeType(), image.data());
+		}
+		CRC32C checksum = new CRC32C();
+		checksum.update(data);
+		MediaKey key = new MediaKey(mimeType, data.length, (int) checksum.getValue(), preprocessor);
+		synchronized (this.entries) {
+			Entry entry = this.entries.get(key);
+			if (entry != null && Arrays.equals(entry.source(), data)) {
+				return entry.media();
+			}
+		}
+		// Preprocessed and encoded outside the lock: two threads may both encode the same
+		// media.
+		Image image = preprocess(mimeType, data, preprocessor);
+		HunYuanMediaData media = HunYuanMediaData.encode(image.mimeType(), image.data());
+		long size = (long) media.encodedLength() + image.data().length + ((image.data() != data) ? data.length : 0);
+		if (size > this.maxBytes) {
+			return media;
+		}
+		synchronized (this.entries) {
+			Entry previous = this.entries.put(key, new Entry(data, media, size));
+			if (previous != null) {
+				this.bytes -= previous.size();
+			}
+			this.bytes += size;
+			Iterator<Entry> eldest = this.entries.values().iterator();
+			while (this.bytes > this.maxBytes) {
+				Entry evicted = eldest.next();
+				eldest.remove();
+				this.bytes -= evicted.size();
+			}
+		}
+		return media;
+	}
+
+	long maxBytes() {
+		return this.maxBytes;
+	}
+
+	int size() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+	long bytes() {
+		synchronized (this.entries) {
+			return this.bytes;
+		}
+	}
+
+	private static Image preprocess(String mimeType, byte[] data, HunYuanImagePreprocessor preprocessor) {
+		return (preprocessor != null) ? preprocessor.process(mimeType, data) : new Image(mimeType, data);
+	}
+
+	private record MediaKey(String mimeType, int length, int checksum, HunYuanImagePreprocessor preprocessor) {
+	}
+
+	/**
+	 * Media as it was sent, and as it is written to the request bodies.
+	 */
+	private record Entry(byte[] source, HunYuanMediaData media, long size) {
+	}
+
+}
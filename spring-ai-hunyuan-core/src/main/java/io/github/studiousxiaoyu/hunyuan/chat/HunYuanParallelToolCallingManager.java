@@ -0,0 +1,270 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * {@link ToolCallingManager} that runs the tool calls of one assistant turn concurrently,
+ * so that the next round trip to the model waits for the slowest tool rather than for the
+ * sum of all of them.
+ * <p>
+ * Each tool call is executed by the delegate manager on a bounded executor, so that tools
+ * are resolved, observed and their exceptions processed as they would be one by one. The
+ * tool responses are returned in the order of the tool calls. A tool call that does not
+ * complete within the tool timeout, counted from its submission, is interrupted and
+ * answered with a timeout message, so that the model can carry on without it. An
+ * exception thrown by a tool call cancels the other ones and is rethrown.
+ * <p>
+ * A turn with a single tool call and no tool timeout is executed on the calling thread.
+ * The {@code ToolContext} of a tool call only holds that call in the assistant message of
+ * its conversation history.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanParallelToolCallingManager implements ToolCallingManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(HunYuanParallelToolCallingManager.class);
+
+	public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+	private final ToolCallingManager delegate;
+
+	private final ExecutorService executor;
+
+	private final Duration toolTimeout;
+
+	public HunYuanParallelToolCallingManager(ToolCallingManager delegate, ExecutorService executor,
+			Duration toolTimeout) {
+		Assert.notNull(delegate, "delegate must not be null");
+		Assert.notNull(executor, "executor must not be null");
+		Assert.isTrue(toolTimeout == null || toolTimeout.compareTo(Duration.ZERO) > 0, "toolTimeout must be positive");
+		this.delegate = delegate;
+		this.executor = executor;
+		this.toolTimeout = toolTimeout;
+	}
+
+	/**
+	 * Create the default executor of the tool calls: up to the given number of daemon
+	 * threads, which are released when idle, and a queue for the calls beyond them.
+	 * @param maxConcurrency the maximum number of tool calls running at once.
+	 * @return the executor.
+	 */
+	public static ExecutorService toolExecutor(int maxConcurrency) {
+		Assert.isTrue(maxConcurrency > 0, "maxConcurrency must be positive");
+		AtomicInteger threads = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "hunyuan-tool-" + threads.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	@Override
+	public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+		return this.delegate.resolveToolDefinitions(chatOptions);
+	}
+
+	@Override
+	public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+		Assert.notNull(prompt, "prompt must not be null");
+		Assert.notNull(chatResponse, "chatResponse must not be null");
+		Generation generation = chatResponse.getResults()
+			.stream()
+			.filter(g -> !CollectionUtils.isEmpty(g.getOutput().getToolCalls()))
+			.findFirst()
+			.orElse(null);
+		if (generation == null || (generation.getOutput().getToolCalls().size() == 1 && this.toolTimeout == null)) {
+			return this.delegate.executeToolCalls(prompt, chatResponse);
+		}
+		AssistantMessage assistantMessage = generation.getOutput();
+		List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+
+		List<Future<ToolExecutionResult>> futures = new ArrayList<>(toolCalls.size());
+		for (AssistantMessage.ToolCall toolCall : toolCalls) {
+			ChatResponse singleCall = new ChatResponse(
+					List.of(new Generation(new AssistantMessage(assistantMessage.getText(),
+							assistantMessage.getMetadata(), List.of(toolCall)))));
+			futures.add(this.executor.submit(() -> this.delegate.executeToolCalls(prompt, singleCall)));
+		}
+
+		long deadline = (this.toolTimeout != null) ? System.nanoTime() + this.toolTimeout.toNanos() : 0;
+		List<ToolResponseMessage.ToolResponse> toolResponses = new ArrayList<>(toolCalls.size());
+		boolean returnDirect = true;
+		try {
+			for (int i = 0; i < toolCalls.size(); i++) {
+				AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+				ToolExecutionResult result = await(futures.get(i), deadline);
+				if (result == null) {
+					logger.warn("Tool call {} of {} timed out after {}", toolCall.id(), toolCall.name(),
+							this.toolTimeout);
+					toolResponses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(),
+							"Tool call timed out after " + this.toolTimeout.toMillis() + " ms"));
+					returnDirect = false;
+					continue;
+				}
+				toolResponses.addAll(toolResponses(result));
+				returnDirect &= result.returnDirect();
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			cancel(futures);
+			throw new IllegalStateException("Interrupted while executing the tool calls", ex);
+		}
+		catch (ExecutionException ex) {
+			cancel(futures);
+			if (ex.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException("Tool call failed", ex.getCause());
+		}
+
+		List<Message> conversationHistory = new ArrayList<>(prompt.getInstructions().size() + 2);
+		conversationHistory.addAll(prompt.getInstructions());
+		conversationHistory.add(assistantMessage);
+		conversationHistory.add(new ToolResponseMessage(toolResponses, Map.of()));
+		return ToolExecutionResult.builder()
+			.conversationHistory(conversationHistory)
+			.returnDirect(returnDirect)
+			.build();
+	}
+
+	private ToolExecutionResult await(Future<ToolExecutionResult> future, long deadline)
+			throws InterruptedException, ExecutionException {
+		if (this.toolTimeout == null) {
+			return future.get();
+		}
+		try {
+			return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		}
+		catch (TimeoutException ex) {
+			future.cancel(true);
+			return null;
+		}
+	}
+
+	private static List<ToolResponseMessage.ToolResponse> toolResponses(ToolExecutionResult result) {
+		List<Message> history = result.conversationHistory();
+		for (int i = history.size() - 1; i >= 0; i--) {
+			if (history.get(i) instanceof ToolResponseMessage toolResponseMessage) {
+				return toolResponseMessage.getResponses();
+			}
+		}
+		return List.of();
+	}
+
+	private static void cancel(List<Future<ToolExecutionResult>> futures) {
+		for (Future<ToolExecutionResult> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static final class Builder {
+
+		private ToolCallingManager delegate;
+
+		private ExecutorService executor;
+
+		private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+		private Duration toolTimeout;
+
+		private Builder() {
+		}
+
+		/**
+		 * Set the manager that resolves the tool definitions and executes each tool call.
+		 * Defaults to {@link ToolCallingManager#builder()}.
+		 * @param delegate the manager.
+		 * @return this builder.
+		 */
+		public Builder delegate(ToolCallingManager delegate) {
+			this.delegate = delegate;
+			return this;
+		}
+
+		/**
+		 * Set the executor of the tool calls, which stays owned by the caller. Defaults
+		 * to a {@link #toolExecutor(int) bounded executor} of
+		 * {@link #maxConcurrency(int)} threads.
+		 * @param executor the executor.
+		 * @return this builder.
+		 */
+		public Builder executor(ExecutorService executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		public Builder maxConcurrency(int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+			return this;
+		}
+
+		/**
+		 * Set the time a tool call may take before it is interrupted. Defaults to no
+		 * timeout.
+		 * @param toolTimeout the timeout.
+		 * @return this builder.
+		 */
+		public Builder toolTimeout(Duration toolTimeout) {
+			this.toolTimeout = toolTimeout;
+			return this;
+		}
+
+		public HunYuanParallelToolCallingManager build() {
+			return new HunYuanParallelToolCallingManager(
+					(this.delegate != null) ? this.delegate : ToolCallingManager.builder().build(),
+					(this.executor != null) ? this.executor : toolExecutor(this.maxConcurrency), this.toolTimeout);
+		}
+
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanJsonCodec;
+
+/**
+ * Exact-match cache of the chat completions, in a {@link HunYuanResponseStore}.
+ * <p>
+ * Only the requests that ask for a reproducible completion, with a temperature of 0 or a
+ * seed, are cached. They are keyed by the SHA-256 digest of their JSON, the request
+ * exactly as it is sent with the options merged, so that any difference in the messages,
+ * tools or options is a miss. The key holds that JSON, which is sent on a miss rather
+ * than encoded again. Streamed requests differ by their {@code Stream} field: their
+ * chunks are cached as they were received, and replayed in the same order. Completions
+ * with an error, and streams that fail or are cancelled, are not cached.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanResponseCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(HunYuanResponseCache.class);
+
+	private final HunYuanResponseStore store;
+
+	private final HunYuanJsonCodec jsonCodec = new HunYuanJsonCodec();
+
+	private Counter hits;
+
+	private Counter misses;
+
+	HunYuanResponseCache(HunYuanResponseStore store) {
+		this.store = store;
+	}
+
+	HunYuanResponseStore store() {
+		return this.store;
+	}
+
+	void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.hits = counter(meterRegistry, "hit");
+		this.misses = counter(meterRegistry, "miss");
+	}
+
+	private static Counter counter(MeterRegistry meterRegistry, String result) {
+		return Counter.builder(HunYuanResponseStore.METRIC)
+			.description("Lookups of the chat completions in the response cache")
+			.tag("result", result)
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Return the key of the given request.
+	 * @param request the request.
+	 * @return the key, or null when the completion of the request is not reproducible.
+	 */
+	Key key(ChatCompletionRequest request) {
+		boolean reproducible = (request.temperature() != null && request.temperature() == 0) || request.seed() != null;
+		if (!reproducible) {
+			return null;
+		}
+		try {
+			byte[] body = this.jsonCodec.encode(request);
+			return new Key(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body)), body);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Return the completion cached under the given key.
+	 * @param key the key of the request.
+	 * @return the completion, or null on a miss.
+	 */
+	ChatCompletion completion(Key key) {
+		byte[] response = lookup(key);
+		return (response != null) ? decode(response, ChatCompletion.class) : null;
+	}
+
+	/**
+	 * Cache the completion of the request of the given key, unless it reports an error.
+	 * @param key the key of the request.
+	 * @param completion the completion.
+	 */
+	void put(Key key, ChatCompletion completion) {
+		if (completion != null && completion.errorMsg() == null && completion.choices() != null) {
+			this.store.put(key.digest(), this.jsonCodec.encode(completion));
+		}
+	}
+
+	/**
+	 * Return the chunks of the streamed completion cached under the given key.
+	 * @param key the key of the request.
+	 * @return the chunks, or null on a miss.
+	 */
+	List<ChatCompletionChunk> chunks(Key key) {
+		byte[] response = lookup(key);
+		ChatCompletionChunk[] chunks = (response != null) ? decode(response, ChatCompletionChunk[].class) : null;
+		return (chunks != null) ? Arrays.asList(chunks) : null;
+	}
+
+	/**
+	 * Record the given chunks, and cache them once they all were received without error.
+	 * @param key the key of the request.
+	 * @param chunks the chunks of the streamed completion.
+	 * @return the chunks.
+	 */
+	Flux<ChatCompletionChunk> record(Key key, Flux<ChatCompletionChunk> chunks) {
+		return Flux.defer(() -> {
+			List<ChatCompletionChunk> recorded = new ArrayList<>();
+			return chunks.doOnNext(recorded::add).doOnComplete(() -> {
+				if (recorded.stream().allMatch(chunk -> chunk.errorMsg() == null)) {
+					this.store.put(key.digest(), this.jsonCodec.encode(recorded));
+				}
+			});
+		});
+	}
+
+	private byte[] lookup(Key key) {
+		byte[] response = this.store.get(key.digest());
+		Counter counter = (response != null) ? this.hits : this.misses;
+		if (counter != null) {
+			counter.increment();
+		}
+		return response;
+	}
+
+	private <T> T decode(byte[] response, Class<T> type) {
+		try {
+			return this.jsonCodec.decode(new ByteArrayInputStream(response), type);
+		}
+		catch (IOException | RuntimeException ex) {
+			// A store shared with other versions may hold responses this one cannot read.
+			logger.warn("Cached response could not be read, the request is sent", ex);
+			return null;
+		}
+	}
+
+	/**
+	 * The digest of a request and the request encoded as it is sent.
+	 */
+	record Key(String digest, byte[] body) {
+	}
+
+}
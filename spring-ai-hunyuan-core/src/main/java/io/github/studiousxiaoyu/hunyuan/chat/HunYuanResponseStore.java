@@ -0,0 +1,75 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+
+/**
+ * Store of the responses cached by {@link HunYuanChatModel#setResponseStore}, keyed by
+ * the SHA-256 digest of the request, in hexadecimal. The values are the JSON of the chat
+ * completion, or of the chunks of a streamed completion.
+ * <p>
+ * A store bounds its size and the age of its responses, and is safe for concurrent use.
+ * The built-in stores keep the responses in the heap or in direct memory, other stores
+ * such as a shared remote cache are plugged in by implementing this interface.
+ *
+ * @author Guo Junyu
+ */
+public interface HunYuanResponseStore {
+
+	/**
+	 * Name of the counter of the lookups of the response cache, tagged with their
+	 * {@code result}, {@code hit} or {@code miss}.
+	 */
+	String METRIC = "hunyuan.chat.response.cache";
+
+	/**
+	 * Return the response stored under the given key.
+	 * @param key the key of the request.
+	 * @return the response, or null when it is not stored or has expired.
+	 */
+	byte[] get(String key);
+
+	/**
+	 * Store the response to the request of the given key.
+	 * @param key the key of the request.
+	 * @param response the response, not modified once stored.
+	 */
+	void put(String key, byte[] response);
+
+	/**
+	 * Create a store keeping the responses in the heap.
+	 * @param maxBytes the maximum number of bytes of the responses.
+	 * @param timeToLive the time a response is kept after it is stored.
+	 * @return the store.
+	 */
+	static HunYuanResponseStore inHeap(long maxBytes, Duration timeToLive) {
+		return new HunYuanTinyLfuStore(maxBytes, timeToLive, false);
+	}
+
+	/**
+	 * Create a store keeping the responses in direct memory, out of the heap scanned by
+	 * the garbage collector, within the limit of {@code -XX:MaxDirectMemorySize}.
+	 * @param maxBytes the maximum number of bytes of the responses.
+	 * @param timeToLive the time a response is kept after it is stored.
+	 * @return the store.
+	 */
+	static HunYuanResponseStore offHeap(long maxBytes, Duration timeToLive) {
+		return new HunYuanTinyLfuStore(maxBytes, timeToLive, true);
+	}
+
+}
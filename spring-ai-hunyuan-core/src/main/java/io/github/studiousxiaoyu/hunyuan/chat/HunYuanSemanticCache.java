@@ -0,0 +1,417 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+import reactor.core.scheduler.Schedulers;
+
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanVectorIndex.Match;
+
+/**
+ * Cache of the answers of the chat model to questions similar to ones it answered before,
+ * such as the paraphrases of the frequently asked questions.
+ * <p>
+ * The last user message of a prompt is embedded by the embedding model and searched in a
+ * {@link HunYuanVectorIndex}, among the questions asked after the same system and earlier
+ * messages to the same model. The answer to the most similar question is returned when
+ * their cosine similarity reaches the threshold, with the similarity in the
+ * {@value #SIMILARITY_METADATA_KEY} metadata of the response. Only the prompts without
+ * tools, media or assistant messages are cached, and only the answers that completed with
+ * a {@code stop} finish reason.
+ * <p>
+ * The index and the answers are bounded by bytes, evicted with the CLOCK approximation of
+ * LRU: an answer returned since the hand last passed it is kept for another turn. The
+ * lists of the index are trained on the bounded elastic scheduler, without the lock, so
+ * that neither the caller of the answer which completes the training set nor the lookups
+ * wait for it.
+ *
+ * @author Guo Junyu
+ */
+public final class HunYuanSemanticCache {
+
+	/**
+	 * Name of the counter of the lookups of the semantic cache, tagged with their
+	 * {@code result}, {@code hit} or {@code miss}.
+	 */
+	public static final String METRIC = "hunyuan.chat.semantic.cache";
+
+	/**
+	 * Key of the response metadata holding the similarity of the question answered from
+	 * the cache.
+	 */
+	public static final String SIMILARITY_METADATA_KEY = "semantic-cache-similarity";
+
+	public static final double DEFAULT_SIMILARITY_THRESHOLD = 0.92;
+
+	public static final long DEFAULT_MAX_BYTES = 256 * 1024 * 1024;
+
+	public static final int DEFAULT_LISTS = 1024;
+
+	public static final int DEFAULT_PROBES = 16;
+
+	/**
+	 * Estimated bytes of an answer beyond its characters.
+	 */
+	private static final int ANSWER_OVERHEAD = 48;
+
+	private final EmbeddingModel embeddingModel;
+
+	private final double similarityThreshold;
+
+	private final long maxBytes;
+
+	private final int lists;
+
+	private final int probes;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private HunYuanVectorIndex index;
+
+	private String[] answers = new String[0];
+
+	private byte[] referenced = new byte[0];
+
+	private int hand;
+
+	private long bytes;
+
+	private Counter hits;
+
+	private Counter misses;
+
+	private HunYuanSemanticCache(Builder builder) {
+		Assert.notNull(builder.embeddingModel, "embeddingModel must not be null");
+		Assert.isTrue(builder.similarityThreshold > 0 && builder.similarityThreshold <= 1,
+				"similarityThreshold must be greater than 0 and at most 1");
+		Assert.isTrue(builder.maxBytes >= 0, "maxBytes must not be negative");
+		Assert.isTrue(builder.lists > 0, "lists must be positive");
+		Assert.isTrue(builder.probes > 0 && builder.probes <= builder.lists, "probes must be between 1 and lists");
+		this.embeddingModel = builder.embeddingModel;
+		this.similarityThreshold = builder.similarityThreshold;
+		this.maxBytes = builder.maxBytes;
+		this.lists = builder.lists;
+		this.probes = builder.probes;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.hits = counter(meterRegistry, "hit");
+		this.misses = counter(meterRegistry, "miss");
+	}
+
+	private static Counter counter(MeterRegistry meterRegistry, String result) {
+		return Counter.builder(METRIC)
+			.description("Lookups of the answers to similar questions in the semantic cache")
+			.tag("result", result)
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Look up the answer to the question of the given prompt. The question is embedded,
+	 * which calls the embedding model.
+	 * @param prompt the prompt, with its options merged.
+	 * @return the lookup, or null when the prompt is not cached.
+	 */
+	Lookup lookup(Prompt prompt) {
+		if (!isCached(prompt)) {
+			return null;
+		}
+		List<Message> messages = prompt.getInstructions();
+		long tag = tag(prompt);
+		float[] embedding = this.embeddingModel.embed(messages.get(messages.size() - 1).getText());
+		ChatResponse response = null;
+		this.lock.readLock().lock();
+		try {
+			Match match = (this.index != null) ? this.index.search(embedding, tag) : null;
+			if (match != null && match.similarity() >= this.similarityThreshold) {
+				this.referenced[match.id()] = 1;
+				response = response(this.answers[match.id()], prompt, match.similarity());
+			}
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+		Counter counter = (response != null) ? this.hits : this.misses;
+		if (counter != null) {
+			counter.increment();
+		}
+		return new Lookup(tag, embedding, response);
+	}
+
+	/**
+	 * Cache the answer to the question of a lookup that missed.
+	 * @param lookup the lookup.
+	 * @param response the response of the chat model.
+	 */
+	void put(Lookup lookup, ChatResponse response) {
+		if (response == null || response.getResults().size() != 1 || response.getResult().getOutput() == null
+				|| !StringUtils.hasText(response.getResult().getOutput().getText())
+				|| !"stop".equalsIgnoreCase(response.getResult().getMetadata().getFinishReason())) {
+			return;
+		}
+		String answer = response.getResult().getOutput().getText();
+		HunYuanVectorIndex.Training training;
+		this.lock.writeLock().lock();
+		try {
+			if (this.index == null) {
+				this.index = new HunYuanVectorIndex(lookup.embedding().length, this.lists, this.probes, 32);
+			}
+			long size = this.index.bytesPerVector() + answerBytes(answer);
+			if (size > this.maxBytes) {
+				return;
+			}
+			int id = this.index.add(lookup.embedding(), lookup.tag());
+			if (id >= this.answers.length) {
+				int capacity = Math.max(16, this.answers.length + (this.answers.length >> 1));
+				this.answers = Arrays.copyOf(this.answers, capacity);
+				this.referenced = Arrays.copyOf(this.referenced, capacity);
+			}
+			this.answers[id] = answer;
+			this.referenced[id] = 0;
+			this.bytes += size;
+			while (this.bytes > this.maxBytes) {
+				evict(id);
+			}
+			training = this.index.training();
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+		if (training != null) {
+			HunYuanVectorIndex index = this.index;
+			Schedulers.boundedElastic().schedule(() -> {
+				training.run();
+				this.lock.writeLock().lock();
+				try {
+					index.apply(training);
+				}
+				finally {
+					this.lock.writeLock().unlock();
+				}
+			});
+		}
+	}
+
+	private void evict(int added) {
+		while (true) {
+			int id = this.hand;
+			this.hand = (this.hand + 1 < this.index.highWater()) ? this.hand + 1 : 0;
+			if (!this.index.contains(id) || id == added) {
+				continue;
+			}
+			if (this.referenced[id] != 0) {
+				this.referenced[id] = 0;
+				continue;
+			}
+			this.bytes -= this.index.bytesPerVector() + answerBytes(this.answers[id]);
+			this.answers[id] = null;
+			this.index.remove(id);
+			return;
+		}
+	}
+
+	int size() {
+		this.lock.readLock().lock();
+		try {
+			return (this.index != null) ? this.index.size() : 0;
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	boolean isTrained() {
+		this.lock.readLock().lock();
+		try {
+			return this.index != null && this.index.isTrained();
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	long bytes() {
+		this.lock.readLock().lock();
+		try {
+			return this.bytes;
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private static long answerBytes(String answer) {
+		return ANSWER_OVERHEAD + 2L * answer.length();
+	}
+
+	private static boolean isCached(Prompt prompt) {
+		if (prompt.getOptions() instanceof HunYuanChatOptions options
+				&& (!CollectionUtils.isEmpty(options.getToolCallbacks())
+						|| !CollectionUtils.isEmpty(options.getToolNames()))) {
+			return false;
+		}
+		List<Message> messages = prompt.getInstructions();
+		if (messages.isEmpty() || messages.get(messages.size() - 1).getMessageType() != MessageType.USER
+				|| !StringUtils.hasText(messages.get(messages.size() - 1).getText())) {
+			return false;
+		}
+		for (Message message : messages) {
+			if (message.getMessageType() != MessageType.SYSTEM && message.getMessageType() != MessageType.USER) {
+				return false;
+			}
+			if (message instanceof UserMessage userMessage && !CollectionUtils.isEmpty(userMessage.getMedia())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * FNV-1a hash of the model and of the messages before the question.
+	 */
+	private static long tag(Prompt prompt) {
+		long hash = 0xCBF29CE484222325L;
+		hash = hash(hash, (prompt.getOptions() != null) ? prompt.getOptions().getModel() : null);
+		List<Message> messages = prompt.getInstructions();
+		for (int i = 0; i < messages.size() - 1; i++) {
+			hash = hash(hash, messages.get(i).getMessageType().getValue());
+			hash = hash(hash, messages.get(i).getText());
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, String text) {
+		if (text != null) {
+			for (int i = 0; i < text.length(); i++) {
+				hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+			}
+		}
+		// Separator, so that the texts cannot run into each other.
+		return (hash ^ 0x1F) * 0x100000001B3L;
+	}
+
+	private static ChatResponse response(String answer, Prompt prompt, float similarity) {
+		String model = (prompt.getOptions() != null && prompt.getOptions().getModel() != null)
+				? prompt.getOptions().getModel() : "";
+		return ChatResponse.builder()
+			.generations(List.of(new Generation(new AssistantMessage(answer),
+					ChatGenerationMetadata.builder().finishReason("stop").build())))
+			.metadata(ChatResponseMetadata.builder()
+				.model(model)
+				.keyValue(SIMILARITY_METADATA_KEY, (double) similarity)
+				.build())
+			.build();
+	}
+
+	/**
+	 * Lookup of the question of a prompt.
+	 *
+	 * @param tag the hash of the model and of the messages before the question.
+	 * @param embedding the embedding of the question.
+	 * @param response the cached answer, null on a miss.
+	 */
+	record Lookup(long tag, float[] embedding, ChatResponse response) {
+	}
+
+	public static final class Builder {
+
+		private EmbeddingModel embeddingModel;
+
+		private double similarityThreshold = DEFAULT_SIMILARITY_THRESHOLD;
+
+		private long maxBytes = DEFAULT_MAX_BYTES;
+
+		private int lists = DEFAULT_LISTS;
+
+		private int probes = DEFAULT_PROBES;
+
+		private Builder() {
+		}
+
+		/**
+		 * Set the model embedding the questions, such as the HunYuan embedding model.
+		 */
+		public Builder embeddingModel(EmbeddingModel embeddingModel) {
+			this.embeddingModel = embeddingModel;
+			return this;
+		}
+
+		/**
+		 * Set the cosine similarity from which a question is answered from the cache.
+		 */
+		public Builder similarityThreshold(double similarityThreshold) {
+			this.similarityThreshold = similarityThreshold;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of bytes of the index and the answers, about 1.2 KB per
+		 * question of 1024 dimensions plus its answer.
+		 */
+		public Builder maxBytes(long maxBytes) {
+			this.maxBytes = maxBytes;
+			return this;
+		}
+
+		/**
+		 * Set the number of lists of the index, about the square root of the number of
+		 * questions expected.
+		 */
+		public Builder lists(int lists) {
+			this.lists = lists;
+			return this;
+		}
+
+		/**
+		 * Set the number of lists searched for each question, more for a better recall at
+		 * the cost of latency.
+		 */
+		public Builder probes(int probes) {
+			this.probes = probes;
+			return this;
+		}
+
+		public HunYuanSemanticCache build() {
+			return new HunYuanSemanticCache(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import org.springframework.util.CollectionUtils;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.Usage;
+
+/**
+ * Coalesces the small text deltas of a chat completion stream into fewer chunks. The
+ * deltas are buffered for up to a time window, or until a number of characters is
+ * reached, whichever comes first. A chunk that finishes the choice is flushed together
+ * with the buffered deltas, and a chunk carrying tool calls is emitted on its own right
+ * after them, so that neither waits for the window.
+ * <p>
+ * The chunks are received on the thread of the stream and the window elapses on the timer
+ * scheduler, the buffer is guarded by the coalescer monitor.
+ * <p>
+ * Chunks are requested from the stream as the subscriber requests coalesced ones, so that
+ * a slow subscriber holds the stream back instead of having the chunks buffered for it.
+ * Each chunk adds at most one coalesced chunk to the open buffer, and one more chunk is
+ * requested while a buffer is open so that it can grow; at most one coalesced chunk is
+ * therefore emitted ahead of the demand.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanStreamCoalescer {
+
+	private final FluxSink<ChatCompletionChunk> sink;
+
+	private final long windowNanos;
+
+	private final int maxChars;
+
+	private final Scheduler timer;
+
+	private final Upstream upstream = new Upstream();
+
+	private final StringBuilder content = new StringBuilder();
+
+	private final StringBuilder reasoningContent = new StringBuilder();
+
+	private ChatCompletionChunk first;
+
+	private int pending;
+
+	private Role role;
+
+	private Usage usage;
+
+	private String finishReason;
+
+	private Disposable scheduledFlush;
+
+	private long requested;
+
+	private HunYuanStreamCoalescer(FluxSink<ChatCompletionChunk> sink, Duration window, int maxChars, Scheduler timer) {
+		this.sink = sink;
+		this.windowNanos = window.toNanos();
+		this.maxChars = maxChars;
+		this.timer = timer;
+	}
+
+	/**
+	 * Coalesce the chunks of a stream.
+	 * @param chunks the chunks.
+	 * @param window the longest time a delta is buffered.
+	 * @param maxChars the number of buffered characters that triggers a flush.
+	 * @param timer the scheduler of the window.
+	 * @return the coalesced chunks.
+	 */
+	static Flux<ChatCompletionChunk> coalesce(Flux<ChatCompletionChunk> chunks, Duration window, int maxChars,
+			Scheduler timer) {
+		return Flux.create(sink -> {
+			HunYuanStreamCoalescer coalescer = new HunYuanStreamCoalescer(sink, window, maxChars, timer);
+			chunks.contextWrite(sink.contextView()).subscribe(coalescer.upstream);
+			sink.onRequest(n -> coalescer.requestMore());
+			sink.onDispose(() -> {
+				coalescer.upstream.dispose();
+				coalescer.cancelScheduledFlush();
+			});
+		});
+	}
+
+	synchronized void accept(ChatCompletionChunk chunk) {
+		if (this.requested != Long.MAX_VALUE) {
+			this.requested--;
+		}
+		add(chunk);
+		requestMore();
+	}
+
+	private void add(ChatCompletionChunk chunk) {
+		ChatCompletion.Choice choice = CollectionUtils.isEmpty(chunk.choices()) ? null : chunk.choices().get(0);
+		ChatCompletion.ChatCompletionDelta delta = (choice != null) ? choice.delta() : null;
+		if (delta != null && !CollectionUtils.isEmpty(delta.toolCalls())) {
+			flush();
+			this.sink.next(chunk);
+			return;
+		}
+		append(chunk, choice, delta);
+		if (this.finishReason != null || this.content.length() + this.reasoningContent.length() >= this.maxChars) {
+			flush();
+		}
+		else if (this.scheduledFlush == null) {
+			this.scheduledFlush = this.timer.schedule(this::scheduledFlush, this.windowNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	synchronized void error(Throwable error) {
+		flush();
+		this.sink.error(error);
+	}
+
+	synchronized void complete() {
+		flush();
+		this.sink.complete();
+	}
+
+	private synchronized void scheduledFlush() {
+		this.scheduledFlush = null;
+		flush();
+		requestMore();
+	}
+
+	/**
+	 * Request the chunks needed to meet the demand of the subscriber, one per coalesced
+	 * chunk beyond the open buffer, and at least one while a buffer is open.
+	 */
+	private synchronized void requestMore() {
+		if (this.requested == Long.MAX_VALUE) {
+			return;
+		}
+		long demand = this.sink.requestedFromDownstream();
+		if (demand == Long.MAX_VALUE) {
+			this.requested = Long.MAX_VALUE;
+			this.upstream.request(Long.MAX_VALUE);
+			return;
+		}
+		int open = (this.pending > 0) ? 1 : 0;
+		long wanted = (demand > 0) ? Math.max(demand - open, open) : 0;
+		if (wanted > this.requested) {
+			long more = wanted - this.requested;
+			this.requested = wanted;
+			this.upstream.request(more);
+		}
+	}
+
+	private synchronized void cancelScheduledFlush() {
+		if (this.scheduledFlush != null) {
+			this.scheduledFlush.dispose();
+			this.scheduledFlush = null;
+		}
+	}
+
+	private void append(ChatCompletionChunk chunk, ChatCompletion.Choice choice,
+			ChatCompletion.ChatCompletionDelta delta) {
+		if (this.pending++ == 0) {
+			this.first = chunk;
+		}
+		if (chunk.usage() != null) {
+			this.usage = chunk.usage();
+		}
+		if (choice != null && choice.finishReason() != null) {
+			this.finishReason = choice.finishReason();
+		}
+		if (delta != null) {
+			if (delta.role() != null && this.role == null) {
+				this.role = delta.role();
+			}
+			if (delta.content() != null) {
+				this.content.append(delta.content());
+			}
+			if (delta.reasoningContent() != null) {
+				this.reasoningContent.append(delta.reasoningContent());
+			}
+		}
+	}
+
+	private void flush() {
+		cancelScheduledFlush();
+		if (this.pending == 0) {
+			return;
+		}
+		ChatCompletionChunk chunk = (this.pending == 1) ? this.first : merged();
+		this.first = null;
+		this.pending = 0;
+		this.role = null;
+		this.usage = null;
+		this.finishReason = null;
+		this.content.setLength(0);
+		this.reasoningContent.setLength(0);
+		this.sink.next(chunk);
+	}
+
+	private ChatCompletionChunk merged() {
+		// The last chunk may finish the choice, the rest of the chunk comes from the
+		// first.
+		ChatCompletion.Choice firstChoice = CollectionUtils.isEmpty(this.first.choices()) ? null
+				: this.first.choices().get(0);
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(this.role,
+				this.content.toString(), null,
+				(this.reasoningContent.length() > 0) ? this.reasoningContent.toString() : null);
+		ChatCompletion.Choice choice = new ChatCompletion.Choice((firstChoice != null) ? firstChoice.index() : 0, null,
+				this.finishReason, delta, (firstChoice != null) ? firstChoice.moderationLevel() : null);
+		return new ChatCompletionChunk(this.first.id(), null, this.first.created(), this.first.note(), List.of(choice),
+				this.usage, this.first.moderationLevel(), this.first.searchInfo(), this.first.replaces(),
+				this.first.recommendedQuestions(), this.first.processes(), this.first.requestId());
+	}
+
+	private final class Upstream extends BaseSubscriber<ChatCompletionChunk> {
+
+		@Override
+		protected void hookOnSubscribe(Subscription subscription) {
+			// Requested as the coalesced chunks are.
+		}
+
+		@Override
+		protected void hookOnNext(ChatCompletionChunk chunk) {
+			accept(chunk);
+		}
+
+		@Override
+		protected void hookOnError(Throwable error) {
+			error(error);
+		}
+
+		@Override
+		protected void hookOnComplete() {
+			complete();
+		}
+
+	}
+
+}
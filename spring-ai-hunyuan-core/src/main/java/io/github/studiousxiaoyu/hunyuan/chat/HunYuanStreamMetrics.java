@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+
+/**
+ * Latency meters of the streaming chat completions, tagged by model and by whether tools
+ * and search were enabled for the request:
+ * <ul>
+ * <li>{@value #TIME_TO_FIRST_TOKEN}, {@value #TIME_TO_FIRST_CONTENT_TOKEN} and
+ * {@value #TIME_TO_FIRST_REASONING_TOKEN}: from the subscription to the first chunk
+ * carrying any text, answer text or reasoning text.</li>
+ * <li>{@value #INTER_TOKEN_GAP}: between two chunks carrying text, with the 50th, 90th
+ * and 99th percentiles.</li>
+ * <li>{@value #TOKENS_PER_SECOND}: the completion tokens of a stream over the time from
+ * its first to its last text chunk.</li>
+ * </ul>
+ * The meters are resolved once per stream, the chunks of a stream are recorded by its
+ * {@link HunYuanStreamStats}.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanStreamMetrics {
+
+	public static final String TIME_TO_FIRST_TOKEN = "hunyuan.chat.stream.time.to.first.token";
+
+	public static final String TIME_TO_FIRST_CONTENT_TOKEN = "hunyuan.chat.stream.time.to.first.content.token";
+
+	public static final String TIME_TO_FIRST_REASONING_TOKEN = "hunyuan.chat.stream.time.to.first.reasoning.token";
+
+	public static final String INTER_TOKEN_GAP = "hunyuan.chat.stream.inter.token.gap";
+
+	public static final String TOKENS_PER_SECOND = "hunyuan.chat.stream.tokens.per.second";
+
+	private final MeterRegistry registry;
+
+	private final Map<Tags, Meters> meters = new ConcurrentHashMap<>();
+
+	public HunYuanStreamMetrics(MeterRegistry registry) {
+		Assert.notNull(registry, "registry must not be null");
+		this.registry = registry;
+	}
+
+	/**
+	 * Start recording a stream.
+	 * @param request the request of the stream.
+	 * @return the stats of the stream.
+	 */
+	public HunYuanStreamStats start(ChatCompletionRequest request) {
+		return new HunYuanStreamStats(this.meters.computeIfAbsent(tags(request), this::meters));
+	}
+
+	static Tags tags(ChatCompletionRequest request) {
+		// HunYuan enables the search enhancement unless it is turned off.
+		boolean search = !Boolean.FALSE.equals(request.enableEnhancement())
+				|| Boolean.TRUE.equals(request.forceSearchEnhancement())
+				|| Boolean.TRUE.equals(request.enableDeepSearch());
+		return Tags.of("model", (request.model() != null) ? request.model() : "", "tools",
+				String.valueOf(!CollectionUtils.isEmpty(request.tools())), "search", String.valueOf(search));
+	}
+
+	private Meters meters(Tags tags) {
+		return new Meters(timer(TIME_TO_FIRST_TOKEN, "Time to the first token of a streamed chat completion", tags),
+				timer(TIME_TO_FIRST_CONTENT_TOKEN, "Time to the first answer token of a streamed chat completion",
+						tags),
+				timer(TIME_TO_FIRST_REASONING_TOKEN, "Time to the first reasoning token of a streamed chat completion",
+						tags),
+				Timer.builder(INTER_TOKEN_GAP)
+					.description("Time between two token chunks of a streamed chat completion")
+					.tags(tags)
+					.publishPercentiles(0.5, 0.9, 0.99)
+					.register(this.registry),
+				DistributionSummary.builder(TOKENS_PER_SECOND)
+					.description("Completion tokens per second of a streamed chat completion")
+					.baseUnit("tokens")
+					.tags(tags)
+					.register(this.registry));
+	}
+
+	private Timer timer(String name, String description, Tags tags) {
+		return Timer.builder(name).description(description).tags(tags).register(this.registry);
+	}
+
+	record Meters(Timer timeToFirstToken, Timer timeToFirstContentToken, Timer timeToFirstReasoningToken,
+			Timer interTokenGap, DistributionSummary tokensPerSecond) {
+
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion.ChatCompletionDelta;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion.Choice;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ToolCall;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.Usage;
+import io.github.studiousxiaoyu.hunyuan.chat.message.HunYuanAssistantMessage;
+import io.github.studiousxiaoyu.hunyuan.metadata.HunYuanUsage;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.EmptyUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+/**
+ * Maps the chunks of one chat completion stream to {@link ChatResponse}s. The chunk delta
+ * is read directly, without the intermediate {@code ChatCompletion} per chunk, and what
+ * does not change from one chunk to the next - the message metadata, the generation
+ * metadata and the response metadata - is built once and shared by the responses until
+ * the id, role, finish reason, usage or creation time changes.
+ * <p>
+ * Only the first chunk of a choice carries its role: the role is remembered for the
+ * following chunks with the same id. A mapper keeps the state of a single stream and is
+ * not thread-safe, which the serial delivery of a {@code Flux} guarantees.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanStreamResponseMapper {
+
+	private static final ChatGenerationMetadata NOT_FINISHED = ChatGenerationMetadata.builder()
+		.finishReason("")
+		.build();
+
+	private final String model;
+
+	private String id;
+
+	private String role = "";
+
+	private String finishReason;
+
+	private Map<String, Object> messageMetadata;
+
+	private ChatGenerationMetadata generationMetadata;
+
+	private Usage usage;
+
+	private Long created;
+
+	private ChatResponseMetadata responseMetadata;
+
+	HunYuanStreamResponseMapper(String model) {
+		this.model = (model != null) ? model : "";
+	}
+
+	/**
+	 * Map the next chunk of the stream.
+	 * @param chunk the chunk.
+	 * @return the chat response of the chunk.
+	 */
+	ChatResponse map(ChatCompletionChunk chunk) {
+		String chunkId = (chunk.id() != null) ? chunk.id() : "";
+		if (!chunkId.equals(this.id)) {
+			this.id = chunkId;
+			this.role = "";
+			this.messageMetadata = null;
+			this.responseMetadata = null;
+		}
+		List<Choice> choices = chunk.choices();
+		List<Generation> generations;
+		if (choices == null || choices.isEmpty()) {
+			generations = List.of();
+		}
+		else if (choices.size() == 1) {
+			generations = List.of(generation(choices.get(0)));
+		}
+		else {
+			generations = new ArrayList<>(choices.size());
+			for (Choice choice : choices) {
+				generations.add(generation(choice));
+			}
+		}
+		return new ChatResponse(generations, responseMetadata(chunk));
+	}
+
+	private Generation generation(Choice choice) {
+		ChatCompletionDelta delta = choice.delta();
+		Role deltaRole = (delta != null) ? delta.role() : Role.assistant;
+		if (deltaRole != null && this.role.isEmpty()) {
+			this.role = deltaRole.name();
+			this.messageMetadata = null;
+		}
+		String reason = (choice.finishReason() != null) ? choice.finishReason() : "";
+		if (!reason.equals(this.finishReason)) {
+			this.finishReason = reason;
+			this.messageMetadata = null;
+			this.generationMetadata = reason.isEmpty() ? NOT_FINISHED
+					: ChatGenerationMetadata.builder().finishReason(reason).build();
+		}
+		if (this.messageMetadata == null) {
+			this.messageMetadata = Map.of("id", this.id, "role", this.role, "finishReason", reason);
+		}
+		HunYuanAssistantMessage message = (delta != null)
+				? new HunYuanAssistantMessage(delta.content(), delta.reasoningContent(), this.messageMetadata,
+						toolCalls(delta.toolCalls()))
+				: new HunYuanAssistantMessage("", null, this.messageMetadata, List.of());
+		return new Generation(message, this.generationMetadata);
+	}
+
+	private static List<AssistantMessage.ToolCall> toolCalls(List<ToolCall> toolCalls) {
+		if (toolCalls == null || toolCalls.isEmpty()) {
+			return List.of();
+		}
+		List<AssistantMessage.ToolCall> mapped = new ArrayList<>(toolCalls.size());
+		for (ToolCall toolCall : toolCalls) {
+			mapped.add(new AssistantMessage.ToolCall(toolCall.id(), "function", toolCall.function().name(),
+					toolCall.function().arguments()));
+		}
+		return mapped;
+	}
+
+	private ChatResponseMetadata responseMetadata(ChatCompletionChunk chunk) {
+		if (this.responseMetadata == null || !Objects.equals(this.usage, chunk.usage())
+				|| !Objects.equals(this.created, chunk.created())) {
+			this.usage = chunk.usage();
+			this.created = chunk.created();
+			this.responseMetadata = ChatResponseMetadata.builder()
+				.id(this.id)
+				.usage((this.usage != null) ? HunYuanUsage.from(this.usage) : new EmptyUsage())
+				.model(this.model)
+				.keyValue("created", (this.created != null) ? this.created : 0L)
+				.build();
+		}
+		return this.responseMetadata;
+	}
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+
+/**
+ * Latency stats of one streamed chat completion: the time to the first token, to the
+ * first answer token and to the first reasoning token, the gaps between the token chunks
+ * and the completion tokens per second. The stats are recorded to the
+ * {@link HunYuanStreamMetrics} meters as the chunks arrive, and are available from the
+ * {@code ChatModelObservationContext} of the stream under this class.
+ * <p>
+ * A stream is recorded in plain fields, without locks, which the serial delivery of the
+ * signals of a {@code Flux} allows: its chunks and its completion or error. A
+ * cancellation is not part of that order, as it may come from any thread while a chunk is
+ * recorded, so the stats are only completed, and read, once the stream completed or
+ * failed.
+ *
+ * @author Guo Junyu
+ */
+public final class HunYuanStreamStats {
+
+	private final HunYuanStreamMetrics.Meters meters;
+
+	private boolean started;
+
+	private long startNanos;
+
+	private long firstTokenNanos;
+
+	private long lastTokenNanos;
+
+	private Duration timeToFirstContentToken;
+
+	private Duration timeToFirstReasoningToken;
+
+	private int tokenChunks;
+
+	private Integer completionTokens;
+
+	private boolean completed;
+
+	private Double tokensPerSecond;
+
+	HunYuanStreamStats(HunYuanStreamMetrics.Meters meters) {
+		this.meters = meters;
+	}
+
+	/**
+	 * Record the subscription to the stream. Only the first subscription counts, so that
+	 * the retries before the first chunk are part of the time to the first token.
+	 */
+	void start() {
+		if (!this.started) {
+			this.started = true;
+			this.startNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Record a chunk of the stream.
+	 * @param chunk the chunk.
+	 */
+	void accept(ChatCompletionChunk chunk) {
+		if (chunk.usage() != null && chunk.usage().completionTokens() != null) {
+			this.completionTokens = chunk.usage().completionTokens();
+		}
+		List<ChatCompletion.Choice> choices = chunk.choices();
+		if (choices == null || choices.isEmpty() || choices.get(0).delta() == null) {
+			return;
+		}
+		ChatCompletion.ChatCompletionDelta delta = choices.get(0).delta();
+		boolean content = delta.content() != null && !delta.content().isEmpty();
+		boolean reasoning = delta.reasoningContent() != null && !delta.reasoningContent().isEmpty();
+		if (!content && !reasoning) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (this.tokenChunks++ == 0) {
+			this.firstTokenNanos = now;
+			if (this.meters != null) {
+				this.meters.timeToFirstToken().record(now - this.startNanos, TimeUnit.NANOSECONDS);
+			}
+		}
+		else if (this.meters != null) {
+			this.meters.interTokenGap().record(now - this.lastTokenNanos, TimeUnit.NANOSECONDS);
+		}
+		this.lastTokenNanos = now;
+		if (content && this.timeToFirstContentToken == null) {
+			this.timeToFirstContentToken = Duration.ofNanos(now - this.startNanos);
+			if (this.meters != null) {
+				this.meters.timeToFirstContentToken().record(this.timeToFirstContentToken);
+			}
+		}
+		if (reasoning && this.timeToFirstReasoningToken == null) {
+			this.timeToFirstReasoningToken = Duration.ofNanos(now - this.startNanos);
+			if (this.meters != null) {
+				this.meters.timeToFirstReasoningToken().record(this.timeToFirstReasoningToken);
+			}
+		}
+	}
+
+	/**
+	 * Record the end of the stream, once it completed or failed, on the thread of that
+	 * signal.
+	 */
+	void complete() {
+		if (this.completed) {
+			return;
+		}
+		this.completed = true;
+		long generationNanos = this.lastTokenNanos - this.firstTokenNanos;
+		int tokens = (this.completionTokens != null) ? this.completionTokens : this.tokenChunks;
+		if (this.tokenChunks > 1 && generationNanos > 0 && tokens > 0) {
+			this.tokensPerSecond = tokens / (generationNanos / 1e9);
+			if (this.meters != null) {
+				this.meters.tokensPerSecond().record(this.tokensPerSecond);
+			}
+		}
+	}
+
+	/**
+	 * Return the time from the subscription to the first chunk carrying text.
+	 * @return the time, or null if no text was received.
+	 */
+	public Duration getTimeToFirstToken() {
+		return (this.tokenChunks > 0) ? Duration.ofNanos(this.firstTokenNanos - this.startNanos) : null;
+	}
+
+	/**
+	 * Return the time from the subscription to the first chunk carrying answer text.
+	 * @return the time, or null if no answer text was received.
+	 */
+	public Duration getTimeToFirstContentToken() {
+		return this.timeToFirstContentToken;
+	}
+
+	/**
+	 * Return the time from the subscription to the first chunk carrying reasoning text.
+	 * @return the time, or null if no reasoning text was received.
+	 */
+	public Duration getTimeToFirstReasoningToken() {
+		return this.timeToFirstReasoningToken;
+	}
+
+	/**
+	 * Return the number of chunks carrying text.
+	 * @return the number of chunks.
+	 */
+	public int getTokenChunks() {
+		return this.tokenChunks;
+	}
+
+	/**
+	 * Return the completion tokens per second, from the first to the last text chunk. The
+	 * completion tokens come from the usage of the stream, or are the number of text
+	 * chunks when the stream reported no usage.
+	 * @return the tokens per second, or null until the stream completed with at least two
+	 * text chunks.
+	 */
+	public Double getTokensPerSecond() {
+		return this.tokensPerSecond;
+	}
+
+	KeyValues highCardinalityKeyValues() {
+		KeyValues keyValues = KeyValues.empty();
+		Duration timeToFirstToken = getTimeToFirstToken();
+		if (timeToFirstToken != null) {
+			keyValues = keyValues
+				.and(KeyValue.of("hunyuan.stream.time_to_first_token", String.valueOf(timeToFirstToken.toMillis())));
+		}
+		if (this.tokensPerSecond != null) {
+			keyValues = keyValues
+				.and(KeyValue.of("hunyuan.stream.tokens_per_second", String.valueOf(Math.round(this.tokensPerSecond))));
+		}
+		return keyValues;
+	}
+
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link HunYuanResponseStore} bounded by bytes, evicting with the W-TinyLFU policy.
+ * <p>
+ * New responses enter a window of 1% of the size, evicted in LRU order to the probation
+ * segment of the main space. A response in probation that is looked up again is promoted
+ * to the protected segment, which holds up to 80% of the main space. When the store is
+ * full, a response leaving the window is only admitted if it was looked up more often
+ * than the least recently used response in probation, which is evicted in its place.
+ * Lookups, hits and misses alike, are counted by a count-min sketch of 4-bit counters,
+ * halved after ten lookups per response so that frequencies age. A burst of one-off
+ * requests is then held in the window, rather than flushing the responses asked for all
+ * day as LRU would.
+ * <p>
+ * Responses expire a fixed time after they are stored. Expired responses are dropped when
+ * looked up, or evicted as any other. Responses larger than the store are not stored.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanTinyLfuStore implements HunYuanResponseStore {
+
+	private final long maxBytes;
+
+	private final long maxWindowBytes;
+
+	private final long maxProtectedBytes;
+
+	private final long timeToLive;
+
+	private final boolean offHeap;
+
+	private final LongSupplier nanoTime;
+
+	private final Map<String, Node> nodes = new HashMap<>();
+
+	private final FrequencySketch sketch = new FrequencySketch();
+
+	private final Segment window = new Segment();
+
+	private final Segment probation = new Segment();
+
+	private final Segment protectedSegment = new Segment();
+
+	HunYuanTinyLfuStore(long maxBytes, Duration timeToLive, boolean offHeap) {
+		this(maxBytes, timeToLive, offHeap, System::nanoTime);
+	}
+
+	HunYuanTinyLfuStore(long maxBytes, Duration timeToLive, boolean offHeap, LongSupplier nanoTime) {
+		Assert.isTrue(maxBytes >= 0, "maxBytes must not be negative");
+		Assert.isTrue(timeToLive != null && timeToLive.compareTo(Duration.ZERO) > 0, "timeToLive must be positive");
+		this.maxBytes = maxBytes;
+		this.maxWindowBytes = Math.max(1, maxBytes / 100);
+		this.maxProtectedBytes = (maxBytes - this.maxWindowBytes) * 4 / 5;
+		this.timeToLive = timeToLive.toNanos();
+		this.offHeap = offHeap;
+		this.nanoTime = nanoTime;
+	}
+
+	@Override
+	public byte[] get(String key) {
+		ByteBuffer value;
+		synchronized (this) {
+			this.sketch.increment(hash(key));
+			Node node = this.nodes.get(key);
+			if (node == null) {
+				return null;
+			}
+			if (this.nanoTime.getAsLong() - node.expiresAt > 0) {
+				remove(node);
+				return null;
+			}
+			hit(node);
+			value = node.value;
+		}
+		if (!this.offHeap) {
+			return value.array();
+		}
+		// Absolute reads, the buffer is shared by the threads reading it.
+		byte[] response = new byte[value.capacity()];
+		value.get(0, response);
+		return response;
+	}
+
+	@Override
+	public void put(String key, byte[] response) {
+		long weight = (long) response.length + key.length();
+		if (weight > this.maxBytes) {
+			return;
+		}
+		ByteBuffer value = this.offHeap ? ByteBuffer.allocateDirect(response.length).put(0, response)
+				: ByteBuffer.wrap(response);
+		Node node = new Node(key, value, weight, this.nanoTime.getAsLong() + this.timeToLive);
+		synchronized (this) {
+			Node previous = this.nodes.put(key, node);
+			if (previous != null) {
+				previous.segment.remove(previous);
+			}
+			this.sketch.ensureCapacity(this.nodes.size());
+			this.window.add(node);
+			evict();
+		}
+	}
+
+	/**
+	 * Number of responses stored, expired ones included.
+	 */
+	synchronized int size() {
+		return this.nodes.size();
+	}
+
+	/**
+	 * Number of bytes of the responses stored, with their keys.
+	 */
+	synchronized long bytes() {
+		return this.window.bytes + this.probation.bytes + this.protectedSegment.bytes;
+	}
+
+	private void hit(Node node) {
+		if (node.segment == this.probation) {
+			this.probation.remove(node);
+			this.protectedSegment.add(node);
+			while (this.protectedSegment.bytes > this.maxProtectedBytes) {
+				Node demoted = this.protectedSegment.head;
+				this.protectedSegment.remove(demoted);
+				this.probation.add(demoted);
+			}
+		}
+		else {
+			node.segment.moveToTail(node);
+		}
+	}
+
+	private void evict() {
+		// The responses leaving the window are the candidates to the main space, the
+		// least recently used responses of the probation segment its victims.
+		Node candidate = null;
+		while (this.window.bytes > this.maxWindowBytes) {
+			Node node = this.window.head;
+			this.window.remove(node);
+			this.probation.add(node);
+			if (candidate == null) {
+				candidate = node;
+			}
+		}
+		Node victim = this.probation.head;
+		while (bytes() > this.maxBytes) {
+			Node evicted;
+			if (candidate != null && victim != null && victim != candidate) {
+				evicted = (this.sketch.frequency(hash(candidate.key)) > this.sketch.frequency(hash(victim.key)))
+						? victim : candidate;
+			}
+			else if (victim != null) {
+				// No candidate, or no victim left before them: LRU order.
+				evicted = victim;
+			}
+			else {
+				evicted = (this.protectedSegment.head != null) ? this.protectedSegment.head : this.window.head;
+			}
+			if (evicted == victim) {
+				victim = victim.next;
+			}
+			if (evicted == candidate) {
+				candidate = candidate.next;
+			}
+			remove(evicted);
+		}
+	}
+
+	private void remove(Node node) {
+		node.segment.remove(node);
+		this.nodes.remove(node.key, node);
+	}
+
+	private static int hash(String key) {
+		int hash = key.hashCode() * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static final class Node {
+
+		private final String key;
+
+		private final ByteBuffer value;
+
+		private final long weight;
+
+		private final long expiresAt;
+
+		private Segment segment;
+
+		private Node previous;
+
+		private Node next;
+
+		private Node(String key, ByteBuffer value, long weight, long expiresAt) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+			this.expiresAt = expiresAt;
+		}
+
+	}
+
+	/**
+	 * Nodes in LRU order, from the head to the tail, and their weight.
+	 */
+	private static final class Segment {
+
+		private Node head;
+
+		private Node tail;
+
+		private long bytes;
+
+		private void add(Node node) {
+			node.segment = this;
+			node.previous = this.tail;
+			node.next = null;
+			if (this.tail != null) {
+				this.tail.next = node;
+			}
+			else {
+				this.head = node;
+			}
+			this.tail = node;
+			this.bytes += node.weight;
+		}
+
+		private void remove(Node node) {
+			if (node.previous != null) {
+				node.previous.next = node.next;
+			}
+			else {
+				this.head = node.next;
+			}
+			if (node.next != null) {
+				node.next.previous = node.previous;
+			}
+			else {
+				this.tail = node.previous;
+			}
+			node.previous = null;
+			node.next = null;
+			this.bytes -= node.weight;
+		}
+
+		private void moveToTail(Node node) {
+			if (node != this.tail) {
+				remove(node);
+				add(node);
+			}
+		}
+
+	}
+
+	/**
+	 * Count-min sketch of 4 rows of 4-bit counters, packed 16 to a {@code long}. The
+	 * table holds about as many counters per row as there are responses, and is reset
+	 * when the store grows past it.
+	 */
+	private static final class FrequencySketch {
+
+		private static final long[] SEEDS = { 0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL,
+				0xCBF29CE484222325L };
+
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		private long[] table = new long[16];
+
+		private int additions;
+
+		private void ensureCapacity(int entries) {
+			if (entries > this.table.length) {
+				this.table = new long[Integer.highestOneBit(entries - 1) << 1];
+				this.additions = 0;
+			}
+		}
+
+		private int frequency(int hash) {
+			int frequency = 15;
+			for (int row = 0; row < SEEDS.length; row++) {
+				frequency = Math.min(frequency, (int) (this.table[index(row, hash)] >>> offset(row, hash)) & 15);
+			}
+			return frequency;
+		}
+
+		private void increment(int hash) {
+			boolean incremented = false;
+			for (int row = 0; row < SEEDS.length; row++) {
+				int index = index(row, hash);
+				int offset = offset(row, hash);
+				if (((this.table[index] >>> offset) & 15) != 15) {
+					this.table[index] += 1L << offset;
+					incremented = true;
+				}
+			}
+			if (incremented && ++this.additions >= 10 * this.table.length) {
+				for (int i = 0; i < this.table.length; i++) {
+					this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+				}
+				this.additions /= 2;
+			}
+		}
+
+		private int index(int row, int hash) {
+			long h = (hash + SEEDS[row]) * SEEDS[row];
+			h += h >>> 32;
+			return (int) h & (this.table.length - 1);
+		}
+
+		private static int offset(int row, int hash) {
+			return ((hash >>> (row << 3)) & 15) << 2;
+		}
+
+	}
+
+}
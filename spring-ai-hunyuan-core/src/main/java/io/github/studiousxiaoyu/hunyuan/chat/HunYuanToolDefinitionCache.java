@@ -0,0 +1,153 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.util.CollectionUtils;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.FunctionTool;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanSerializedTools;
+
+/**
+ * Tools of the chat completion requests, resolved and serialized once per set of tool
+ * callbacks and tool names rather than for every request.
+ * <p>
+ * A set is identified by its tool callback instances, in order, and its tool names: a
+ * callback whose definition changes has to be replaced by a new instance, and the tools
+ * resolved from names are assumed not to change for the lifetime of the chat model. The
+ * least recently used sets are evicted beyond the maximum size, so that callbacks created
+ * for each request do not accumulate.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanToolDefinitionCache {
+
+	static final int DEFAULT_MAX_SIZE = 64;
+
+	private final ToolCallingManager toolCallingManager;
+
+	private final Map<ToolSet, Entry> entries;
+
+	HunYuanToolDefinitionCache(ToolCallingManager toolCallingManager, int maxSize) {
+		this.toolCallingManager = toolCallingManager;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ToolSet, Entry> eldest) {
+				return size() > maxSize;
+			}
+
+		};
+	}
+
+	/**
+	 * Return the tools of the given options.
+	 * @param options the options of the request.
+	 * @return the serialized tools, or null when the options resolve to no tool.
+	 */
+	HunYuanSerializedTools tools(ToolCallingChatOptions options) {
+		ToolSet key = new ToolSet(options.getToolCallbacks(), options.getToolNames());
+		Entry entry;
+		synchronized (this.entries) {
+			entry = this.entries.get(key);
+		}
+		if (entry == null) {
+			// Resolved outside the lock: two threads may both resolve a new set, to
+			// equal tools.
+			entry = new Entry(resolve(options));
+			synchronized (this.entries) {
+				this.entries.put(key, entry);
+			}
+		}
+		return entry.tools();
+	}
+
+	int size() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+	private HunYuanSerializedTools resolve(ToolCallingChatOptions options) {
+		List<ToolDefinition> toolDefinitions = this.toolCallingManager.resolveToolDefinitions(options);
+		if (CollectionUtils.isEmpty(toolDefinitions)) {
+			return null;
+		}
+		return HunYuanSerializedTools.of(toolDefinitions.stream()
+			.map(toolDefinition -> new FunctionTool(new FunctionTool.Function(toolDefinition.description(),
+					toolDefinition.name(), toolDefinition.inputSchema())))
+			.toList());
+	}
+
+	private record Entry(HunYuanSerializedTools tools) {
+	}
+
+	/**
+	 * Tool callbacks compared by identity, and tool names.
+	 */
+	private static final class ToolSet {
+
+		private final ToolCallback[] toolCallbacks;
+
+		private final Set<String> toolNames;
+
+		private final int hash;
+
+		ToolSet(List<ToolCallback> toolCallbacks, Set<String> toolNames) {
+			this.toolCallbacks = (toolCallbacks != null) ? toolCallbacks.toArray(new ToolCallback[0])
+					: new ToolCallback[0];
+			this.toolNames = (toolNames != null) ? Set.copyOf(toolNames) : Set.of();
+			int hash = this.toolNames.hashCode();
+			for (ToolCallback toolCallback : this.toolCallbacks) {
+				hash = 31 * hash + System.identityHashCode(toolCallback);
+			}
+			this.hash = hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof ToolSet that) || this.hash != that.hash
+					|| this.toolCallbacks.length != that.toolCallbacks.length) {
+				return false;
+			}
+			for (int i = 0; i < this.toolCallbacks.length; i++) {
+				if (this.toolCallbacks[i] != that.toolCallbacks[i]) {
+					return false;
+				}
+			}
+			return this.toolNames.equals(that.toolNames);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.Map;
+
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.metadata.HunYuanUsage;
+
+/**
+ * State of the tool calling loop of one chat: the rounds sent to the model, the tokens
+ * they used and the time since the first one, checked against the
+ * {@link HunYuanToolLoopOptions budgets} before each new round.
+ * <p>
+ * The responses of the rounds after the first carry the usage of all the rounds so far,
+ * and the number of rounds under {@link HunYuanToolLoopOptions#ROUNDS_METADATA_KEY}. The
+ * messages of the rounds are serialized once, by the {@link HunYuanConversationEncoder}
+ * of the loop. The rounds of a loop are sequential, a loop is not shared between threads.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanToolLoop {
+
+	private final HunYuanToolLoopOptions options;
+
+	private final long startNanos = System.nanoTime();
+
+	private final HunYuanConversationEncoder conversation = new HunYuanConversationEncoder();
+
+	private int rounds = 1;
+
+	private int promptTokens;
+
+	private int completionTokens;
+
+	private int totalTokens;
+
+	private int lastPromptTokens;
+
+	private int lastCompletionTokens;
+
+	private HunYuanToolLoop(HunYuanToolLoopOptions options) {
+		this.options = options;
+	}
+
+	static HunYuanToolLoop start(ChatOptions options) {
+		return new HunYuanToolLoop(
+				(options instanceof HunYuanChatOptions hunYuanChatOptions) ? hunYuanChatOptions.getToolLoop() : null);
+	}
+
+	HunYuanConversationEncoder conversation() {
+		return this.conversation;
+	}
+
+	/**
+	 * Record the last response of the current round, the one asking for tools.
+	 * @param response the response.
+	 */
+	void roundCompleted(ChatResponse response) {
+		Usage usage = usage(response);
+		this.lastPromptTokens = (usage != null) ? tokens(usage.getPromptTokens()) : 0;
+		this.lastCompletionTokens = (usage != null) ? tokens(usage.getCompletionTokens()) : 0;
+		this.promptTokens += this.lastPromptTokens;
+		this.completionTokens += this.lastCompletionTokens;
+		this.totalTokens += (usage != null) ? tokens(usage.getTotalTokens()) : 0;
+	}
+
+	/**
+	 * Return the budget that the next round would exceed.
+	 * @return the stop reason, or null when the next round may be sent.
+	 */
+	String exhausted() {
+		if (this.options == null) {
+			return null;
+		}
+		if (this.options.getMaxRounds() != null && this.rounds >= this.options.getMaxRounds()) {
+			return "max-rounds";
+		}
+		// The next prompt holds the previous one, its completion and the tool results.
+		if (this.options.getMaxPromptTokens() != null && (long) this.promptTokens + this.lastPromptTokens
+				+ this.lastCompletionTokens > this.options.getMaxPromptTokens()) {
+			return "max-prompt-tokens";
+		}
+		if (this.options.getMaxDuration() != null
+				&& System.nanoTime() - this.startNanos >= this.options.getMaxDuration().toNanos()) {
+			return "max-duration";
+		}
+		return null;
+	}
+
+	/**
+	 * Start the next round.
+	 */
+	void nextRound() {
+		this.rounds++;
+	}
+
+	/**
+	 * Return the response with the usage of all the rounds, and the number of rounds.
+	 * @param response a response of the current round.
+	 * @return the response, unchanged in the first round.
+	 */
+	ChatResponse aggregate(ChatResponse response) {
+		if (this.rounds == 1) {
+			return response;
+		}
+		Usage usage = usage(response);
+		return withMetadata(response,
+				(usage != null) ? new HunYuanApi.Usage(this.promptTokens + tokens(usage.getPromptTokens()),
+						this.totalTokens + tokens(usage.getTotalTokens()),
+						this.completionTokens + tokens(usage.getCompletionTokens())) : recordedUsage(),
+				null);
+	}
+
+	/**
+	 * Return a response built from the last response of a round that was recorded, with
+	 * the usage of all the rounds and the number of rounds.
+	 * @param response the response.
+	 * @return the response, unchanged in the first round.
+	 */
+	ChatResponse aggregateCompleted(ChatResponse response) {
+		return (this.rounds == 1) ? response : withMetadata(response, recordedUsage(), null);
+	}
+
+	/**
+	 * Return the last response of a loop stopped by a budget.
+	 * @param response the response asking for tools, already recorded.
+	 * @param stopReason the budget that stopped the loop.
+	 * @return the response, with the usage of all the rounds and the stop reason.
+	 */
+	ChatResponse stop(ChatResponse response, String stopReason) {
+		return withMetadata(response, recordedUsage(), stopReason);
+	}
+
+	private HunYuanApi.Usage recordedUsage() {
+		return new HunYuanApi.Usage(this.promptTokens, this.totalTokens, this.completionTokens);
+	}
+
+	private ChatResponse withMetadata(ChatResponse response, HunYuanApi.Usage usage, String stopReason) {
+		ChatResponseMetadata metadata = response.getMetadata();
+		ChatResponseMetadata.Builder builder = ChatResponseMetadata.builder()
+			.id(metadata.getId())
+			.model(metadata.getModel())
+			.rateLimit(metadata.getRateLimit())
+			.promptMetadata(metadata.getPromptMetadata());
+		for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+			builder.keyValue(entry.getKey(), entry.getValue());
+		}
+		builder.usage(HunYuanUsage.from(usage)).keyValue(HunYuanToolLoopOptions.ROUNDS_METADATA_KEY, this.rounds);
+		if (stopReason != null) {
+			builder.keyValue(HunYuanToolLoopOptions.STOP_REASON_METADATA_KEY, stopReason);
+		}
+		return ChatResponse.builder().from(response).metadata(builder.build()).build();
+	}
+
+	private static Usage usage(ChatResponse response) {
+		return (response.getMetadata() != null) ? response.getMetadata().getUsage() : null;
+	}
+
+	private static int tokens(Integer tokens) {
+		return (tokens != null) ? tokens : 0;
+	}
+
+}
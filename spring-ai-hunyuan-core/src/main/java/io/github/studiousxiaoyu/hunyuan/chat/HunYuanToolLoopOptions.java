@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Budgets of the tool calling loop of a chat, which sends the tool results back to the
+ * model until it answers without calling tools. Each budget is optional. A loop that
+ * would exceed one stops before executing the tools, and returns the last response of the
+ * model with its tool calls and the reason under {@link #STOP_REASON_METADATA_KEY} in its
+ * metadata.
+ *
+ * @author Guo Junyu
+ */
+public class HunYuanToolLoopOptions {
+
+	/**
+	 * Response metadata key of the number of requests sent to the model, set once the
+	 * loop sent more than one.
+	 */
+	public static final String ROUNDS_METADATA_KEY = "hunyuan.tool-loop.rounds";
+
+	/**
+	 * Response metadata key of the budget that stopped the loop: {@code max-rounds},
+	 * {@code max-prompt-tokens} or {@code max-duration}.
+	 */
+	public static final String STOP_REASON_METADATA_KEY = "hunyuan.tool-loop.stop-reason";
+
+	/**
+	 * Maximum number of requests to the model, including the first one.
+	 */
+	private Integer maxRounds;
+
+	/**
+	 * Maximum number of prompt tokens of all the requests to the model. A request is not
+	 * sent when the prompt tokens of the previous one, its completion tokens and the
+	 * tokens already spent would exceed it.
+	 */
+	private Integer maxPromptTokens;
+
+	/**
+	 * Maximum time from the first request to the model to the start of another round.
+	 */
+	private Duration maxDuration;
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public Integer getMaxRounds() {
+		return this.maxRounds;
+	}
+
+	public void setMaxRounds(Integer maxRounds) {
+		this.maxRounds = maxRounds;
+	}
+
+	public Integer getMaxPromptTokens() {
+		return this.maxPromptTokens;
+	}
+
+	public void setMaxPromptTokens(Integer maxPromptTokens) {
+		this.maxPromptTokens = maxPromptTokens;
+	}
+
+	public Duration getMaxDuration() {
+		return this.maxDuration;
+	}
+
+	public void setMaxDuration(Duration maxDuration) {
+		this.maxDuration = maxDuration;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof HunYuanToolLoopOptions that)) {
+			return false;
+		}
+		return Objects.equals(this.maxRounds, that.maxRounds)
+				&& Objects.equals(this.maxPromptTokens, that.maxPromptTokens)
+				&& Objects.equals(this.maxDuration, that.maxDuration);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.maxRounds, this.maxPromptTokens, this.maxDuration);
+	}
+
+	public static class Builder {
+
+		private final HunYuanToolLoopOptions options = new HunYuanToolLoopOptions();
+
+		public Builder maxRounds(Integer maxRounds) {
+			this.options.maxRounds = maxRounds;
+			return this;
+		}
+
+		public Builder maxPromptTokens(Integer maxPromptTokens) {
+			this.options.maxPromptTokens = maxPromptTokens;
+			return this;
+		}
+
+		public Builder maxDuration(Duration maxDuration) {
+			this.options.maxDuration = maxDuration;
+			return this;
+		}
+
+		public HunYuanToolLoopOptions build() {
+			return this.options;
+		}
+
+	}
+
+}
@@ -0,0 +1,497 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.Arrays;
+
+import org.springframework.util.Assert;
+
+/**
+ * Approximate nearest neighbour index of embeddings by cosine similarity: an inverted
+ * file (IVF) of binary codes, re-ranked on 8-bit vectors.
+ * <p>
+ * Each vector is normalized and kept twice: as the sign of each of its dimensions, 128
+ * bytes for 1024 dimensions, and scaled to bytes for the re-ranking. The codes are
+ * clustered into lists around binary centroids, trained by k-majority, the Hamming
+ * counterpart of k-means, on the first {@code 8 * lists} vectors added; until then all
+ * vectors are in one list. The training is computed on a snapshot of the codes, apart
+ * from the index, so that its owner can run it without holding its lock, and then applied
+ * to the index. A search compares the code of the query with the centroids, scans the
+ * codes of the {@code probes} nearest lists with {@link Long#bitCount}, and computes the
+ * cosine similarity of the closest {@code candidates} only.
+ * <p>
+ * Vectors are tagged, and only the vectors with the tag of the query are returned. Ids
+ * are reused once removed. The lists are not retrained as the index grows, nor rebalanced
+ * as vectors are removed. The index is not thread-safe, but for {@link Training#run()}.
+ *
+ * @author Guo Junyu
+ */
+final class HunYuanVectorIndex {
+
+	/**
+	 * Vectors per page, so that growing the index never copies the vectors.
+	 */
+	private static final int PAGE_SHIFT = 10;
+
+	private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+	private final int dimensions;
+
+	private final int words;
+
+	private final int listCount;
+
+	private final int probes;
+
+	private final int candidates;
+
+	private final PostingList[] lists;
+
+	/**
+	 * Binary centroids of the lists, null until trained.
+	 */
+	private long[] centroids;
+
+	private boolean trainingStarted;
+
+	/**
+	 * Vectors of the ids, {@code dimensions} bytes each, in pages.
+	 */
+	private byte[][] pages = new byte[0][];
+
+	private float[] scales = new float[0];
+
+	private int[] listOf = new int[0];
+
+	private int[] slotOf = new int[0];
+
+	private int[] freeIds = new int[16];
+
+	private int freeCount;
+
+	private int highWater;
+
+	private int size;
+
+	HunYuanVectorIndex(int dimensions, int lists, int probes, int candidates) {
+		Assert.isTrue(dimensions > 0, "dimensions must be positive");
+		Assert.isTrue(lists > 0, "lists must be positive");
+		Assert.isTrue(probes > 0 && probes <= lists, "probes must be between 1 and lists");
+		Assert.isTrue(candidates > 0, "candidates must be positive");
+		this.dimensions = dimensions;
+		this.words = (dimensions + 63) / 64;
+		this.listCount = lists;
+		this.probes = probes;
+		this.candidates = candidates;
+		this.lists = new PostingList[lists];
+		for (int i = 0; i < lists; i++) {
+			this.lists[i] = new PostingList(this.words);
+		}
+	}
+
+	/**
+	 * Add the given vector.
+	 * @param vector the vector, of the dimensions of the index.
+	 * @param tag the tag of the vector.
+	 * @return the id of the vector.
+	 */
+	int add(float[] vector, long tag) {
+		Query query = query(vector);
+		int id = (this.freeCount > 0) ? this.freeIds[--this.freeCount] : grow();
+		System.arraycopy(query.vector, 0, this.pages[id >>> PAGE_SHIFT], (id & PAGE_MASK) * this.dimensions,
+				this.dimensions);
+		this.scales[id] = query.scale;
+		int list = (this.centroids != null) ? nearest(this.centroids, query.code, 0) : 0;
+		this.listOf[id] = list;
+		this.slotOf[id] = this.lists[list].add(query.code, 0, id, tag);
+		this.size++;
+		return id;
+	}
+
+	/**
+	 * Return the training of the lists once enough vectors were added, only once.
+	 * @return the training, to {@link Training#run() run} and then
+	 * {@link #apply(Training) apply}, or null when the lists need no training.
+	 */
+	Training training() {
+		if (this.centroids != null || this.trainingStarted || this.listCount == 1 || this.size < 8 * this.listCount) {
+			return null;
+		}
+		this.trainingStarted = true;
+		PostingList all = this.lists[0];
+		return new Training(Arrays.copyOf(all.codes, all.size * this.words), Arrays.copyOf(all.ids, all.size));
+	}
+
+	/**
+	 * Train the lists right away if enough vectors were added.
+	 */
+	void train() {
+		Training training = training();
+		if (training != null) {
+			training.run();
+			apply(training);
+		}
+	}
+
+	/**
+	 * Distribute the vectors into the lists of a training that ran. The vectors added
+	 * since its snapshot are assigned to their nearest list here.
+	 * @param training the training.
+	 */
+	void apply(Training training) {
+		Assert.state(training.centroids != null, "The training did not run");
+		this.centroids = training.centroids;
+		int[] snapshotSlotOf = new int[this.highWater];
+		Arrays.fill(snapshotSlotOf, -1);
+		for (int slot = 0; slot < training.ids.length; slot++) {
+			if (training.ids[slot] < snapshotSlotOf.length) {
+				snapshotSlotOf[training.ids[slot]] = slot;
+			}
+		}
+		PostingList all = this.lists[0];
+		this.lists[0] = new PostingList(this.words);
+		for (int slot = 0; slot < all.size; slot++) {
+			int id = all.ids[slot];
+			int offset = slot * this.words;
+			int snapshotSlot = snapshotSlotOf[id];
+			// An id removed and reused since the snapshot holds another vector.
+			int list = (snapshotSlot >= 0 && Arrays.equals(all.codes, offset, offset + this.words, training.codes,
+					snapshotSlot * this.words, (snapshotSlot + 1) * this.words)) ? training.assignments[snapshotSlot]
+							: nearest(this.centroids, all.codes, offset);
+			this.listOf[id] = list;
+			this.slotOf[id] = this.lists[list].add(all.codes, offset, id, all.tags[slot]);
+		}
+	}
+
+	/**
+	 * Remove the vector of the given id.
+	 * @param id the id of the vector.
+	 */
+	void remove(int id) {
+		Assert.isTrue(contains(id), "Unknown id " + id);
+		int moved = this.lists[this.listOf[id]].remove(this.slotOf[id]);
+		if (moved >= 0) {
+			this.slotOf[moved] = this.slotOf[id];
+		}
+		this.listOf[id] = -1;
+		if (this.freeCount == this.freeIds.length) {
+			this.freeIds = Arrays.copyOf(this.freeIds, this.freeCount * 2);
+		}
+		this.freeIds[this.freeCount++] = id;
+		this.size--;
+	}
+
+	/**
+	 * Search the vector most similar to the given one, among the vectors of the tag.
+	 * @param vector the vector, of the dimensions of the index.
+	 * @param tag the tag of the vectors searched.
+	 * @return the match, or null when no vector of the tag was found.
+	 */
+	Match search(float[] vector, long tag) {
+		Query query = query(vector);
+		int[] candidateIds = new int[this.candidates];
+		int[] candidateDistances = new int[this.candidates];
+		Arrays.fill(candidateDistances, Integer.MAX_VALUE);
+		int worst = 0;
+		for (int list : probedLists(query.code)) {
+			PostingList postings = this.lists[list];
+			for (int slot = 0; slot < postings.size; slot++) {
+				if (postings.tags[slot] != tag) {
+					continue;
+				}
+				int distance = hamming(query.code, 0, postings.codes, slot * this.words);
+				if (distance < candidateDistances[worst]) {
+					candidateIds[worst] = postings.ids[slot];
+					candidateDistances[worst] = distance;
+					worst = 0;
+					for (int i = 1; i < this.candidates; i++) {
+						if (candidateDistances[i] > candidateDistances[worst]) {
+							worst = i;
+						}
+					}
+				}
+			}
+		}
+		Match match = null;
+		for (int i = 0; i < this.candidates; i++) {
+			if (candidateDistances[i] != Integer.MAX_VALUE) {
+				float similarity = similarity(query, candidateIds[i]);
+				if (match == null || similarity > match.similarity()) {
+					match = new Match(candidateIds[i], similarity);
+				}
+			}
+		}
+		return match;
+	}
+
+	boolean contains(int id) {
+		return id >= 0 && id < this.highWater && this.listOf[id] >= 0;
+	}
+
+	/**
+	 * Upper bound of the ids in use.
+	 */
+	int highWater() {
+		return this.highWater;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	boolean isTrained() {
+		return this.centroids != null;
+	}
+
+	/**
+	 * Bytes held for each vector: its 8-bit vector and scale, its code, tag and id in its
+	 * list, and its position.
+	 */
+	long bytesPerVector() {
+		return this.dimensions + 4L + this.words * 8L + 8 + 4 + 8;
+	}
+
+	private int grow() {
+		int id = this.highWater++;
+		if (id == this.scales.length) {
+			int capacity = Math.max(16, id + (id >> 1));
+			this.scales = Arrays.copyOf(this.scales, capacity);
+			this.listOf = Arrays.copyOf(this.listOf, capacity);
+			this.slotOf = Arrays.copyOf(this.slotOf, capacity);
+		}
+		if ((id & PAGE_MASK) == 0) {
+			int page = id >>> PAGE_SHIFT;
+			if (page == this.pages.length) {
+				this.pages = Arrays.copyOf(this.pages, Math.max(4, page * 2));
+			}
+			this.pages[page] = new byte[(PAGE_MASK + 1) * this.dimensions];
+		}
+		return id;
+	}
+
+	private Query query(float[] vector) {
+		Assert.isTrue(vector.length == this.dimensions,
+				() -> "Expected " + this.dimensions + " dimensions, got " + vector.length);
+		double norm = 0;
+		float max = 0;
+		for (float value : vector) {
+			norm += (double) value * value;
+			max = Math.max(max, Math.abs(value));
+		}
+		long[] code = new long[this.words];
+		byte[] bytes = new byte[this.dimensions];
+		// Scaled so that the largest dimension is 127, the scale also normalizes.
+		float scale = (max > 0) ? 127 / max : 0;
+		for (int i = 0; i < this.dimensions; i++) {
+			bytes[i] = (byte) Math.round(vector[i] * scale);
+			if (vector[i] > 0) {
+				code[i >>> 6] |= 1L << i;
+			}
+		}
+		return new Query(code, bytes, (norm > 0) ? (float) (scale * Math.sqrt(norm)) : 1);
+	}
+
+	private float similarity(Query query, int id) {
+		byte[] page = this.pages[id >>> PAGE_SHIFT];
+		int offset = (id & PAGE_MASK) * this.dimensions;
+		int dot = 0;
+		for (int i = 0; i < this.dimensions; i++) {
+			dot += query.vector[i] * page[offset + i];
+		}
+		return dot / (query.scale * this.scales[id]);
+	}
+
+	private int[] probedLists(long[] code) {
+		if (this.centroids == null) {
+			return new int[] { 0 };
+		}
+		int[] lists = new int[this.probes];
+		int[] distances = new int[this.probes];
+		Arrays.fill(distances, Integer.MAX_VALUE);
+		for (int list = 0; list < this.listCount; list++) {
+			int distance = hamming(code, 0, this.centroids, list * this.words);
+			if (distance < distances[this.probes - 1]) {
+				// Insertion into the nearest lists found so far, in order.
+				int i = this.probes - 1;
+				while (i > 0 && distances[i - 1] > distance) {
+					distances[i] = distances[i - 1];
+					lists[i] = lists[i - 1];
+					i--;
+				}
+				distances[i] = distance;
+				lists[i] = list;
+			}
+		}
+		return lists;
+	}
+
+	private int nearest(long[] centroids, long[] codes, int offset) {
+		int nearest = 0;
+		int nearestDistance = Integer.MAX_VALUE;
+		for (int list = 0; list < this.listCount; list++) {
+			int distance = hamming(codes, offset, centroids, list * this.words);
+			if (distance < nearestDistance) {
+				nearest = list;
+				nearestDistance = distance;
+			}
+		}
+		return nearest;
+	}
+
+	private int hamming(long[] a, int aOffset, long[] b, int bOffset) {
+		int distance = 0;
+		for (int i = 0; i < this.words; i++) {
+			distance += Long.bitCount(a[aOffset + i] ^ b[bOffset + i]);
+		}
+		return distance;
+	}
+
+	/**
+	 * Training of the lists on a snapshot of the codes of the index. It only reads the
+	 * snapshot and the settings of the index, and may run on any thread.
+	 */
+	final class Training {
+
+		private final long[] codes;
+
+		private final int[] ids;
+
+		private long[] centroids;
+
+		private int[] assignments;
+
+		private Training(long[] codes, int[] ids) {
+			this.codes = codes;
+			this.ids = ids;
+		}
+
+		/**
+		 * Compute the centroids of the lists and the list of each vector of the snapshot.
+		 */
+		void run() {
+			int words = HunYuanVectorIndex.this.words;
+			int dimensions = HunYuanVectorIndex.this.dimensions;
+			int listCount = HunYuanVectorIndex.this.listCount;
+			int n = this.ids.length;
+			long[] centroids = new long[listCount * words];
+			for (int list = 0; list < listCount; list++) {
+				System.arraycopy(this.codes, (int) ((long) list * n / listCount) * words, centroids, list * words,
+						words);
+			}
+			int[] counts = new int[listCount * dimensions];
+			int[] members = new int[listCount];
+			for (int iteration = 0; iteration < 4; iteration++) {
+				Arrays.fill(counts, 0);
+				Arrays.fill(members, 0);
+				for (int slot = 0; slot < n; slot++) {
+					int list = nearest(centroids, this.codes, slot * words);
+					members[list]++;
+					for (int word = 0; word < words; word++) {
+						long bits = this.codes[slot * words + word];
+						while (bits != 0) {
+							counts[list * dimensions + word * 64 + Long.numberOfTrailingZeros(bits)]++;
+							bits &= bits - 1;
+						}
+					}
+				}
+				// Each bit of a centroid is the majority bit of its list.
+				for (int list = 0; list < listCount; list++) {
+					if (members[list] == 0) {
+						continue;
+					}
+					int offset = list * words;
+					Arrays.fill(centroids, offset, offset + words, 0);
+					for (int bit = 0; bit < dimensions; bit++) {
+						if (2 * counts[list * dimensions + bit] > members[list]) {
+							centroids[offset + (bit >>> 6)] |= 1L << bit;
+						}
+					}
+				}
+			}
+			int[] assignments = new int[n];
+			for (int slot = 0; slot < n; slot++) {
+				assignments[slot] = nearest(centroids, this.codes, slot * words);
+			}
+			this.assignments = assignments;
+			this.centroids = centroids;
+		}
+
+	}
+
+	/**
+	 * A match of a search.
+	 *
+	 * @param id the id of the vector.
+	 * @param similarity its cosine similarity with the vector searched, approximate.
+	 */
+	record Match(int id, float similarity) {
+	}
+
+	private record Query(long[] code, byte[] vector, float scale) {
+	}
+
+	/**
+	 * Codes, tags and ids of the vectors of a list, contiguous so that scanning them
+	 * reads memory in order.
+	 */
+	private static final class PostingList {
+
+		private final int words;
+
+		private long[] codes = new long[0];
+
+		private long[] tags = new long[0];
+
+		private int[] ids = new int[0];
+
+		private int size;
+
+		private PostingList(int words) {
+			this.words = words;
+		}
+
+		private int add(long[] code, int offset, int id, long tag) {
+			if (this.size == this.ids.length) {
+				int capacity = Math.max(4, this.size + (this.size >> 1));
+				this.codes = Arrays.copyOf(this.codes, capacity * this.words);
+				this.tags = Arrays.copyOf(this.tags, capacity);
+				this.ids = Arrays.copyOf(this.ids, capacity);
+			}
+			System.arraycopy(code, offset, this.codes, this.size * this.words, this.words);
+			this.tags[this.size] = tag;
+			this.ids[this.size] = id;
+			return this.size++;
+		}
+
+		/**
+		 * Remove the vector of the given slot, moving the last one into it.
+		 * @return the id of the vector moved, -1 if none was.
+		 */
+		private int remove(int slot) {
+			int last = --this.size;
+			if (slot == last) {
+				return -1;
+			}
+			System.arraycopy(this.codes, last * this.words, this.codes, slot * this.words, this.words);
+			this.tags[slot] = this.tags[last];
+			this.ids[slot] = this.ids[last];
+			return this.ids[slot];
+		}
+
+	}
+
+}
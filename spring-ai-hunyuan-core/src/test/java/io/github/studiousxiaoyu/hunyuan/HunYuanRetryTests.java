@@ -16,8 +16,11 @@
 
 package io.github.studiousxiaoyu.hunyuan;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.github.studiousxiaoyu.hunyuan.chat.HunYuanChatModel;
 import io.github.studiousxiaoyu.hunyuan.chat.HunYuanChatOptions;
@@ -28,6 +31,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import org.springframework.ai.chat.prompt.Prompt;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
@@ -36,6 +40,7 @@ import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionFinishReaso
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
 import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import org.springframework.ai.retry.NonTransientAiException;
 import org.springframework.ai.retry.RetryUtils;
 import org.springframework.ai.retry.TransientAiException;
 import org.springframework.http.ResponseEntity;
@@ -45,9 +50,12 @@ import org.springframework.retry.RetryListener;
 import org.springframework.retry.support.RetryTemplate;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * @author Guo Junyu
@@ -76,6 +84,8 @@ public class HunYuanRetryTests {
 				.build())
 			.hunYuanApi(this.hunYuanApi)
 			.retryTemplate(retryTemplate)
+			.asyncRetry(HunYuanChatModel.asyncRetry(5, Duration.ofMillis(10), Duration.ofMillis(100)))
+			.streamRetry(HunYuanChatModel.streamRetry(5, Duration.ofMillis(10), Duration.ofMillis(100)))
 			.build();
 	}
 
@@ -125,8 +135,7 @@ public class HunYuanRetryTests {
 
 		assertThat(result).isNotNull();
 		assertThat(result.collectList().block().get(0).getResult().getOutput().getText()).isSameAs("Response123");
-		assertThat(this.retryListener.onSuccessRetryCount).isEqualTo(2);
-		assertThat(this.retryListener.onErrorRetryCount).isEqualTo(2);
+		verify(this.hunYuanApi, times(3)).chatCompletionStream(isA(ChatCompletionRequest.class));
 	}
 
 	@Test
@@ -134,6 +143,57 @@ public class HunYuanRetryTests {
 		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class)))
 			.willThrow(new RuntimeException("Non Transient Error"));
 		assertThrows(RuntimeException.class, () -> this.chatModel.stream(new Prompt("text")).collectList().block());
+		verify(this.hunYuanApi, times(1)).chatCompletionStream(isA(ChatCompletionRequest.class));
+	}
+
+	@Test
+	public void hunYuanChatStreamIsNotRetriedOnceAChunkWasReceived() {
+		var choice = new ChatCompletion.Choice(0, null, null,
+				new ChatCompletion.ChatCompletionDelta(Role.assistant, "Response", null, null), null);
+		ChatCompletionChunk chunk = new ChatCompletionChunk("id", null, 789L, "model", List.of(choice), null, null,
+				null, null, null, null, null);
+		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class))).willReturn(
+				Flux.just(chunk).concatWith(Flux.error(new TransientAiException("Connection reset mid-stream"))));
+
+		List<String> texts = new ArrayList<>();
+		assertThatThrownBy(() -> this.chatModel.stream(new Prompt("text"))
+			.doOnNext(response -> texts.add(response.getResult().getOutput().getText()))
+			.blockLast()).isInstanceOf(TransientAiException.class);
+
+		assertThat(texts).containsExactly("Response");
+		verify(this.hunYuanApi, times(1)).chatCompletionStream(isA(ChatCompletionRequest.class));
+	}
+
+	@Test
+	public void hunYuanChatAsyncTransientError() {
+		var choice = new ChatCompletion.Choice(0, new ChatCompletionMessage("Response123", Role.assistant),
+				ChatCompletionFinishReason.STOP.name(), null, null);
+		HunYuanApi.ChatCompletionResponse chatCompletionResponse = new HunYuanApi.ChatCompletionResponse(
+				new ChatCompletion("id", null, 789L, "model", List.of(choice), new HunYuanApi.Usage(10, 10, 10), null,
+						null, null, null, null, null));
+		AtomicInteger subscriptions = new AtomicInteger();
+		given(this.hunYuanApi.chatCompletionAsync(isA(ChatCompletionRequest.class))).willReturn(Mono.defer(() -> {
+			if (subscriptions.incrementAndGet() <= 2) {
+				return Mono.error(new TransientAiException("Transient Error " + subscriptions.get()));
+			}
+			return Mono.just(chatCompletionResponse);
+		}));
+
+		var result = this.chatModel.callAsync(new Prompt("text")).block();
+
+		assertThat(result.getResult().getOutput().getText()).isEqualTo("Response123");
+		assertThat(subscriptions.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void hunYuanChatAsyncNonTransientError() {
+		AtomicInteger subscriptions = new AtomicInteger();
+		given(this.hunYuanApi.chatCompletionAsync(isA(ChatCompletionRequest.class))).willReturn(
+				Mono.defer(() -> Mono.error(new NonTransientAiException("Error " + subscriptions.incrementAndGet()))));
+
+		assertThatThrownBy(() -> this.chatModel.callFuture(new Prompt("text")).join())
+			.hasCauseInstanceOf(NonTransientAiException.class);
+		assertThat(subscriptions.get()).isEqualTo(1);
 	}
 
 	private static class TestRetryListener implements RetryListener {
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionResponse;
+import io.github.studiousxiaoyu.hunyuan.api.auth.HunYuanAuthApi;
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanChatModel;
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanChatOptions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Verifies against a local stub server that requests are signed over the exact bytes that
+ * are written to the wire.
+ *
+ * @author Guo Junyu
+ */
+class HunYuanApiTests {
+
+	private static final String SECRET_ID = "secret-id";
+
+	private static final String SECRET_KEY = "secret-key";
+
+	private final HunYuanAuthApi authApi = new HunYuanAuthApi(SECRET_ID, SECRET_KEY, HunYuanConstants.DEFAULT_CHAT_HOST,
+			HunYuanConstants.DEFAULT_SERVICE);
+
+	private HttpServer server;
+
+	private volatile byte[] receivedBody;
+
+	private volatile String receivedAuthorization;
+
+	private volatile String receivedTimestamp;
+
+	private final CountDownLatch streamAborted = new CountDownLatch(1);
+
+	private HunYuanApi hunYuanApi;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", this::handle);
+		// Stalled streams must not hold up the other requests.
+		this.server.setExecutor(Executors.newCachedThreadPool());
+		this.server.start();
+		this.hunYuanApi = new HunYuanApi("http://localhost:" + this.server.getAddress().getPort(), SECRET_ID,
+				SECRET_KEY);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.server.stop(0);
+	}
+
+	@Test
+	void streamingRequestIsSignedOverTheBytesThatAreSent() {
+		ChatCompletionRequest request = new ChatCompletionRequest(
+				List.of(new ChatCompletionMessage("你好，混元", Role.user)), HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, true);
+
+		List<ChatCompletionChunk> chunks = this.hunYuanApi.chatCompletionStream(request).collectList().block();
+
+		assertThat(chunks).hasSize(1);
+		assertThat(chunks.get(0).id()).isEqualTo("chunk-1");
+		assertThat(this.receivedBody).isEqualTo(new HunYuanJsonCodec().encode(request));
+		assertThat(this.receivedAuthorization).isEqualTo(expectedAuthorization(this.receivedBody));
+	}
+
+	@Test
+	void streamedToolCallDeltasAreMergedWhenTheChoiceFinishes() {
+		ChatCompletionRequest request = new ChatCompletionRequest(
+				List.of(new ChatCompletionMessage("tools", Role.user)), HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, true);
+
+		List<ChatCompletionChunk> chunks = this.hunYuanApi.chatCompletionStream(request).collectList().block();
+
+		assertThat(chunks).hasSize(2);
+		assertThat(chunks.get(0).choices().get(0).delta().toolCalls()).singleElement()
+			.satisfies(toolCall -> assertThat(toolCall.function().arguments()).isEqualTo("{\"city\":\"Paris\"}"));
+		assertThat(chunks.get(1).choices().get(0).delta().content()).isEqualTo("after");
+	}
+
+	@Test
+	void streamingErrorsAreClassifiedByTheirCode() {
+		ChatCompletionRequest throttled = new ChatCompletionRequest(
+				List.of(new ChatCompletionMessage("busy", Role.user)), HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, true);
+		ChatCompletionRequest invalid = new ChatCompletionRequest(List.of(new ChatCompletionMessage("fail", Role.user)),
+				HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, true);
+
+		assertThatThrownBy(() -> this.hunYuanApi.chatCompletionStream(throttled).blockLast())
+			.isInstanceOf(TransientAiException.class)
+			.hasMessageContaining("RequestLimitExceeded")
+			.hasMessageContaining("request-1");
+		assertThatThrownBy(() -> this.hunYuanApi.chatCompletionStream(invalid).blockLast())
+			.isInstanceOf(NonTransientAiException.class)
+			.hasMessageContaining("InvalidParameter");
+	}
+
+	@Test
+	void streamThatStallsMidGenerationIsAbortedOnTheTokenGapDeadline() throws InterruptedException {
+		ChatCompletionRequest request = new ChatCompletionRequest(
+				List.of(new ChatCompletionMessage("stall", Role.user)), HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, true);
+		List<ChatCompletionChunk> received = new CopyOnWriteArrayList<>();
+
+		assertThatThrownBy(() -> this.hunYuanApi
+			.chatCompletionStream(request,
+					HunYuanStreamTimeoutOptions.builder()
+						.firstToken(Duration.ofSeconds(5))
+						.tokenGap(Duration.ofMillis(200))
+						.build())
+			.doOnNext(received::add)
+			.blockLast())
+			.isInstanceOfSatisfying(HunYuanStreamTimeoutException.class,
+					e -> assertThat(e.getDeadline()).isEqualTo(HunYuanStreamTimeoutException.Deadline.TOKEN_GAP))
+			.isInstanceOf(TransientAiException.class);
+		assertThat(received).singleElement()
+			.satisfies(chunk -> assertThat(chunk.choices().get(0).delta().content()).isEqualTo("hi"));
+		assertThat(this.streamAborted.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void streamWithoutTokensIsAbortedOnTheFirstTokenDeadline() throws InterruptedException {
+		ChatCompletionRequest request = new ChatCompletionRequest(
+				List.of(new ChatCompletionMessage("silent", Role.user)), HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, true);
+
+		assertThatThrownBy(() -> this.hunYuanApi
+			.chatCompletionStream(request,
+					HunYuanStreamTimeoutOptions.builder()
+						.firstByte(Duration.ofSeconds(5))
+						.firstToken(Duration.ofMillis(200))
+						.total(Duration.ofSeconds(10))
+						.build())
+			.blockLast()).isInstanceOfSatisfying(HunYuanStreamTimeoutException.class,
+					e -> assertThat(e.getDeadline()).isEqualTo(HunYuanStreamTimeoutException.Deadline.FIRST_TOKEN));
+		assertThat(this.streamAborted.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void streamIsAbortedOnTheTotalDeadline() {
+		ChatCompletionRequest request = new ChatCompletionRequest(
+				List.of(new ChatCompletionMessage("stall", Role.user)), HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, true);
+
+		assertThatThrownBy(() -> this.hunYuanApi
+			.chatCompletionStream(request,
+					HunYuanStreamTimeoutOptions.builder()
+						.tokenGap(Duration.ofSeconds(5))
+						.total(Duration.ofMillis(300))
+						.build())
+			.blockLast()).isInstanceOfSatisfying(HunYuanStreamTimeoutException.class,
+					e -> assertThat(e.getDeadline()).isEqualTo(HunYuanStreamTimeoutException.Deadline.TOTAL));
+	}
+
+	@Test
+	void cancellingAChatModelStreamClosesTheConnection() throws InterruptedException {
+		HunYuanChatModel chatModel = HunYuanChatModel.builder()
+			.hunYuanApi(this.hunYuanApi)
+			.defaultOptions(HunYuanChatOptions.builder()
+				.model(HunYuanApi.DEFAULT_CHAT_MODEL)
+				.streamCoalesceWindow(Duration.ofMillis(5))
+				.build())
+			.meterRegistry(new SimpleMeterRegistry())
+			.build();
+		CountDownLatch firstResponse = new CountDownLatch(1);
+
+		Disposable subscription = chatModel.stream(new Prompt("stall"))
+			.subscribe(response -> firstResponse.countDown());
+		assertThat(firstResponse.await(5, TimeUnit.SECONDS)).isTrue();
+		long cancelled = System.nanoTime();
+		subscription.dispose();
+
+		assertThat(this.streamAborted.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(Duration.ofNanos(System.nanoTime() - cancelled)).isLessThan(Duration.ofMillis(500));
+	}
+
+	@Test
+	void blockingRequestIsSignedOverTheBytesThatAreSent() {
+		ChatCompletionRequest request = new ChatCompletionRequest(
+				List.of(new ChatCompletionMessage("你好，混元", Role.user)), HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, false);
+
+		ChatCompletionResponse response = this.hunYuanApi.chatCompletionEntity(request).getBody();
+
+		assertThat(response.response().id()).isEqualTo("completion-1");
+		assertThat(this.receivedBody).isEqualTo(new HunYuanJsonCodec().encode(request));
+		assertThat(this.receivedAuthorization).isEqualTo(expectedAuthorization(this.receivedBody));
+	}
+
+	@Test
+	void asyncRequestIsSignedOverTheBytesThatAreSent() {
+		ChatCompletionRequest request = new ChatCompletionRequest(
+				List.of(new ChatCompletionMessage("你好，混元", Role.user)), HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, false);
+
+		ChatCompletionResponse response = this.hunYuanApi.chatCompletionAsync(request).block();
+
+		assertThat(response.response().id()).isEqualTo("completion-1");
+		assertThat(this.receivedBody).isEqualTo(new HunYuanJsonCodec().encode(request));
+		assertThat(this.receivedAuthorization).isEqualTo(expectedAuthorization(this.receivedBody));
+	}
+
+	@Test
+	void asyncErrorResponsesAreHandedToTheErrorHandler() {
+		ChatCompletionRequest request = new ChatCompletionRequest(List.of(new ChatCompletionMessage("fail", Role.user)),
+				HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, false);
+
+		assertThatThrownBy(() -> this.hunYuanApi.chatCompletionAsync(request).block())
+			.isInstanceOf(NonTransientAiException.class)
+			.hasMessageContaining("InvalidParameter");
+	}
+
+	@Test
+	void errorResponsesAreHandedToTheErrorHandler() {
+		ChatCompletionRequest request = new ChatCompletionRequest(List.of(new ChatCompletionMessage("fail", Role.user)),
+				HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, false);
+
+		assertThatThrownBy(() -> this.hunYuanApi.chatCompletionEntity(request))
+			.isInstanceOf(NonTransientAiException.class)
+			.hasMessageContaining("InvalidParameter");
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		this.receivedBody = exchange.getRequestBody().readAllBytes();
+		this.receivedAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+		this.receivedTimestamp = exchange.getRequestHeaders().getFirst("X-TC-Timestamp");
+		String body = new String(this.receivedBody, StandardCharsets.UTF_8);
+		byte[] response;
+		int status = 200;
+		if (body.contains("\"Content\":\"fail\"")) {
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			response = "{\"Response\":{\"Error\":{\"Code\":\"InvalidParameter\"}}}".getBytes(StandardCharsets.UTF_8);
+			status = 400;
+		}
+		else if (body.contains("\"Content\":\"busy\"")) {
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			response = "{\"Response\":{\"Error\":{\"Code\":\"RequestLimitExceeded\",\"Message\":\"slow down\"},\"RequestId\":\"request-1\"}}"
+				.getBytes(StandardCharsets.UTF_8);
+		}
+		else if (body.contains("\"Content\":\"tools\"")) {
+			exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+			response = ("data: {\"Id\":\"chunk-1\",\"Choices\":[{\"Index\":0,\"Delta\":{\"Role\":\"assistant\",\"ToolCalls\":[{\"Id\":\"call-1\",\"Type\":\"function\",\"Index\":0,\"Function\":{\"Name\":\"getWeather\",\"Arguments\":\"{\\\"city\\\":\"}}]}}]}\n\n"
+					+ "data: {\"Id\":\"chunk-1\",\"Choices\":[{\"Index\":0,\"Delta\":{\"ToolCalls\":[{\"Index\":0,\"Function\":{\"Arguments\":\"\\\"Paris\\\"}\"}}]}}]}\n\n"
+					+ "data: {\"Id\":\"chunk-1\",\"Choices\":[{\"Index\":0,\"FinishReason\":\"tool_calls\",\"Delta\":{}}]}\n\n"
+					+ "data: {\"Id\":\"chunk-1\",\"Choices\":[{\"Index\":0,\"Delta\":{\"Content\":\"after\"}}]}\n\ndata: [DONE]\n\n")
+				.getBytes(StandardCharsets.UTF_8);
+		}
+		else if (body.contains("\"Content\":\"stall\"") || body.contains("\"Content\":\"silent\"")) {
+			exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			if (body.contains("\"Content\":\"stall\"")) {
+				out.write(
+						"data: {\"Id\":\"chunk-1\",\"Choices\":[{\"Index\":0,\"Delta\":{\"Role\":\"assistant\",\"Content\":\"hi\"}}]}\n\n"
+							.getBytes(StandardCharsets.UTF_8));
+			}
+			out.flush();
+			awaitAbort(out);
+			return;
+		}
+		else if (body.contains("\"Stream\":true")) {
+			exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+			response = "data: {\"Id\":\"chunk-1\",\"Choices\":[{\"Index\":0,\"Delta\":{\"Role\":\"assistant\",\"Content\":\"hi\"}}]}\n\ndata: [DONE]\n\n"
+				.getBytes(StandardCharsets.UTF_8);
+		}
+		else {
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			response = "{\"Response\":{\"Id\":\"completion-1\"}}".getBytes(StandardCharsets.UTF_8);
+		}
+		exchange.sendResponseHeaders(status, response.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(response);
+		}
+	}
+
+	/**
+	 * Keeps a stalled stream open with SSE comments, which carry no chunk, until the
+	 * client aborts the exchange.
+	 */
+	private void awaitAbort(OutputStream out) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		try {
+			while (System.nanoTime() < deadline) {
+				Thread.sleep(20);
+				out.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+				out.flush();
+			}
+		}
+		catch (IOException ex) {
+			this.streamAborted.countDown();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Recomputes the TC3-HMAC-SHA256 authorization for the received body, using the
+	 * timestamp the client sent.
+	 */
+	private String expectedAuthorization(byte[] body) {
+		long timestamp = Long.parseLong(this.receivedTimestamp);
+		String date = LocalDate.ofEpochDay(timestamp / 86_400).toString();
+		String service = HunYuanConstants.DEFAULT_SERVICE;
+		String signedHeaders = "content-type;host;x-tc-action";
+		String canonicalRequest = "POST\n/\n\ncontent-type:application/json; charset=utf-8\nhost:"
+				+ HunYuanConstants.DEFAULT_CHAT_HOST + "\nx-tc-action:chatcompletions\n\n" + signedHeaders + "\n"
+				+ this.authApi.sha256Hex(body, 0, body.length);
+		String credentialScope = date + "/" + service + "/tc3_request";
+		String stringToSign = "TC3-HMAC-SHA256\n" + timestamp + "\n" + credentialScope + "\n"
+				+ this.authApi.sha256Hex(canonicalRequest);
+		byte[] secretDate = this.authApi.hmac256(("TC3" + SECRET_KEY).getBytes(StandardCharsets.UTF_8), date);
+		byte[] secretSigning = this.authApi.hmac256(this.authApi.hmac256(secretDate, service), "tc3_request");
+		String signature = HexFormat.of().formatHex(this.authApi.hmac256(secretSigning, stringToSign));
+		return "TC3-HMAC-SHA256 Credential=" + SECRET_ID + "/" + credentialScope + ", SignedHeaders=" + signedHeaders
+				+ ", Signature=" + signature;
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanClientTransportTests {
+
+	private final HunYuanClientTransport transport = new HunYuanClientTransport(new HunYuanConnectionOptions());
+
+	private DisposableServer server;
+
+	@AfterEach
+	void tearDown() {
+		this.transport.close();
+		if (this.server != null) {
+			this.server.disposeNow();
+		}
+	}
+
+	@Test
+	void clientsAndSignersAreCachedByEndpointAndCredentials() {
+		HunYuanApi api = this.transport.hunYuanApi(HunYuanConstants.DEFAULT_BASE_URL, "id", "key");
+
+		assertThat(this.transport.hunYuanApi(HunYuanConstants.DEFAULT_BASE_URL, "id", "key")).isSameAs(api);
+		assertThat(this.transport.hunYuanApi(HunYuanConstants.DEFAULT_BASE_URL, "id", "other-key")).isNotSameAs(api);
+		assertThat(this.transport.hunYuanApi("https://hunyuan.ap-guangzhou.tencentcloudapi.com", "id", "key"))
+			.isNotSameAs(api);
+
+		assertThat(this.transport.authApi("id", "key", HunYuanConstants.DEFAULT_CHAT_HOST,
+				HunYuanConstants.DEFAULT_SERVICE))
+			.isSameAs(this.transport.authApi("id", "key", HunYuanConstants.DEFAULT_CHAT_HOST,
+					HunYuanConstants.DEFAULT_SERVICE))
+			.isNotSameAs(this.transport.authApi("id", "key", HunYuanConstants.DEFAULT_TTS_HOST,
+					HunYuanConstants.DEFAULT_TTS_SERVICE));
+
+		HunYuanAudioApi tts = this.transport.audioApi(HunYuanConstants.DEFAULT_TTS_URL, "id", "key",
+				HunYuanConstants.DEFAULT_TTS_ACTION, HunYuanConstants.DEFAULT_TTS_SERVICE,
+				HunYuanConstants.DEFAULT_TTS_HOST, HunYuanConstants.DEFAULT_TTS_VERSION);
+		assertThat(this.transport.audioApi(HunYuanConstants.DEFAULT_TTS_URL, "id", "key",
+				HunYuanConstants.DEFAULT_TTS_ACTION, HunYuanConstants.DEFAULT_TTS_SERVICE,
+				HunYuanConstants.DEFAULT_TTS_HOST, HunYuanConstants.DEFAULT_TTS_VERSION))
+			.isSameAs(tts);
+	}
+
+	@Test
+	void blockingAndStreamingCallsShareTheConnectionPool() {
+		AtomicInteger acceptedConnections = new AtomicInteger();
+		this.server = HttpServer.create()
+			.host("localhost")
+			.port(0)
+			.doOnChannelInit((observer, channel, address) -> acceptedConnections.incrementAndGet())
+			.handle((request, response) -> request.receive().aggregate().asString().flatMap(body -> {
+				if (body.contains("\"Stream\":true")) {
+					return response.header("Content-Type", "text/event-stream")
+						.sendString(Mono.just("data: {\"Id\":\"chunk-1\",\"Choices\":[]}\n\n"))
+						.then();
+				}
+				return response.header("Content-Type", "application/json")
+					.sendString(Mono.just("{\"Response\":{\"Id\":\"completion-1\"}}"))
+					.then();
+			}))
+			.bindNow();
+		HunYuanApi api = this.transport.hunYuanApi("http://localhost:" + this.server.port(), "id", "key");
+		List<ChatCompletionMessage> messages = List.of(new ChatCompletionMessage("hello", Role.user));
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(api.chatCompletionEntity(new ChatCompletionRequest(messages, false)).getBody().response().id())
+				.isEqualTo("completion-1");
+			assertThat(api.chatCompletionStream(new ChatCompletionRequest(messages, true)).blockLast().id())
+				.isEqualTo("chunk-1");
+		}
+
+		// A streamed response hands its connection back to the pool asynchronously, so
+		// the
+		// next call may open a second one; six calls must not need more than that.
+		assertThat(acceptedConnections.get()).isLessThanOrEqualTo(2);
+	}
+
+	@Test
+	void isolatedTransportsHaveTheirOwnPoolAndAreClosedWithTheSharedOne() {
+		HunYuanClientTransport chat = this.transport.isolated("chat",
+				HunYuanConnectionOptions.builder().maxConnections(8).build());
+
+		assertThat(this.transport.isolated("chat", new HunYuanConnectionOptions())).isSameAs(chat);
+		assertThat(chat.getConnectionProvider()).isNotSameAs(this.transport.getConnectionProvider());
+		assertThat(chat.getConnectionOptions().getMaxConnections()).isEqualTo(8);
+
+		this.transport.close();
+
+		assertThat(chat.getConnectionProvider().isDisposed()).isTrue();
+		assertThat(this.transport.getConnectionProvider().isDisposed()).isTrue();
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.TransientAiException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion.ErrorMsg;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanConcurrencyLimiterTests {
+
+	@Test
+	void requestsBeyondTheLimitWaitForAPermit() {
+		HunYuanConcurrencyLimiter limiter = limiter(HunYuanConcurrencyLimitOptions.builder().initialLimit(2));
+		List<Sinks.One<String>> responses = new ArrayList<>();
+		List<String> received = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Sinks.One<String> response = Sinks.one();
+			responses.add(response);
+			limiter.mono(response.asMono(), value -> null).subscribe(received::add);
+		}
+
+		assertThat(limiter.getInFlight()).isEqualTo(2);
+		assertThat(limiter.getQueueSize()).isEqualTo(1);
+		assertThat(responses.get(2).currentSubscriberCount()).isZero();
+
+		responses.get(0).tryEmitValue("first");
+
+		assertThat(received).containsExactly("first");
+		assertThat(limiter.getInFlight()).isEqualTo(2);
+		assertThat(limiter.getQueueSize()).isZero();
+		assertThat(responses.get(2).currentSubscriberCount()).isOne();
+	}
+
+	@Test
+	void streamsHoldTheirPermitUntilTheyEnd() {
+		HunYuanConcurrencyLimiter limiter = limiter(HunYuanConcurrencyLimitOptions.builder().initialLimit(1));
+		Sinks.Many<String> chunks = Sinks.many().unicast().onBackpressureBuffer();
+
+		Disposable stream = limiter.flux(chunks.asFlux()).subscribe();
+		chunks.tryEmitNext("chunk");
+		assertThat(limiter.getInFlight()).isOne();
+
+		Disposable waiting = limiter.flux(Flux.just("other")).subscribe();
+		assertThat(limiter.getQueueSize()).isOne();
+
+		stream.dispose();
+		assertThat(limiter.getQueueSize()).isZero();
+		assertThat(limiter.getInFlight()).isZero();
+		waiting.dispose();
+	}
+
+	@Test
+	void limitShrinksOnTransientErrorsAndGrowsBackOnSuccess() {
+		HunYuanConcurrencyLimiter limiter = limiter(
+				HunYuanConcurrencyLimitOptions.builder().initialLimit(10).backoffRatio(0.2).latencyTolerance(0));
+
+		assertThatThrownBy(() -> limiter.call(() -> {
+			throw new TransientAiException("RequestLimitExceeded");
+		}, value -> null)).isInstanceOf(TransientAiException.class);
+		assertThat(limiter.getLimit()).isEqualTo(2);
+
+		limiter.call(() -> "throttled", value -> new ErrorMsg("RequestLimitExceeded", "slow down"));
+		assertThat(limiter.getLimit()).isEqualTo(1);
+
+		limiter.call(() -> "invalid", value -> new ErrorMsg("InvalidParameter", "bad request"));
+		assertThat(limiter.getLimit()).isEqualTo(1);
+
+		limiter.call(() -> "ok", value -> null);
+		assertThat(limiter.getLimit()).isEqualTo(2);
+	}
+
+	@Test
+	void limitShrinksOnLatencySpikes() {
+		HunYuanConcurrencyLimiter limiter = limiter(
+				HunYuanConcurrencyLimitOptions.builder().initialLimit(10).backoffRatio(0.5).latencyTolerance(3));
+
+		for (int i = 0; i < 3; i++) {
+			limiter.flux(Flux.just("fast")).blockLast();
+		}
+		double limit = limiter.getLimit();
+		limiter.flux(Flux.just("slow").delayElements(Duration.ofMillis(100))).blockLast();
+
+		assertThat(limiter.getLimit()).isEqualTo(limit / 2);
+	}
+
+	@Test
+	void latencyOfSingleResponsesIsIgnored() {
+		HunYuanConcurrencyLimiter limiter = limiter(
+				HunYuanConcurrencyLimitOptions.builder().initialLimit(10).backoffRatio(0.5).latencyTolerance(3));
+
+		for (int i = 0; i < 3; i++) {
+			limiter.mono(Mono.just("short"), value -> null).block();
+			limiter.call(() -> "short", value -> null);
+		}
+		double limit = limiter.getLimit();
+		limiter.mono(Mono.just("long").delayElement(Duration.ofMillis(100)), value -> null).block();
+		limiter.call(() -> {
+			Mono.delay(Duration.ofMillis(100)).block();
+			return "long";
+		}, value -> null);
+
+		assertThat(limiter.getLimit()).isGreaterThanOrEqualTo(limit);
+	}
+
+	@Test
+	void limitIsOptIn() {
+		assertThat(new HunYuanConcurrencyLimitOptions().isEnabled()).isFalse();
+	}
+
+	@Test
+	void requestsAreRejectedWhenTheQueueIsFullOrTheWaitTooLong() {
+		HunYuanConcurrencyLimiter limiter = limiter(HunYuanConcurrencyLimitOptions.builder()
+			.initialLimit(1)
+			.maxQueueSize(1)
+			.maxQueueWait(Duration.ofMillis(50)));
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		limiter.bindTo(registry, "hunyuan");
+		Disposable inFlight = limiter.mono(Mono.never(), value -> null).subscribe();
+		Mono<String> queued = limiter.mono(Mono.just("queued"), value -> null);
+
+		assertThatThrownBy(() -> Mono.zip(queued, limiter.mono(Mono.just("rejected"), value -> null)).block())
+			.isInstanceOf(TransientAiException.class)
+			.hasMessageContaining("requests are waiting");
+		assertThatThrownBy(queued::block).isInstanceOf(TransientAiException.class).hasMessageContaining("for a permit");
+		assertThatThrownBy(() -> limiter.call(() -> "blocked", value -> null)).isInstanceOf(TransientAiException.class);
+
+		assertThat(limiter.getQueueSize()).isZero();
+		assertThat(limiter.getRejections()).isEqualTo(3);
+		assertThat(registry.get("hunyuan.client.concurrency.rejections")
+			.tag("action", "ChatCompletions")
+			.functionCounter()
+			.count()).isEqualTo(3);
+		assertThat(registry.get("hunyuan.client.concurrency.in.flight").gauge().value()).isOne();
+		assertThat(registry.get("hunyuan.client.concurrency.limit").gauge().value()).isOne();
+		inFlight.dispose();
+		assertThat(registry.get("hunyuan.client.concurrency.in.flight").gauge().value()).isZero();
+	}
+
+	@Test
+	void disabledLimiterLetsEveryRequestThrough() {
+		HunYuanConcurrencyLimiter limiter = HunYuanConcurrencyLimiter.unlimited("ChatCompletions");
+		Mono<String> call = Mono.never();
+
+		assertThat(limiter.mono(call, value -> null)).isSameAs(call);
+		assertThat(limiter.call(() -> "ok", value -> null)).isEqualTo("ok");
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	private static HunYuanConcurrencyLimiter limiter(HunYuanConcurrencyLimitOptions.Builder options) {
+		return new HunYuanConcurrencyLimiter("ChatCompletions", options.enabled(true).build());
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.retry.RetryUtils;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquirePendingLimitException;
+import reactor.netty.resources.ConnectionProvider;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives many concurrent SSE streams through {@link HunYuanApi} against a local stub
+ * server and counts the TCP connections the server accepts, to show how the pooled
+ * transport reuses connections as concurrency grows.
+ *
+ * @author Guo Junyu
+ */
+class HunYuanConnectionPoolLoadTests {
+
+	private static final Logger logger = LoggerFactory.getLogger(HunYuanConnectionPoolLoadTests.class);
+
+	private static final int CHUNKS_PER_STREAM = 5;
+
+	private static final ChatCompletionRequest REQUEST = new ChatCompletionRequest(
+			List.of(new ChatCompletionMessage("hello", Role.user)), HunYuanApi.DEFAULT_CHAT_MODEL, 0.5, true);
+
+	private final AtomicInteger acceptedConnections = new AtomicInteger();
+
+	private DisposableServer server;
+
+	private ConnectionProvider connectionProvider;
+
+	@AfterEach
+	void tearDown() {
+		if (this.connectionProvider != null) {
+			this.connectionProvider.disposeLater().block(Duration.ofSeconds(5));
+		}
+		if (this.server != null) {
+			this.server.disposeNow();
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = { 50, 200, 800 })
+	void http11StreamsReuseABoundedPool(int concurrency) {
+		startServer(HttpProtocol.HTTP11);
+		HunYuanApi api = hunYuanApi(HunYuanConnectionOptions.builder().maxConnections(32).build());
+
+		long firstWave = runStreams(api, concurrency);
+		long warmWave = runStreams(api, concurrency);
+
+		logger.info("HTTP/1.1: 2 x {} concurrent streams, {} connections, first wave {} ms, warm wave {} ms",
+				concurrency, this.acceptedConnections.get(), firstWave, warmWave);
+		// The pool grows up to its limit and is reused by both waves.
+		assertThat(this.acceptedConnections.get()).isLessThanOrEqualTo(32);
+	}
+
+	@Test
+	void http2MultiplexesStreamsOverFewConnections() {
+		startServer(HttpProtocol.H2C);
+		HunYuanApi api = hunYuanApi(HunYuanConnectionOptions.builder().http2(true).maxConnections(2).build());
+
+		long elapsed = runStreams(api, 400);
+
+		logger.info("HTTP/2: 400 concurrent streams, {} connections, {} ms", this.acceptedConnections.get(), elapsed);
+		assertThat(this.acceptedConnections.get()).isBetween(1, 2);
+	}
+
+	@Test
+	void requestsBeyondThePendingAcquireLimitFailFast() {
+		startServer(HttpProtocol.HTTP11);
+		HunYuanApi api = hunYuanApi(
+				HunYuanConnectionOptions.builder().maxConnections(2).pendingAcquireMaxCount(4).build());
+		AtomicInteger rejected = new AtomicInteger();
+
+		Flux.range(0, 20).flatMap(i -> api.chatCompletionStream(REQUEST).then().onErrorResume(e -> {
+			if (isPendingLimit(e)) {
+				rejected.incrementAndGet();
+			}
+			return Mono.empty();
+		}), 20).blockLast(Duration.ofSeconds(30));
+
+		assertThat(rejected.get()).isGreaterThan(0);
+		assertThat(this.acceptedConnections.get()).isLessThanOrEqualTo(2);
+	}
+
+	private long runStreams(HunYuanApi api, int concurrency) {
+		AtomicInteger chunks = new AtomicInteger();
+		long start = System.nanoTime();
+		Flux.range(0, concurrency)
+			.flatMap(i -> api.chatCompletionStream(REQUEST).doOnNext(chunk -> chunks.incrementAndGet()), concurrency)
+			.blockLast(Duration.ofSeconds(60));
+		assertThat(chunks.get()).isEqualTo(concurrency * CHUNKS_PER_STREAM);
+		return Duration.ofNanos(System.nanoTime() - start).toMillis();
+	}
+
+	private HunYuanApi hunYuanApi(HunYuanConnectionOptions options) {
+		String baseUrl = "http://localhost:" + this.server.port();
+		this.connectionProvider = HunYuanHttpClientFactory.connectionProvider("hunyuan-test", options);
+		WebClient.Builder webClientBuilder = WebClient.builder()
+			.clientConnector(HunYuanHttpClientFactory.clientHttpConnector(this.connectionProvider, baseUrl, options));
+		return new HunYuanApi(baseUrl, "secret-id", "secret-key", RestClient.builder(), webClientBuilder,
+				RetryUtils.DEFAULT_RESPONSE_ERROR_HANDLER);
+	}
+
+	private void startServer(HttpProtocol protocol) {
+		Flux<String> events = Flux.range(0, CHUNKS_PER_STREAM)
+			.delayElements(Duration.ofMillis(5))
+			.map(i -> "data: {\"Id\":\"chunk\",\"Choices\":[{\"Index\":0,\"Delta\":{\"Content\":\"" + i + "\"}}]}\n\n")
+			.concatWithValues("data: [DONE]\n\n");
+		this.server = HttpServer.create()
+			.host("localhost")
+			.port(0)
+			.protocol(protocol)
+			.doOnChannelInit((observer, channel, address) -> this.acceptedConnections.incrementAndGet())
+			.handle((request, response) -> response.header("Content-Type", "text/event-stream").sendString(events))
+			.bindNow();
+	}
+
+	private static boolean isPendingLimit(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof PoolAcquirePendingLimitException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
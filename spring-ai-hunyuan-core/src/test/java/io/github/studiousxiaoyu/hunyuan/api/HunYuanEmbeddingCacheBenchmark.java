@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lookups per second in a {@link HunYuanEmbeddingCache} of 100,000 embeddings of 1024
+ * dimensions, of texts of about 1 KB, reopened from the disk: of cached texts, of texts
+ * not cached, and of cached texts in a {@code ConcurrentHashMap} of the texts in the
+ * heap, for reference.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class HunYuanEmbeddingCacheBenchmark {
+
+	private static final int ENTRIES = 100_000;
+
+	private static final int DIMENSIONS = HunYuanApi.DEFAULT_EMBEDDING_DIMENSIONS;
+
+	private Path directory;
+
+	private HunYuanEmbeddingCache cache;
+
+	private final Map<String, float[]> inHeap = new ConcurrentHashMap<>();
+
+	private String[] texts;
+
+	private String[] missedTexts;
+
+	private int next;
+
+	@Setup
+	public void setup() throws IOException {
+		this.directory = Files.createTempDirectory("embedding-cache");
+		SplittableRandom random = new SplittableRandom(42);
+		this.texts = new String[ENTRIES];
+		float[] embedding = new float[DIMENSIONS];
+		try (HunYuanEmbeddingCache cache = HunYuanEmbeddingCache.open(this.directory, ENTRIES)) {
+			for (int i = 0; i < ENTRIES; i++) {
+				this.texts[i] = text(random, i);
+				for (int d = 0; d < DIMENSIONS; d++) {
+					embedding[d] = (float) random.nextDouble(-1, 1);
+				}
+				cache.put(HunYuanApi.DEFAULT_EMBEDDING_MODEL, this.texts[i], embedding);
+				if (i < 10_000) {
+					this.inHeap.put(this.texts[i], embedding.clone());
+				}
+			}
+		}
+		this.cache = HunYuanEmbeddingCache.open(this.directory, ENTRIES);
+		this.missedTexts = new String[1024];
+		for (int i = 0; i < this.missedTexts.length; i++) {
+			this.missedTexts[i] = text(random, ENTRIES + i);
+		}
+	}
+
+	private static String text(SplittableRandom random, int i) {
+		StringBuilder text = new StringBuilder("Document ").append(i).append(':');
+		while (text.length() < 1024) {
+			text.append(' ').append(Long.toString(random.nextLong(1L << 40), 36));
+		}
+		return text.toString();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		this.cache.close();
+		try (Stream<Path> files = Files.walk(this.directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public float[] hit() {
+		this.next = (this.next + 7919) % ENTRIES;
+		return this.cache.get(HunYuanApi.DEFAULT_EMBEDDING_MODEL, DIMENSIONS, this.texts[this.next]);
+	}
+
+	@Benchmark
+	public float[] miss() {
+		this.next = (this.next + 1) & (this.missedTexts.length - 1);
+		return this.cache.get(HunYuanApi.DEFAULT_EMBEDDING_MODEL, DIMENSIONS, this.missedTexts[this.next]);
+	}
+
+	@Benchmark
+	public float[] inHeapMap() {
+		this.next = (this.next + 7919) % 10_000;
+		return this.inHeap.get(this.texts[this.next]);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanEmbeddingCacheBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
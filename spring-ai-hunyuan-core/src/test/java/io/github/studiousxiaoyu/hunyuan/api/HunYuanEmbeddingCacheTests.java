@@ -0,0 +1,194 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.retry.RetryUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Guo Junyu
+ */
+@ExtendWith(MockitoExtension.class)
+class HunYuanEmbeddingCacheTests {
+
+	private @Mock HunYuanApi hunYuanApi;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void embeddingsAreKeyedByModelDimensionsAndText() {
+		try (HunYuanEmbeddingCache cache = HunYuanEmbeddingCache.open(this.directory, 16)) {
+			cache.put("hunyuan-embedding", "hello", new float[] { 1, 2, 3 });
+
+			assertThat(cache.get("hunyuan-embedding", 3, "hello")).containsExactly(1, 2, 3);
+			assertThat(cache.get("hunyuan-embedding", 3, "hello!")).isNull();
+			assertThat(cache.get("other-model", 3, "hello")).isNull();
+			assertThat(cache.get("hunyuan-embedding", 4, "hello")).isNull();
+		}
+	}
+
+	@Test
+	void embeddingsSurviveAReopen() {
+		try (HunYuanEmbeddingCache cache = HunYuanEmbeddingCache.open(this.directory, 16)) {
+			cache.put("hunyuan-embedding", "hello", new float[] { 1, 2, 3 });
+		}
+
+		try (HunYuanEmbeddingCache cache = HunYuanEmbeddingCache.open(this.directory, 16)) {
+			assertThat(cache.get("hunyuan-embedding", 3, "hello")).containsExactly(1, 2, 3);
+		}
+	}
+
+	@Test
+	void indexIsRebuiltFromTheRecords() throws Exception {
+		try (HunYuanEmbeddingCache cache = HunYuanEmbeddingCache.open(this.directory, 16)) {
+			for (int i = 0; i < 16; i++) {
+				cache.put("hunyuan-embedding", "text " + i, new float[] { i, i });
+			}
+			cache.put("hunyuan-embedding", "text 16", new float[] { 16, 16 });
+			assertThat(cache.get("hunyuan-embedding", 2, "text 16")).isNull();
+		}
+		Files.delete(this.directory.resolve("embeddings-2.index"));
+
+		try (HunYuanEmbeddingCache cache = HunYuanEmbeddingCache.open(this.directory, 64)) {
+			for (int i = 0; i < 16; i++) {
+				assertThat(cache.get("hunyuan-embedding", 2, "text " + i)).containsExactly(i, i);
+			}
+			cache.put("hunyuan-embedding", "text 16", new float[] { 16, 16 });
+			assertThat(cache.get("hunyuan-embedding", 2, "text 16")).containsExactly(16, 16);
+		}
+	}
+
+	@Test
+	void directoryIsUsedByOneCacheAtATime() {
+		try (HunYuanEmbeddingCache cache = HunYuanEmbeddingCache.open(this.directory, 16);
+				HunYuanEmbeddingCache other = HunYuanEmbeddingCache.open(this.directory, 16)) {
+			cache.get("hunyuan-embedding", 3, "hello");
+
+			assertThatIllegalStateException().isThrownBy(() -> other.get("hunyuan-embedding", 3, "hello"));
+		}
+	}
+
+	@Test
+	void lookupsAreConcurrentWithStores() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (HunYuanEmbeddingCache cache = HunYuanEmbeddingCache.open(this.directory, 10_000)) {
+			Future<?> writer = executor.submit(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					cache.put("hunyuan-embedding", "text " + i, new float[] { i, -i, i });
+				}
+			});
+			List<Future<?>> readers = List.of(executor.submit(() -> readAll(cache, writer)),
+					executor.submit(() -> readAll(cache, writer)), executor.submit(() -> readAll(cache, writer)));
+			writer.get(30, TimeUnit.SECONDS);
+			for (Future<?> reader : readers) {
+				reader.get(30, TimeUnit.SECONDS);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void readAll(HunYuanEmbeddingCache cache, Future<?> writer) {
+		while (!writer.isDone()) {
+			for (int i = 0; i < 10_000; i += 97) {
+				float[] embedding = cache.get("hunyuan-embedding", 3, "text " + i);
+				if (embedding != null) {
+					assertThat(embedding).containsExactly(i, -i, i);
+				}
+			}
+		}
+	}
+
+	@Test
+	void onlyTheTextsMissedAreEmbedded() {
+		given(this.hunYuanApi.embeddings(any())).willReturn(embeddings(new float[] { 1, 1 }, new float[] { 2, 2 }),
+				embeddings(new float[] { 3, 3 }));
+		HunYuanEmbeddingModel embeddingModel = new HunYuanEmbeddingModel(
+				HunYuanEmbeddingOptions.builder().model("hunyuan-embedding").dimensions(2).build(),
+				RetryUtils.DEFAULT_RETRY_TEMPLATE, this.hunYuanApi, MetadataMode.EMBED);
+		try (HunYuanEmbeddingCache cache = HunYuanEmbeddingCache.open(this.directory, 16)) {
+			embeddingModel.setEmbeddingCache(cache);
+
+			embeddingModel.embed(List.of("first", "second", "first"));
+			List<float[]> embeddings = embeddingModel.embed(List.of("second", "third", "first"));
+			EmbeddingResponse cached = embeddingModel.embedForResponse(List.of("third", "first"));
+
+			@SuppressWarnings("unchecked")
+			ArgumentCaptor<HunYuanApi.EmbeddingRequest<List<String>>> requests = ArgumentCaptor
+				.forClass(HunYuanApi.EmbeddingRequest.class);
+			verify(this.hunYuanApi, times(2)).embeddings(requests.capture());
+			assertThat(requests.getAllValues()).extracting(HunYuanApi.EmbeddingRequest::input)
+				.containsExactly(List.of("first", "second"), List.of("third"));
+			assertThat(embeddings).containsExactly(new float[] { 2, 2 }, new float[] { 3, 3 }, new float[] { 1, 1 });
+			assertThat(cached.getResults()).hasSize(2);
+			assertThat(cached.getMetadata().getUsage().getTotalTokens()).isZero();
+		}
+	}
+
+	@Test
+	void embeddingsAreLookedUpByTheDimensionsReturned() {
+		given(this.hunYuanApi.embeddings(any())).willReturn(embeddings(new float[] { 1, 2, 3 }));
+		HunYuanEmbeddingModel embeddingModel = new HunYuanEmbeddingModel(
+				HunYuanEmbeddingOptions.builder().model("hunyuan-embedding").dimensions(2).build(),
+				RetryUtils.DEFAULT_RETRY_TEMPLATE, this.hunYuanApi, MetadataMode.EMBED);
+		try (HunYuanEmbeddingCache cache = HunYuanEmbeddingCache.open(this.directory, 16)) {
+			embeddingModel.setEmbeddingCache(cache);
+
+			embeddingModel.embed("first");
+			float[] cached = embeddingModel.embed("first");
+
+			verify(this.hunYuanApi, times(1)).embeddings(any());
+			assertThat(cached).containsExactly(1, 2, 3);
+			assertThat(this.directory.resolve("embeddings-3.index")).exists();
+			assertThat(this.directory.resolve("embeddings-2.index")).doesNotExist();
+		}
+	}
+
+	private static HunYuanApi.EmbeddingList embeddings(float[]... embeddings) {
+		List<HunYuanApi.Embedding> data = new ArrayList<>();
+		for (int i = 0; i < embeddings.length; i++) {
+			data.add(new HunYuanApi.Embedding(i, embeddings[i], "embedding"));
+		}
+		return new HunYuanApi.EmbeddingList("request", data, new HunYuanApi.Usage(1, 1, 0));
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.util.StreamUtils;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanAudioApi.TextToVoiceResponse;
+
+/**
+ * Decoding of a text-to-voice response, whose audio is a base64 string inside the JSON,
+ * straight from the response stream compared with the previous implementation that copied
+ * the body into a {@code String} and parsed that. Run with the GC profiler, the
+ * {@code gc.alloc.rate.norm} column shows the bytes allocated per decoded response.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HunYuanJsonCodecBenchmark {
+
+	@Param({ "16384", "1048576" })
+	private int audioSize;
+
+	private byte[] body;
+
+	private final HunYuanJsonCodec codec = new HunYuanJsonCodec();
+
+	@Setup
+	public void setup() {
+		byte[] audio = new byte[this.audioSize];
+		new Random(42).nextBytes(audio);
+		this.body = ("{\"Response\":{\"Audio\":\"" + Base64.getEncoder().encodeToString(audio)
+				+ "\",\"SessionId\":\"session-1\",\"Subtitles\":[],\"RequestId\":\"request-1\"}}")
+			.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public TextToVoiceResponse decodeFromStream() throws IOException {
+		return this.codec.decode(new ByteArrayInputStream(this.body), TextToVoiceResponse.class);
+	}
+
+	@Benchmark
+	public TextToVoiceResponse previousImplementation() throws IOException {
+		// What toEntity(String.class) followed by jsonToObject did.
+		String json = StreamUtils.copyToString(new ByteArrayInputStream(this.body), StandardCharsets.UTF_8);
+		return ModelOptionsUtils.jsonToObject(json, TextToVoiceResponse.class);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanJsonCodecBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.model.ModelOptionsUtils;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatContent;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ImageUrl;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanMediaDataTests {
+
+	private final HunYuanJsonCodec jsonCodec = new HunYuanJsonCodec();
+
+	@Test
+	void mediaIsWrittenAsItsDataUrl() throws JsonProcessingException {
+		Random random = new Random(42);
+		for (int length : new int[] { 0, 1, 2, 3, 8 * 1024 + 1, 3 * 8 * 1024 + 2, 100_000 }) {
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			String dataUrl = String.format("data:%s;base64,%s", "image/png", Base64.getEncoder().encodeToString(data));
+			ChatCompletionMessage expected = message(new ImageUrl(dataUrl));
+
+			for (HunYuanMediaData media : List.of(HunYuanMediaData.of("image/png", data),
+					HunYuanMediaData.encode("image/png", data))) {
+				ChatCompletionMessage actual = message(new ImageUrl(media));
+				assertThat(this.jsonCodec.encode(actual)).isEqualTo(this.jsonCodec.encode(expected));
+				assertThat(ModelOptionsUtils.OBJECT_MAPPER.writeValueAsString(actual))
+					.isEqualTo(ModelOptionsUtils.OBJECT_MAPPER.writeValueAsString(expected));
+				assertThat(media.encodedLength()).isEqualTo(dataUrl.length() + 2);
+				assertThat(media.toDataUrl()).isEqualTo(dataUrl);
+			}
+		}
+	}
+
+	@Test
+	void imageUrlsAreWrittenAndReadAsTheyWere() throws JsonProcessingException {
+		ImageUrl imageUrl = new ImageUrl("https://example.com/cat.png");
+
+		assertThat(ModelOptionsUtils.OBJECT_MAPPER.writeValueAsString(imageUrl))
+			.isEqualTo("{\"Url\":\"https://example.com/cat.png\"}");
+		assertThat(
+				ModelOptionsUtils.OBJECT_MAPPER.readValue("{\"Url\":\"https://example.com/cat.png\"}", ImageUrl.class))
+			.isEqualTo(imageUrl);
+	}
+
+	private static ChatCompletionMessage message(ImageUrl imageUrl) {
+		return new ChatCompletionMessage(Role.user, List.of(new ChatContent("Describe it"), new ChatContent(imageUrl)));
+	}
+
+}
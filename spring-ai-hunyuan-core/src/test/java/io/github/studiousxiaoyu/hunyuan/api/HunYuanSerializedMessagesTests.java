@@ -0,0 +1,67 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatCompletionFunction;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ToolCall;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanSerializedMessagesTests {
+
+	private final HunYuanJsonCodec jsonCodec = new HunYuanJsonCodec();
+
+	@Test
+	void requestsAreEncodedAsWithTheMessagesThemselves() {
+		List<ChatCompletionMessage> messages = List.of(new ChatCompletionMessage("You are \"helpful\"", Role.system),
+				new ChatCompletionMessage("深圳的天气怎么样？", Role.user),
+				new ChatCompletionMessage("", Role.assistant, null, null,
+						List.of(new ToolCall("call-1", "function", null,
+								new ChatCompletionFunction("weather", "{\"city\":\"深圳\"}"))),
+						null, null),
+				new ChatCompletionMessage("晴", Role.tool, null, "call-1", null, null, null));
+
+		assertThat(encode(
+				HunYuanSerializedMessages.of(messages.stream().map(HunYuanSerializedMessages::serialize).toList())))
+			.isEqualTo(encode(messages));
+		assertThat(encode(HunYuanSerializedMessages.of(List.of()))).isEqualTo(encode(List.of()));
+	}
+
+	@Test
+	void theSerializedMessagesAreTheMessages() {
+		List<ChatCompletionMessage> messages = List.of(new ChatCompletionMessage("Hello", Role.user));
+
+		assertThat(HunYuanSerializedMessages.of(messages.stream().map(HunYuanSerializedMessages::serialize).toList()))
+			.isEqualTo(messages);
+	}
+
+	private String encode(List<ChatCompletionMessage> messages) {
+		return new String(this.jsonCodec.encode(new ChatCompletionRequest(messages, true)), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.FunctionTool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanSerializedToolsTests {
+
+	private final HunYuanJsonCodec jsonCodec = new HunYuanJsonCodec();
+
+	@Test
+	void requestsAreEncodedAsWithTheToolsThemselves() {
+		List<FunctionTool> tools = List.of(new FunctionTool(new FunctionTool.Function("Weather of a city", "weather",
+				"{\"type\":\"object\",\"properties\":{\"city\":{\"type\":\"string\",\"description\":\"深圳\"}}}")),
+				new FunctionTool(new FunctionTool.Function("Looks \"something\" up", "lookup", "{}")));
+		List<ChatCompletionMessage> messages = List.of(new ChatCompletionMessage("Hello", Role.user));
+
+		byte[] expected = this.jsonCodec.encode(new ChatCompletionRequest(messages, "hunyuan-pro", tools, "auto"));
+		byte[] actual = this.jsonCodec
+			.encode(new ChatCompletionRequest(messages, "hunyuan-pro", HunYuanSerializedTools.of(tools), "auto"));
+
+		assertThat(new String(actual, StandardCharsets.UTF_8)).isEqualTo(new String(expected, StandardCharsets.UTF_8));
+		assertThat(HunYuanSerializedTools.of(tools)).isEqualTo(tools);
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanSseDecoderTests {
+
+	private final HunYuanSseDecoder decoder = new HunYuanSseDecoder();
+
+	@Test
+	void decodesEventsAndDropsDone() {
+		String body = "data: {\"Id\":\"1\",\"Choices\":[{\"Delta\":{\"Content\":\"你好\"}}]}\n\n"
+				+ "data: {\"Id\":\"2\",\"Choices\":[{\"Delta\":{\"Content\":\"世界\"}}]}\n\n" + "data: [DONE]\n\n";
+
+		assertThat(decode(body, body.length())).extracting(ChatCompletionChunk::id).containsExactly("1", "2");
+		assertThat(decode(body, body.length()).get(0).choices().get(0).delta().content()).isEqualTo("你好");
+	}
+
+	@Test
+	void decodesEventsSplitAcrossBuffersAtAnyByte() {
+		String body = "data: {\"Id\":\"1\",\"Note\":\"以上内容为AI生成\"}\r\n\r\n" + ": keep-alive\n\n"
+				+ "id: 7\nevent: message\ndata:{\"Id\":\"2\"}\n\n" + "data: [DONE]\n\n";
+
+		for (int size = 1; size <= body.getBytes(StandardCharsets.UTF_8).length; size++) {
+			List<ChatCompletionChunk> chunks = decode(body, size);
+
+			assertThat(chunks).extracting(ChatCompletionChunk::id).containsExactly("1", "2");
+			assertThat(chunks.get(0).note()).isEqualTo("以上内容为AI生成");
+		}
+	}
+
+	@Test
+	void joinsMultiLineData() {
+		String body = "data: {\"Id\":\"1\",\ndata: \"Note\":\"multi\"}\n\n";
+
+		for (int size = 1; size <= body.length(); size++) {
+			assertThat(decode(body, size)).singleElement()
+				.satisfies(chunk -> assertThat(chunk.note()).isEqualTo("multi"));
+		}
+	}
+
+	@Test
+	void dispatchesTheLastEventWithoutTrailingBlankLine() {
+		assertThat(decode("data: {\"Id\":\"1\"}\n\ndata: {\"Id\":\"2\"}", 5)).extracting(ChatCompletionChunk::id)
+			.containsExactly("1", "2");
+	}
+
+	@Test
+	void decodesPlainJsonErrorBody() {
+		String body = "{\"Response\":{\"Error\":{\"Code\":\"InvalidParameter\",\"Message\":\"bad\"},\"RequestId\":\"r-1\"}}";
+
+		assertThat(decode(body, 7)).singleElement().satisfies(chunk -> {
+			assertThat(chunk.errorMsg().index()).isEqualTo("InvalidParameter");
+			assertThat(chunk.requestId()).isEqualTo("r-1");
+		});
+	}
+
+	private List<ChatCompletionChunk> decode(String body, int bufferSize) {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		List<DataBuffer> buffers = new ArrayList<>();
+		for (int offset = 0; offset < bytes.length; offset += bufferSize) {
+			int count = Math.min(bufferSize, bytes.length - offset);
+			DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.allocateBuffer(count);
+			buffer.write(bytes, offset, count);
+			buffers.add(buffer);
+		}
+		return this.decoder.decode(Flux.fromIterable(buffers)).collectList().block();
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatCompletionFunction;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ToolCall;
+
+/**
+ * Merging of a tool call whose arguments are streamed in many small fragments, with the
+ * {@link HunYuanToolCallAccumulator} compared with the reduction through
+ * {@link HunYuanStreamFunctionCallingHelper#merge} that copied the accumulated arguments
+ * on every chunk.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HunYuanToolCallAccumulatorBenchmark {
+
+	@Param({ "200", "2000" })
+	private int chunkCount;
+
+	private List<ChatCompletionChunk> chunks;
+
+	@Setup
+	public void setup() {
+		this.chunks = new ArrayList<>(this.chunkCount + 1);
+		for (int i = 0; i < this.chunkCount; i++) {
+			ToolCall toolCall = (i == 0)
+					? new ToolCall("call-1", "function", 0, new ChatCompletionFunction("search", "{\"query\":\""))
+					: new ToolCall("call-1", "function", 0, new ChatCompletionFunction(null, "token" + i + " "));
+			this.chunks.add(chunk(null, toolCall));
+		}
+		this.chunks
+			.add(chunk("tool_calls", new ToolCall("call-1", "function", 0, new ChatCompletionFunction(null, "\"}"))));
+	}
+
+	@Benchmark
+	public ChatCompletionChunk accumulator() {
+		HunYuanToolCallAccumulator accumulator = new HunYuanToolCallAccumulator();
+		ChatCompletionChunk merged = null;
+		for (ChatCompletionChunk chunk : this.chunks) {
+			ChatCompletionChunk emitted = accumulator.accept(chunk);
+			if (emitted != null) {
+				merged = emitted;
+			}
+		}
+		return merged;
+	}
+
+	@Benchmark
+	@SuppressWarnings("deprecation")
+	public ChatCompletionChunk previousImplementation() {
+		// What the window reduction did, without the Reactor overhead.
+		HunYuanStreamFunctionCallingHelper helper = new HunYuanStreamFunctionCallingHelper();
+		ChatCompletionChunk merged = new ChatCompletionChunk(null, null, null, null, null, null, null, null, null, null,
+				null, null);
+		for (ChatCompletionChunk chunk : this.chunks) {
+			merged = helper.merge(merged, chunk);
+		}
+		return merged;
+	}
+
+	private static ChatCompletionChunk chunk(String finishReason, ToolCall toolCall) {
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(Role.assistant, null,
+				List.of(toolCall), null);
+		return new ChatCompletionChunk("chunk", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, null, finishReason, delta, null)), null, null, null, null, null,
+				null, null);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanToolCallAccumulatorBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatCompletionFunction;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ToolCall;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.Usage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanToolCallAccumulatorTests {
+
+	private final HunYuanToolCallAccumulator accumulator = new HunYuanToolCallAccumulator();
+
+	@Test
+	void chunksWithoutToolCallsPassThrough() {
+		ChatCompletionChunk chunk = chunk(null, "Hello", null);
+
+		assertThat(this.accumulator.accept(chunk)).isSameAs(chunk);
+		assertThat(this.accumulator.complete()).isNull();
+	}
+
+	@Test
+	void parallelToolCallsAreAccumulatedByIndexUntilTheChoiceFinishes() {
+		assertThat(this.accumulator.accept(chunk(null, null, null,
+				new ToolCall("call-1", "function", 0, new ChatCompletionFunction("getWeather", "{\"city\":")))))
+			.isNull();
+		assertThat(this.accumulator.accept(chunk(null, null, null,
+				new ToolCall("call-2", "function", 1, new ChatCompletionFunction("getTime", "{\"zone\":")))))
+			.isNull();
+		assertThat(this.accumulator
+			.accept(chunk(null, null, null, new ToolCall(null, null, 1, new ChatCompletionFunction(null, "\"UTC\"}")))))
+			.isNull();
+		assertThat(this.accumulator.accept(
+				chunk(null, null, null, new ToolCall(null, null, 0, new ChatCompletionFunction(null, " \"Paris\"}")))))
+			.isNull();
+
+		ChatCompletionChunk merged = this.accumulator.accept(chunk("tool_calls", null, new Usage(1, 2, 3)));
+
+		ChatCompletion.Choice choice = merged.choices().get(0);
+		assertThat(choice.finishReason()).isEqualTo("tool_calls");
+		assertThat(choice.delta().role()).isEqualTo(Role.assistant);
+		assertThat(choice.delta().toolCalls()).containsExactly(
+				new ToolCall("call-1", "function", 0,
+						new ChatCompletionFunction("getWeather", "{\"city\": \"Paris\"}")),
+				new ToolCall("call-2", "function", 1, new ChatCompletionFunction("getTime", "{\"zone\":\"UTC\"}")));
+		assertThat(merged.usage()).isEqualTo(new Usage(1, 2, 3));
+
+		ChatCompletionChunk next = chunk(null, "Done", null);
+		assertThat(this.accumulator.accept(next)).isSameAs(next);
+	}
+
+	@Test
+	void toolCallsOfTheSameDeltaAreToldApartById() {
+		ChatCompletionChunk merged = this.accumulator.accept(chunk("tool_calls", null, null,
+				new ToolCall("call-1", "function", null, new ChatCompletionFunction("first", "{}")),
+				new ToolCall("call-2", "function", null, new ChatCompletionFunction("second", "{}"))));
+
+		assertThat(merged.choices().get(0).delta().toolCalls()).extracting(toolCall -> toolCall.function().name())
+			.containsExactly("first", "second");
+	}
+
+	@Test
+	void unfinishedToolCallsAreEmittedWhenTheStreamCompletes() {
+		this.accumulator.accept(chunk(null, null, null,
+				new ToolCall("call-1", "function", 0, new ChatCompletionFunction("getWeather", "{\"city\":"))));
+		this.accumulator.accept(chunk(null, null, null,
+				new ToolCall(null, null, null, new ChatCompletionFunction(null, "\"Paris\"}"))));
+
+		ChatCompletionChunk merged = this.accumulator.complete();
+
+		assertThat(merged.choices().get(0).delta().toolCalls()).singleElement()
+			.extracting(toolCall -> toolCall.function().arguments())
+			.isEqualTo("{\"city\":\"Paris\"}");
+		assertThat(this.accumulator.complete()).isNull();
+	}
+
+	private static ChatCompletionChunk chunk(String finishReason, String content, Usage usage, ToolCall... toolCalls) {
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(Role.assistant, content,
+				(toolCalls.length > 0) ? List.of(toolCalls) : null, null);
+		return new ChatCompletionChunk("chunk", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, null, finishReason, delta, null)), usage, null, null, null, null,
+				null, null);
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanConstants;
+
+/**
+ * Signatures per second of {@link HunYuanAuthApi} compared with the previous
+ * implementation that re-derived the signing key and created new crypto primitives for
+ * every request.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class HunYuanAuthApiBenchmark {
+
+	@Param({ "256", "65536" })
+	private int payloadSize;
+
+	private byte[] body;
+
+	private HunYuanAuthApi authApi;
+
+	@Setup
+	public void setup() {
+		this.body = "x".repeat(this.payloadSize).getBytes(StandardCharsets.UTF_8);
+		this.authApi = new HunYuanAuthApi("secret-id", "secret-key", HunYuanConstants.DEFAULT_CHAT_HOST,
+				HunYuanConstants.DEFAULT_SERVICE);
+	}
+
+	@Benchmark
+	public Object cachedSigningKey() {
+		return this.authApi.getHttpHeadersConsumer("ChatCompletions", "2023-09-01", this.body);
+	}
+
+	@Benchmark
+	public Object previousImplementation() throws Exception {
+		return legacySign("ChatCompletions", "2023-09-01", this.body);
+	}
+
+	private static Map<String, String> legacySign(String action, String version, byte[] body) throws Exception {
+		String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+		sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+		String date = sdf.format(new Date(Long.valueOf(timestamp + "000")));
+		String canonicalHeaders = "content-type:application/json; charset=utf-8\n" + "host:"
+				+ HunYuanConstants.DEFAULT_CHAT_HOST + "\n" + "x-tc-action:" + action.toLowerCase() + "\n";
+		String signedHeaders = "content-type;host;x-tc-action";
+		String hashedRequestPayload = legacySha256Hex(new String(body, StandardCharsets.UTF_8));
+		String canonicalRequest = "POST\n/\n\n" + canonicalHeaders + "\n" + signedHeaders + "\n" + hashedRequestPayload;
+		String credentialScope = date + "/" + HunYuanConstants.DEFAULT_SERVICE + "/" + "tc3_request";
+		String stringToSign = "TC3-HMAC-SHA256\n" + timestamp + "\n" + credentialScope + "\n"
+				+ legacySha256Hex(canonicalRequest);
+		byte[] secretDate = legacyHmac256(("TC3" + "secret-key").getBytes(StandardCharsets.UTF_8), date);
+		byte[] secretService = legacyHmac256(secretDate, HunYuanConstants.DEFAULT_SERVICE);
+		byte[] secretSigning = legacyHmac256(secretService, "tc3_request");
+		String signature = DatatypeConverter.printHexBinary(legacyHmac256(secretSigning, stringToSign)).toLowerCase();
+		TreeMap<String, String> headers = new TreeMap<>();
+		headers.put("Authorization", "TC3-HMAC-SHA256 Credential=secret-id/" + credentialScope + ", SignedHeaders="
+				+ signedHeaders + ", Signature=" + signature);
+		headers.put("Content-Type", HunYuanConstants.CT_JSON);
+		headers.put("X-TC-Action", action);
+		headers.put("X-TC-Timestamp", timestamp);
+		headers.put("X-TC-Version", version);
+		return headers;
+	}
+
+	private static byte[] legacyHmac256(byte[] key, String msg) throws Exception {
+		Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(key, mac.getAlgorithm()));
+		return mac.doFinal(msg.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String legacySha256Hex(String s) throws Exception {
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		return DatatypeConverter.printHexBinary(md.digest(s.getBytes(StandardCharsets.UTF_8))).toLowerCase();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanAuthApiBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.api.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.TimeZone;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.MultiValueMap;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanConstants;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanAuthApiTests {
+
+	private static final String SECRET_ID = "AKIDz8krbsJ5yKBZQpn74WFkmLPx3EXAMPLE";
+
+	private static final String SECRET_KEY = "Gu5t9xGARNpq86cd98joQYCN3EXAMPLE";
+
+	private static final byte[] BODY = "{\"Model\":\"hunyuan-pro\",\"Messages\":[{\"Role\":\"user\",\"Content\":\"你好\"}]}"
+		.getBytes(StandardCharsets.UTF_8);
+
+	private final HunYuanAuthApi authApi = new HunYuanAuthApi(SECRET_ID, SECRET_KEY, HunYuanConstants.DEFAULT_CHAT_HOST,
+			HunYuanConstants.DEFAULT_SERVICE);
+
+	@Test
+	void signatureMatchesReferenceImplementation() throws Exception {
+		long timestamp = 1551113065L;
+		MultiValueMap<String, String> headers = this.authApi.sign("ChatCompletions", "2023-09-01", BODY, 0, BODY.length,
+				timestamp);
+
+		assertThat(headers.getFirst("Authorization"))
+			.isEqualTo(referenceAuthorization("ChatCompletions", BODY, timestamp));
+		assertThat(headers.getFirst("X-TC-Action")).isEqualTo("ChatCompletions");
+		assertThat(headers.getFirst("X-TC-Timestamp")).isEqualTo("1551113065");
+		assertThat(headers.getFirst("X-TC-Version")).isEqualTo("2023-09-01");
+		assertThat(headers.getFirst("Content-Type")).isEqualTo(HunYuanConstants.CT_JSON);
+	}
+
+	@Test
+	void signingKeyIsRederivedWhenTheUtcDayChanges() throws Exception {
+		long lastSecondOfDay = 1551139199L;
+		long firstSecondOfNextDay = lastSecondOfDay + 1;
+
+		String before = this.authApi.sign("GetEmbedding", "2023-09-01", BODY, 0, BODY.length, lastSecondOfDay)
+			.getFirst("Authorization");
+		String after = this.authApi.sign("GetEmbedding", "2023-09-01", BODY, 0, BODY.length, firstSecondOfNextDay)
+			.getFirst("Authorization");
+
+		assertThat(before).contains("/2019-02-25/hunyuan/tc3_request")
+			.isEqualTo(referenceAuthorization("GetEmbedding", BODY, lastSecondOfDay));
+		assertThat(after).contains("/2019-02-26/hunyuan/tc3_request")
+			.isEqualTo(referenceAuthorization("GetEmbedding", BODY, firstSecondOfNextDay));
+	}
+
+	@Test
+	void signsOnlyTheGivenRegionOfTheBuffer() throws Exception {
+		byte[] padded = new byte[BODY.length + 7];
+		System.arraycopy(BODY, 0, padded, 3, BODY.length);
+
+		String authorization = this.authApi.sign("ChatCompletions", "2023-09-01", padded, 3, BODY.length, 1551113065L)
+			.getFirst("Authorization");
+
+		assertThat(authorization).isEqualTo(referenceAuthorization("ChatCompletions", BODY, 1551113065L));
+	}
+
+	@Test
+	void sha256HexIsLowerCase() {
+		assertThat(this.authApi.sha256Hex(""))
+			.isEqualTo("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+	}
+
+	/**
+	 * The signing procedure as documented by Tencent Cloud, without any caching.
+	 */
+	private static String referenceAuthorization(String action, byte[] body, long timestamp) throws Exception {
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+		sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+		String date = sdf.format(new Date(timestamp * 1000));
+		String service = HunYuanConstants.DEFAULT_SERVICE;
+
+		String canonicalHeaders = "content-type:application/json; charset=utf-8\n" + "host:"
+				+ HunYuanConstants.DEFAULT_CHAT_HOST + "\n" + "x-tc-action:" + action.toLowerCase() + "\n";
+		String signedHeaders = "content-type;host;x-tc-action";
+		String canonicalRequest = "POST\n/\n\n" + canonicalHeaders + "\n" + signedHeaders + "\n" + sha256Hex(body);
+		String credentialScope = date + "/" + service + "/" + "tc3_request";
+		String stringToSign = "TC3-HMAC-SHA256\n" + timestamp + "\n" + credentialScope + "\n"
+				+ sha256Hex(canonicalRequest.getBytes(StandardCharsets.UTF_8));
+
+		byte[] secretDate = hmac256(("TC3" + SECRET_KEY).getBytes(StandardCharsets.UTF_8), date);
+		byte[] secretService = hmac256(secretDate, service);
+		byte[] secretSigning = hmac256(secretService, "tc3_request");
+		String signature = HexFormat.of().formatHex(hmac256(secretSigning, stringToSign));
+		return "TC3-HMAC-SHA256 Credential=" + SECRET_ID + "/" + credentialScope + ", SignedHeaders=" + signedHeaders
+				+ ", Signature=" + signature;
+	}
+
+	private static byte[] hmac256(byte[] key, String msg) throws Exception {
+		Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(key, "HmacSHA256"));
+		return mac.doFinal(msg.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String sha256Hex(byte[] bytes) throws Exception {
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+	}
+
+}
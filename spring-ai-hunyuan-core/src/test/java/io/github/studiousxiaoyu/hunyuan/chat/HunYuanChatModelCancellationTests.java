@@ -0,0 +1,100 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatCompletionFunction;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ToolCall;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Guo Junyu
+ */
+@ExtendWith(MockitoExtension.class)
+class HunYuanChatModelCancellationTests {
+
+	private @Mock HunYuanApi hunYuanApi;
+
+	@Test
+	void cancellingTheStreamInterruptsTheToolsInFlight() throws InterruptedException {
+		CountDownLatch toolStarted = new CountDownLatch(1);
+		CountDownLatch toolInterrupted = new CountDownLatch(1);
+		AtomicInteger toolCompleted = new AtomicInteger();
+		ToolCallback slowTool = FunctionToolCallback.builder("slowTool", (Request request) -> {
+			toolStarted.countDown();
+			try {
+				Thread.sleep(10_000);
+				toolCompleted.incrementAndGet();
+			}
+			catch (InterruptedException ex) {
+				toolInterrupted.countDown();
+			}
+			return "done";
+		}).description("A tool that takes its time").inputType(Request.class).build();
+		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class)))
+			.willReturn(Flux.just(toolCallChunk()));
+		HunYuanChatModel chatModel = HunYuanChatModel.builder().hunYuanApi(this.hunYuanApi).build();
+
+		Disposable subscription = chatModel
+			.stream(new Prompt("Use the tool", HunYuanChatOptions.builder().toolCallbacks(slowTool).build()))
+			.subscribe();
+		assertThat(toolStarted.await(5, TimeUnit.SECONDS)).isTrue();
+		subscription.dispose();
+
+		assertThat(toolInterrupted.await(1, TimeUnit.SECONDS)).isTrue();
+		assertThat(toolCompleted).hasValue(0);
+		// The next round is never requested.
+		verify(this.hunYuanApi, times(1)).chatCompletionStream(isA(ChatCompletionRequest.class));
+	}
+
+	private static ChatCompletionChunk toolCallChunk() {
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(Role.assistant, "",
+				List.of(new ToolCall("call-1", "function", 0, new ChatCompletionFunction("slowTool", "{}"))), null);
+		return new ChatCompletionChunk("id", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, null, "tool_calls", delta, null)), null, null, null, null, null,
+				null, null);
+	}
+
+	record Request(String query) {
+
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+
+/**
+ * Merging of the options of a prompt with the default options into a chat completion
+ * request, with the {@link HunYuanChatOptionsMerger} compared with the merging through
+ * {@code ModelOptionsUtils} that it replaced, for prompts with and without options. The
+ * resolution of the tool definitions, the same for both, is left out.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HunYuanChatOptionsMergerBenchmark {
+
+	private HunYuanChatOptions defaultOptions;
+
+	private HunYuanChatOptions runtimeOptions;
+
+	private List<ChatCompletionMessage> messages;
+
+	@Setup
+	public void setup() {
+		this.defaultOptions = HunYuanChatOptionsMergerTests.fullOptions();
+		this.runtimeOptions = HunYuanChatOptions.builder().model("hunyuan-turbo").temperature(0.2).build();
+		this.messages = List.of(new ChatCompletionMessage("You are a helpful assistant", Role.system),
+				new ChatCompletionMessage("What is the weather like in Shenzhen?", Role.user));
+	}
+
+	@Benchmark
+	public ChatCompletionRequest merger() {
+		HunYuanChatOptions options = HunYuanChatOptionsMerger
+			.merge(HunYuanChatOptionsMerger.runtimeOptions(this.runtimeOptions), this.defaultOptions);
+		return HunYuanChatOptionsMerger.request(options, this.messages, true, null);
+	}
+
+	@Benchmark
+	public ChatCompletionRequest mergerWithoutRuntimeOptions() {
+		return HunYuanChatOptionsMerger.request(this.defaultOptions, this.messages, true, null);
+	}
+
+	@Benchmark
+	public ChatCompletionRequest previousImplementation() {
+		return previousRequest(previousMerge(this.runtimeOptions));
+	}
+
+	@Benchmark
+	public ChatCompletionRequest previousImplementationWithoutRuntimeOptions() {
+		return previousRequest(previousMerge(null));
+	}
+
+	private HunYuanChatOptions previousMerge(HunYuanChatOptions prompt) {
+		HunYuanChatOptions runtime = null;
+		if (prompt != null) {
+			runtime = ModelOptionsUtils.copyToTarget(prompt, ToolCallingChatOptions.class, HunYuanChatOptions.class);
+		}
+		HunYuanChatOptions merged = ModelOptionsUtils.merge(runtime, this.defaultOptions, HunYuanChatOptions.class);
+		HunYuanChatOptions source = (runtime != null) ? runtime : new HunYuanChatOptions();
+		Map<String, String> httpHeaders = new HashMap<>(this.defaultOptions.getHttpHeaders());
+		httpHeaders.putAll(source.getHttpHeaders());
+		merged.setHttpHeaders(httpHeaders);
+		merged.setInternalToolExecutionEnabled(ModelOptionsUtils.mergeOption(source.getInternalToolExecutionEnabled(),
+				this.defaultOptions.getInternalToolExecutionEnabled()));
+		merged.setToolNames(
+				ToolCallingChatOptions.mergeToolNames(source.getToolNames(), this.defaultOptions.getToolNames()));
+		merged.setToolCallbacks(ToolCallingChatOptions.mergeToolCallbacks(source.getToolCallbacks(),
+				this.defaultOptions.getToolCallbacks()));
+		merged.setToolContext(
+				ToolCallingChatOptions.mergeToolContext(source.getToolContext(), this.defaultOptions.getToolContext()));
+		merged.setStreamCoalesceWindow(ModelOptionsUtils.mergeOption(source.getStreamCoalesceWindow(),
+				this.defaultOptions.getStreamCoalesceWindow()));
+		merged.setStreamCoalesceMaxChars(ModelOptionsUtils.mergeOption(source.getStreamCoalesceMaxChars(),
+				this.defaultOptions.getStreamCoalesceMaxChars()));
+		merged.setStreamTimeouts(
+				ModelOptionsUtils.mergeOption(source.getStreamTimeouts(), this.defaultOptions.getStreamTimeouts()));
+		merged.setToolLoop(ModelOptionsUtils.mergeOption(source.getToolLoop(), this.defaultOptions.getToolLoop()));
+		return merged;
+	}
+
+	private ChatCompletionRequest previousRequest(HunYuanChatOptions options) {
+		return ModelOptionsUtils.merge(options, new ChatCompletionRequest(this.messages, true),
+				ChatCompletionRequest.class);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanChatOptionsMergerBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
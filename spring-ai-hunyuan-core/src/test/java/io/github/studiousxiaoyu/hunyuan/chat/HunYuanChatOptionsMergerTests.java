@@ -0,0 +1,221 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.model.tool.DefaultToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.FunctionTool;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanStreamTimeoutOptions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanChatOptionsMergerTests {
+
+	private static final ToolCallback LOOKUP = FunctionToolCallback.builder("lookup", (Request request) -> "found")
+		.description("Looks something up")
+		.inputType(Request.class)
+		.build();
+
+	@Test
+	void everyOptionIsSet() throws IllegalAccessException {
+		// Guards the tests below: an option added to HunYuanChatOptions must be set here,
+		// and then merged and copied by hand.
+		HunYuanChatOptions options = fullOptions();
+		for (Field field : HunYuanChatOptions.class.getDeclaredFields()) {
+			if (Modifier.isStatic(field.getModifiers())) {
+				continue;
+			}
+			field.setAccessible(true);
+			Object value = field.get(options);
+			assertThat(value).as(field.getName()).isNotNull();
+			if (value instanceof Collection<?> collection) {
+				assertThat(collection).as(field.getName()).isNotEmpty();
+			}
+			if (value instanceof Map<?, ?> map) {
+				assertThat(map).as(field.getName()).isNotEmpty();
+			}
+		}
+	}
+
+	@Test
+	void everyOptionIsMerged() {
+		HunYuanChatOptions options = fullOptions();
+
+		assertThat(HunYuanChatOptionsMerger.merge(options, new HunYuanChatOptions())).isEqualTo(options);
+		assertThat(HunYuanChatOptionsMerger.merge(new HunYuanChatOptions(), options)).isEqualTo(options);
+	}
+
+	@Test
+	void everyOptionIsCopied() {
+		HunYuanChatOptions options = fullOptions();
+
+		HunYuanChatOptions copy = options.copy();
+
+		assertThat(copy).isEqualTo(options).isNotSameAs(options);
+		assertThat(copy.getToolNames()).isNotSameAs(options.getToolNames());
+		assertThat(HunYuanChatOptions.fromOptions(options)).isEqualTo(options);
+	}
+
+	@Test
+	void runtimeOptionsOverrideTheDefaultOnes() {
+		HunYuanChatOptions defaults = HunYuanChatOptions.builder()
+			.model("hunyuan-lite")
+			.temperature(0.5)
+			.enableThinking(true)
+			.toolNames("weather")
+			.httpHeaders(Map.of("X-Default", "1", "X-Shared", "default"))
+			.toolContext(Map.of("tenant", "default"))
+			.build();
+		HunYuanChatOptions runtime = HunYuanChatOptions.builder()
+			.temperature(0.9)
+			.toolNames("lookup")
+			.httpHeaders(Map.of("X-Shared", "runtime"))
+			.toolContext(Map.of("user", "runtime"))
+			.build();
+
+		HunYuanChatOptions merged = HunYuanChatOptionsMerger.merge(runtime, defaults);
+
+		assertThat(merged.getModel()).isEqualTo("hunyuan-lite");
+		assertThat(merged.getTemperature()).isEqualTo(0.9);
+		assertThat(merged.getEnableThinking()).isTrue();
+		assertThat(merged.getToolNames()).containsExactly("lookup");
+		assertThat(merged.getHttpHeaders()).containsOnly(Map.entry("X-Default", "1"), Map.entry("X-Shared", "runtime"));
+		assertThat(merged.getToolContext()).containsOnly(Map.entry("tenant", "default"), Map.entry("user", "runtime"));
+	}
+
+	@Test
+	void otherOptionsContributeTheOptionsTheyShare() {
+		DefaultToolCallingChatOptions options = new DefaultToolCallingChatOptions();
+		options.setModel("hunyuan-turbo");
+		options.setTemperature(0.3);
+		options.setStopSequences(List.of("END"));
+		options.setToolNames(Set.of("lookup"));
+		options.setInternalToolExecutionEnabled(false);
+
+		HunYuanChatOptions runtime = HunYuanChatOptionsMerger.runtimeOptions(options);
+
+		assertThat(runtime.getModel()).isEqualTo("hunyuan-turbo");
+		assertThat(runtime.getTemperature()).isEqualTo(0.3);
+		assertThat(runtime.getStop()).containsExactly("END");
+		assertThat(runtime.getToolNames()).containsExactly("lookup");
+		assertThat(runtime.getInternalToolExecutionEnabled()).isFalse();
+	}
+
+	@Test
+	void theRequestHoldsTheSameOptionsAsTheReflectiveMerge() {
+		HunYuanChatOptions options = fullOptions();
+		List<ChatCompletionMessage> messages = List.of(new ChatCompletionMessage("Hello", Role.user));
+
+		ChatCompletionRequest request = HunYuanChatOptionsMerger.request(options, messages, true, null);
+
+		assertThat(request).isEqualTo(ModelOptionsUtils.merge(options, new ChatCompletionRequest(messages, true),
+				ChatCompletionRequest.class));
+		assertThat(request.forceSearchEnhancement()).isTrue();
+	}
+
+	@Test
+	void resolvedToolsReplaceTheToolsOfTheOptions() {
+		List<FunctionTool> tools = List.of(new FunctionTool(new FunctionTool.Function("resolved", "resolved", "{}")));
+
+		ChatCompletionRequest request = HunYuanChatOptionsMerger.request(fullOptions(), List.of(), false, tools);
+
+		assertThat(request.tools()).isEqualTo(tools);
+	}
+
+	@Test
+	void promptsWithoutOptionsUseTheDefaultOptions() {
+		HunYuanChatOptions defaults = HunYuanChatOptions.builder().model("hunyuan-lite").build();
+		HunYuanChatModel chatModel = HunYuanChatModel.builder()
+			.hunYuanApi(new HunYuanApi("secret-id", "secret-key"))
+			.defaultOptions(defaults)
+			.build();
+
+		assertThat(chatModel.buildRequestPrompt(new Prompt("Hello")).getOptions()).isSameAs(defaults);
+		assertThat(chatModel.getDefaultOptions()).isEqualTo(defaults).isNotSameAs(defaults);
+	}
+
+	@Test
+	void defaultToolCallbacksAreValidatedWhenTheModelIsBuilt() {
+		HunYuanChatOptions defaults = HunYuanChatOptions.builder().toolCallbacks(LOOKUP, LOOKUP).build();
+
+		assertThatIllegalStateException().isThrownBy(() -> HunYuanChatModel.builder()
+			.hunYuanApi(new HunYuanApi("secret-id", "secret-key"))
+			.defaultOptions(defaults)
+			.build());
+	}
+
+	static HunYuanChatOptions fullOptions() {
+		FunctionTool tool = new FunctionTool(new FunctionTool.Function("A tool", "tool", "{\"type\":\"object\"}"));
+		return HunYuanChatOptions.builder()
+			.model("hunyuan-pro")
+			.temperature(0.7)
+			.topP(0.8)
+			.seed(42)
+			.enableEnhancement(true)
+			.streamModeration(true)
+			.stop(List.of("STOP"))
+			.tools(List.of(tool))
+			.toolChoice("auto")
+			.customTool(tool)
+			.searchInfo(true)
+			.citation(true)
+			.enableSpeedSearch(true)
+			.enableMultimedia(true)
+			.enableDeepSearch(true)
+			.forceSearchEnhancement(true)
+			.enableRecommendedQuestions(true)
+			.enableDeepRead(true)
+			.enableThinking(true)
+			.toolCallbacks(LOOKUP)
+			.toolNames("lookup")
+			.internalToolExecutionEnabled(true)
+			.httpHeaders(Map.of("X-Request", "1"))
+			.toolContext(Map.of("user", "someone"))
+			.streamCoalesceWindow(Duration.ofMillis(20))
+			.streamCoalesceMaxChars(64)
+			.streamTimeouts(HunYuanStreamTimeoutOptions.builder().firstToken(Duration.ofSeconds(5)).build())
+			.toolLoop(HunYuanToolLoopOptions.builder().maxRounds(4).build())
+			.imagePreprocessing(HunYuanImagePreprocessingOptions.builder().maxEdge(1024).quality(0.8f).build())
+			.build();
+	}
+
+	record Request(String query) {
+
+	}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanJsonCodec;
+
+/**
+ * Encoding of the request bodies of a tool calling loop that grows a conversation to 500
+ * messages, two per round, with the {@link HunYuanConversationEncoder} of the loop
+ * compared with the conversion and serialization of the whole conversation for every
+ * round that it replaced. Scores and allocations are per round.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HunYuanConversationEncoderBenchmark {
+
+	private static final int MESSAGE_COUNT = 500;
+
+	private static final int ROUNDS = (MESSAGE_COUNT - 2) / 2;
+
+	private final HunYuanJsonCodec jsonCodec = new HunYuanJsonCodec();
+
+	private HunYuanChatModel chatModel;
+
+	private HunYuanChatOptions options;
+
+	private List<Message> conversation;
+
+	@Setup
+	public void setup() {
+		this.chatModel = HunYuanChatModel.builder().hunYuanApi(new HunYuanApi("secret-id", "secret-key")).build();
+		this.options = HunYuanChatOptions.builder()
+			.model("hunyuan-pro")
+			.toolCallbacks(FunctionToolCallback.builder("search", (Request request) -> "done")
+				.description("Searches the orders")
+				.inputType(Request.class)
+				.build())
+			.build();
+		this.conversation = new ArrayList<>(MESSAGE_COUNT);
+		this.conversation.add(new SystemMessage("You are an assistant that answers questions about orders, "
+				+ "use the search tool as many times as needed."));
+		this.conversation.add(new UserMessage("Which of last week's orders were delivered late, and why?"));
+		for (int i = 0; i < ROUNDS; i++) {
+			this.conversation.add(new AssistantMessage("Looking at page " + i + " of the orders.", Map.of(),
+					List.of(new AssistantMessage.ToolCall("call-" + i, "function", "search",
+							"{\"query\":\"delivered late\",\"page\":" + i + "}"))));
+			this.conversation.add(new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("call-" + i,
+					"search", "[{\"order\":\"" + i + "-1\",\"status\":\"late\",\"reason\":\"carrier delay in 深圳\"},"
+							+ "{\"order\":\"" + i + "-2\",\"status\":\"on time\",\"reason\":null}]"))));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROUNDS)
+	public void encoder(Blackhole blackhole) {
+		HunYuanConversationEncoder encoder = new HunYuanConversationEncoder();
+		for (int round = 1; round <= ROUNDS; round++) {
+			blackhole.consume(this.jsonCodec.encode(this.chatModel.createRequest(prompt(round), false, encoder)));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROUNDS)
+	public void previousImplementation(Blackhole blackhole) {
+		for (int round = 1; round <= ROUNDS; round++) {
+			blackhole.consume(this.jsonCodec.encode(this.chatModel.createRequest(prompt(round), false)));
+		}
+	}
+
+	private Prompt prompt(int round) {
+		return new Prompt(this.conversation.subList(0, 2 + 2 * round), this.options);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanConversationEncoderBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+	public record Request(String query, Integer page) {
+
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+import org.springframework.http.ResponseEntity;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatCompletionFunction;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ToolCall;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionResponse;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanSerializedMessages;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Guo Junyu
+ */
+@ExtendWith(MockitoExtension.class)
+class HunYuanConversationEncoderTests {
+
+	private @Mock HunYuanApi hunYuanApi;
+
+	@Test
+	void messagesAreConvertedOnceForAllTheRounds() {
+		HunYuanConversationEncoder encoder = new HunYuanConversationEncoder();
+		List<Message> converted = new ArrayList<>();
+		List<Message> conversation = new ArrayList<>(
+				List.of(new SystemMessage("Be brief"), new UserMessage("What is the weather like?")));
+
+		encoder.encode(conversation, message -> {
+			converted.add(message);
+			return List.of(new ChatCompletionMessage(message.getText(), Role.user));
+		});
+		conversation.add(new AssistantMessage("", Map.of(),
+				List.of(new AssistantMessage.ToolCall("call-1", "function", "weather", "{}"))));
+		conversation
+			.add(new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("call-1", "weather", "Sunny"))));
+		HunYuanSerializedMessages messages = encoder.encode(conversation, message -> {
+			converted.add(message);
+			return List.of(new ChatCompletionMessage(message.getText(), Role.user));
+		});
+
+		assertThat(converted).containsExactlyElementsOf(conversation);
+		assertThat(messages).hasSize(4);
+	}
+
+	@Test
+	void systemMessagesGoFirstInTheirOrder() {
+		HunYuanChatModel chatModel = HunYuanChatModel.builder().hunYuanApi(this.hunYuanApi).build();
+		Prompt prompt = new Prompt(
+				List.of(new UserMessage("Hello"), new SystemMessage("First"), new SystemMessage("Second")),
+				HunYuanChatOptions.builder().build());
+
+		ChatCompletionRequest request = chatModel.createRequest(prompt, false);
+
+		assertThat(request.messages()).extracting(ChatCompletionMessage::rawContent)
+			.containsExactly("First", "Second", "Hello");
+		assertThat(new HunYuanConversationEncoder().encode(prompt.getInstructions(),
+				message -> List.of(new ChatCompletionMessage(message.getText(), Role.user))))
+			.extracting(ChatCompletionMessage::rawContent)
+			.containsExactly("First", "Second", "Hello");
+	}
+
+	@Test
+	void theRoundsOfAToolCallingLoopShareTheirSerializedMessages() {
+		ChatCompletionMessage toolCall = new ChatCompletionMessage("", Role.assistant,
+				List.of(new ToolCall("call-1", "function", 0, new ChatCompletionFunction("weather", "{}"))), null);
+		given(this.hunYuanApi.chatCompletionEntity(isA(ChatCompletionRequest.class))).willReturn(
+				ResponseEntity.ok(completion(toolCall, "tool_calls")),
+				ResponseEntity.ok(completion(new ChatCompletionMessage("Sunny", Role.assistant), "stop")));
+		ToolCallback weather = FunctionToolCallback.builder("weather", (Request request) -> "Sunny")
+			.description("The weather")
+			.inputType(Request.class)
+			.build();
+		HunYuanChatModel chatModel = HunYuanChatModel.builder()
+			.hunYuanApi(this.hunYuanApi)
+			.defaultOptions(HunYuanChatOptions.builder().toolCallbacks(weather).build())
+			.build();
+
+		chatModel
+			.call(new Prompt(List.of(new SystemMessage("Be brief"), new UserMessage("What is the weather like?"))));
+
+		ArgumentCaptor<ChatCompletionRequest> requests = ArgumentCaptor.forClass(ChatCompletionRequest.class);
+		verify(this.hunYuanApi, times(2)).chatCompletionEntity(requests.capture());
+		List<ChatCompletionMessage> first = requests.getAllValues().get(0).messages();
+		List<ChatCompletionMessage> second = requests.getAllValues().get(1).messages();
+		assertThat(second).isInstanceOf(HunYuanSerializedMessages.class).hasSize(4);
+		assertThat(second.get(0)).isSameAs(first.get(0));
+		assertThat(second.get(1)).isSameAs(first.get(1));
+		assertThat(second.get(3).rawContent()).isEqualTo("\"Sunny\"");
+	}
+
+	private static ChatCompletionResponse completion(ChatCompletionMessage message, String finishReason) {
+		return new ChatCompletionResponse(new ChatCompletion("id", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, message, finishReason, null, null)), null, null, null, null, null,
+				null, null));
+	}
+
+	record Request(String city) {
+
+	}
+
+}
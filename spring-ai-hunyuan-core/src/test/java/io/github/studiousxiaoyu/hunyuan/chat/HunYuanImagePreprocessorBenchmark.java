@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.content.Media;
+import org.springframework.util.MimeTypeUtils;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanJsonCodec;
+
+/**
+ * Encoding of the request body of a question about a 12 megapixel JPEG photo, scaled down
+ * to 1568 pixels and re-encoded at the default quality, compared with the photo sent as
+ * it is. The media cache is disabled, so the photo is preprocessed for every request: the
+ * cost of the first request about a photo, for a body of 0.5 MB rather than 3.4 MB.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HunYuanImagePreprocessorBenchmark {
+
+	private final HunYuanJsonCodec jsonCodec = new HunYuanJsonCodec();
+
+	private HunYuanChatModel chatModel;
+
+	private Prompt prompt;
+
+	private Prompt preprocessingPrompt;
+
+	@Setup
+	public void setup() throws IOException {
+		this.chatModel = HunYuanChatModel.builder()
+			.hunYuanApi(new HunYuanApi("secret-id", "secret-key"))
+			.mediaCacheSize(0)
+			.build();
+		BufferedImage photo = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(42);
+		// Gradients with noise on every channel, which JPEG compresses about as well as a
+		// photo: 2.6 MB at the default quality of ImageIO.
+		for (int y = 0; y < photo.getHeight(); y++) {
+			for (int x = 0; x < photo.getWidth(); x++) {
+				photo.setRGB(x, y, (x * 200 / photo.getWidth() + random.nextInt(56)) << 16
+						| (y * 200 / photo.getHeight() + random.nextInt(56)) << 8 | random.nextInt(56));
+			}
+		}
+		ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+		ImageIO.write(photo, "jpeg", jpeg);
+		UserMessage message = UserMessage.builder()
+			.text("What is in this picture?")
+			.media(Media.builder().mimeType(MimeTypeUtils.IMAGE_JPEG).data(jpeg.toByteArray()).build())
+			.build();
+		this.prompt = new Prompt(message, HunYuanChatOptions.builder().model("hunyuan-vision").build());
+		this.preprocessingPrompt = new Prompt(message,
+				HunYuanChatOptions.builder()
+					.model("hunyuan-vision")
+					.imagePreprocessing(HunYuanImagePreprocessingOptions.builder().maxEdge(1568).build())
+					.build());
+	}
+
+	@Benchmark
+	public byte[] preprocessed() {
+		return this.jsonCodec.encode(this.chatModel.createRequest(this.preprocessingPrompt, false));
+	}
+
+	@Benchmark
+	public byte[] previousImplementation() {
+		return this.jsonCodec.encode(this.chatModel.createRequest(this.prompt, false));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanImagePreprocessorBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
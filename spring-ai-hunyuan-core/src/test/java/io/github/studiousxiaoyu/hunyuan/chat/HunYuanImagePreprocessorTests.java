@@ -0,0 +1,196 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.content.Media;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanMediaData;
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanImagePreprocessor.Image;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanImagePreprocessorTests {
+
+	private final HunYuanImagePreprocessor preprocessor = HunYuanImagePreprocessor
+		.of(HunYuanImagePreprocessingOptions.builder().maxEdge(512).build());
+
+	@Test
+	void imagesAreScaledDownToTheMaximumEdgeAndReencodedAsJpeg() throws IOException {
+		byte[] png = encode(image(1200, 900, BufferedImage.TYPE_INT_RGB), "png");
+
+		Image processed = this.preprocessor.process("image/png", png);
+
+		assertThat(processed.mimeType()).isEqualTo("image/jpeg");
+		assertThat(processed.data().length).isLessThan(png.length);
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(processed.data()));
+		assertThat(image.getWidth()).isEqualTo(512);
+		assertThat(image.getHeight()).isEqualTo(384);
+	}
+
+	@Test
+	void theExifOrientationIsAppliedToThePixels() throws IOException {
+		BufferedImage source = image(2000, 1000, BufferedImage.TYPE_INT_RGB);
+		// White top left corner, which orientation 6 turns to the top right.
+		source.getGraphics().fillRect(0, 0, 400, 400);
+		byte[] jpeg = withOrientation(encode(source, "jpeg"), 6);
+
+		assertThat(HunYuanImagePreprocessor.orientation(jpeg)).isEqualTo(6);
+		Image processed = this.preprocessor.process("image/jpeg", jpeg);
+
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(processed.data()));
+		assertThat(image.getWidth()).isEqualTo(256);
+		assertThat(image.getHeight()).isEqualTo(512);
+		assertThat(image.getRGB(240, 16) & 0xFF).isGreaterThan(240);
+		assertThat(image.getRGB(16, 16) & 0xFF).isLessThan(128);
+		assertThat(HunYuanImagePreprocessor.orientation(processed.data())).isEqualTo(1);
+	}
+
+	@Test
+	void imagesThatCannotBeMadeSmallerAreSentAsTheyAre() throws IOException {
+		byte[] transparent = encode(image(300, 200, BufferedImage.TYPE_INT_ARGB), "png");
+		byte[] small = encode(image(16, 16, BufferedImage.TYPE_INT_RGB), "jpeg");
+		byte[] unreadable = new byte[] { 1, 2, 3 };
+
+		assertThat(this.preprocessor.process("image/png", transparent).data()).isSameAs(transparent);
+		assertThat(this.preprocessor.process("image/gif", small).data()).isSameAs(small);
+		assertThat(this.preprocessor.process("image/jpeg", unreadable).data()).isSameAs(unreadable);
+		assertThat(HunYuanImagePreprocessor.of(null)).isNull();
+	}
+
+	@Test
+	void theChatModelPreprocessesTheImagesOnItsExecutorAndCountsTheBytesSaved() throws IOException {
+		byte[] png = encode(image(1200, 900, BufferedImage.TYPE_INT_RGB), "png");
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		AtomicInteger tasks = new AtomicInteger();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			HunYuanChatModel chatModel = HunYuanChatModel.builder()
+				.hunYuanApi(new HunYuanApi("secret-id", "secret-key"))
+				.meterRegistry(meterRegistry)
+				.imageExecutor(task -> {
+					tasks.incrementAndGet();
+					executor.execute(task);
+				})
+				.build();
+			UserMessage message = UserMessage.builder()
+				.text("What is in these pictures?")
+				.media(Media.builder().mimeType(MimeTypeUtils.IMAGE_PNG).data(png).build(),
+						Media.builder().mimeType(MimeTypeUtils.IMAGE_PNG).data(png).build())
+				.build();
+
+			ChatCompletionRequest request = chatModel.createRequest(new Prompt(message,
+					HunYuanChatOptions.builder()
+						.imagePreprocessing(HunYuanImagePreprocessingOptions.builder().maxEdge(512).build())
+						.build()),
+					false);
+
+			HunYuanMediaData image = request.messages().get(0).chatContents().get(1).imageUrl().data();
+			assertThat(image.mimeType()).isEqualTo("image/jpeg");
+			assertThat(request.messages().get(0).chatContents().get(2).imageUrl().data()).isSameAs(image);
+			assertThat(tasks).hasValue(2);
+			assertThat(meterRegistry.get(HunYuanImagePreprocessingOptions.BYTES_SAVED_METRIC).counter().count())
+				.isEqualTo(2.0 * (png.length - image.dataLength()));
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void reactiveRequestsPreprocessTheImagesOffTheSubscribingThread() throws IOException {
+		byte[] png = encode(image(600, 450, BufferedImage.TYPE_INT_RGB), "png");
+		HunYuanApi hunYuanApi = Mockito.mock(HunYuanApi.class);
+		given(hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class))).willReturn(Flux.empty());
+		List<String> threads = new CopyOnWriteArrayList<>();
+		HunYuanChatModel chatModel = HunYuanChatModel.builder().hunYuanApi(hunYuanApi).imageExecutor(task -> {
+			threads.add(Thread.currentThread().getName());
+			task.run();
+		}).build();
+		UserMessage message = UserMessage.builder()
+			.text("What is in this picture?")
+			.media(Media.builder().mimeType(MimeTypeUtils.IMAGE_PNG).data(png).build())
+			.build();
+
+		chatModel
+			.stream(new Prompt(message,
+					HunYuanChatOptions.builder()
+						.imagePreprocessing(HunYuanImagePreprocessingOptions.builder().maxEdge(256).build())
+						.build()))
+			.subscribeOn(Schedulers.parallel())
+			.blockLast();
+
+		assertThat(threads).singleElement().asString().startsWith("boundedElastic");
+	}
+
+	private static BufferedImage image(int width, int height, int type) {
+		BufferedImage image = new BufferedImage(width, height, type);
+		Random random = new Random(42);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int alpha = (type == BufferedImage.TYPE_INT_ARGB) ? (x % 256) << 24 : 0xFF000000;
+				image.setRGB(x, y, alpha | (x * 255 / width) << 16 | (y * 255 / height) << 8 | random.nextInt(64));
+			}
+		}
+		return image;
+	}
+
+	private static byte[] encode(BufferedImage image, String format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, format, out);
+		return out.toByteArray();
+	}
+
+	private static byte[] withOrientation(byte[] jpeg, int orientation) {
+		// APP1 segment with an EXIF IFD holding the orientation only, right after SOI.
+		byte[] app1 = new byte[] { (byte) 0xFF, (byte) 0xE1, 0, 34, 'E', 'x', 'i', 'f', 0, 0, 'M', 'M', 0, 42, 0, 0, 0,
+				8, 0, 1, 0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0, 0, 0, 0, 0 };
+		byte[] result = new byte[jpeg.length + app1.length];
+		System.arraycopy(jpeg, 0, result, 0, 2);
+		System.arraycopy(app1, 0, result, 2, app1.length);
+		System.arraycopy(jpeg, 2, result, 2 + app1.length, jpeg.length - 2);
+		return result;
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.content.Media;
+import org.springframework.util.MimeTypeUtils;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatContent;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ImageUrl;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanJsonCodec;
+
+/**
+ * Encoding of the request body of the second turn of a conversation about a 5 MB image,
+ * sent with both user messages: with the {@link HunYuanMediaCache} of the chat model,
+ * without it, the images then being encoded straight into the body, and with the
+ * {@code String} data URL built for each message that they replaced.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HunYuanMediaCacheBenchmark {
+
+	private static final int IMAGE_SIZE = 5 * 1024 * 1024;
+
+	private final HunYuanJsonCodec jsonCodec = new HunYuanJsonCodec();
+
+	private HunYuanChatModel cachingChatModel;
+
+	private HunYuanChatModel streamingChatModel;
+
+	private byte[] image;
+
+	private Prompt prompt;
+
+	@Setup
+	public void setup() {
+		HunYuanApi hunYuanApi = new HunYuanApi("secret-id", "secret-key");
+		this.cachingChatModel = HunYuanChatModel.builder().hunYuanApi(hunYuanApi).build();
+		this.streamingChatModel = HunYuanChatModel.builder().hunYuanApi(hunYuanApi).mediaCacheSize(0).build();
+		this.image = new byte[IMAGE_SIZE];
+		new Random(42).nextBytes(this.image);
+		Media media = Media.builder().mimeType(MimeTypeUtils.IMAGE_PNG).data(this.image).build();
+		this.prompt = new Prompt(
+				List.of(UserMessage.builder().text("What is in this picture?").media(media).build(),
+						new AssistantMessage("A cat on a sofa."),
+						UserMessage.builder().text("What colour is the sofa?").media(media).build()),
+				HunYuanChatOptions.builder().model("hunyuan-vision").build());
+	}
+
+	@Benchmark
+	public byte[] cached() {
+		return this.jsonCodec.encode(this.cachingChatModel.createRequest(this.prompt, false));
+	}
+
+	@Benchmark
+	public byte[] streamed() {
+		return this.jsonCodec.encode(this.streamingChatModel.createRequest(this.prompt, false));
+	}
+
+	@Benchmark
+	public byte[] previousImplementation() {
+		return this.jsonCodec.encode(new ChatCompletionRequest(List.of(imageMessage("What is in this picture?"),
+				new ChatCompletionMessage("A cat on a sofa.", Role.assistant),
+				imageMessage("What colour is the sofa?")), "hunyuan-vision"));
+	}
+
+	private ChatCompletionMessage imageMessage(String text) {
+		String url = String.format("data:%s;base64,%s", MimeTypeUtils.IMAGE_PNG,
+				Base64.getEncoder().encodeToString(this.image));
+		return new ChatCompletionMessage(Role.user, List.of(new ChatContent(text), new ChatContent(new ImageUrl(url))));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanMediaCacheBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.content.Media;
+import org.springframework.util.MimeTypeUtils;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanMediaData;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanMediaCacheTests {
+
+	@Test
+	void mediaIsEncodedOncePerContent() {
+		HunYuanMediaCache cache = new HunYuanMediaCache(1024);
+
+		HunYuanMediaData media = cache.get("image/png", new byte[] { 1, 2, 3 }, null);
+
+		assertThat(media.isEncoded()).isTrue();
+		assertThat(cache.get("image/png", new byte[] { 1, 2, 3 }, null)).isSameAs(media);
+		assertThat(cache.get("image/jpeg", new byte[] { 1, 2, 3 }, null)).isNotSameAs(media);
+		assertThat(cache.get("image/png", new byte[] { 1, 2, 4 }, null)).isNotSameAs(media);
+		assertThat(cache.size()).isEqualTo(3);
+	}
+
+	@Test
+	void theLeastRecentlyUsedMediaIsEvictedBeyondTheMaximumBytes() {
+		byte[] first = new byte[30];
+		byte[] second = new byte[30];
+		second[0] = 1;
+		byte[] third = new byte[30];
+		third[0] = 2;
+		// 94 bytes each: 30 of media, 40 of base64 and 24 of data URL prefix and quote
+		HunYuanMediaCache cache = new HunYuanMediaCache(200);
+
+		HunYuanMediaData firstMedia = cache.get("image/png", first, null);
+		HunYuanMediaData secondMedia = cache.get("image/png", second, null);
+		cache.get("image/png", first, null);
+		cache.get("image/png", third, null);
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.bytes()).isEqualTo(2 * (30 + firstMedia.encodedLength()));
+		assertThat(cache.get("image/png", first, null)).isSameAs(firstMedia);
+		assertThat(cache.get("image/png", second, null)).isNotSameAs(secondMedia);
+	}
+
+	@Test
+	void mediaThatDoesNotFitIsNotCached() {
+		HunYuanMediaCache disabled = new HunYuanMediaCache(0);
+		HunYuanMediaCache small = new HunYuanMediaCache(64);
+
+		assertThat(disabled.get("image/png", new byte[] { 1, 2, 3 }, null).isEncoded()).isFalse();
+		assertThat(small.get("image/png", new byte[100], null).isEncoded()).isFalse();
+		assertThat(small.get("image/png", new byte[40], null).isEncoded()).isTrue();
+		assertThat(disabled.size()).isZero();
+		assertThat(small.size()).isZero();
+	}
+
+	@Test
+	void theImagesOfAConversationAreEncodedOnce() {
+		HunYuanChatModel chatModel = HunYuanChatModel.builder()
+			.hunYuanApi(new HunYuanApi("secret-id", "secret-key"))
+			.build();
+		UserMessage question = UserMessage.builder()
+			.text("What is in this picture?")
+			.media(Media.builder().mimeType(MimeTypeUtils.IMAGE_PNG).data(new byte[] { 1, 2, 3 }).build())
+			.build();
+		UserMessage followUp = UserMessage.builder()
+			.text("And in this one?")
+			.media(Media.builder().mimeType(MimeTypeUtils.IMAGE_PNG).data(new byte[] { 1, 2, 3 }).build())
+			.build();
+
+		ChatCompletionRequest first = chatModel.createRequest(new Prompt(question), false);
+		ChatCompletionRequest second = chatModel
+			.createRequest(new Prompt(List.of(question, new AssistantMessage("A cat."), followUp)), false);
+
+		HunYuanMediaData media = image(first, 0);
+		assertThat(media.isEncoded()).isTrue();
+		assertThat(image(second, 0)).isSameAs(media);
+		assertThat(image(second, 2)).isSameAs(media);
+		assertThat(chatModel.mutate().mediaCacheSize(0).build().createRequest(new Prompt(question), false))
+			.satisfies(request -> assertThat(image(request, 0).isEncoded()).isFalse());
+	}
+
+	private static HunYuanMediaData image(ChatCompletionRequest request, int message) {
+		return request.messages().get(message).chatContents().get(1).imageUrl().data();
+	}
+
+}
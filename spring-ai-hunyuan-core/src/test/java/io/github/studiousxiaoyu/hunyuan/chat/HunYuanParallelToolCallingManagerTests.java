@@ -0,0 +1,144 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanParallelToolCallingManagerTests {
+
+	@Test
+	void toolCallsRunConcurrentlyAndKeepTheirOrder() {
+		HunYuanParallelToolCallingManager manager = HunYuanParallelToolCallingManager.builder().build();
+		Prompt prompt = prompt(sleepingTool("slow", 400), sleepingTool("fast", 50), sleepingTool("medium", 200));
+
+		long start = System.nanoTime();
+		ToolExecutionResult result = manager.executeToolCalls(prompt,
+				toolCalls(toolCall("call-1", "slow"), toolCall("call-2", "fast"), toolCall("call-3", "medium")));
+		Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+		assertThat(elapsed).isLessThan(Duration.ofMillis(600));
+		List<Message> history = result.conversationHistory();
+		assertThat(history).hasSize(3);
+		assertThat(((AssistantMessage) history.get(1)).getToolCalls()).hasSize(3);
+		assertThat(((ToolResponseMessage) history.get(2)).getResponses())
+			.extracting(ToolResponseMessage.ToolResponse::id, ToolResponseMessage.ToolResponse::responseData)
+			.map(tuple -> tuple.toList())
+			.containsExactly(List.of("call-1", "\"slow\""), List.of("call-2", "\"fast\""),
+					List.of("call-3", "\"medium\""));
+		assertThat(result.returnDirect()).isFalse();
+	}
+
+	@Test
+	void toolCallsThatTimeOutAreInterruptedAndAnswered() throws InterruptedException {
+		CountDownLatch interrupted = new CountDownLatch(1);
+		ToolCallback stuck = FunctionToolCallback.builder("stuck", (Request request) -> {
+			try {
+				Thread.sleep(10_000);
+			}
+			catch (InterruptedException ex) {
+				interrupted.countDown();
+			}
+			return "stuck";
+		}).description("stuck").inputType(Request.class).build();
+		HunYuanParallelToolCallingManager manager = HunYuanParallelToolCallingManager.builder()
+			.toolTimeout(Duration.ofMillis(200))
+			.build();
+
+		ToolExecutionResult result = manager.executeToolCalls(prompt(stuck, sleepingTool("fast", 10)),
+				toolCalls(toolCall("call-1", "stuck"), toolCall("call-2", "fast")));
+
+		assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+		List<ToolResponseMessage.ToolResponse> responses = ((ToolResponseMessage) result.conversationHistory().get(2))
+			.getResponses();
+		assertThat(responses).hasSize(2);
+		assertThat(responses.get(0).name()).isEqualTo("stuck");
+		assertThat(responses.get(0).responseData()).isEqualTo("Tool call timed out after 200 ms");
+		assertThat(responses.get(1).responseData()).isEqualTo("\"fast\"");
+	}
+
+	@Test
+	void aSingleToolCallRunsOnTheCallingThread() {
+		Thread caller = Thread.currentThread();
+		ToolCallback tool = FunctionToolCallback
+			.builder("where", (Request request) -> Thread.currentThread() == caller ? "caller" : "pool")
+			.description("where")
+			.inputType(Request.class)
+			.build();
+		HunYuanParallelToolCallingManager manager = HunYuanParallelToolCallingManager.builder().build();
+
+		ToolExecutionResult result = manager.executeToolCalls(prompt(tool), toolCalls(toolCall("call-1", "where")));
+
+		assertThat(((ToolResponseMessage) result.conversationHistory().get(2)).getResponses().get(0).responseData())
+			.isEqualTo("\"caller\"");
+	}
+
+	@Test
+	void toolTimeoutMustBePositive() {
+		assertThatIllegalArgumentException()
+			.isThrownBy(() -> HunYuanParallelToolCallingManager.builder().toolTimeout(Duration.ZERO).build());
+	}
+
+	private static ToolCallback sleepingTool(String name, long millis) {
+		return FunctionToolCallback.builder(name, (Request request) -> {
+			try {
+				Thread.sleep(millis);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			return name;
+		}).description(name).inputType(Request.class).build();
+	}
+
+	private static Prompt prompt(ToolCallback... tools) {
+		return new Prompt("Use the tools", HunYuanChatOptions.builder().toolCallbacks(tools).build());
+	}
+
+	private static AssistantMessage.ToolCall toolCall(String id, String name) {
+		return new AssistantMessage.ToolCall(id, "function", name, "{}");
+	}
+
+	private static ChatResponse toolCalls(AssistantMessage.ToolCall... toolCalls) {
+		return new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), List.of(toolCalls)))));
+	}
+
+	record Request(String query) {
+
+	}
+
+}
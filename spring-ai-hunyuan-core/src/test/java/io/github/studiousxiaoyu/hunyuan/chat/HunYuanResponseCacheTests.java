@@ -0,0 +1,175 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionResponse;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanJsonCodec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Guo Junyu
+ */
+@ExtendWith(MockitoExtension.class)
+class HunYuanResponseCacheTests {
+
+	private @Mock HunYuanApi hunYuanApi;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void reproducibleCompletionsAreAnsweredFromTheStore() {
+		given(this.hunYuanApi.chatCompletionEntity(isA(ChatCompletionRequest.class), isA(byte[].class)))
+			.willReturn(ResponseEntity.ok(completion(null)));
+		HunYuanChatModel chatModel = chatModel();
+
+		ChatResponse first = chatModel.call(prompt(0.0, null));
+		ChatResponse second = chatModel.call(prompt(0.0, null));
+		chatModel.callAsync(prompt(0.0, null)).block();
+
+		ArgumentCaptor<ChatCompletionRequest> request = ArgumentCaptor.forClass(ChatCompletionRequest.class);
+		ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+		verify(this.hunYuanApi, times(1)).chatCompletionEntity(request.capture(), body.capture());
+		assertThat(body.getValue()).isEqualTo(new HunYuanJsonCodec().encode(request.getValue()));
+		assertThat(second.getResult().getOutput().getText()).isEqualTo(first.getResult().getOutput().getText())
+			.isEqualTo("Positive");
+		assertThat(this.meterRegistry.get(HunYuanResponseStore.METRIC).tag("result", "hit").counter().count())
+			.isEqualTo(2);
+		assertThat(this.meterRegistry.get(HunYuanResponseStore.METRIC).tag("result", "miss").counter().count())
+			.isEqualTo(1);
+	}
+
+	@Test
+	void otherCompletionsAndErrorsAreNotCached() {
+		given(this.hunYuanApi.chatCompletionEntity(isA(ChatCompletionRequest.class)))
+			.willReturn(ResponseEntity.ok(completion(null)));
+		given(this.hunYuanApi.chatCompletionAsync(isA(ChatCompletionRequest.class), isA(byte[].class))).willReturn(
+				Mono.just(completion(new ChatCompletion.ErrorMsg("InvalidParameter", "Invalid"))),
+				Mono.just(completion(null)));
+		HunYuanChatModel chatModel = chatModel();
+
+		chatModel.call(prompt(0.7, null));
+		chatModel.call(prompt(0.7, null));
+		chatModel.callAsync(prompt(null, 42)).block();
+		chatModel.callAsync(prompt(null, 42)).block();
+
+		verify(this.hunYuanApi, times(2)).chatCompletionEntity(isA(ChatCompletionRequest.class));
+		verify(this.hunYuanApi, times(2)).chatCompletionAsync(isA(ChatCompletionRequest.class), isA(byte[].class));
+		assertThat(this.meterRegistry.get(HunYuanResponseStore.METRIC).tag("result", "miss").counter().count())
+			.isEqualTo(2);
+	}
+
+	@Test
+	void streamedCompletionsAreReplayedChunkByChunk() {
+		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class), isA(byte[].class), isNull()))
+			.willReturn(Flux.just(chunk("Posi", null), chunk("tive", "stop")));
+		HunYuanChatModel chatModel = chatModel();
+
+		List<String> streamed = texts(chatModel.stream(prompt(0.0, null)));
+		List<String> replayed = texts(chatModel.stream(prompt(0.0, null)));
+
+		verify(this.hunYuanApi, times(1)).chatCompletionStream(isA(ChatCompletionRequest.class), isA(byte[].class),
+				isNull());
+		assertThat(streamed).containsExactly("Posi", "tive");
+		assertThat(replayed).isEqualTo(streamed);
+	}
+
+	@Test
+	void replayedStreamsAreLeftOutOfTheStreamMetrics() {
+		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class), isA(byte[].class), isNull()))
+			.willReturn(Flux.just(chunk("Posi", null), chunk("tive", "stop")));
+		HunYuanChatModel chatModel = chatModel();
+
+		chatModel.stream(prompt(0.0, null)).blockLast();
+		chatModel.stream(prompt(0.0, null)).blockLast();
+
+		assertThat(this.meterRegistry.get(HunYuanStreamMetrics.TIME_TO_FIRST_TOKEN).timer().count()).isOne();
+		assertThat(this.meterRegistry.get(HunYuanStreamMetrics.INTER_TOKEN_GAP).timer().count()).isOne();
+	}
+
+	@Test
+	void cancelledStreamsAreNotCached() {
+		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class), isA(byte[].class), isNull()))
+			.willReturn(Flux.just(chunk("Posi", null), chunk("tive", "stop")));
+		HunYuanChatModel chatModel = chatModel();
+
+		chatModel.stream(prompt(0.0, null)).take(1).blockLast();
+		chatModel.stream(prompt(0.0, null)).blockLast();
+
+		verify(this.hunYuanApi, times(2)).chatCompletionStream(isA(ChatCompletionRequest.class), isA(byte[].class),
+				isNull());
+	}
+
+	private HunYuanChatModel chatModel() {
+		return HunYuanChatModel.builder()
+			.hunYuanApi(this.hunYuanApi)
+			.meterRegistry(this.meterRegistry)
+			.responseStore(HunYuanResponseStore.inHeap(1024 * 1024, Duration.ofMinutes(5)))
+			.build();
+	}
+
+	private static Prompt prompt(Double temperature, Integer seed) {
+		return new Prompt("Is this review positive? I loved it.",
+				HunYuanChatOptions.builder().temperature(temperature).seed(seed).build());
+	}
+
+	private static List<String> texts(Flux<ChatResponse> responses) {
+		return responses.map(response -> response.getResult().getOutput().getText()).collectList().block();
+	}
+
+	private static ChatCompletionResponse completion(ChatCompletion.ErrorMsg errorMsg) {
+		return new ChatCompletionResponse(new ChatCompletion(
+				"id", errorMsg, 1L, null, List.of(new ChatCompletion.Choice(0,
+						new ChatCompletionMessage("Positive", Role.assistant), "stop", null, null)),
+				null, null, null, null, null, null, null));
+	}
+
+	private static ChatCompletionChunk chunk(String text, String finishReason) {
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(Role.assistant, text, null,
+				null);
+		return new ChatCompletionChunk("id", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, null, finishReason, delta, null)), null, null, null, null, null,
+				null, null);
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanVectorIndex.Match;
+
+/**
+ * Lookup of a question in the index of a {@link HunYuanSemanticCache} holding a million
+ * questions of 1024 dimensions, the size of the HunYuan embeddings, without the call to
+ * the embedding model: probing the 16 nearest of its 1024 lists, as by default, and all
+ * of them, the exhaustive scan of the binary codes. The questions are paraphrases around
+ * 1024 topics, and each lookup is a paraphrase of a cached question.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class HunYuanSemanticCacheBenchmark {
+
+	private static final int DIMENSIONS = 1024;
+
+	private static final int QUESTIONS = 1_000_000;
+
+	private static final int TOPICS = 1024;
+
+	@Param({ "16", "1024" })
+	private int probes;
+
+	private HunYuanVectorIndex index;
+
+	private float[][] lookups;
+
+	private int next;
+
+	@Setup
+	public void setup() {
+		SplittableRandom random = new SplittableRandom(42);
+		float[][] topics = new float[TOPICS][];
+		for (int i = 0; i < TOPICS; i++) {
+			topics[i] = noise(random, new float[DIMENSIONS], 1);
+		}
+		this.index = new HunYuanVectorIndex(DIMENSIONS, HunYuanSemanticCache.DEFAULT_LISTS, this.probes, 32);
+		this.lookups = new float[1024][];
+		int stride = QUESTIONS / this.lookups.length;
+		float[] question = new float[DIMENSIONS];
+		for (int i = 0; i < QUESTIONS; i++) {
+			System.arraycopy(topics[random.nextInt(TOPICS)], 0, question, 0, DIMENSIONS);
+			noise(random, question, 0.8f);
+			this.index.add(question, 0);
+			if (i + 1 == 8 * HunYuanSemanticCache.DEFAULT_LISTS) {
+				this.index.train();
+			}
+			if (i % stride == 0 && i / stride < this.lookups.length) {
+				this.lookups[i / stride] = noise(random, question.clone(), 0.2f);
+			}
+		}
+	}
+
+	@Benchmark
+	public Match lookup() {
+		this.next = (this.next + 1) & (this.lookups.length - 1);
+		return this.index.search(this.lookups[this.next], 0);
+	}
+
+	/**
+	 * Add uniform noise of the given standard deviation to the vector.
+	 */
+	private static float[] noise(SplittableRandom random, float[] vector, float deviation) {
+		float amplitude = deviation * (float) Math.sqrt(12);
+		for (int i = 0; i < vector.length; i++) {
+			vector[i] += (random.nextInt() * 0x1p-32f) * amplitude;
+		}
+		return vector;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanSemanticCacheBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
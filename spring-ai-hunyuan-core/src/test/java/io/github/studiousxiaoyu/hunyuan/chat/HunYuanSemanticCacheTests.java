@@ -0,0 +1,231 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Guo Junyu
+ */
+@ExtendWith(MockitoExtension.class)
+class HunYuanSemanticCacheTests {
+
+	private static final String QUESTION = "How do I reset my password?";
+
+	private static final String PARAPHRASE = "How can I reset my password?";
+
+	private static final String OTHER_QUESTION = "How do I delete my account?";
+
+	private static final Map<String, float[]> EMBEDDINGS = Map.of(QUESTION, new float[] { 1, 0.1f, 0, 0 }, PARAPHRASE,
+			new float[] { 1, 0.15f, 0.05f, 0 }, OTHER_QUESTION, new float[] { 0.2f, 0, 1, 0 });
+
+	private @Mock HunYuanApi hunYuanApi;
+
+	private final EmbeddingModel embeddingModel = embeddingModel();
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void paraphrasesAreAnsweredFromTheCache() {
+		given(this.hunYuanApi.chatCompletionEntity(isA(ChatCompletionRequest.class)))
+			.willReturn(ResponseEntity.ok(completion("Open the settings.")));
+		HunYuanChatModel chatModel = chatModel();
+
+		ChatResponse answered = chatModel.call(new Prompt(QUESTION));
+		ChatResponse cached = chatModel.call(new Prompt(PARAPHRASE));
+		chatModel.call(new Prompt(OTHER_QUESTION));
+
+		verify(this.hunYuanApi, times(2)).chatCompletionEntity(isA(ChatCompletionRequest.class));
+		assertThat(cached.getResult().getOutput().getText()).isEqualTo(answered.getResult().getOutput().getText());
+		assertThat(cached.getResult().getMetadata().getFinishReason()).isEqualTo("stop");
+		assertThat((Double) cached.getMetadata().get(HunYuanSemanticCache.SIMILARITY_METADATA_KEY)).isGreaterThan(0.99);
+		assertThat(this.meterRegistry.get(HunYuanSemanticCache.METRIC).tag("result", "hit").counter().count())
+			.isEqualTo(1);
+		assertThat(this.meterRegistry.get(HunYuanSemanticCache.METRIC).tag("result", "miss").counter().count())
+			.isEqualTo(2);
+	}
+
+	@Test
+	void questionsAreOnlyAnsweredAfterTheSameSystemMessage() {
+		given(this.hunYuanApi.chatCompletionAsync(isA(ChatCompletionRequest.class)))
+			.willReturn(Mono.just(completion("Open the settings.")));
+		HunYuanChatModel chatModel = chatModel();
+
+		chatModel.callAsync(new Prompt(List.of(new SystemMessage("You are terse."), new UserMessage(QUESTION))))
+			.block();
+		chatModel.callAsync(new Prompt(List.of(new SystemMessage("You are verbose."), new UserMessage(PARAPHRASE))))
+			.block();
+		chatModel.callAsync(new Prompt(List.of(new SystemMessage("You are terse."), new UserMessage(PARAPHRASE))))
+			.block();
+
+		verify(this.hunYuanApi, times(2)).chatCompletionAsync(isA(ChatCompletionRequest.class));
+	}
+
+	@Test
+	void conversationsAreNotCached() {
+		given(this.hunYuanApi.chatCompletionEntity(isA(ChatCompletionRequest.class)))
+			.willReturn(ResponseEntity.ok(completion("Open the settings.")));
+		HunYuanChatModel chatModel = chatModel();
+
+		chatModel.call(new Prompt(
+				List.of(new UserMessage(OTHER_QUESTION), new AssistantMessage("Why?"), new UserMessage(QUESTION))));
+
+		verify(this.embeddingModel, never()).embed(anyString());
+	}
+
+	@Test
+	void streamedAnswersAreCachedOnceComplete() {
+		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class)))
+			.willReturn(Flux.just(chunk("Open the ", null), chunk("settings.", "stop")));
+		HunYuanChatModel chatModel = chatModel();
+
+		List<ChatResponse> streamed = chatModel.stream(new Prompt(QUESTION)).collectList().block();
+		List<ChatResponse> cached = chatModel.stream(new Prompt(PARAPHRASE)).collectList().block();
+
+		verify(this.hunYuanApi, times(1)).chatCompletionStream(isA(ChatCompletionRequest.class));
+		assertThat(streamed).hasSize(2);
+		assertThat(cached).singleElement()
+			.extracting(response -> response.getResult().getOutput().getText())
+			.isEqualTo("Open the settings.");
+	}
+
+	@Test
+	void leastRecentlyAnsweredQuestionsAreEvicted() {
+		HunYuanSemanticCache cache = HunYuanSemanticCache.builder()
+			.embeddingModel(this.embeddingModel)
+			.maxBytes(2 * (4 + 4 + 8 + 20 + 48 + 2 * 6))
+			.lists(1)
+			.probes(1)
+			.build();
+		cache.put(cache.lookup(new Prompt(QUESTION)), answer("first"));
+		cache.put(cache.lookup(new Prompt(OTHER_QUESTION)), answer("second"));
+		assertThat(cache.lookup(new Prompt(QUESTION)).response()).isNotNull();
+
+		cache.put(cache.lookup(new Prompt(List.of(new SystemMessage("terse"), new UserMessage(QUESTION)))),
+				answer("third"));
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.bytes()).isLessThanOrEqualTo(2 * (4 + 4 + 8 + 20 + 48 + 2 * 6));
+		assertThat(cache.lookup(new Prompt(QUESTION)).response()).isNotNull();
+		assertThat(cache.lookup(new Prompt(OTHER_QUESTION)).response()).isNull();
+	}
+
+	@Test
+	void theListsAreTrainedWithoutDelayingTheAnswerCompletingTheTrainingSet() throws InterruptedException {
+		HunYuanSemanticCache cache = HunYuanSemanticCache.builder().embeddingModel(this.embeddingModel).build();
+		Random random = new Random(42);
+		int trainingSet = 8 * HunYuanSemanticCache.DEFAULT_LISTS;
+		for (int i = 0; i < trainingSet - 1; i++) {
+			cache.put(new HunYuanSemanticCache.Lookup(0, gaussian(random), null), answer("answer " + i));
+		}
+		assertThat(cache.isTrained()).isFalse();
+
+		long started = System.nanoTime();
+		cache.put(new HunYuanSemanticCache.Lookup(0, gaussian(random), null), answer("last answer"));
+		Duration put = Duration.ofNanos(System.nanoTime() - started);
+
+		assertThat(put).isLessThan(Duration.ofMillis(200));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (!cache.isTrained() && System.nanoTime() < deadline) {
+			Thread.sleep(20);
+		}
+		assertThat(cache.isTrained()).isTrue();
+		assertThat(cache.size()).isEqualTo(trainingSet);
+	}
+
+	private HunYuanChatModel chatModel() {
+		return HunYuanChatModel.builder()
+			.hunYuanApi(this.hunYuanApi)
+			.meterRegistry(this.meterRegistry)
+			.semanticCache(HunYuanSemanticCache.builder().embeddingModel(this.embeddingModel).build())
+			.build();
+	}
+
+	private static EmbeddingModel embeddingModel() {
+		EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+		given(embeddingModel.embed(anyString()))
+			.willAnswer(invocation -> EMBEDDINGS.get(invocation.<String>getArgument(0)).clone());
+		return embeddingModel;
+	}
+
+	private static float[] gaussian(Random random) {
+		float[] vector = new float[1024];
+		for (int i = 0; i < vector.length; i++) {
+			vector[i] = (float) random.nextGaussian();
+		}
+		return vector;
+	}
+
+	private static ChatResponse answer(String text) {
+		return new ChatResponse(List.of(new Generation(new AssistantMessage(text),
+				ChatGenerationMetadata.builder().finishReason("stop").build())));
+	}
+
+	private static ChatCompletionResponse completion(String text) {
+		return new ChatCompletionResponse(new ChatCompletion(
+				"id", null, 1L, null, List.of(new ChatCompletion.Choice(0,
+						new ChatCompletionMessage(text, Role.assistant), "stop", null, null)),
+				null, null, null, null, null, null, null));
+	}
+
+	private static ChatCompletionChunk chunk(String text, String finishReason) {
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(Role.assistant, text, null,
+				null);
+		return new ChatCompletionChunk("id", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, null, finishReason, delta, null)), null, null, null, null, null,
+				null, null);
+	}
+
+}
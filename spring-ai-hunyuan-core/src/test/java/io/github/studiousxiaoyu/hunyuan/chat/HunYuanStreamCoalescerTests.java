@@ -0,0 +1,174 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatCompletionFunction;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ToolCall;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.Usage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanStreamCoalescerTests {
+
+	private static final Duration LONG_WINDOW = Duration.ofHours(1);
+
+	@Test
+	void deltasAreFlushedWhenTheCharactersAreReachedAndWhenTheChoiceFinishes() {
+		Flux<ChatCompletionChunk> chunks = Flux.just(chunk(Role.assistant, "He", null, null),
+				chunk(null, "llo", null, null), chunk(null, " wor", null, null), chunk(null, "ld", null, null),
+				chunk(null, "!", "stop", new Usage(3, 9, 6)));
+
+		List<ChatCompletionChunk> coalesced = HunYuanStreamCoalescer
+			.coalesce(chunks, LONG_WINDOW, 5, Schedulers.parallel())
+			.collectList()
+			.block();
+
+		assertThat(coalesced).extracting(chunk -> chunk.choices().get(0).delta().content())
+			.containsExactly("Hello", " world", "!");
+		assertThat(coalesced.get(0).choices().get(0).delta().role()).isEqualTo(Role.assistant);
+		assertThat(coalesced.get(2).choices().get(0).finishReason()).isEqualTo("stop");
+		assertThat(coalesced.get(2).usage()).isEqualTo(new Usage(3, 9, 6));
+	}
+
+	@Test
+	void bufferedDeltasAreMergedWithTheFinishingChunk() {
+		Flux<ChatCompletionChunk> chunks = Flux.just(chunk(Role.assistant, "Hi", null, null),
+				chunk(null, " there", "stop", new Usage(1, 3, 2)));
+
+		ChatCompletionChunk coalesced = HunYuanStreamCoalescer
+			.coalesce(chunks, LONG_WINDOW, Integer.MAX_VALUE, Schedulers.parallel())
+			.single()
+			.block();
+
+		ChatCompletion.Choice choice = coalesced.choices().get(0);
+		assertThat(choice.delta().content()).isEqualTo("Hi there");
+		assertThat(choice.delta().role()).isEqualTo(Role.assistant);
+		assertThat(choice.finishReason()).isEqualTo("stop");
+		assertThat(coalesced.usage()).isEqualTo(new Usage(1, 3, 2));
+	}
+
+	@Test
+	void toolCallsAreEmittedRightAfterTheBufferedDeltas() {
+		ChatCompletionChunk toolCall = new ChatCompletionChunk("id", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, null, null,
+						new ChatCompletion.ChatCompletionDelta(Role.assistant, null,
+								List.of(new ToolCall("call-1", "function", 0,
+										new ChatCompletionFunction("getWeather", "{}"))),
+								null),
+						null)),
+				null, null, null, null, null, null, null);
+		Flux<ChatCompletionChunk> chunks = Flux.just(chunk(Role.assistant, "Let me ", null, null),
+				chunk(null, "check", null, null), toolCall);
+
+		List<ChatCompletionChunk> coalesced = HunYuanStreamCoalescer
+			.coalesce(chunks, LONG_WINDOW, Integer.MAX_VALUE, Schedulers.parallel())
+			.collectList()
+			.block();
+
+		assertThat(coalesced).hasSize(2);
+		assertThat(coalesced.get(0).choices().get(0).delta().content()).isEqualTo("Let me check");
+		assertThat(coalesced.get(1)).isSameAs(toolCall);
+	}
+
+	@Test
+	void deltasAreFlushedWhenTheWindowElapses() {
+		Sinks.Many<ChatCompletionChunk> chunks = Sinks.many().unicast().onBackpressureBuffer();
+		List<ChatCompletionChunk> received = new CopyOnWriteArrayList<>();
+		Disposable subscription = HunYuanStreamCoalescer
+			.coalesce(chunks.asFlux(), Duration.ofMillis(20), Integer.MAX_VALUE, Schedulers.parallel())
+			.subscribe(received::add);
+
+		chunks.tryEmitNext(chunk(Role.assistant, "a", null, null));
+		chunks.tryEmitNext(chunk(null, "b", null, null));
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == 1);
+		assertThat(received.get(0).choices().get(0).delta().content()).isEqualTo("ab");
+		subscription.dispose();
+	}
+
+	@Test
+	void chunksAreRequestedAsTheCoalescedChunksAre() {
+		AtomicLong requested = new AtomicLong();
+		Flux<ChatCompletionChunk> chunks = Flux.range(0, 100)
+			.map(i -> chunk(null, "ab", null, null))
+			.doOnRequest(n -> requested.addAndGet(n));
+
+		StepVerifier.create(HunYuanStreamCoalescer.coalesce(chunks, LONG_WINDOW, 4, Schedulers.parallel()), 0)
+			.expectSubscription()
+			.then(() -> assertThat(requested).hasValue(0))
+			.thenRequest(1)
+			.assertNext(chunk -> assertThat(chunk.choices().get(0).delta().content()).isEqualTo("abab"))
+			.then(() -> assertThat(requested).hasValue(2))
+			.thenRequest(2)
+			.expectNextCount(2)
+			.then(() -> assertThat(requested).hasValue(6))
+			.thenCancel()
+			.verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	void chatModelCoalescesWhenTheOptionIsSet() {
+		HunYuanApi hunYuanApi = Mockito.mock(HunYuanApi.class);
+		given(hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class)))
+			.willReturn(Flux.just(chunk(Role.assistant, "a", null, null), chunk(null, "b", null, null),
+					chunk(null, "c", null, null), chunk(null, "d", null, null), chunk(null, "e", "stop", null)));
+		HunYuanChatModel chatModel = HunYuanChatModel.builder().hunYuanApi(hunYuanApi).build();
+
+		List<ChatResponse> responses = chatModel
+			.stream(new Prompt("Hello",
+					HunYuanChatOptions.builder().streamCoalesceWindow(LONG_WINDOW).streamCoalesceMaxChars(2).build()))
+			.collectList()
+			.block();
+
+		assertThat(responses).extracting(response -> response.getResult().getOutput().getText())
+			.containsExactly("ab", "cd", "e");
+	}
+
+	private static ChatCompletionChunk chunk(Role role, String content, String finishReason, Usage usage) {
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(role, content, null, null);
+		return new ChatCompletionChunk("id", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, null, finishReason, delta, null)), usage, null, null, null, null,
+				null, null);
+	}
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.tck.TestObservationRegistry;
+import io.micrometer.observation.tck.TestObservationRegistryAssert;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.observation.ChatModelObservationContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.Usage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * @author Guo Junyu
+ */
+@ExtendWith(MockitoExtension.class)
+class HunYuanStreamMetricsTests {
+
+	private @Mock HunYuanApi hunYuanApi;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final TestObservationRegistry observationRegistry = TestObservationRegistry.create();
+
+	@Test
+	void streamLatencyIsRecordedAndSurfacedInTheObservationContext() {
+		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class)))
+			.willReturn(Flux.just(chunk(Role.assistant, null, "Let me think", null, null),
+					chunk(null, null, " about it", null, null), chunk(null, "The answer", null, null, null),
+					chunk(null, " is 42", null, "stop", new Usage(5, 13, 8)))
+				.delayElements(Duration.ofMillis(10)));
+		HunYuanChatModel chatModel = HunYuanChatModel.builder()
+			.hunYuanApi(this.hunYuanApi)
+			.defaultOptions(HunYuanChatOptions.builder().model("hunyuan-t1-latest").enableEnhancement(false).build())
+			.meterRegistry(this.meterRegistry)
+			.observationRegistry(this.observationRegistry)
+			.build();
+
+		chatModel.stream(new Prompt("What is the answer?")).blockLast();
+		// The stream stats are completed when the stream terminates, which may be after
+		// the last response was handed over.
+		await().atMost(Duration.ofSeconds(5))
+			.untilAsserted(() -> TestObservationRegistryAssert.assertThat(this.observationRegistry)
+				.hasSingleObservationThat()
+				.hasBeenStopped());
+
+		String[] tags = { "model", "hunyuan-t1-latest", "tools", "false", "search", "false" };
+		double timeToFirstToken = this.meterRegistry.get(HunYuanStreamMetrics.TIME_TO_FIRST_TOKEN)
+			.tags(tags)
+			.timer()
+			.totalTime(TimeUnit.MILLISECONDS);
+		double timeToFirstReasoningToken = this.meterRegistry.get(HunYuanStreamMetrics.TIME_TO_FIRST_REASONING_TOKEN)
+			.tags(tags)
+			.timer()
+			.totalTime(TimeUnit.MILLISECONDS);
+		double timeToFirstContentToken = this.meterRegistry.get(HunYuanStreamMetrics.TIME_TO_FIRST_CONTENT_TOKEN)
+			.tags(tags)
+			.timer()
+			.totalTime(TimeUnit.MILLISECONDS);
+		assertThat(timeToFirstToken).isEqualTo(timeToFirstReasoningToken).isGreaterThan(0);
+		assertThat(timeToFirstContentToken).isGreaterThan(timeToFirstReasoningToken);
+		assertThat(this.meterRegistry.get(HunYuanStreamMetrics.INTER_TOKEN_GAP).tags(tags).timer().count())
+			.isEqualTo(3);
+		assertThat(this.meterRegistry.get(HunYuanStreamMetrics.TOKENS_PER_SECOND).tags(tags).summary().count()).isOne();
+
+		TestObservationRegistryAssert.assertThat(this.observationRegistry)
+			.hasSingleObservationThat()
+			.hasHighCardinalityKeyValueWithKey("hunyuan.stream.time_to_first_token")
+			.hasHighCardinalityKeyValueWithKey("hunyuan.stream.tokens_per_second")
+			.satisfies(context -> {
+				HunYuanStreamStats stats = ((ChatModelObservationContext) context).get(HunYuanStreamStats.class);
+				assertThat(stats.getTokenChunks()).isEqualTo(4);
+				assertThat(stats.getTimeToFirstContentToken()).isGreaterThan(stats.getTimeToFirstReasoningToken());
+				assertThat(stats.getTokensPerSecond()).isPositive();
+			});
+	}
+
+	@Test
+	void statsOfCancelledStreamsAreLeftOut() {
+		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class))).willReturn(
+				Flux.just(chunk(Role.assistant, "The", null, null, null), chunk(null, " answer", null, null, null),
+						chunk(null, " is 42", null, "stop", null))
+					.delayElements(Duration.ofMillis(10)));
+		HunYuanChatModel chatModel = HunYuanChatModel.builder()
+			.hunYuanApi(this.hunYuanApi)
+			.meterRegistry(this.meterRegistry)
+			.observationRegistry(this.observationRegistry)
+			.build();
+
+		chatModel.stream(new Prompt("What is the answer?")).take(2).blockLast();
+		await().atMost(Duration.ofSeconds(5))
+			.untilAsserted(() -> TestObservationRegistryAssert.assertThat(this.observationRegistry)
+				.hasSingleObservationThat()
+				.hasBeenStopped());
+
+		assertThat(this.meterRegistry.find(HunYuanStreamMetrics.TOKENS_PER_SECOND).summaries())
+			.allSatisfy(summary -> assertThat(summary.count()).isZero());
+		TestObservationRegistryAssert.assertThat(this.observationRegistry)
+			.hasSingleObservationThat()
+			.doesNotHaveHighCardinalityKeyValueWithKey("hunyuan.stream.tokens_per_second");
+	}
+
+	@Test
+	void streamsWithoutMeterRegistryAreStillObserved() {
+		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class)))
+			.willReturn(Flux.just(chunk(Role.assistant, "Hi", null, "stop", null)));
+		HunYuanChatModel chatModel = HunYuanChatModel.builder()
+			.hunYuanApi(this.hunYuanApi)
+			.observationRegistry(this.observationRegistry)
+			.build();
+
+		chatModel.stream(new Prompt("Hello")).blockLast();
+
+		TestObservationRegistryAssert.assertThat(this.observationRegistry)
+			.hasSingleObservationThat()
+			.satisfies(context -> {
+				HunYuanStreamStats stats = ((ChatModelObservationContext) context).get(HunYuanStreamStats.class);
+				assertThat(stats.getTimeToFirstToken()).isNotNull();
+			});
+		assertThat(this.meterRegistry.getMeters()).isEmpty();
+	}
+
+	@Test
+	void requestsAreTaggedByToolsAndSearch() {
+		ChatCompletionRequest request = new ChatCompletionRequest(List.of(), "hunyuan-pro", 0.7, true);
+
+		assertThat(HunYuanStreamMetrics.tags(request)).extracting(tag -> tag.getKey() + "=" + tag.getValue())
+			.containsExactly("model=hunyuan-pro", "search=true", "tools=false");
+	}
+
+	private static ChatCompletionChunk chunk(Role role, String content, String reasoningContent, String finishReason,
+			Usage usage) {
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(role, content, null,
+				reasoningContent);
+		return new ChatCompletionChunk("id", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, null, finishReason, delta, null)), usage, null, null, null, null,
+				null, null);
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.EmptyUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.Usage;
+import io.github.studiousxiaoyu.hunyuan.chat.message.HunYuanAssistantMessage;
+import io.github.studiousxiaoyu.hunyuan.metadata.HunYuanUsage;
+
+/**
+ * Mapping of a streamed chat completion to chat responses, with the
+ * {@link HunYuanStreamResponseMapper} compared with the conversion through a
+ * {@code ChatCompletion} per chunk and a {@code switchMap} to a {@code Mono} per chunk
+ * that it replaced. Scores and allocations are per chunk.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HunYuanStreamResponseMapperBenchmark {
+
+	private static final int CHUNK_COUNT = 500;
+
+	private List<ChatCompletionChunk> chunks;
+
+	@Setup
+	public void setup() {
+		// HunYuan sends the running usage with every chunk.
+		this.chunks = new ArrayList<>(CHUNK_COUNT);
+		for (int i = 0; i < CHUNK_COUNT; i++) {
+			ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(
+					(i == 0) ? Role.assistant : null, "token" + i, null, null);
+			this.chunks.add(new ChatCompletionChunk("chunk-id", null, 1L, null,
+					List.of(new ChatCompletion.Choice(0, null, (i == CHUNK_COUNT - 1) ? "stop" : null, delta, null)),
+					new Usage(10, 10 + i, i), null, null, null, null, null, null));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CHUNK_COUNT)
+	public ChatResponse mapper() {
+		HunYuanStreamResponseMapper mapper = new HunYuanStreamResponseMapper("hunyuan-pro");
+		return Flux.fromIterable(this.chunks).map(mapper::map).blockLast();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CHUNK_COUNT)
+	public ChatResponse previousImplementation() {
+		ConcurrentHashMap<String, String> roleMap = new ConcurrentHashMap<>();
+		return Flux.fromIterable(this.chunks)
+			.map(HunYuanStreamResponseMapperBenchmark::chunkToChatCompletion)
+			.switchMap(chatCompletion -> Mono.just(chatCompletion).map(completion -> {
+				List<Generation> generations = completion.choices().stream().map(choice -> {
+					if (choice.message().role() != null) {
+						roleMap.putIfAbsent(completion.id(), choice.message().role().name());
+					}
+					Map<String, Object> metadata = Map.of("id", completion.id(), "role",
+							roleMap.getOrDefault(completion.id(), ""), "finishReason",
+							(choice.finishReason() != null) ? choice.finishReason() : "");
+					return buildGeneration(choice, metadata);
+				}).toList();
+				return new ChatResponse(generations, ChatResponseMetadata.builder()
+					.id(completion.id())
+					.usage((completion.usage() != null) ? HunYuanUsage.from(completion.usage()) : new EmptyUsage())
+					.model("hunyuan-pro")
+					.keyValue("created", completion.created())
+					.build());
+			}))
+			.blockLast();
+	}
+
+	private static ChatCompletion chunkToChatCompletion(ChatCompletionChunk chunk) {
+		List<ChatCompletion.Choice> choices = chunk.choices().stream().map(chunkChoice -> {
+			ChatCompletion.ChatCompletionDelta delta = chunkChoice.delta();
+			ChatCompletionMessage message = new ChatCompletionMessage(delta.content(), delta.role(), delta.toolCalls(),
+					delta.reasoningContent());
+			return new ChatCompletion.Choice(chunkChoice.index(), message, chunkChoice.finishReason(), delta,
+					chunkChoice.moderationLevel());
+		}).toList();
+		return new ChatCompletion(chunk.id(), chunk.errorMsg(), chunk.created(), chunk.note(), choices, chunk.usage(),
+				chunk.moderationLevel(), chunk.searchInfo(), chunk.replaces(), chunk.recommendedQuestions(),
+				chunk.processes(), chunk.requestId());
+	}
+
+	private static Generation buildGeneration(ChatCompletion.Choice choice, Map<String, Object> metadata) {
+		List<AssistantMessage.ToolCall> toolCalls = (choice.message().toolCalls() == null) ? List.of()
+				: choice.message()
+					.toolCalls()
+					.stream()
+					.map(toolCall -> new AssistantMessage.ToolCall(toolCall.id(), "function",
+							toolCall.function().name(), toolCall.function().arguments()))
+					.toList();
+		var assistantMessage = new HunYuanAssistantMessage(choice.message().content(),
+				choice.message().reasoningContent(), metadata, toolCalls);
+		String finishReason = (choice.finishReason() != null) ? choice.finishReason() : "";
+		return new Generation(assistantMessage, ChatGenerationMetadata.builder().finishReason(finishReason).build());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanStreamResponseMapperBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatCompletionFunction;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ToolCall;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.Usage;
+import io.github.studiousxiaoyu.hunyuan.chat.message.HunYuanAssistantMessage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanStreamResponseMapperTests {
+
+	private final HunYuanStreamResponseMapper mapper = new HunYuanStreamResponseMapper("hunyuan-pro");
+
+	@Test
+	void roleOfTheFirstChunkIsCarriedToTheFollowingChunks() {
+		ChatResponse first = this.mapper.map(chunk("id-1", Role.assistant, "Hel", "thinking", null, null));
+		ChatResponse second = this.mapper.map(chunk("id-1", null, "lo", null, null, null));
+
+		assertThat(second.getResult().getOutput().getText()).isEqualTo("lo");
+		assertThat(second.getResult().getOutput().getMetadata()).containsEntry("id", "id-1")
+			.containsEntry("role", "assistant")
+			.containsEntry("finishReason", "");
+		assertThat(((HunYuanAssistantMessage) first.getResult().getOutput()).getReasoningContent())
+			.isEqualTo("thinking");
+		assertThat(second.getResult().getMetadata()).isSameAs(first.getResult().getMetadata());
+		assertThat(second.getMetadata()).isSameAs(first.getMetadata());
+		assertThat(second.getMetadata().getId()).isEqualTo("id-1");
+		assertThat(second.getMetadata().getModel()).isEqualTo("hunyuan-pro");
+	}
+
+	@Test
+	void metadataIsRebuiltWhenTheUsageOrFinishReasonChanges() {
+		ChatResponse first = this.mapper.map(chunk("id-1", Role.assistant, "Hi", null, null, new Usage(1, 2, 1)));
+		ChatResponse last = this.mapper.map(chunk("id-1", null, "!", null, "stop", new Usage(1, 3, 2)));
+
+		assertThat(last.getMetadata()).isNotSameAs(first.getMetadata());
+		assertThat(last.getMetadata().getUsage().getTotalTokens()).isEqualTo(3);
+		assertThat(last.getResult().getMetadata().getFinishReason()).isEqualTo("stop");
+		assertThat(last.getResult().getOutput().getMetadata()).containsEntry("finishReason", "stop");
+		assertThat(first.getResult().getOutput().getMetadata()).containsEntry("finishReason", "");
+	}
+
+	@Test
+	void roleIsForgottenWhenTheIdChanges() {
+		this.mapper.map(chunk("id-1", Role.assistant, "Hi", null, "stop", null));
+		ChatResponse next = this.mapper.map(chunk("id-2", null, "Hi", null, null, null));
+
+		assertThat(next.getResult().getOutput().getMetadata()).containsEntry("id", "id-2").containsEntry("role", "");
+	}
+
+	@Test
+	void toolCallsAreMapped() {
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(Role.assistant, "",
+				List.of(new ToolCall("call-1", "function", 0, new ChatCompletionFunction("getWeather", "{}"))), null);
+		ChatResponse response = this.mapper.map(chunk("id-1", delta, "tool_calls", null));
+
+		assertThat(response.getResult().getOutput().getToolCalls())
+			.containsExactly(new AssistantMessage.ToolCall("call-1", "function", "getWeather", "{}"));
+		assertThat(response.hasToolCalls()).isTrue();
+	}
+
+	@Test
+	void choiceWithoutDeltaIsAnEmptyAssistantMessage() {
+		ChatResponse response = this.mapper.map(chunk("id-1", null, null, null));
+
+		assertThat(response.getResult().getOutput().getText()).isEmpty();
+		assertThat(response.getResult().getOutput().getMetadata()).containsEntry("role", "assistant");
+	}
+
+	private static ChatCompletionChunk chunk(String id, Role role, String content, String reasoningContent,
+			String finishReason, Usage usage) {
+		return chunk(id, new ChatCompletion.ChatCompletionDelta(role, content, null, reasoningContent), finishReason,
+				usage);
+	}
+
+	private static ChatCompletionChunk chunk(String id, ChatCompletion.ChatCompletionDelta delta, String finishReason,
+			Usage usage) {
+		return new ChatCompletionChunk(id, null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, null, finishReason, delta, null)), usage, null, null, null, null,
+				null, null);
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanTinyLfuStoreTests {
+
+	private final AtomicLong nanoTime = new AtomicLong();
+
+	@Test
+	void responsesExpireTheirTimeToLiveAfterTheyAreStored() {
+		HunYuanTinyLfuStore store = new HunYuanTinyLfuStore(1024, Duration.ofSeconds(10), false, this.nanoTime::get);
+		store.put("key", new byte[] { 1, 2, 3 });
+
+		this.nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+		assertThat(store.get("key")).containsExactly(1, 2, 3);
+
+		this.nanoTime.incrementAndGet();
+		assertThat(store.get("key")).isNull();
+		assertThat(store.size()).isZero();
+		assertThat(store.bytes()).isZero();
+	}
+
+	@Test
+	void frequentResponsesSurviveABurstOfOneOffRequests() {
+		// Room for 10 responses of 97 bytes with their key.
+		HunYuanTinyLfuStore store = new HunYuanTinyLfuStore(1000, Duration.ofHours(1), false, this.nanoTime::get);
+		for (int i = 0; i < 5; i++) {
+			lookUpOrStore(store, "faq-" + i);
+		}
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 5; i++) {
+				assertThat(store.get("faq-" + i)).isNotNull();
+			}
+		}
+
+		for (int i = 0; i < 100; i++) {
+			lookUpOrStore(store, "once-" + i);
+		}
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(store.get("faq-" + i)).as("faq-" + i).isNotNull();
+		}
+		assertThat(store.bytes()).isLessThanOrEqualTo(1000);
+		assertThat(store.size()).isEqualTo(10);
+	}
+
+	@Test
+	void responsesLargerThanTheStoreAreNotStored() {
+		HunYuanTinyLfuStore store = new HunYuanTinyLfuStore(100, Duration.ofHours(1), false, this.nanoTime::get);
+
+		store.put("key", new byte[100]);
+
+		assertThat(store.get("key")).isNull();
+		assertThat(store.size()).isZero();
+	}
+
+	@Test
+	void offHeapResponsesAreCopiedInAndOut() {
+		HunYuanResponseStore store = HunYuanResponseStore.offHeap(1024, Duration.ofHours(1));
+		byte[] response = new byte[] { 1, 2, 3 };
+
+		store.put("key", response);
+		response[0] = 9;
+		byte[] stored = store.get("key");
+
+		assertThat(stored).containsExactly(1, 2, 3);
+		stored[1] = 9;
+		assertThat(store.get("key")).containsExactly(1, 2, 3);
+	}
+
+	private static void lookUpOrStore(HunYuanTinyLfuStore store, String key) {
+		if (store.get(key) == null) {
+			store.put(key, new byte[100 - key.length() - 3]);
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.FunctionTool;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanJsonCodec;
+
+/**
+ * Resolution of the tools of a request and encoding of the request, with the
+ * {@link HunYuanToolDefinitionCache} compared with the resolution and serialization of
+ * the tools for every request that it replaced, for an agent sending the same 30 tools
+ * with every turn.
+ *
+ * @author Guo Junyu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HunYuanToolDefinitionCacheBenchmark {
+
+	private static final int TOOL_COUNT = 30;
+
+	private final ToolCallingManager toolCallingManager = ToolCallingManager.builder().build();
+
+	private final HunYuanJsonCodec jsonCodec = new HunYuanJsonCodec();
+
+	private HunYuanToolDefinitionCache cache;
+
+	private HunYuanChatOptions options;
+
+	private List<ChatCompletionMessage> messages;
+
+	@Setup
+	public void setup() {
+		List<ToolCallback> toolCallbacks = new ArrayList<>(TOOL_COUNT);
+		for (int i = 0; i < TOOL_COUNT; i++) {
+			toolCallbacks.add(FunctionToolCallback.builder("tool" + i, (Request request) -> "done")
+				.description("Looks up the records of kind " + i + " matching a query, within a date range")
+				.inputType(Request.class)
+				.build());
+		}
+		this.options = HunYuanChatOptions.builder().toolCallbacks(toolCallbacks).build();
+		this.cache = new HunYuanToolDefinitionCache(this.toolCallingManager,
+				HunYuanToolDefinitionCache.DEFAULT_MAX_SIZE);
+		this.messages = List.of(new ChatCompletionMessage("Find the orders of last week", Role.user));
+	}
+
+	@Benchmark
+	public byte[] cache() {
+		return encode(this.cache.tools(this.options));
+	}
+
+	@Benchmark
+	public byte[] previousImplementation() {
+		List<ToolDefinition> toolDefinitions = this.toolCallingManager.resolveToolDefinitions(this.options);
+		return encode(toolDefinitions.stream()
+			.map(toolDefinition -> new FunctionTool(new FunctionTool.Function(toolDefinition.description(),
+					toolDefinition.name(), toolDefinition.inputSchema())))
+			.toList());
+	}
+
+	private byte[] encode(List<FunctionTool> tools) {
+		return this.jsonCodec.encode(new ChatCompletionRequest(this.messages, "hunyuan-pro", tools, "auto"));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HunYuanToolDefinitionCacheBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+	public record Request(String query, String from, String to, Integer limit) {
+
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanSerializedTools;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanToolDefinitionCacheTests {
+
+	private final ToolCallingManager toolCallingManager = spy(ToolCallingManager.builder().build());
+
+	@Test
+	void toolsAreResolvedOncePerSetOfToolCallbacks() {
+		HunYuanToolDefinitionCache cache = new HunYuanToolDefinitionCache(this.toolCallingManager, 8);
+		ToolCallback weather = tool("weather");
+		ToolCallback lookup = tool("lookup");
+
+		HunYuanSerializedTools tools = cache.tools(HunYuanChatOptions.builder().toolCallbacks(weather, lookup).build());
+
+		assertThat(cache.tools(HunYuanChatOptions.builder().toolCallbacks(weather, lookup).temperature(0.2).build()))
+			.isSameAs(tools);
+		verify(this.toolCallingManager, times(1)).resolveToolDefinitions(any());
+		assertThat(tools).extracting(tool -> tool.function().name()).containsExactly("weather", "lookup");
+	}
+
+	@Test
+	void newToolCallbacksAreResolvedAgain() {
+		HunYuanToolDefinitionCache cache = new HunYuanToolDefinitionCache(this.toolCallingManager, 8);
+
+		HunYuanSerializedTools tools = cache.tools(HunYuanChatOptions.builder().toolCallbacks(tool("weather")).build());
+
+		assertThat(cache.tools(HunYuanChatOptions.builder().toolCallbacks(tool("weather")).build())).isNotSameAs(tools)
+			.isEqualTo(tools);
+		verify(this.toolCallingManager, times(2)).resolveToolDefinitions(any());
+	}
+
+	@Test
+	void theLeastRecentlyUsedSetsAreEvicted() {
+		HunYuanToolDefinitionCache cache = new HunYuanToolDefinitionCache(this.toolCallingManager, 2);
+		HunYuanChatOptions weather = HunYuanChatOptions.builder().toolCallbacks(tool("weather")).build();
+		HunYuanChatOptions lookup = HunYuanChatOptions.builder().toolCallbacks(tool("lookup")).build();
+		HunYuanChatOptions search = HunYuanChatOptions.builder().toolCallbacks(tool("search")).build();
+
+		HunYuanSerializedTools weatherTools = cache.tools(weather);
+		cache.tools(lookup);
+		cache.tools(weather);
+		HunYuanSerializedTools searchTools = cache.tools(search);
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.tools(weather)).isSameAs(weatherTools);
+		assertThat(cache.tools(search)).isSameAs(searchTools);
+		verify(this.toolCallingManager, times(3)).resolveToolDefinitions(any());
+	}
+
+	@Test
+	void optionsWithoutToolsHaveNoTools() {
+		HunYuanToolDefinitionCache cache = new HunYuanToolDefinitionCache(this.toolCallingManager, 8);
+
+		assertThat(cache.tools(HunYuanChatOptions.builder().build())).isNull();
+		assertThat(cache.tools(HunYuanChatOptions.builder().build())).isNull();
+		verify(this.toolCallingManager, times(1)).resolveToolDefinitions(any());
+	}
+
+	@Test
+	void requestsOfTheSameToolsShareTheirSerializedTools() {
+		HunYuanChatModel chatModel = HunYuanChatModel.builder()
+			.hunYuanApi(new HunYuanApi("secret-id", "secret-key"))
+			.defaultOptions(HunYuanChatOptions.builder().toolCallbacks(tool("weather")).build())
+			.build();
+
+		ChatCompletionRequest first = chatModel.createRequest(chatModel.buildRequestPrompt(new Prompt("Hello")), false);
+		ChatCompletionRequest second = chatModel.createRequest(
+				chatModel.buildRequestPrompt(new Prompt("Hello", HunYuanChatOptions.builder().build())), true);
+
+		assertThat(first.tools()).isInstanceOf(HunYuanSerializedTools.class).isSameAs(second.tools());
+	}
+
+	private static ToolCallback tool(String name) {
+		return FunctionToolCallback.builder(name, (Request request) -> name)
+			.description("The " + name + " tool")
+			.inputType(Request.class)
+			.build();
+	}
+
+	record Request(String query) {
+
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletion;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionChunk;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ChatCompletionFunction;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.Role;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionMessage.ToolCall;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionRequest;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.ChatCompletionResponse;
+import io.github.studiousxiaoyu.hunyuan.api.HunYuanApi.Usage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Guo Junyu
+ */
+@ExtendWith(MockitoExtension.class)
+class HunYuanToolLoopTests {
+
+	private @Mock HunYuanApi hunYuanApi;
+
+	private final AtomicInteger toolCalls = new AtomicInteger();
+
+	private final ToolCallback lookup = FunctionToolCallback.builder("lookup", (Request request) -> {
+		this.toolCalls.incrementAndGet();
+		return "found";
+	}).description("Looks something up").inputType(Request.class).build();
+
+	@Test
+	void roundsAreAggregatedIntoTheFinalResponse() {
+		given(this.hunYuanApi.chatCompletionEntity(isA(ChatCompletionRequest.class))).willReturn(
+				ResponseEntity.ok(toolCallCompletion(new Usage(10, 12, 2))),
+				ResponseEntity.ok(toolCallCompletion(new Usage(20, 23, 3))),
+				ResponseEntity.ok(answerCompletion(new Usage(30, 35, 5))));
+
+		ChatResponse response = chatModel(null).call(prompt());
+
+		assertThat(response.getResult().getOutput().getText()).isEqualTo("The answer");
+		assertThat(response.getMetadata().getUsage().getPromptTokens()).isEqualTo(60);
+		assertThat(response.getMetadata().getUsage().getCompletionTokens()).isEqualTo(10);
+		assertThat((Integer) response.getMetadata().get(HunYuanToolLoopOptions.ROUNDS_METADATA_KEY)).isEqualTo(3);
+		assertThat(response.getMetadata().containsKey(HunYuanToolLoopOptions.STOP_REASON_METADATA_KEY)).isFalse();
+		assertThat(this.toolCalls).hasValue(2);
+	}
+
+	@Test
+	void theLoopStopsAtMaxRounds() {
+		given(this.hunYuanApi.chatCompletionEntity(isA(ChatCompletionRequest.class)))
+			.willReturn(ResponseEntity.ok(toolCallCompletion(new Usage(10, 12, 2))));
+
+		ChatResponse response = chatModel(HunYuanToolLoopOptions.builder().maxRounds(3).build()).call(prompt());
+
+		verify(this.hunYuanApi, times(3)).chatCompletionEntity(isA(ChatCompletionRequest.class));
+		assertThat(this.toolCalls).hasValue(2);
+		assertThat(response.getResult().getOutput().getToolCalls()).hasSize(1);
+		assertThat((String) response.getMetadata().get(HunYuanToolLoopOptions.STOP_REASON_METADATA_KEY))
+			.isEqualTo("max-rounds");
+		assertThat(response.getMetadata().getUsage().getPromptTokens()).isEqualTo(30);
+	}
+
+	@Test
+	void theLoopStopsBeforeARoundThatWouldExceedThePromptTokens() {
+		given(this.hunYuanApi.chatCompletionEntity(isA(ChatCompletionRequest.class))).willReturn(
+				ResponseEntity.ok(toolCallCompletion(new Usage(100, 120, 20))),
+				ResponseEntity.ok(toolCallCompletion(new Usage(130, 150, 20))));
+
+		ChatResponse response = chatModel(HunYuanToolLoopOptions.builder().maxPromptTokens(300).build()).call(prompt());
+
+		// 100 spent, the next round holds at least 120, the one after at least 150 more.
+		verify(this.hunYuanApi, times(2)).chatCompletionEntity(isA(ChatCompletionRequest.class));
+		assertThat((String) response.getMetadata().get(HunYuanToolLoopOptions.STOP_REASON_METADATA_KEY))
+			.isEqualTo("max-prompt-tokens");
+		assertThat(response.getMetadata().getUsage().getPromptTokens()).isEqualTo(230);
+	}
+
+	@Test
+	void longToolChainsKeepAFlatStack() {
+		given(this.hunYuanApi.chatCompletionEntity(isA(ChatCompletionRequest.class)))
+			.willReturn(ResponseEntity.ok(toolCallCompletion(new Usage(1, 2, 1))));
+		Set<Integer> depths = new HashSet<>();
+		ToolCallback probe = FunctionToolCallback.builder("lookup", (Request request) -> {
+			depths.add(Thread.currentThread().getStackTrace().length);
+			return "found";
+		}).description("Looks something up").inputType(Request.class).build();
+		HunYuanChatModel chatModel = HunYuanChatModel.builder()
+			.hunYuanApi(this.hunYuanApi)
+			.defaultOptions(HunYuanChatOptions.builder()
+				.toolCallbacks(probe)
+				.toolLoop(HunYuanToolLoopOptions.builder().maxRounds(50).build())
+				.build())
+			.build();
+
+		chatModel.call(prompt());
+
+		verify(this.hunYuanApi, times(50)).chatCompletionEntity(isA(ChatCompletionRequest.class));
+		assertThat(depths).hasSize(1);
+	}
+
+	@Test
+	void streamedLoopsStopAtMaxRounds() {
+		given(this.hunYuanApi.chatCompletionStream(isA(ChatCompletionRequest.class)))
+			.willReturn(Flux.just(toolCallChunk(new Usage(10, 12, 2))));
+
+		List<ChatResponse> responses = chatModel(HunYuanToolLoopOptions.builder().maxRounds(2).build()).stream(prompt())
+			.collectList()
+			.block();
+
+		verify(this.hunYuanApi, times(2)).chatCompletionStream(isA(ChatCompletionRequest.class));
+		ChatResponse last = responses.get(responses.size() - 1);
+		assertThat((String) last.getMetadata().get(HunYuanToolLoopOptions.STOP_REASON_METADATA_KEY))
+			.isEqualTo("max-rounds");
+		assertThat((Integer) last.getMetadata().get(HunYuanToolLoopOptions.ROUNDS_METADATA_KEY)).isEqualTo(2);
+		assertThat(last.getMetadata().getUsage().getPromptTokens()).isEqualTo(20);
+	}
+
+	private HunYuanChatModel chatModel(HunYuanToolLoopOptions toolLoop) {
+		return HunYuanChatModel.builder()
+			.hunYuanApi(this.hunYuanApi)
+			.defaultOptions(HunYuanChatOptions.builder().toolCallbacks(this.lookup).toolLoop(toolLoop).build())
+			.build();
+	}
+
+	private static Prompt prompt() {
+		return new Prompt("Look it up");
+	}
+
+	private static ChatCompletionResponse toolCallCompletion(Usage usage) {
+		ChatCompletionMessage message = new ChatCompletionMessage("", Role.assistant,
+				List.of(new ToolCall("call-1", "function", 0, new ChatCompletionFunction("lookup", "{}"))), null);
+		return completion(message, "tool_calls", usage);
+	}
+
+	private static ChatCompletionResponse answerCompletion(Usage usage) {
+		return completion(new ChatCompletionMessage("The answer", Role.assistant), "stop", usage);
+	}
+
+	private static ChatCompletionResponse completion(ChatCompletionMessage message, String finishReason, Usage usage) {
+		return new ChatCompletionResponse(new ChatCompletion("id", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, message, finishReason, null, null)), usage, null, null, null, null,
+				null, null));
+	}
+
+	private static ChatCompletionChunk toolCallChunk(Usage usage) {
+		ChatCompletion.ChatCompletionDelta delta = new ChatCompletion.ChatCompletionDelta(Role.assistant, "",
+				List.of(new ToolCall("call-1", "function", 0, new ChatCompletionFunction("lookup", "{}"))), null);
+		return new ChatCompletionChunk("id", null, 1L, null,
+				List.of(new ChatCompletion.Choice(0, null, "tool_calls", delta, null)), usage, null, null, null, null,
+				null, null);
+	}
+
+	record Request(String query) {
+
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.studiousxiaoyu.hunyuan.chat;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.studiousxiaoyu.hunyuan.chat.HunYuanVectorIndex.Match;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author Guo Junyu
+ */
+class HunYuanVectorIndexTests {
+
+	private static final int DIMENSIONS = 256;
+
+	private final Random random = new Random(42);
+
+	@Test
+	void paraphrasesAreFoundOnceTheListsAreTrained() {
+		HunYuanVectorIndex index = new HunYuanVectorIndex(DIMENSIONS, 32, 8, 32);
+		float[][] topics = new float[32][];
+		for (int i = 0; i < topics.length; i++) {
+			topics[i] = gaussian(1);
+		}
+		float[][] questions = new float[2048][];
+		for (int i = 0; i < questions.length; i++) {
+			questions[i] = perturb(topics[i % topics.length], 0.8f);
+			assertThat(index.add(questions[i], 0)).isEqualTo(i);
+		}
+		assertThat(index.isTrained()).isFalse();
+		index.train();
+		assertThat(index.isTrained()).isTrue();
+
+		int found = 0;
+		for (int i = 0; i < 200; i++) {
+			Match match = index.search(perturb(questions[i], 0.2f), 0);
+			if (match != null && match.id() == i) {
+				found++;
+			}
+		}
+		assertThat(found).isGreaterThanOrEqualTo(190);
+	}
+
+	@Test
+	void similaritiesAreCosines() {
+		HunYuanVectorIndex index = new HunYuanVectorIndex(DIMENSIONS, 1, 1, 4);
+		float[] question = gaussian(1);
+		index.add(question, 0);
+
+		float[] scaled = question.clone();
+		for (int i = 0; i < scaled.length; i++) {
+			scaled[i] *= 3;
+		}
+		assertThat(index.search(scaled, 0).similarity()).isCloseTo(1f, within(0.01f));
+
+		float[] opposite = question.clone();
+		for (int i = 0; i < opposite.length; i++) {
+			opposite[i] = -opposite[i];
+		}
+		assertThat(index.search(opposite, 0).similarity()).isCloseTo(-1f, within(0.01f));
+	}
+
+	@Test
+	void onlyVectorsOfTheTagAreSearched() {
+		HunYuanVectorIndex index = new HunYuanVectorIndex(DIMENSIONS, 1, 1, 4);
+		float[] question = gaussian(1);
+		index.add(question, 1);
+		int other = index.add(perturb(question, 0.5f), 2);
+
+		assertThat(index.search(question, 2).id()).isEqualTo(other);
+		assertThat(index.search(question, 3)).isNull();
+	}
+
+	@Test
+	void idsOfRemovedVectorsAreReused() {
+		HunYuanVectorIndex index = new HunYuanVectorIndex(DIMENSIONS, 1, 1, 4);
+		float[] first = gaussian(1);
+		int firstId = index.add(first, 0);
+		int secondId = index.add(gaussian(1), 0);
+
+		index.remove(firstId);
+
+		assertThat(index.contains(firstId)).isFalse();
+		assertThat(index.size()).isEqualTo(1);
+		assertThat(index.search(first, 0).id()).isEqualTo(secondId);
+		assertThat(index.add(first, 0)).isEqualTo(firstId);
+		assertThat(index.search(first, 0).id()).isEqualTo(firstId);
+		assertThat(index.highWater()).isEqualTo(2);
+	}
+
+	private float[] gaussian(float deviation) {
+		float[] vector = new float[DIMENSIONS];
+		for (int i = 0; i < vector.length; i++) {
+			vector[i] = (float) this.random.nextGaussian() * deviation;
+		}
+		return vector;
+	}
+
+	private float[] perturb(float[] vector, float deviation) {
+		float[] perturbed = gaussian(deviation);
+		for (int i = 0; i < perturbed.length; i++) {
+			perturbed[i] += vector[i];
+		}
+		return perturbed;
+	}
+
+}